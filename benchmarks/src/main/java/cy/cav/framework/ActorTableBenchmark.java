@@ -0,0 +1,111 @@
+package cy.cav.framework;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Compares actor lookups in [ActorTable], and pending request bookkeeping in [ConcurrentLongMap],
+/// with the [ConcurrentHashMap]s the [World] used before.
+///
+/// Lives in the `cy.cav.framework` package to access package-private classes.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ActorTableBenchmark {
+    private static final int LOOKUPS = 4096; // Must be a power of two
+
+    @Param({"1000", "1000000"})
+    int actorCount;
+
+    private ActorTable table;
+    private ConcurrentMap<Long, Actor> map;
+    private ConcurrentLongMap<Object> requests;
+    private ConcurrentMap<Long, Object> requestMap;
+    private long nextRequestId = 1;
+    private long[] lookups;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        table = new ActorTable();
+        map = new ConcurrentHashMap<>();
+        requests = new ConcurrentLongMap<>();
+        requestMap = new ConcurrentHashMap<>();
+
+        // All entries point to the same actor; we're measuring the lookup, not the actor.
+        Actor actor = new DummyActor();
+        for (long i = 0; i < actorCount; i++) {
+            long number = World.SPECIAL_ACTOR_NUM_MAX + i;
+            table.putIfAbsent(number, actor);
+            map.put(number, actor);
+        }
+
+        // Look up actors in random order, as the main loop would with many actors.
+        var random = new Random(42);
+        lookups = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            lookups[i] = World.SPECIAL_ACTOR_NUM_MAX + random.nextInt(actorCount);
+        }
+    }
+
+    @Benchmark
+    public Actor actorTableGet() {
+        return table.get(nextNumber());
+    }
+
+    @Benchmark
+    public Actor concurrentHashMapGet() {
+        return map.get(nextNumber());
+    }
+
+    @Benchmark
+    public Actor actorTableSpawnDespawn() {
+        // A short-lived actor, like a PaymentProcess.
+        long number = World.SPECIAL_ACTOR_NUM_MAX + actorCount;
+        table.putIfAbsent(number, lookupActor());
+        return table.remove(number);
+    }
+
+    @Benchmark
+    public Actor concurrentHashMapSpawnDespawn() {
+        long number = World.SPECIAL_ACTOR_NUM_MAX + actorCount;
+        map.putIfAbsent(number, lookupActor());
+        return map.remove(number);
+    }
+
+    @Benchmark
+    public Object longMapRequestRoundTrip() {
+        // What the world does for each query: register the request, then remove it when the response comes.
+        long id = nextRequestId++;
+        requests.put(id, this);
+        return requests.remove(id);
+    }
+
+    @Benchmark
+    public Object concurrentHashMapRequestRoundTrip() {
+        long id = nextRequestId++;
+        requestMap.put(id, this);
+        return requestMap.remove(id);
+    }
+
+    private long nextNumber() {
+        return lookups[cursor++ & (LOOKUPS - 1)];
+    }
+
+    private Actor lookupActor() {
+        return table.get(lookups[0]);
+    }
+
+    static final class DummyActor extends Actor {
+        DummyActor() {
+            super(new ActorInit(null, new ActorAddress(1, 1)));
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) { }
+    }
+}
@@ -0,0 +1,78 @@
+package cy.cav.framework;
+
+import com.fasterxml.jackson.core.type.*;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.json.*;
+import cy.cav.protocol.*;
+import cy.cav.protocol.allowances.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Measures turning envelopes into JSON and back, as [OutsideSender] and [OutsideReceiver] do for every message
+/// sent to another server.
+///
+/// Payloads:
+/// - `ack`: a calculation result, with a few fields
+/// - `profile`: a calculation request, with a whole beneficiary profile
+/// - `payments`: a hundred payments sent to a beneficiary
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EnvelopeJsonBenchmark {
+    private static final TypeReference<Envelope<Message>> ENVELOPE_TYPE = new TypeReference<>() { };
+
+    @Param({"ack", "profile", "payments"})
+    String payload;
+
+    // Configured like the ObjectMapper of Spring Boot.
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private Envelope<?> envelope;
+    private byte[] json;
+
+    @Setup
+    public void setup() throws Exception {
+        Message body = switch (payload) {
+            case "ack" -> new CalculateAllowance.Ack(AllowanceType.RSA, new BigDecimal("612.50"), "", UUID.randomUUID());
+            case "profile" -> new CalculateAllowance(profile(), UUID.randomUUID());
+            case "payments" -> {
+                List<Payment> payments = new ArrayList<>();
+                for (int i = 0; i < 100; i++) {
+                    payments.add(new Payment("Paiement pour l'aide RSA du mois 2025-" + (i % 12 + 1), new BigDecimal("612.50")));
+                }
+                yield new ReceivePayments(payments, UUID.randomUUID());
+            }
+            default -> throw new IllegalArgumentException("Unknown payload: " + payload);
+        };
+
+        envelope = new Envelope<>(new ActorAddress(1, 70000), new ActorAddress(2, 80000), 0, body, Instant.now());
+        json = mapper.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public byte[] serialize() throws Exception {
+        return mapper.writeValueAsBytes(envelope);
+    }
+
+    @Benchmark
+    public Envelope<Message> deserialize() throws Exception {
+        return mapper.readValue(json, ENVELOPE_TYPE);
+    }
+
+    private static BeneficiaryProfile profile() {
+        return new BeneficiaryProfile("Jean", "Dupont", LocalDate.of(1990, 1, 1), "jean.dupont@example.com",
+                "+33 6 12 34 56 78", "10 rue de la Paix, 75002 Paris", true, true, 2,
+                new BigDecimal("1450.75"), "FR7612345987650123456789014", LocalDate.of(2025, 1, 1));
+    }
+}
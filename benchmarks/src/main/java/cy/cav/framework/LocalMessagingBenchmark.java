@@ -0,0 +1,104 @@
+package cy.cav.framework;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.*;
+
+/// Measures sending messages to actors of the same world: notifications with [World#send], and request-response
+/// round trips with [World#query].
+///
+/// Messages are sent to `actorCount` actors in turn, so lookups don't always hit the same actor.
+/// Local messages are never serialized, so the payload size doesn't matter here; see [EnvelopeJsonBenchmark].
+///
+/// Run it with `-prof gc` to see the allocation rate per message.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocalMessagingBenchmark {
+    private static final int BURST = 100;
+
+    @Param({"1", "10000"})
+    int actorCount;
+
+    private World world;
+    private ActorAddress[] echoes;
+    private int cursor;
+    private final Ping ping = new Ping();
+    private final EchoRequest request = new EchoRequest();
+
+    @Setup
+    public void setup() {
+        world = TestWorlds.create(1);
+        echoes = new ActorAddress[actorCount];
+        for (int i = 0; i < actorCount; i++) {
+            echoes[i] = world.spawn(Echo::new);
+        }
+        world.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        world.stop();
+    }
+
+    @Benchmark
+    public void send() {
+        world.send(null, nextEcho(), ping);
+    }
+
+    @Benchmark
+    public Object queryRoundTrip() {
+        return world.query(null, nextEcho(), request).toCompletableFuture().join();
+    }
+
+    /// Sends a burst of queries before waiting for all of them, like a controller under load.
+    @Benchmark
+    @OperationsPerInvocation(BURST)
+    public Object queryBurst() {
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[BURST];
+        for (int i = 0; i < BURST; i++) {
+            futures[i] = world.query(null, nextEcho(), request).toCompletableFuture();
+        }
+        return CompletableFuture.allOf(futures).join();
+    }
+
+    private ActorAddress nextEcho() {
+        ActorAddress echo = echoes[cursor];
+        cursor = cursor + 1 == echoes.length ? 0 : cursor + 1;
+        return echo;
+    }
+
+    record Ping() implements Message.Notification { }
+
+    record EchoRequest() implements Message.Request<EchoResponse> { }
+
+    record EchoResponse() implements Message.Response {
+        static final EchoResponse INSTANCE = new EchoResponse();
+    }
+
+    static final class Echo extends Actor {
+        static final Router<Echo> router = new Router<Echo>()
+                .route(Ping.class, Echo::ping)
+                .route(EchoRequest.class, Echo::echo);
+
+        private long pings = 0;
+
+        Echo(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            router.process(this, envelope);
+        }
+
+        void ping(Ping ping) {
+            pings++;
+        }
+
+        EchoResponse echo(EchoRequest request) {
+            return EchoResponse.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package cy.cav.framework;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Measures the overhead of finding and calling the right function for an envelope in [Router],
+/// compared to the previous implementation (a [HashMap] of classes and wrapped lambdas).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RouterBenchmark {
+    private Target actor;
+    private Envelope<?> notification;
+    private Envelope<?> request;
+
+    @Setup
+    public void setup() {
+        // The world isn't started: requests are sent without request id, so responses aren't sent anywhere.
+        World world = TestWorlds.create(1);
+        ActorAddress address = world.spawn(Target::new);
+        actor = new Target(new ActorInit(world, address));
+
+        Instant now = Instant.now();
+        notification = new Envelope<>(address, address, 0, new N5(), now);
+        request = new Envelope<>(address, address, 0, new R3(), now);
+    }
+
+    @Benchmark
+    public long routerNotification() {
+        Target.router.process(actor, notification);
+        return actor.count;
+    }
+
+    @Benchmark
+    public long routerRequest() {
+        Target.router.process(actor, request);
+        return actor.count;
+    }
+
+    @Benchmark
+    public long hashMapNotification() {
+        Target.legacy.process(actor, notification);
+        return actor.count;
+    }
+
+    @Benchmark
+    public long hashMapRequest() {
+        Target.legacy.process(actor, request);
+        return actor.count;
+    }
+
+    // A few message types, so the tables aren't trivially small.
+    record N1() implements Message.Notification { }
+    record N2() implements Message.Notification { }
+    record N3() implements Message.Notification { }
+    record N4() implements Message.Notification { }
+    record N5() implements Message.Notification { }
+    record R1() implements Message.Request<Ok> { }
+    record R2() implements Message.Request<Ok> { }
+    record R3() implements Message.Request<Ok> { }
+    record Ok() implements Message.Response {
+        static final Ok INSTANCE = new Ok();
+    }
+
+    static final class Target extends Actor {
+        static final Router<Target> router = new Router<Target>()
+                .route(N1.class, Target::notified)
+                .route(N2.class, Target::notified)
+                .route(N3.class, Target::notified)
+                .route(N4.class, Target::notified)
+                .route(N5.class, Target::notified)
+                .route(R1.class, Target::requested)
+                .route(R2.class, Target::requested)
+                .route(R3.class, Target::requested);
+
+        static final LegacyRouter legacy = new LegacyRouter();
+
+        long count = 0;
+
+        Target(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            router.process(this, envelope);
+        }
+
+        void notified(Message.Notification notification) {
+            count++;
+        }
+
+        Ok requested(Message.Request<Ok> request) {
+            count++;
+            return Ok.INSTANCE;
+        }
+    }
+
+    /// What [Router] used to do: look up classes in hash maps, and call lambdas wrapping other lambdas.
+    static final class LegacyRouter {
+        interface Sync { Message.Response respond(Target actor, Envelope<?> envelope); }
+        interface Async { void receive(Target actor, Envelope<?> envelope); }
+
+        private final Map<Class<? extends Message>, Sync> syncMappings = new HashMap<>();
+        private final Map<Class<? extends Message>, Async> asyncMappings = new HashMap<>();
+
+        LegacyRouter() {
+            for (var type : List.of(N1.class, N2.class, N3.class, N4.class, N5.class)) {
+                Async body = (actor, envelope) -> actor.notified((Message.Notification) envelope.body());
+                asyncMappings.put(type, body::receive);
+            }
+            for (var type : List.of(R1.class, R2.class, R3.class)) {
+                Sync body = (actor, envelope) -> actor.requested(null);
+                syncMappings.put(type, body::respond);
+            }
+        }
+
+        void process(Target actor, Envelope<?> envelope) {
+            if (envelope.body() instanceof Message.Request) {
+                Sync handler = syncMappings.getOrDefault(envelope.body().getClass(), null);
+                if (handler != null) {
+                    actor.respond(envelope, Objects.requireNonNull(handler.respond(actor, envelope)));
+                }
+            } else {
+                Async handler = asyncMappings.getOrDefault(envelope.body().getClass(), null);
+                if (handler != null) {
+                    handler.receive(actor, envelope);
+                }
+            }
+        }
+    }
+}
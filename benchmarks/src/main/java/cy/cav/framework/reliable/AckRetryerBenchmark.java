@@ -0,0 +1,77 @@
+package cy.cav.framework.reliable;
+
+import cy.cav.framework.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Measures an [AckRetryer] with lots of messages waiting for their acknowledgment, like a prefecture
+/// paying all of its beneficiaries at the end of the month.
+///
+/// Each operation acknowledges a pending message, then sends a new one, so the number of pending messages
+/// stays the same. Retries are scheduled far away so they never fire during the benchmark.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AckRetryerBenchmark {
+    @Param({"100", "10000", "100000"})
+    int pendingCount;
+
+    private World world;
+    private Sender sender;
+    private ActorAddress sink;
+    // Pending messages, oldest first.
+    private ArrayDeque<Tracked> pending;
+
+    @Setup
+    public void setup() {
+        world = TestWorlds.create(1);
+        sink = world.spawn(TestWorlds.Sink::new);
+        world.spawn(init -> sender = new Sender(init));
+        world.start();
+
+        // We're calling the retryer from the benchmark thread. That's fine since the sender never
+        // receives anything from the world.
+        pending = new ArrayDeque<>(pendingCount);
+        for (int i = 0; i < pendingCount; i++) {
+            sendOne();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        world.stop();
+    }
+
+    @Benchmark
+    public boolean acknowledgeAndSend() {
+        Tracked acknowledged = pending.poll();
+        boolean handled = sender.retryer.process(new Envelope<>(sink, sender.address(), 0, acknowledged, Instant.EPOCH));
+        sendOne();
+        return handled;
+    }
+
+    private void sendOne() {
+        var message = new Tracked(UUID.randomUUID());
+        sender.retryer.send(sink, message);
+        pending.add(message);
+    }
+
+    record Tracked(UUID ackId) implements Message.Notification, Acknowledgeable { }
+
+    static final class Sender extends Actor {
+        final AckRetryer retryer = AckRetryer.constantDelay(this, Duration.ofHours(1));
+
+        Sender(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            retryer.process(envelope);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package cy.cav.framework.reliable;
+
+import cy.cav.framework.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Measures looking up acknowledged messages in an [AckStore], like calculators do for every request
+/// to detect duplicates, and adding new ones when the store is full.
+///
+/// With `idsOnly`, the store only keeps ids, like beneficiaries do for payments. The memory used by the filled store
+/// is measured once per trial, and printed before its iterations.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AckStoreBenchmark {
+    private static final int LOOKUPS = 4096; // Must be a power of two
+
+    @Param({"1000", "10000"})
+    int entryCount;
+
+    @Param({"false", "true"})
+    boolean idsOnly;
+
+    private AckStore<Ack> store;
+    private UUID[] hits;
+    private UUID[] misses;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        // The actor is only used to send messages, which we don't do here.
+        store = (idsOnly ? AckStore.idsOnly(null, Ack::new) : new AckStore<Ack>(null)).maxEntries(entryCount);
+
+        UUID[] ids = new UUID[entryCount];
+        for (int i = 0; i < entryCount; i++) {
+            ids[i] = UUID.randomUUID();
+            store.add(new Ack(ids[i]));
+        }
+
+        var random = new Random(42);
+        hits = new UUID[LOOKUPS];
+        misses = new UUID[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            hits[i] = ids[random.nextInt(entryCount)];
+            misses[i] = UUID.randomUUID();
+        }
+
+        System.out.printf("%nAckStore of %d entries%s: %d bytes%n", entryCount, idsOnly ? " (ids only)" : "",
+                store.memoryBytes());
+    }
+
+    @Benchmark
+    public Ack getHit() {
+        return store.get(hits[cursor++ & (LOOKUPS - 1)]);
+    }
+
+    @Benchmark
+    public Ack getMiss() {
+        return store.get(misses[cursor++ & (LOOKUPS - 1)]);
+    }
+
+    /// Adds a new entry; once the store is full, also evicts the oldest one.
+    @Benchmark
+    public void add() {
+        store.add(new Ack(new UUID(cursor++, 0)));
+    }
+
+    record Ack(UUID ackId) implements Message.Notification, Acknowledgeable { }
+}
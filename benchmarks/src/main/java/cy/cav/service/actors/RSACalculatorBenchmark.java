@@ -0,0 +1,77 @@
+package cy.cav.service.actors;
+
+import cy.cav.framework.*;
+import cy.cav.protocol.*;
+import cy.cav.protocol.allowances.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Measures the handling of a calculation request by [RSACalculator]: duplicate detection, eligibility,
+/// the calculation itself, and sending the result.
+///
+/// Requests have different acknowledgment ids, cycling through more ids than the calculator remembers,
+/// so no request is seen as a duplicate.
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RSACalculatorBenchmark {
+    private static final int REQUESTS = 16384; // Must be a power of two, above the size of the ack store
+
+    /// - `single`: a single person with a low income, eligible
+    /// - `family`: a couple with three children and housing, eligible
+    /// - `rejected`: a single person with a high income, not eligible
+    @Param({"single", "family", "rejected"})
+    String profile;
+
+    private World world;
+    private RSACalculator calculator;
+    private Envelope<CalculateAllowance>[] requests;
+    private int cursor;
+
+    @Setup
+    @SuppressWarnings("unchecked")
+    public void setup() {
+        world = TestWorlds.create(1);
+        // Results are sent to an actor that ignores them.
+        ActorAddress sink = world.spawn(TestWorlds.Sink::new);
+        ActorAddress address = world.spawn(init -> calculator = new RSACalculator(init));
+        world.start();
+
+        BeneficiaryProfile beneficiary = switch (profile) {
+            case "single" -> profile(false, false, 0, "250.00");
+            case "family" -> profile(true, true, 3, "1450.75");
+            case "rejected" -> profile(false, true, 0, "2400.00");
+            default -> throw new IllegalArgumentException("Unknown profile: " + profile);
+        };
+
+        requests = new Envelope[REQUESTS];
+        for (int i = 0; i < REQUESTS; i++) {
+            requests[i] = new Envelope<>(sink, address, 0, new CalculateAllowance(beneficiary, UUID.randomUUID()),
+                    Instant.now());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        world.stop();
+    }
+
+    // The calculator is only called from the benchmark thread; the world never dispatches anything to it.
+    @Benchmark
+    public void calculate() {
+        calculator.calculateRSA(requests[cursor++ & (REQUESTS - 1)]);
+    }
+
+    private static BeneficiaryProfile profile(boolean inCouple, boolean hasHousing, int dependents, String income) {
+        return new BeneficiaryProfile("Jean", "Dupont", LocalDate.of(1990, 1, 1), "jean.dupont@example.com",
+                "+33 6 12 34 56 78", "10 rue de la Paix, 75002 Paris", hasHousing, inCouple, dependents,
+                new BigDecimal(income), "FR7612345987650123456789014", LocalDate.of(2025, 1, 1));
+    }
+}
@@ -0,0 +1,45 @@
+package cy.cav.service.load;
+
+import java.util.*;
+
+/// Records the latencies of an operation of the load harness, and computes their percentiles.
+///
+/// Every latency is kept, which is fine for the few million operations of a run.
+final class LatencyRecorder {
+    private long[] latencies = new long[1024];
+    private int count = 0;
+    private int errors = 0;
+
+    synchronized void record(long nanos) {
+        if (count == latencies.length) {
+            latencies = Arrays.copyOf(latencies, count * 2);
+        }
+        latencies[count++] = nanos;
+    }
+
+    synchronized void failed() {
+        errors++;
+    }
+
+    synchronized Summary summary() {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+        return new Summary(count, errors,
+                percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                count == 0 ? 0 : sorted[count - 1]);
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, index)];
+    }
+
+    /// The latencies of an operation, in nanoseconds.
+    ///
+    /// @param count  the number of successful operations
+    /// @param errors the number of failed operations, which have no latency
+    record Summary(int count, int errors, long p50, long p99, long p999, long max) { }
+}
@@ -0,0 +1,286 @@
+package cy.cav.service.load;
+
+import cy.cav.framework.*;
+import cy.cav.protocol.*;
+import cy.cav.protocol.accounts.*;
+import cy.cav.protocol.requests.*;
+import cy.cav.service.*;
+import cy.cav.service.actors.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.concurrent.locks.*;
+import java.util.function.*;
+
+/// Loads the whole system in a single JVM: prefectures, calculators and a client, each in its own [World],
+/// connected by an [InMemoryCluster].
+///
+/// The client creates accounts, requests allowances for them, and switches prefectures to the next month
+/// at fixed rates. Operations are sent on schedule whether the previous ones finished or not, and their latency
+/// is measured from the moment they should have been sent, so a slow system can't hide its delays.
+///
+/// Prints the latency percentiles of each operation, then the throughput of each world.
+///
+/// ## Running
+///
+/// ```sh
+/// java -cp benchmarks/target/benchmarks.jar cy.cav.service.load.LoadHarness --duration=60 --allowance-rate=2000
+/// ```
+///
+/// Options, all optional:
+/// - `--prefectures=2`: number of prefecture worlds
+/// - `--calculators=1`: number of calculator worlds
+/// - `--beneficiaries=1000`: beneficiaries spawned by each prefecture when it starts
+/// - `--accounts=1000`: accounts created before measuring, whose allowances are requested
+/// - `--create-rate=100`: accounts created per second
+/// - `--allowance-rate=500`: allowances requested per second
+/// - `--next-month-period=10`: seconds between two month switches of all prefectures
+/// - `--duration=30`: seconds of measurement
+/// - `--json=true`: turn envelopes going to other worlds into JSON and back, like on the network
+public final class LoadHarness {
+    private final Options options;
+    private final InMemoryCluster cluster;
+    private final World client;
+    private final List<World> prefectures = new ArrayList<>();
+    private final List<World> calculators = new ArrayList<>();
+
+    // Beneficiaries whose allowances can be requested; filled with created accounts.
+    private final List<ActorAddress> accounts = new CopyOnWriteArrayList<>();
+    private final Random random = new Random(42);
+    private int nextAccount = 0;
+
+    private final LatencyRecorder createLatencies = new LatencyRecorder();
+    private final LatencyRecorder allowanceLatencies = new LatencyRecorder();
+    private final LatencyRecorder nextMonthLatencies = new LatencyRecorder();
+    private final Map<World, Integer> maxMailboxDepths = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private LoadHarness(Options options) {
+        this.options = options;
+        this.cluster = new InMemoryCluster(options.json());
+
+        for (int i = 0; i < options.prefectures(); i++) {
+            World world = cluster.addWorld("cav-service", Map.of(ServerCapability.PREFECTURE.metadataKey(), "true"));
+            var finder = new ServerFinder(cluster.network(world), world.server(), world);
+            var beneficiaries = new SyntheticBeneficiaries(options.beneficiaries(), i);
+            world.migrations().register(BeneficiaryActor.Snapshot.class,
+                    (init, snapshot) -> new BeneficiaryActor(init, snapshot, finder));
+            world.spawn(init -> new DirectoryActor(init, finder), KnownActors.DIRECTORY);
+            world.spawn(init -> new Prefecture(init, new Store(), beneficiaries, finder), KnownActors.PREFECTURE);
+            prefectures.add(world);
+        }
+        for (int i = 0; i < options.calculators(); i++) {
+            World world = cluster.addWorld("cav-service", Map.of(ServerCapability.CALCULATORS.metadataKey(), "true"));
+            world.spawn(RSACalculator::new, KnownActors.RSA_CALCULATOR);
+            calculators.add(world);
+        }
+        this.client = cluster.addWorld("cav-client", Map.of());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        System.out.println("Options: " + options);
+
+        var harness = new LoadHarness(options);
+        try (InMemoryCluster _ = harness.cluster) {
+            harness.run();
+        }
+    }
+
+    private void run() throws Exception {
+        cluster.start();
+
+        System.out.printf("Creating %d accounts...%n", options.accounts());
+        for (int i = 0; i < options.accounts(); i++) {
+            createAccount().toCompletableFuture().get(30, TimeUnit.SECONDS);
+        }
+        awaitIdle(Duration.ofSeconds(60));
+
+        System.out.printf("Measuring for %ds...%n", options.duration());
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(options.duration());
+        List<Thread> drivers = List.of(
+                drive("create-account", options.createRate(), end, createLatencies, this::createAccount),
+                drive("request-allowance", options.allowanceRate(), end, allowanceLatencies, this::requestAllowance),
+                drive("next-month", 1.0 / options.nextMonthPeriod(), end, nextMonthLatencies, this::nextMonth)
+        );
+        Thread sampler = Thread.ofPlatform().daemon().name("mailbox-sampler").start(this::sampleMailboxes);
+        for (Thread driver : drivers) {
+            driver.join();
+        }
+        long sendingNanos = System.nanoTime() - start;
+
+        // Wait for the last operations, and everything they started, to finish.
+        // Requests time out after 30 seconds.
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(35);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(20);
+        }
+        Duration drain = awaitIdle(Duration.ofSeconds(60));
+        long totalNanos = System.nanoTime() - start;
+        sampler.interrupt();
+
+        report(sendingNanos, totalNanos, drain);
+    }
+
+    /// Starts a thread calling the operation at a fixed rate until the end.
+    private Thread drive(String name, double ratePerSecond, long endNanos, LatencyRecorder recorder,
+                         Supplier<CompletionStage<?>> operation) {
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSecond);
+        return Thread.ofPlatform().name("driver-" + name).start(() -> {
+            long next = System.nanoTime();
+            while (next < endNanos) {
+                long wait;
+                while ((wait = next - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+
+                long intended = next;
+                inFlight.incrementAndGet();
+                operation.get().whenComplete((_, e) -> {
+                    if (e == null) {
+                        recorder.record(System.nanoTime() - intended);
+                    } else {
+                        recorder.failed();
+                    }
+                    inFlight.decrementAndGet();
+                });
+                next += intervalNanos;
+            }
+        });
+    }
+
+    private CompletionStage<?> createAccount() {
+        CreateAccountRequest request;
+        World prefecture;
+        synchronized (random) {
+            request = SyntheticBeneficiaries.accountRequest(random, nextAccount++);
+            prefecture = prefectures.get(random.nextInt(prefectures.size()));
+        }
+
+        return client.query(null, prefecture.server().address(KnownActors.PREFECTURE), request)
+                .thenAccept(response -> accounts.add(response.beneficiaryAddress()));
+    }
+
+    private CompletionStage<?> requestAllowance() {
+        ActorAddress beneficiary = accounts.get(ThreadLocalRandom.current().nextInt(accounts.size()));
+        return client.query(null, beneficiary, new RequestAllowanceRequest(AllowanceType.RSA));
+    }
+
+    private CompletionStage<?> nextMonth() {
+        CompletableFuture<?>[] responses = prefectures.stream()
+                .map(p -> client.query(null, p.server().address(KnownActors.PREFECTURE), new NextMonthRequest())
+                        .toCompletableFuture())
+                .toArray(CompletableFuture[]::new);
+        return CompletableFuture.allOf(responses);
+    }
+
+    /// Waits until no world has anything left in its mailbox, and returns how long it took.
+    private Duration awaitIdle(Duration timeout) throws InterruptedException {
+        long start = System.nanoTime();
+        long deadline = start + timeout.toNanos();
+        // Actors may be busy even when their mailbox is empty; it has to stay empty for a bit.
+        int idleChecks = 0;
+        while (idleChecks < 5 && System.nanoTime() < deadline) {
+            boolean idle = cluster.worlds().stream().allMatch(w -> mailboxDepth(w) == 0);
+            idleChecks = idle ? idleChecks + 1 : 0;
+            Thread.sleep(20);
+        }
+        return Duration.ofNanos(System.nanoTime() - start);
+    }
+
+    private void sampleMailboxes() {
+        while (!Thread.currentThread().isInterrupted()) {
+            for (World world : cluster.worlds()) {
+                maxMailboxDepths.merge(world, mailboxDepth(world), Math::max);
+            }
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException _) {
+                return;
+            }
+        }
+    }
+
+    private int mailboxDepth(World world) {
+        return (int) cluster.registry(world).get("cav.world.mailbox.depth").gauge().value();
+    }
+
+    private void report(long sendingNanos, long totalNanos, Duration drain) {
+        double sendingSeconds = sendingNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-18s %9s %7s %10s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "ops/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        printOperation("create-account", createLatencies.summary(), sendingSeconds);
+        printOperation("request-allowance", allowanceLatencies.summary(), sendingSeconds);
+        printOperation("next-month", nextMonthLatencies.summary(), sendingSeconds);
+
+        double totalSeconds = totalNanos / 1e9;
+        System.out.println();
+        System.out.printf("%-16s %-12s %12s %12s %12s%n", "server", "role", "dispatched", "envelopes/s", "max mailbox");
+        for (World world : cluster.worlds()) {
+            long dispatched = cluster.registry(world).find("cav.world.dispatch").timers().stream()
+                    .mapToLong(Timer::count)
+                    .sum();
+            System.out.printf("%-16s %-12s %12d %12.0f %12d%n",
+                    world.server().idString(), roleOf(world), dispatched, dispatched / totalSeconds,
+                    maxMailboxDepths.getOrDefault(world, 0));
+        }
+        System.out.printf("%nSent operations for %.1fs, then everything was processed %dms later.%n",
+                sendingSeconds, drain.toMillis());
+    }
+
+    private static void printOperation(String name, LatencyRecorder.Summary summary, double seconds) {
+        System.out.printf("%-18s %9d %7d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                name, summary.count(), summary.errors(), summary.count() / seconds,
+                summary.p50() / 1e6, summary.p99() / 1e6, summary.p999() / 1e6, summary.max() / 1e6);
+    }
+
+    private String roleOf(World world) {
+        if (prefectures.contains(world)) { return "prefecture"; }
+        if (calculators.contains(world)) { return "calculator"; }
+        return "client";
+    }
+
+    /// Options of the harness, given as `--name=value` arguments.
+    record Options(int prefectures, int calculators, int beneficiaries, int accounts,
+                   double createRate, double allowanceRate, double nextMonthPeriod, int duration, boolean json) {
+        private static final Set<String> NAMES = Set.of("prefectures", "calculators", "beneficiaries", "accounts",
+                "create-rate", "allowance-rate", "next-month-period", "duration", "json");
+
+        static Options parse(String[] args) {
+            Map<String, String> values = new HashMap<>();
+            for (String arg : args) {
+                if (!arg.startsWith("--") || !arg.contains("=")) {
+                    throw new IllegalArgumentException("Invalid argument, expected --name=value: " + arg);
+                }
+                int equals = arg.indexOf('=');
+                String name = arg.substring(2, equals);
+                if (!NAMES.contains(name)) {
+                    throw new IllegalArgumentException("Unknown option --" + name + ", expected one of " + NAMES);
+                }
+                values.put(name, arg.substring(equals + 1));
+            }
+
+            var options = new Options(
+                    Integer.parseInt(values.getOrDefault("prefectures", "2")),
+                    Integer.parseInt(values.getOrDefault("calculators", "1")),
+                    Integer.parseInt(values.getOrDefault("beneficiaries", "1000")),
+                    Integer.parseInt(values.getOrDefault("accounts", "1000")),
+                    Double.parseDouble(values.getOrDefault("create-rate", "100")),
+                    Double.parseDouble(values.getOrDefault("allowance-rate", "500")),
+                    Double.parseDouble(values.getOrDefault("next-month-period", "10")),
+                    Integer.parseInt(values.getOrDefault("duration", "30")),
+                    Boolean.parseBoolean(values.getOrDefault("json", "true"))
+            );
+            if (options.prefectures() < 1 || options.calculators() < 1 || options.accounts() < 1) {
+                throw new IllegalArgumentException("Needs at least one prefecture, calculator and account");
+            }
+            return options;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package cy.cav.service.load;
+
+import cy.cav.protocol.accounts.*;
+import cy.cav.service.config.*;
+import cy.cav.service.domain.*;
+
+import java.math.*;
+import java.time.*;
+import java.util.*;
+
+/// Generates many random beneficiaries, spawned by the prefecture when it starts, and random account
+/// creation requests.
+///
+/// About half of the beneficiaries are eligible to the RSA. The same seed always gives the same profiles.
+final class SyntheticBeneficiaries extends DefaultBeneficiaries {
+    private final int count;
+    private final long seed;
+
+    SyntheticBeneficiaries(int count, long seed) {
+        this.count = count;
+        this.seed = seed;
+    }
+
+    @Override
+    public List<Beneficiary> getDefaultBeneficiaries() {
+        var random = new Random(seed);
+        List<Beneficiary> beneficiaries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CreateAccountRequest r = accountRequest(random, i);
+            beneficiaries.add(new Beneficiary(r.firstName(), r.lastName(), r.birthDate(), r.email(), r.phoneNumber(),
+                    r.address(), r.hasHousing(), r.inCouple(), r.numberOfDependents(), r.monthlyIncome(), r.iban(),
+                    LocalDate.now()));
+        }
+        return beneficiaries;
+    }
+
+    /// Makes a request to create the account of a random beneficiary.
+    static CreateAccountRequest accountRequest(Random random, int index) {
+        String lastName = "Synthetique" + index;
+        return new CreateAccountRequest(
+                "Test",
+                lastName,
+                LocalDate.of(1950 + random.nextInt(55), 1 + random.nextInt(12), 1 + random.nextInt(28)),
+                "test." + index + "@example.com",
+                "06" + String.format("%08d", random.nextInt(100_000_000)),
+                index + " Rue de la Charge, 75001 Paris",
+                random.nextBoolean(),
+                random.nextBoolean(),
+                random.nextInt(4),
+                BigDecimal.valueOf(random.nextInt(2000)),
+                "FR76" + String.format("%023d", index)
+        );
+    }
+}
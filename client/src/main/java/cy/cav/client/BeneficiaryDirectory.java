@@ -0,0 +1,122 @@
+package cy.cav.client;
+
+import cy.cav.framework.*;
+import cy.cav.protocol.directory.*;
+import jakarta.annotation.*;
+import org.springframework.http.*;
+import org.springframework.stereotype.*;
+import org.springframework.web.server.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Finds the actor of a beneficiary from its id, by asking the directory of its home prefecture.
+///
+/// Addresses are kept in a small near-cache, so most requests go straight to the beneficiary actor.
+/// When the cached address doesn't work anymore, because the actor moved or its server left,
+/// the directory is asked again.
+///
+/// @see DirectoryPartitions
+@Component
+public class BeneficiaryDirectory {
+    private static final int CACHE_SIZE = 10_000;
+    private static final long CACHE_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final World world;
+    private final HashRing prefectures;
+
+    // Least recently used addresses are evicted first. Guarded by itself.
+    private final Map<UUID, Cached> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Cached> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
+
+    public BeneficiaryDirectory(World world, Network network) {
+        this.world = world;
+        this.prefectures = DirectoryPartitions.prefectures(network);
+    }
+
+    /// Returns the address of the beneficiary actor, from the cache or from the directory.
+    ///
+    /// Fails with a 404 [ResponseStatusException] when the beneficiary isn't known.
+    public CompletionStage<ActorAddress> resolve(UUID beneficiaryId) {
+        ActorAddress cached = cached(beneficiaryId);
+        return cached != null ? CompletableFuture.completedFuture(cached) : lookup(beneficiaryId);
+    }
+
+    /// Sends the request to the beneficiary actor. When the actor isn't found where the cache says,
+    /// finds it again in the directory and sends the request one more time.
+    public <T extends Message.Response> CompletionStage<T> query(UUID beneficiaryId, Message.Request<T> request) {
+        ActorAddress cached = cached(beneficiaryId);
+        if (cached == null) {
+            return lookup(beneficiaryId).thenCompose(address -> world.query(null, address, request, false));
+        }
+
+        return world.query(null, cached, request, false)
+                .<CompletionStage<T>>handle((response, e) -> {
+                    if (e == null) {
+                        return CompletableFuture.completedFuture(response);
+                    }
+                    if (!isStale(e)) {
+                        return CompletableFuture.<T>failedFuture(e);
+                    }
+
+                    invalidate(beneficiaryId);
+                    return lookup(beneficiaryId).thenCompose(address -> world.query(null, address, request, false));
+                })
+                .thenCompose(stage -> stage);
+    }
+
+    /// Forgets the cached address of the beneficiary.
+    public void invalidate(UUID beneficiaryId) {
+        synchronized (cache) {
+            cache.remove(beneficiaryId);
+        }
+    }
+
+    private @Nullable ActorAddress cached(UUID beneficiaryId) {
+        synchronized (cache) {
+            Cached cached = cache.get(beneficiaryId);
+            if (cached == null) {
+                return null;
+            }
+            if (System.nanoTime() - cached.expiresAtNanos >= 0) {
+                cache.remove(beneficiaryId);
+                return null;
+            }
+            return cached.address;
+        }
+    }
+
+    private CompletionStage<ActorAddress> lookup(UUID beneficiaryId) {
+        ActorAddress directory = DirectoryPartitions.directoryActor(beneficiaryId, prefectures);
+        if (directory == null) {
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Aucune préfecture disponible"));
+        }
+
+        return world.query(null, directory, new LookupBeneficiaryRequest(beneficiaryId), false)
+                .thenApply(response -> {
+                    if (response.address() == null) {
+                        throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Bénéficiaire introuvable : " + beneficiaryId);
+                    }
+
+                    synchronized (cache) {
+                        cache.put(beneficiaryId, new Cached(response.address(), System.nanoTime() + CACHE_TTL_NANOS));
+                    }
+                    return response.address();
+                });
+    }
+
+    // The actor isn't where we thought it was anymore.
+    private static boolean isStale(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        return cause instanceof ActorNotFoundException
+               || (cause instanceof RequestFailedException failed
+                   && failed.reason() == RequestFailedResponse.Reason.UNREACHABLE);
+    }
+
+    private record Cached(ActorAddress address, long expiresAtNanos) { }
+}
@@ -1,5 +1,7 @@
 package cy.cav.client;
 
+import cy.cav.framework.*;
+import cy.cav.protocol.*;
 import org.springframework.boot.*;
 import org.springframework.boot.autoconfigure.*;
 import org.springframework.context.annotation.Bean;
@@ -12,6 +14,12 @@ public class ClientApplication {
         SpringApplication.run(ClientApplication.class, args);
     }
 
+    // Finds prefectures without reading the metadata of every server on each request.
+    @Bean
+    ServerIndex<ServerCapability> serverCapabilities(Network network) {
+        return network.index(ServerCapability::of);
+    }
+
     @Bean
     WebMvcConfigurer webMvcConfigurer() {
         return new WebMvcConfigurer() {
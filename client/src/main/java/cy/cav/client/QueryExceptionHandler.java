@@ -0,0 +1,37 @@
+package cy.cav.client;
+
+import cy.cav.framework.*;
+import org.slf4j.*;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.concurrent.*;
+
+/// Converts failures of [World#query] into HTTP statuses, for controllers returning a [CompletionStage].
+@RestControllerAdvice
+class QueryExceptionHandler {
+    private static final Logger log = LoggerFactory.getLogger(QueryExceptionHandler.class);
+
+    // The actor doesn't exist (anymore?)
+    @ExceptionHandler(ActorNotFoundException.class)
+    ResponseEntity<Void> actorNotFound(ActorNotFoundException e) {
+        return ResponseEntity.notFound().build();
+    }
+
+    // The actor took too long to respond
+    @ExceptionHandler(TimeoutException.class)
+    ResponseEntity<Void> timeout(TimeoutException e) {
+        return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT).build();
+    }
+
+    // The actor failed to respond, or couldn't be reached
+    @ExceptionHandler(RequestFailedException.class)
+    ResponseEntity<Void> requestFailed(RequestFailedException e) {
+        log.warn("Request to an actor failed: {}", e.getMessage());
+        if (e.reason() == RequestFailedResponse.Reason.UNREACHABLE) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } else {
+            return ResponseEntity.status(HttpStatus.BAD_GATEWAY).build();
+        }
+    }
+}
@@ -3,10 +3,14 @@ package cy.cav.client;
 import cy.cav.framework.*;
 import cy.cav.protocol.*;
 import cy.cav.protocol.accounts.*;
+import jakarta.annotation.*;
 import org.slf4j.*;
+import org.springframework.http.*;
 import org.springframework.stereotype.*;
+import org.springframework.web.server.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * remplace acteur AllocataireProxy (simpler @Component)
@@ -17,58 +21,47 @@ public class ServiceAPI {
 
     private final World world;
     private final Network network;
+    private final ServerIndex<ServerCapability> capabilities;
 
-    public ServiceAPI(World world, Network network) {
+    public ServiceAPI(World world, Network network, ServerIndex<ServerCapability> capabilities) {
         this.world = world;
         this.network = network;
+        this.capabilities = capabilities;
     }
 
-    public CreateAccountResponse createAccount(CreateAccountRequest request) {
+    public CompletionStage<CreateAccountResponse> createAccount(CreateAccountRequest request) {
         return forward(request, KnownActors.PREFECTURE);
     }
 
-    private <T extends Message.Response> T forward(Message.Request<T> req, long actorId) {
+    private <T extends Message.Response> CompletionStage<T> forward(Message.Request<T> req, long actorId) {
         Server server = findServiceServer();
         if (server == null) {
-            throw new IllegalStateException("Service CAV not found. Available servers: " +
+            return CompletableFuture.failedFuture(new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Service CAV not found. Available servers: " +
                     network.servers().values().stream()
                             .map(Server::appName)
-                            .toList());
+                            .toList()));
         }
 
         ActorAddress actorAddress = server.address(actorId);
         log.debug("Forwarding request {} to actor {} on server {}",
                 req.getClass().getSimpleName(), actorId, server.appName());
 
-        try {
-            return world.querySync(actorAddress, req);
-        } catch (ActorNotFoundException e) {
-            // We assume the actor always exists here because it's a well-known actor.
-            throw new RuntimeException(e);
-        }
+        // Don't retry on network errors for fast API feedback.
+        return world.query(null, actorAddress, req, false);
     }
 
-    private Server findServiceServer() {
-        Map<Long, Server> servers = network.servers();
-
-        if (servers.isEmpty()) {
-            log.warn("No servers available in network. Service may not be started or registered in Eureka.");
-            return null;
-        }
+    private @Nullable Server findServiceServer() {
+        List<Server> prefectures = capabilities.servers(ServerCapability.PREFECTURE);
 
-        Optional<Server> serviceServer = servers.values().stream()
-                .filter(server -> server.appName().equalsIgnoreCase("cav-service"))
-                .filter(server -> Boolean.parseBoolean(server.metadata().getOrDefault("supportsPrefecture", "")))
-                .findFirst();
-
-        if (serviceServer.isEmpty()) {
-            log.error("Service cav-service not found via Eureka. Available servers: {}",
-                    servers.values().stream()
+        if (prefectures.isEmpty()) {
+            log.error("No prefecture found on the network. Available servers: {}",
+                    network.servers().values().stream()
                             .map(Server::appName)
                             .toList());
+            return null;
         }
 
-        return serviceServer.orElse(null);
+        return prefectures.getFirst();
     }
 }
-
@@ -2,6 +2,8 @@ package cy.cav.client.controller;
 
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletionStage;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,14 +19,12 @@ import org.springframework.web.bind.annotation.RestController;
 import cy.cav.client.ServiceAPI;
 import cy.cav.client.dto.AllocataireDTO;
 import cy.cav.framework.ActorAddress;
-import cy.cav.framework.ActorNotFoundException;
 import cy.cav.framework.World;
 import cy.cav.protocol.AllowancePrevision;
 import cy.cav.protocol.AllowanceType;
 import cy.cav.protocol.BeneficiaryProfile;
 import cy.cav.protocol.Payment;
 import cy.cav.protocol.accounts.CreateAccountRequest;
-import cy.cav.protocol.accounts.CreateAccountResponse;
 import cy.cav.protocol.accounts.GetAccountRequest;
 import cy.cav.protocol.accounts.GetAccountResponse;
 
@@ -44,7 +44,7 @@ public class AccountController {
 
     // Creates a new allocataire account (création d'un compte allocataire)
     @PostMapping
-    public ResponseEntity<CreatedAccountResponse> createAccount(@RequestBody AllocataireDTO dto) {
+    public CompletionStage<ResponseEntity<CreatedAccountResponse>> createAccount(@RequestBody AllocataireDTO dto) {
         // Create request message
         CreateAccountRequest request = new CreateAccountRequest(
                 dto.firstName(),
@@ -61,29 +61,26 @@ public class AccountController {
         );
 
         // Send request via ServiceAPI (which forwards to service)
-        CreateAccountResponse response = serviceAPI.createAccount(request);
+        return serviceAPI.createAccount(request).thenApply(response -> {
+            log.info("Account created: {}", response.beneficiaryAddress());
 
-        log.info("Account created: {}", response.beneficiaryAddress());
-
-        return ResponseEntity.status(HttpStatus.CREATED).body(
-                new CreatedAccountResponse(
-                        response.beneficiaryAddress()
-                )
-        );
+            return ResponseEntity.status(HttpStatus.CREATED).body(
+                    new CreatedAccountResponse(
+                            response.beneficiaryId(),
+                            response.beneficiaryAddress()
+                    )
+            );
+        });
     }
 
     // Gets allocataire data
+    // The request thread is released while waiting for the actor; failures are handled by QueryExceptionHandler.
     @GetMapping("/{addr}")
-    public ResponseEntity<?> getAccount(@PathVariable ActorAddress addr) {
-        try {
-            GetAccountResponse response = world.querySync(addr, new GetAccountRequest());
-
-            return ResponseEntity.ok(
-                    new AccountRepr(response.profile(), response.payments(), response.allowancePrevisions(), response.currentMonth())
-            );
-        } catch (ActorNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        }
+    public CompletionStage<ResponseEntity<AccountRepr>> getAccount(@PathVariable ActorAddress addr) {
+        return world.query(null, addr, new GetAccountRequest(), false).thenApply((GetAccountResponse response) ->
+                ResponseEntity.ok(
+                        new AccountRepr(response.profile(), response.payments(), response.allowancePrevisions(), response.currentMonth())
+                ));
     }
 
     // todo: see if we should separate profile from api
@@ -92,6 +89,6 @@ public class AccountController {
                               Map<AllowanceType, AllowancePrevision> allowancePrevisions,
                               java.time.LocalDate currentMonth) { }
 
-    public record CreatedAccountResponse(ActorAddress beneficiaryAddress) { }
+    public record CreatedAccountResponse(UUID beneficiaryId, ActorAddress beneficiaryAddress) { }
 }
 
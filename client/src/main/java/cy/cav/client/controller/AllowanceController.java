@@ -7,6 +7,8 @@ import org.slf4j.*;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.*;
+
 // REST controller for allowance requests
 @RestController
 @RequestMapping("/api/accounts/{addr}/requests")
@@ -19,22 +21,18 @@ public class AllowanceController {
 
     // Creates RSA allowance request
     @PostMapping("/{type}")
-    public ResponseEntity<AllowanceRequestResponse> requestAllowance(@PathVariable AllowanceType type,
-                                                                     @PathVariable ActorAddress addr) {
+    public CompletionStage<ResponseEntity<AllowanceRequestResponse>> requestAllowance(@PathVariable AllowanceType type,
+                                                                                      @PathVariable ActorAddress addr) {
         log.info("Allowance request received for beneficiary: {}", addr);
 
-        try {
-            RequestAllowanceResponse response = world.querySync(addr, new RequestAllowanceRequest(type));
-
+        return world.query(null, addr, new RequestAllowanceRequest(type), false).thenApply(response -> {
             AllowanceRequestResponse httpResponse = new AllowanceRequestResponse(response.message());
             if (response.success()) {
                 return ResponseEntity.ok(httpResponse);
             } else {
                 return ResponseEntity.status(HttpStatus.CONFLICT).body(httpResponse);
             }
-        } catch (ActorNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        }
+        });
     }
 
     // TODO: I want to not receive RSA anymore!
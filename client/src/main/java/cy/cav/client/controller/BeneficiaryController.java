@@ -0,0 +1,50 @@
+package cy.cav.client.controller;
+
+import cy.cav.client.*;
+import cy.cav.framework.*;
+import cy.cav.protocol.*;
+import cy.cav.protocol.accounts.*;
+import cy.cav.protocol.requests.*;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// REST controller for beneficiaries found by their id, wherever their actor lives
+@RestController
+@RequestMapping("/api/beneficiaries/{id}")
+public class BeneficiaryController {
+    private final BeneficiaryDirectory directory;
+
+    public BeneficiaryController(BeneficiaryDirectory directory) {
+        this.directory = directory;
+    }
+
+    // Finds the address of the beneficiary actor
+    @GetMapping
+    public CompletionStage<ResponseEntity<BeneficiaryLocation>> locate(@PathVariable UUID id) {
+        return directory.resolve(id)
+                .thenApply(address -> ResponseEntity.ok(new BeneficiaryLocation(id, address)));
+    }
+
+    // Gets allocataire data, like GET /api/accounts/{addr}
+    @GetMapping("/account")
+    public CompletionStage<ResponseEntity<AccountController.AccountRepr>> getAccount(@PathVariable UUID id) {
+        return directory.query(id, new GetAccountRequest()).thenApply(response ->
+                ResponseEntity.ok(new AccountController.AccountRepr(response.profile(), response.payments(),
+                        response.allowancePrevisions(), response.currentMonth())));
+    }
+
+    // Requests an allowance, like POST /api/accounts/{addr}/requests/{type}
+    @PostMapping("/requests/{type}")
+    public CompletionStage<ResponseEntity<AllowanceController.AllowanceRequestResponse>> requestAllowance(
+            @PathVariable UUID id, @PathVariable AllowanceType type) {
+        return directory.query(id, new RequestAllowanceRequest(type)).thenApply(response -> {
+            var httpResponse = new AllowanceController.AllowanceRequestResponse(response.message());
+            return ResponseEntity.status(response.success() ? HttpStatus.OK : HttpStatus.CONFLICT).body(httpResponse);
+        });
+    }
+
+    public record BeneficiaryLocation(UUID beneficiaryId, ActorAddress beneficiaryAddress) { }
+}
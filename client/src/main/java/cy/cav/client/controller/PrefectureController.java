@@ -8,8 +8,10 @@ import cy.cav.protocol.requests.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.*;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.stream.*;
 
 @RestController
@@ -19,11 +21,13 @@ public class PrefectureController {
 
     private final World world;
     private final Network network;
+    private final ServerIndex<ServerCapability> capabilities;
 
     @Autowired
-    public PrefectureController(World world, Network network) {
+    public PrefectureController(World world, Network network, ServerIndex<ServerCapability> capabilities) {
         this.world = world;
         this.network = network;
+        this.capabilities = capabilities;
     }
 
     // Research the address of our prefecture
@@ -33,15 +37,15 @@ public class PrefectureController {
         try {
             targetServerId = Long.parseUnsignedLong(serverIdHex, 16);
         } catch (NumberFormatException e) {
-            throw new RuntimeException("Format d'ID serveur invalide : " + serverIdHex);
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Format d'ID serveur invalide : " + serverIdHex);
         }
 
         if (!network.servers().containsKey(targetServerId)) {
-            throw new RuntimeException("Serveur introuvable !");
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Serveur introuvable !");
         }
         // Verify if it is a prefecture
-        if (!"true".equalsIgnoreCase(network.servers().get(targetServerId).metadata().get("supportsPrefecture"))) {
-            throw new RuntimeException("Ce serveur n'est pas une préfecture !");
+        if (!capabilities.contains(ServerCapability.PREFECTURE, targetServerId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Ce serveur n'est pas une préfecture !");
         }
 
         return new ActorAddress(targetServerId, KnownActors.PREFECTURE);
@@ -50,8 +54,7 @@ public class PrefectureController {
     // Listing of prefectures
     @GetMapping
     public List<PrefectureInfo> listPrefectures() {
-        return network.servers().values().stream()
-                .filter(server -> "true".equalsIgnoreCase(server.metadata().get("supportsPrefecture")))
+        return capabilities.servers(ServerCapability.PREFECTURE).stream()
                 .map(server -> new PrefectureInfo(
                         HexFormat.of().toHexDigits(server.id()),
                         "Préfecture " + server.appName() + " (" + server.idString() + ")"
@@ -60,63 +63,43 @@ public class PrefectureController {
     }
 
     // Getting the state (name + current month of a prefecture)
+    // Queries don't block the request thread; failures are handled by QueryExceptionHandler.
     @GetMapping("/{id}/state")
-    public ResponseEntity<PrefectureStateResponse> getPrefectureState(@PathVariable String id) {
-        try {
-            ActorAddress target = resolvePrefectureAddress(id);
-
-            // Use of query Sync directly
-            PrefectureStateResponse response = world.querySync(target, new PrefectureStateRequest());
-
-            return ResponseEntity.ok(response);
+    public CompletionStage<ResponseEntity<PrefectureStateResponse>> getPrefectureState(@PathVariable String id) {
+        ActorAddress target = resolvePrefectureAddress(id);
 
-        } catch (Exception e) {
-            // querySync return ActorNotFoundException
-            return ResponseEntity.notFound().build();
-        }
+        return world.query(null, target, new PrefectureStateRequest(), false)
+                .thenApply(ResponseEntity::ok);
     }
 
-    // 3. Créer un compte - Version simplifiée avec querySync
+    // 3. Créer un compte
     @PostMapping("/{id}/accounts")
-    public ResponseEntity<CreateAccountResponse> createAccount(
+    public CompletionStage<ResponseEntity<CreateAccountResponse>> createAccount(
             @PathVariable String id,
             @RequestBody AllocataireDTO request) {
-
-        try {
-            ActorAddress target = resolvePrefectureAddress(id);
-
-            // Use of querySync
-            CreateAccountResponse response = world.querySync(target, new CreateAccountRequest(
-                    request.firstName(),
-                    request.lastName(),
-                    request.birthDate(),
-                    request.email(),
-                    request.phoneNumber(),
-                    request.address(),
-                    request.hasHousing(),
-                    request.inCouple(),
-                    request.numberOfDependents(),
-                    request.monthlyIncome(),
-                    request.iban()
-            ));
-
-            return ResponseEntity.ok(response);
-        } catch (ActorNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        }
+        ActorAddress target = resolvePrefectureAddress(id);
+
+        return world.query(null, target, new CreateAccountRequest(
+                request.firstName(),
+                request.lastName(),
+                request.birthDate(),
+                request.email(),
+                request.phoneNumber(),
+                request.address(),
+                request.hasHousing(),
+                request.inCouple(),
+                request.numberOfDependents(),
+                request.monthlyIncome(),
+                request.iban()
+        ), false).thenApply(ResponseEntity::ok);
     }
 
     @PostMapping("/{id}/next-month")
-    public ResponseEntity<NextMonthResponse> nextMonth(@PathVariable String id) {
-        try {
-            ActorAddress target = resolvePrefectureAddress(id);
-
-            // On envoie le signal sans attendre de données du client (pas de Body nécessaire)
-            NextMonthResponse response = world.querySync(target, new NextMonthRequest());
+    public CompletionStage<ResponseEntity<NextMonthResponse>> nextMonth(@PathVariable String id) {
+        ActorAddress target = resolvePrefectureAddress(id);
 
-            return ResponseEntity.ok(response);
-        } catch (ActorNotFoundException e) {
-            return ResponseEntity.notFound().build();
-        }
+        // On envoie le signal sans attendre de données du client (pas de Body nécessaire)
+        return world.query(null, target, new NextMonthRequest(), false)
+                .thenApply(ResponseEntity::ok);
     }
 }
\ No newline at end of file
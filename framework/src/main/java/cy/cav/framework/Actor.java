@@ -6,6 +6,7 @@ import org.slf4j.*;
 import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
 
 /// An Actor exists in a [World], receiving and sending messages through its lifetime.
 ///
@@ -19,7 +20,15 @@ import java.util.concurrent.*;
 /// - send requests with [#send(ActorAddress, Message.Request)]
 /// - know your address with [#address]
 /// - know the world you're in with [#world] (which allows to spawn actors...)
+/// - receive more envelopes at once than other actors with [#mailboxLimit(int)]
 public abstract class Actor {
+    private static final AtomicIntegerFieldUpdater<Actor> QUEUED =
+            AtomicIntegerFieldUpdater.newUpdater(Actor.class, "queued");
+    private static final AtomicIntegerFieldUpdater<Actor> NOTIFICATIONS =
+            AtomicIntegerFieldUpdater.newUpdater(Actor.class, "notifications");
+    private static final AtomicIntegerFieldUpdater<Actor> DROPPING =
+            AtomicIntegerFieldUpdater.newUpdater(Actor.class, "dropping");
+
     /// The world this actor is in.
     protected final World world;
     /// The address for this actor.
@@ -34,6 +43,17 @@ public abstract class Actor {
     /// All timers that are still running. Can be modified from multiple threads.
     private final Set<Timer> activeTimers = ConcurrentHashMap.newKeySet();
 
+    /// Envelopes counted for this actor in the world's mailbox, how many of them are notifications, and how many
+    /// of those are old notifications to drop because the actor has too many. Updated by all threads sending
+    /// envelopes.
+    private volatile int queued = 0;
+    private volatile int notifications = 0;
+    private volatile int dropping = 0;
+    /// The maximum number of envelopes waiting for this actor; 0 to use the limit of the world.
+    private int mailboxLimit = 0;
+    /// Why a fresh actor can't take the place of this one; null when it can.
+    private @Nullable String restartsPrevented;
+
     /// Prepares the Actor to be added in a [World] by accepting a [ActorInit] object,
     /// giving us the actor's address and world.
     ///
@@ -47,9 +67,11 @@ public abstract class Actor {
         this.supervisor = new Supervisor.Default(this);
     }
 
-    /// Called by [World] only.
+    /// Called by [World] only. Keeps the [default supervisor][Supervisor.Default] when there's no supervisor.
     void reportSpawned(@Nullable Supervisor supervisor) {
-        this.supervisor = supervisor;
+        if (supervisor != null) {
+            this.supervisor = supervisor;
+        }
         state = ActorState.ALIVE;
         spawned();
     }
@@ -87,6 +109,17 @@ public abstract class Actor {
         world.send(address, receiver, body);
     }
 
+    /// Sends a **notification** to an actor, with another [MessagePriority] than the one of its message type.
+    ///
+    /// Notifications are NOT guaranteed to be sent to the receiver.
+    ///
+    /// @param receiver the id of the actor to send the message to
+    /// @param body     the body of the message
+    /// @param priority how soon the receiver's world dispatches the message
+    public final void send(ActorAddress receiver, Message.Notification body, MessagePriority priority) {
+        world.send(address, receiver, body, priority);
+    }
+
     /// Sends a **request** to an actor and **doesn't care about its response**.
     ///
     /// Requests are NOT guaranteed to be sent to the destination actor.
@@ -101,7 +134,8 @@ public abstract class Actor {
     ///
     /// The [CompletionStage] will be complete:
     /// - successfully, when the receiver responds to this request
-    /// - unsuccessfully, when the receiver takes too long to respond (30 seconds) or doesn't know how to handle the request (TODO)
+    /// - unsuccessfully, when the receiver takes too long to respond (30 seconds), doesn't know how to handle the
+    ///   request or fails to handle it (see [RequestFailedException])
     ///
     /// The [CompletionStage] will complete on a thread that makes it safe to change this actor's state.
     ///
@@ -155,6 +189,93 @@ public abstract class Actor {
         return timer;
     }
 
+    /// Sets the maximum number of envelopes waiting for this actor in the world's mailbox, instead of the limit
+    /// of the world (`cav.framework.mailbox.max-envelopes-per-actor`).
+    ///
+    /// Useful for actors receiving lots of messages at once by design, like acknowledgments from all the actors
+    /// they sent messages to. Past the limit, requests fail right away and the oldest notifications are dropped.
+    protected final void mailboxLimit(int maxEnvelopes) {
+        if (maxEnvelopes < 1) {
+            throw new IllegalArgumentException("maxEnvelopes must be positive: " + maxEnvelopes);
+        }
+        this.mailboxLimit = maxEnvelopes;
+    }
+
+    /// Tells that a fresh actor can't take the place of this one when it fails, because some state would be lost,
+    /// like messages an [cy.cav.framework.reliable.AckRetryer] waits acknowledgments for. Spawning this actor with
+    /// [Supervision#restart] then fails.
+    ///
+    /// @param reason what would be lost, for error messages
+    public final void preventRestarts(String reason) {
+        this.restartsPrevented = Objects.requireNonNull(reason);
+    }
+
+    /// Called by [Supervision] only: returns why this actor can't be restarted, or null when it can.
+    @Nullable String restartsPrevented() {
+        return restartsPrevented;
+    }
+
+    /// Called by [World] only: returns the mailbox limit of this actor, or the default one.
+    int mailboxLimitOr(int defaultLimit) {
+        return mailboxLimit != 0 ? mailboxLimit : defaultLimit;
+    }
+
+    /// Called by [World] only: returns the number of envelopes waiting for this actor, except the dropped ones.
+    int waitingEnvelopes() {
+        return queued - dropping;
+    }
+
+    /// Called by [World] only, when an envelope for this actor is added to the mailbox and counted for it.
+    ///
+    /// Every envelope counted here is given back exactly once to this actor, with [#dequeued] or [#unqueued],
+    /// even when another actor took its address since.
+    void enqueued(Envelope<?> envelope) {
+        QUEUED.incrementAndGet(this);
+        if (envelope.body() instanceof Message.Notification) {
+            NOTIFICATIONS.incrementAndGet(this);
+        }
+    }
+
+    /// Called by [World] only, when an old notification counted for this actor is removed from the mailbox without
+    /// being dispatched. When some notifications were to be dropped, it's one of them.
+    void unqueued() {
+        QUEUED.decrementAndGet(this);
+        if (dropping != 0) {
+            DROPPING.getAndUpdate(this, d -> d > 0 ? d - 1 : 0);
+        }
+        notificationLeft();
+    }
+
+    /// Called by [World] only, when the actor has too many envelopes: its oldest notification still in the
+    /// mailbox will be dropped instead of dispatched.
+    ///
+    /// @return false when all notifications waiting for the actor are already to be dropped, or when it has none
+    boolean dropOldestNotification() {
+        int previous = DROPPING.getAndUpdate(this, d -> d < notifications ? d + 1 : d);
+        return previous < notifications;
+    }
+
+    /// Called by [World] only, when an envelope counted for this actor leaves the mailbox to be dispatched.
+    ///
+    /// @return false when the envelope must be dropped
+    boolean dequeued(Envelope<?> envelope) {
+        QUEUED.decrementAndGet(this);
+        if (!(envelope.body() instanceof Message.Notification)) {
+            return true;
+        }
+        boolean drop = dropping != 0 && DROPPING.getAndUpdate(this, d -> d > 0 ? d - 1 : 0) > 0;
+        notificationLeft();
+        return !drop;
+    }
+
+    private void notificationLeft() {
+        int left = NOTIFICATIONS.decrementAndGet(this);
+        // Never drop more notifications than there are, even when a sender raced with the main loop.
+        if (dropping > left) {
+            DROPPING.accumulateAndGet(this, Math.max(left, 0), Math::min);
+        }
+    }
+
     /// Called when the actor receives an envelope.
     ///
     /// This method is guaranteed to always be called on the same thread.
@@ -182,7 +303,9 @@ public abstract class Actor {
                     Supervisor.HandleAction whatToDo = supervisor.handle(e, envelope);
                     switch (whatToDo) {
                         case ATTACH -> state = ActorState.SUPERVISED;
-                        case IGNORE -> { }
+                        // The message is lost; if it's a request, tell the sender right away.
+                        case IGNORE -> respond(envelope, new RequestFailedResponse(address,
+                                RequestFailedResponse.Reason.FAILED, e.toString()));
                     }
                 }
             }
@@ -192,7 +315,7 @@ public abstract class Actor {
                     case STAY_ATTACHED -> { }
                     case DETACH -> {
                         state = ActorState.ALIVE;
-                        supervisor.flushStash();
+                        replayStash();
                     }
                     case DESPAWN -> despawn();
                 }
@@ -202,6 +325,38 @@ public abstract class Actor {
         }
     }
 
+    /// Processes the envelopes stashed by the supervisor, in the order they came, before the newer envelopes still
+    /// waiting in the world's mailbox.
+    private void replayStash() {
+        replay(supervisor.takeStash());
+    }
+
+    /// Processes envelopes stashed by a supervisor right away, in order. Also used by [Supervision] to give the
+    /// stash of a failed actor to the fresh one.
+    ///
+    /// Stops as soon as an envelope attaches the supervisor again: the next ones go back to the head of its stash,
+    /// so they're processed in order once it detaches, before anything it stashed since.
+    void replay(Envelope<?>[] stashed) {
+        int replayed = 0;
+        for (; replayed < stashed.length; replayed++) {
+            if (state == ActorState.SUPERVISED) {
+                supervisor.unstash(stashed, replayed);
+                break;
+            }
+
+            if (state.active()) {
+                acceptEnvelope(stashed[replayed]);
+            } else {
+                // The actor despawned while processing the stash: same as an envelope for an unknown actor.
+                world.respond(world.server().address(), stashed[replayed], new ActorNotFoundResponse(address));
+            }
+        }
+
+        if (replayed > 0) {
+            world.metrics().stashReplayed(replayed);
+        }
+    }
+
     /// The current state of this actor.
     public ActorState state() {
         return state;
@@ -211,5 +366,10 @@ public abstract class Actor {
     public ActorAddress address() {
         return address;
     }
+
+    /// The world this actor is in.
+    public World world() {
+        return world;
+    }
 }
 
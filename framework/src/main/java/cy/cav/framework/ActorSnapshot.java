@@ -0,0 +1,16 @@
+package cy.cav.framework;
+
+import com.fasterxml.jackson.annotation.*;
+
+/// The state of an actor, sent to another server to spawn the actor there: a [Migratable] actor moving,
+/// or a new actor placed on another server with [World#spawn(HashRing, java.util.UUID, ActorSnapshot)].
+///
+/// Snapshots are turned into JSON like messages, so they should be records of plain data.
+/// Each server receiving actors must know how to spawn them from their snapshot;
+/// see [Migrations#register(Class, java.util.function.BiFunction)].
+@JsonTypeInfo(
+        use = JsonTypeInfo.Id.CLASS,
+        include = JsonTypeInfo.As.PROPERTY,
+        property = "type"
+)
+public interface ActorSnapshot { }
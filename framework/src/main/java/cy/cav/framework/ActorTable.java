@@ -0,0 +1,253 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
+
+/// Stores all actors of a [World] by their actor number, without boxing numbers into [Long]s.
+///
+/// Actor numbers are dense: special numbers are below [World#SPECIAL_ACTOR_NUM_MAX], and other numbers come from
+/// a counter. So instead of hashing, actors are stored in an array of fixed-size segments, and the actor number
+/// is directly used as the index. Looking up an actor is just two array reads.
+///
+/// Segments are allocated when the first actor of their range spawns, and are released when all of their
+/// actors despawned (except for the most recent segment, which is most likely going to be used again soon).
+///
+/// Actor numbers too large to fit in the segment directory go in a regular map; that would take spawning
+/// billions of actors, so it's not supposed to happen.
+///
+/// All methods are thread-safe. Reads never lock.
+final class ActorTable {
+    private static final int SEGMENT_SHIFT = 12;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_SHIFT; // 4096 actors per segment
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    // Actor numbers at or above this value go to the overflow map.
+    private static final long MAX_INDEXED_NUMBER = (long) Integer.MAX_VALUE;
+
+    // The segment directory. Replaced by a bigger copy when growing, under the lock.
+    private volatile Segment[] segments = new Segment[0];
+    // For the very unlikely case where actor numbers don't fit in an int.
+    private final ConcurrentMap<Long, Actor> overflow = new ConcurrentHashMap<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+    // The highest segment index that received an actor; never released since new actors are spawned there.
+    private volatile int highestSegment = 0;
+
+    /// Returns the actor with the given number; null when there's none.
+    @Nullable Actor get(long actorNumber) {
+        if (!indexed(actorNumber)) {
+            return overflow.isEmpty() ? null : overflow.get(actorNumber);
+        }
+
+        Segment[] segs = segments;
+        int segIndex = (int) (actorNumber >>> SEGMENT_SHIFT);
+        if (segIndex >= segs.length) {
+            return null;
+        }
+
+        Segment seg = segs[segIndex];
+        return seg == null ? null : seg.get((int) actorNumber & SEGMENT_MASK);
+    }
+
+    /// Returns true when an actor with the given number exists.
+    boolean contains(long actorNumber) {
+        return get(actorNumber) != null;
+    }
+
+    /// Registers the actor with the given number, only if there's no actor with this number yet.
+    ///
+    /// @return the existing actor; null if the actor has been registered
+    @Nullable Actor putIfAbsent(long actorNumber, Actor actor) {
+        Objects.requireNonNull(actor);
+
+        if (!indexed(actorNumber)) {
+            Actor existing = overflow.putIfAbsent(actorNumber, actor);
+            if (existing == null) { size.incrementAndGet(); }
+            return existing;
+        }
+
+        int segIndex = (int) (actorNumber >>> SEGMENT_SHIFT);
+        int slot = (int) actorNumber & SEGMENT_MASK;
+        while (true) {
+            Segment seg = segmentForWrite(segIndex);
+            // The segment may have been released just before we got it; in that case, try again with a new one.
+            if (!seg.acquire()) {
+                continue;
+            }
+
+            if (seg.compareAndSet(slot, null, actor)) {
+                size.incrementAndGet();
+                return null;
+            } else {
+                Actor existing = seg.get(slot);
+                releaseSlot(segIndex, seg);
+                if (existing != null) {
+                    return existing;
+                }
+                // The actor has despawned in between; try again.
+            }
+        }
+    }
+
+    /// Removes the actor with the given number.
+    ///
+    /// @return the removed actor; null when there was no actor with this number
+    @Nullable Actor remove(long actorNumber) {
+        if (!indexed(actorNumber)) {
+            Actor removed = overflow.remove(actorNumber);
+            if (removed != null) { size.decrementAndGet(); }
+            return removed;
+        }
+
+        Segment[] segs = segments;
+        int segIndex = (int) (actorNumber >>> SEGMENT_SHIFT);
+        if (segIndex >= segs.length) {
+            return null;
+        }
+
+        Segment seg = segs[segIndex];
+        if (seg == null) {
+            return null;
+        }
+
+        Actor removed = seg.getAndSet((int) actorNumber & SEGMENT_MASK, null);
+        if (removed != null) {
+            size.decrementAndGet();
+            releaseSlot(segIndex, seg);
+        }
+        return removed;
+    }
+
+    /// Replaces the actor with the given number, only if it's still the expected actor.
+    ///
+    /// @return true when the actor has been replaced
+    boolean replace(long actorNumber, Actor expected, Actor replacement) {
+        Objects.requireNonNull(expected);
+        Objects.requireNonNull(replacement);
+
+        if (!indexed(actorNumber)) {
+            return overflow.replace(actorNumber, expected, replacement);
+        }
+
+        Segment[] segs = segments;
+        int segIndex = (int) (actorNumber >>> SEGMENT_SHIFT);
+        if (segIndex >= segs.length) {
+            return false;
+        }
+
+        // The slot stays in use, so the count of the segment doesn't change.
+        Segment seg = segs[segIndex];
+        return seg != null && seg.compareAndSet((int) actorNumber & SEGMENT_MASK, expected, replacement);
+    }
+
+    /// Returns the number of actors in this table.
+    int size() {
+        return size.get();
+    }
+
+    /// Runs the function on every actor of the table. Actors added or removed during the iteration
+    /// may or may not be seen.
+    void forEach(Consumer<Actor> consumer) {
+        for (Segment seg : segments) {
+            if (seg == null) { continue; }
+
+            for (int i = 0; i < SEGMENT_SIZE; i++) {
+                Actor actor = seg.get(i);
+                if (actor != null) {
+                    consumer.accept(actor);
+                }
+            }
+        }
+        overflow.values().forEach(consumer);
+    }
+
+    private static boolean indexed(long actorNumber) {
+        return actorNumber > 0 && actorNumber < MAX_INDEXED_NUMBER;
+    }
+
+    /// Returns the segment at the given index, creating it (and growing the directory) when it doesn't exist.
+    private Segment segmentForWrite(int segIndex) {
+        Segment[] segs = segments;
+        if (segIndex < segs.length) {
+            Segment seg = segs[segIndex];
+            if (seg != null && !seg.released()) {
+                return seg;
+            }
+        }
+
+        synchronized (this) {
+            segs = segments;
+            if (segIndex >= segs.length) {
+                // Double the directory size, or more if needed.
+                segs = Arrays.copyOf(segs, Math.max(segIndex + 1, segs.length * 2));
+            }
+
+            Segment seg = segs[segIndex];
+            if (seg == null || seg.released()) {
+                seg = new Segment();
+                segs[segIndex] = seg;
+            }
+            segments = segs; // Publish the directory (and the new segment) to readers.
+
+            if (segIndex > highestSegment) {
+                highestSegment = segIndex;
+            }
+            return seg;
+        }
+    }
+
+    /// Decrements the number of actors in the segment, and releases it if it became empty.
+    private void releaseSlot(int segIndex, Segment seg) {
+        if (seg.releaseSlot() && segIndex < highestSegment && seg.tryRelease()) {
+            synchronized (this) {
+                Segment[] segs = segments;
+                if (segs[segIndex] == seg) {
+                    segs[segIndex] = null;
+                    segments = segs;
+                }
+            }
+        }
+    }
+
+    /// A fixed-size part of the table, with a count of the slots in use.
+    ///
+    /// Once released, a segment cannot be used anymore: [#acquire()] fails, and writers must use a new segment.
+    private static final class Segment extends AtomicReferenceArray<Actor> {
+        private static final int RELEASED = Integer.MIN_VALUE;
+
+        // The number of slots in use, or RELEASED.
+        private final AtomicInteger used = new AtomicInteger();
+
+        Segment() { super(SEGMENT_SIZE); }
+
+        /// Reserves a slot in this segment; false when the segment has been released.
+        boolean acquire() {
+            while (true) {
+                int current = used.get();
+                if (current == RELEASED) {
+                    return false;
+                }
+                if (used.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /// Frees a slot in this segment; returns true when the segment is now empty.
+        boolean releaseSlot() {
+            return used.decrementAndGet() == 0;
+        }
+
+        /// Marks this segment as released, only if it's still empty.
+        boolean tryRelease() {
+            return used.compareAndSet(0, RELEASED);
+        }
+
+        boolean released() {
+            return used.get() == RELEASED;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package cy.cav.framework;
+
+import java.util.concurrent.*;
+
+/// The health of a single server, tracked by [ServerHealth].
+///
+/// - closed: messages go through. Once [#FAILURE_THRESHOLD] messages in a row failed, it opens.
+/// - open: messages wait. The wait doubles each time the breaker opens again, up to [#MAX_OPEN_NANOS].
+/// - half open: once the wait is over, a single message goes through to probe the server. Its failure opens the
+///   breaker again.
+///
+/// Any success, like the one of a probe, makes [ServerHealth] forget the breaker: the next failure starts a new one.
+final class CircuitBreaker {
+    static final int FAILURE_THRESHOLD = 5;
+    static final long MIN_OPEN_NANOS = TimeUnit.SECONDS.toNanos(5);
+    static final long MAX_OPEN_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private int failures; // Messages in a row that failed, while closed
+    private int opened; // Times opened since it was last closed
+    private long openNanos; // How long the breaker stays open this time
+    private long openUntil;
+    private boolean open;
+    // While half open: a probe has been sent, and when to send another one if it never comes back.
+    private boolean probing;
+    private long probeUntil;
+
+    /// Returns true when a message can be sent to the server now. While half open, only returns true once.
+    synchronized boolean allows(long now) {
+        if (!isHealthy(now)) {
+            return false;
+        }
+        if (open) {
+            probing = true;
+            probeUntil = now + openNanos;
+        }
+        return true;
+    }
+
+    /// Returns true when the breaker is closed, or when it's half open and waiting for a probe.
+    synchronized boolean isHealthy(long now) {
+        return !open || (now - openUntil >= 0 && !(probing && now - probeUntil < 0));
+    }
+
+    /// Records a message that failed.
+    ///
+    /// @return true when the breaker just opened
+    synchronized boolean failed(long now) {
+        if (open) {
+            // Failures of messages sent before it opened don't count; only the probe does.
+            if (!probing) {
+                return false;
+            }
+            probing = false;
+        } else if (++failures < FAILURE_THRESHOLD) {
+            return false;
+        }
+
+        openNanos = Math.min(MAX_OPEN_NANOS, MIN_OPEN_NANOS << Math.min(opened, 16));
+        openUntil = now + openNanos;
+        opened++;
+        open = true;
+        failures = 0;
+        return true;
+    }
+
+    /// Returns true when messages can't go through, except for probes.
+    synchronized boolean isOpen() {
+        return open;
+    }
+
+    /// Returns how long the breaker stays open this time.
+    synchronized long openNanos() {
+        return openNanos;
+    }
+}
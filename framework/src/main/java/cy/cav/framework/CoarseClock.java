@@ -0,0 +1,38 @@
+package cy.cav.framework;
+
+import java.time.*;
+
+/// A clock giving the current time with a millisecond precision, used to timestamp envelopes.
+///
+/// Calling [Instant#now()] for each message reads the system clock and allocates an [Instant]. This clock
+/// only does so once per millisecond; in between, it returns the same [Instant], using [System#nanoTime()]
+/// to know when it's time to refresh.
+///
+/// The returned time never goes backwards, even if the system clock does.
+final class CoarseClock {
+    private static final long RESOLUTION_NANOS = 1_000_000; // 1 ms
+
+    private volatile Tick tick = new Tick(System.nanoTime(), Instant.now());
+
+    /// Returns the current time, with a millisecond precision.
+    Instant now() {
+        long nanos = System.nanoTime();
+        Tick current = tick;
+        if (nanos - current.nanos < RESOLUTION_NANOS) {
+            return current.instant;
+        }
+
+        // Time to refresh; make sure we never go back in time.
+        Instant wall = Instant.now();
+        Instant instant = wall.isAfter(current.instant) ? wall : current.instant;
+        tick = new Tick(nanos, instant);
+        return instant;
+    }
+
+    /// Returns the number of nanoseconds between two instants, without allocating a [Duration].
+    static long nanosBetween(Instant from, Instant to) {
+        return (to.getEpochSecond() - from.getEpochSecond()) * 1_000_000_000L + (to.getNano() - from.getNano());
+    }
+
+    private record Tick(long nanos, Instant instant) { }
+}
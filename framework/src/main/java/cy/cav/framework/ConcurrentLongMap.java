@@ -0,0 +1,234 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/// A thread-safe map with `long` keys, storing keys in primitive arrays to avoid boxing them into [Long]s.
+///
+/// The map is split in several stripes, each one being an open-addressing hash table guarded by its own lock.
+/// Threads working on keys of different stripes don't wait for each other.
+///
+/// The key 0 is reserved and cannot be used.
+///
+/// @param <V> the type of the values
+final class ConcurrentLongMap<V> {
+    private static final int STRIPE_COUNT = 16; // Must be a power of two
+    private static final int STRIPE_SHIFT = Long.SIZE - Integer.numberOfTrailingZeros(STRIPE_COUNT);
+
+    private final Stripe<V>[] stripes;
+
+    @SuppressWarnings("unchecked")
+    ConcurrentLongMap() {
+        stripes = new Stripe[STRIPE_COUNT];
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe<>();
+        }
+    }
+
+    /// Returns the value associated with the key; null when there's none.
+    @Nullable V get(long key) {
+        long hash = hash(key);
+        Stripe<V> stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.get(key, hash);
+        }
+    }
+
+    /// Associates the value with the key, replacing any previous value.
+    ///
+    /// @return the previous value; null when there was none
+    @Nullable V put(long key, V value) {
+        Objects.requireNonNull(value);
+        long hash = hash(checkKey(key));
+        Stripe<V> stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.put(key, hash, value);
+        }
+    }
+
+    /// Removes the value associated with the key.
+    ///
+    /// @return the removed value; null when there was none
+    @Nullable V remove(long key) {
+        long hash = hash(key);
+        Stripe<V> stripe = stripeOf(hash);
+        synchronized (stripe) {
+            return stripe.remove(key, hash);
+        }
+    }
+
+    /// Removes all values matching the predicate, and returns them.
+    ///
+    /// Stripes are locked one at a time, so this doesn't block the whole map.
+    List<V> removeIf(Predicate<? super V> predicate) {
+        List<V> removed = new ArrayList<>();
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.removeIf(predicate, removed);
+            }
+        }
+        return removed;
+    }
+
+    /// Calls the action for each value, locking stripes one at a time.
+    void forEach(Consumer<? super V> action) {
+        for (Stripe<V> stripe : stripes) {
+            synchronized (stripe) {
+                stripe.forEach(action);
+            }
+        }
+    }
+
+    /// Returns the number of entries in the map. May be slightly off when the map is being modified.
+    int size() {
+        int size = 0;
+        for (Stripe<V> stripe : stripes) {
+            size += stripe.size; // Racy read, good enough for a size estimate
+        }
+        return size;
+    }
+
+    private Stripe<V> stripeOf(long hash) {
+        return stripes[(int) (hash >>> STRIPE_SHIFT)];
+    }
+
+    private static long checkKey(long key) {
+        if (key == 0) {
+            throw new IllegalArgumentException("The key 0 is reserved.");
+        }
+        return key;
+    }
+
+    // Spreads keys evenly, even when they're sequential numbers.
+    private static long hash(long key) {
+        return key * 0x9E3779B97F4A7C15L;
+    }
+
+    /// An open-addressing hash table with linear probing. Not thread-safe.
+    private static final class Stripe<V> {
+        private static final int INITIAL_CAPACITY = 16; // Must be a power of two
+
+        // Empty slots have a key of 0.
+        long[] keys = new long[INITIAL_CAPACITY];
+        Object[] values = new Object[INITIAL_CAPACITY];
+        int size = 0;
+
+        @SuppressWarnings("unchecked")
+        @Nullable V get(long key, long hash) {
+            int mask = keys.length - 1;
+            for (int i = slotOf(hash, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return (V) values[i];
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable V put(long key, long hash, V value) {
+            int mask = keys.length - 1;
+            int i = slotOf(hash, mask);
+            for (; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V previous = (V) values[i];
+                    values[i] = value;
+                    return previous;
+                }
+            }
+
+            keys[i] = key;
+            values[i] = value;
+            size++;
+            // Keep the load factor under 50% so probe sequences stay short.
+            if (size * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Nullable V remove(long key, long hash) {
+            int mask = keys.length - 1;
+            for (int i = slotOf(hash, mask); keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    V removed = (V) values[i];
+                    deleteSlot(i);
+                    return removed;
+                }
+            }
+            return null;
+        }
+
+        @SuppressWarnings("unchecked")
+        void removeIf(Predicate<? super V> predicate, List<V> removed) {
+            int i = 0;
+            while (i < keys.length) {
+                if (keys[i] != 0 && predicate.test((V) values[i])) {
+                    removed.add((V) values[i]);
+                    // Deleting shifts the next entries back, so check this slot again.
+                    deleteSlot(i);
+                } else {
+                    i++;
+                }
+            }
+
+            // Give memory back when lots of entries were removed at once.
+            if (keys.length > INITIAL_CAPACITY && size * 8 < keys.length) {
+                resize(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(1, size) * 4)));
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void forEach(Consumer<? super V> action) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    action.accept((V) values[i]);
+                }
+            }
+        }
+
+        /// Empties the slot, and moves the following entries back so lookups don't stop at the hole.
+        private void deleteSlot(int hole) {
+            int mask = keys.length - 1;
+            int i = (hole + 1) & mask;
+            while (keys[i] != 0) {
+                int ideal = slotOf(hash(keys[i]), mask);
+                // Move the entry to the hole if its ideal slot isn't between the hole and its current slot.
+                if (((i - ideal) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    values[hole] = values[i];
+                    hole = i;
+                }
+                i = (i + 1) & mask;
+            }
+            keys[hole] = 0;
+            values[hole] = null;
+            size--;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new long[capacity];
+            values = new Object[capacity];
+
+            int mask = capacity - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldKeys[j] == 0) { continue; }
+
+                int i = slotOf(hash(oldKeys[j]), mask);
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+
+        private static int slotOf(long hash, int mask) {
+            return (int) hash & mask;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package cy.cav.framework;
 
+import com.fasterxml.jackson.annotation.*;
 import jakarta.annotation.*;
 
 import java.time.*;
@@ -15,19 +16,45 @@ import java.util.*;
 /// @param requestId for synchronous requests, stores the id of the request-response transaction, generated by the sender; otherwise, is 0
 /// @param body      the data of the message
 /// @param sentAt    the time at which the message has been sent
+/// @param trace     the span of this envelope when it's traced; null otherwise
+/// @param priority  the priority chosen by the sender; null to use the [priority of the message type][MessagePriority#of(Class)]
 public record Envelope<T extends Message>(
         ActorAddress sender,
         ActorAddress receiver,
         long requestId,
         T body,
-        Instant sentAt
+        Instant sentAt,
+        @Nullable TraceContext trace,
+        // Left out of the JSON when null, so envelopes look the same to servers that don't know priorities.
+        @JsonInclude(JsonInclude.Include.NON_NULL) @Nullable MessagePriority priority
 ) {
     public Envelope {
+        // Only cheap null checks here: envelopes are created for every single message.
+        // The framework always builds valid envelopes, so the other checks are done
+        // in validate() for envelopes coming from the outside.
         Objects.requireNonNull(body, "Body must not be null!");
         Objects.requireNonNull(sender, "Sender must not be null!");
         Objects.requireNonNull(receiver, "Receiver must not be null!");
         Objects.requireNonNull(sentAt, "Sent at must not be null!");
+    }
+
+    /// Creates an envelope with the priority of its message type.
+    public Envelope(ActorAddress sender, ActorAddress receiver, long requestId, T body, Instant sentAt,
+                    @Nullable TraceContext trace) {
+        this(sender, receiver, requestId, body, sentAt, trace, null);
+    }
+
+    /// Creates an envelope that isn't traced, with the priority of its message type.
+    public Envelope(ActorAddress sender, ActorAddress receiver, long requestId, T body, Instant sentAt) {
+        this(sender, receiver, requestId, body, sentAt, null, null);
+    }
 
+    /// Makes sure the envelope is consistent: requests and responses have a request id, and notifications don't.
+    ///
+    /// Used by [World#receive(Envelope)] for envelopes coming from outside the framework, like the network.
+    ///
+    /// @throws IllegalArgumentException when the envelope is invalid
+    void validate() {
         if (receiver.isServerAddress() && requestId == 0) {
             throw new IllegalArgumentException("Can't send a message to the server without a request id!");
         }
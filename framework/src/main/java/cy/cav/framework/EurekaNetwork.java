@@ -0,0 +1,85 @@
+package cy.cav.framework;
+
+import com.netflix.appinfo.*;
+import com.netflix.discovery.*;
+import com.netflix.discovery.shared.*;
+import jakarta.annotation.*;
+import org.springframework.beans.factory.*;
+import org.springframework.boot.web.context.*;
+import org.springframework.context.event.EventListener;
+
+import java.util.*;
+
+/// Finds servers registered in the Eureka server. This is the default discovery mode.
+///
+/// The Eureka client refreshes its cache every few seconds, so new servers can take some time to show up.
+/// Each refresh is compared with the servers we already know, and listeners only hear about differences.
+public class EurekaNetwork extends Network {
+    private final ObjectProvider<EurekaClient> eurekaClientProvider;
+    private final List<String> applications;
+    private @Nullable EurekaClient eurekaClient;
+
+    public EurekaNetwork(ObjectProvider<EurekaClient> eurekaClientProvider,
+                         List<String> applications,
+                         Server server) {
+        super(server);
+        this.eurekaClientProvider = Objects.requireNonNull(eurekaClientProvider);
+        this.applications = applications.stream().map(String::toUpperCase).toList();
+    }
+
+    @EventListener(WebServerInitializedEvent.class)
+    private void onWebServerReady() {
+        eurekaClient = eurekaClientProvider.getObject();
+        eurekaClient.registerEventListener(this::onEurekaEvent);
+
+        // Refresh the cache now!
+        onEurekaEvent(new CacheRefreshedEvent());
+    }
+
+    private void onEurekaEvent(EurekaEvent event) {
+        if (!(event instanceof CacheRefreshedEvent) || eurekaClient == null) { return; }
+
+        // The Eureka client has updated its cache, let's see which servers are available on the network and
+        // update our local cache.
+
+        var servers = new HashMap<Long, Server>();
+
+        // Look over all registered servers.
+        for (Application application : eurekaClient.getApplications().getRegisteredApplications()) {
+            // Make sure we care about that app
+            if (!applications.contains(application.getName())) { continue; }
+
+            for (InstanceInfo instance : application.getInstances()) {
+                long serverId;
+                try {
+                    // Because the instance id is a string, we need to convert it to a number.
+                    // Server ids are stored in hexadecimal format, so we need to indicate
+                    // that it's in a hexa (16) format.
+                    serverId = Long.parseUnsignedLong(instance.getInstanceId(), 16);
+                } catch (NumberFormatException _) {
+                    // Not a valid id; skip this instance, but not the others
+                    continue;
+                }
+
+                // Put the server in the map, and don't register ourselves, no need to.
+                if (serverId != server().id()) {
+                    servers.put(serverId, serverOf(serverId, application.getName(), instance));
+                }
+            }
+        }
+
+        updateServers(servers);
+    }
+
+    // Most instances don't change between refreshes: reuse the server we know instead of copying its metadata.
+    private Server serverOf(long serverId, String appName, InstanceInfo instance) {
+        Server known = servers().get(serverId);
+        if (known != null
+            && known.appName().equals(appName)
+            && Objects.equals(known.url(), instance.getHomePageUrl())
+            && known.metadata().equals(instance.getMetadata())) {
+            return known;
+        }
+        return new Server(serverId, appName, instance.getHomePageUrl(), instance.getMetadata());
+    }
+}
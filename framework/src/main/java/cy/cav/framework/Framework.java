@@ -1,6 +1,12 @@
 package cy.cav.framework;
 
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.json.*;
 import com.netflix.discovery.*;
+import cy.cav.framework.tracing.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.simple.*;
+import jakarta.annotation.*;
 import org.springframework.beans.factory.*;
 import org.springframework.beans.factory.annotation.*;
 import org.springframework.boot.autoconfigure.*;
@@ -13,8 +19,12 @@ import org.springframework.core.env.*;
 import org.springframework.scheduling.*;
 import org.springframework.scheduling.annotation.*;
 
+import java.io.*;
+import java.nio.file.*;
 import java.security.*;
+import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /// Configures all Spring Beans of the framework. Also configures Eureka.
 @AutoConfiguration
@@ -23,14 +33,44 @@ import java.util.*;
 @AutoConfigureBefore(EurekaClientAutoConfiguration.class)
 @EnableConfigurationProperties(FrameworkConfig.class)
 public class Framework {
+    // Eureka is disabled when other servers are found some other way.
     @Bean
-    EurekaInit eurekaInit(EurekaInstanceConfigBean config, Server server) {
-        return new EurekaInit(config, server);
+    EurekaInit eurekaInit(ObjectProvider<EurekaInstanceConfigBean> configProvider, Server server) {
+        return new EurekaInit(configProvider.getIfAvailable(), server);
     }
 
     @Bean
-    World world(Server server, OutsideSender outsideSender, TaskScheduler taskScheduler) {
-        return new World(server, outsideSender, taskScheduler);
+    World world(Server server, OutsideSender outsideSender, TaskScheduler taskScheduler, FrameworkMetrics metrics,
+                Tracer tracer, FrameworkConfig config) {
+        return new World(server, outsideSender, taskScheduler, metrics, tracer)
+                .mailboxLimits(config.mailbox().maxEnvelopes(), config.mailbox().maxEnvelopesPerActor());
+    }
+
+    @Bean
+    Tracer tracer(FrameworkConfig config, SpanStore spanStore) {
+        return new Tracer(config.tracing().sampleRate(), spanStore);
+    }
+
+    @Bean
+    SpanStore spanStore(FrameworkConfig config, ObjectProvider<ObjectMapper> objectMapperProvider) throws IOException {
+        FrameworkConfig.Tracing tracing = config.tracing();
+        return switch (tracing.exporter()) {
+            case NONE -> SpanStore.NONE;
+            case MEMORY -> new InMemorySpanStore(tracing.capacity());
+            case FILE -> new FileSpanStore(Path.of(tracing.file()),
+                    objectMapperProvider.getIfAvailable(() -> JsonMapper.builder().findAndAddModules().build()));
+        };
+    }
+
+    @Bean
+    TraceController traceController(SpanStore spanStore) {
+        return new TraceController(spanStore);
+    }
+
+    // Uses the registry of Spring Boot Actuator when it's there; otherwise, metrics are only kept in memory.
+    @Bean
+    FrameworkMetrics frameworkMetrics(ObjectProvider<MeterRegistry> registryProvider) {
+        return new FrameworkMetrics(registryProvider.getIfAvailable(SimpleMeterRegistry::new));
     }
 
     // Allows users of the framework to put their own Server settings.
@@ -65,6 +105,7 @@ public class Framework {
     Network network(ObjectProvider<EurekaClient> eurekaClientProvider,
                     Server server,
                     FrameworkConfig config,
+                    TaskScheduler taskScheduler,
                     @Value("${spring.application.name}") String appName) {
         List<String> allApps;
         if (config.applications().isEmpty()) {
@@ -73,12 +114,17 @@ public class Framework {
             allApps = config.applications();
         }
 
-        return new Network(eurekaClientProvider, allApps, server);
+        FrameworkConfig.Discovery discovery = config.discovery();
+        return switch (discovery.mode()) {
+            case EUREKA -> new EurekaNetwork(eurekaClientProvider, allApps, server);
+            case STATIC -> new StaticNetwork(server, discovery.peers().stream().map(FrameworkConfig.Peer::toServer).toList());
+            case GOSSIP -> new GossipNetwork(server, allApps, discovery, taskScheduler);
+        };
     }
 
     @Bean
-    OutsideSender outsideSender(Network network) {
-        return new OutsideSender(network);
+    OutsideSender outsideSender(Network network, FrameworkMetrics metrics) {
+        return new OutsideSender(network, metrics);
     }
 
     @Bean
@@ -86,14 +132,29 @@ public class Framework {
         return new OutsideReceiver(world);
     }
 
+    @Bean
+    GossipController gossipController(Network network) {
+        return new GossipController(network);
+    }
+
     @Bean
     ActorAddress.Converter addressConverter() {
         return new ActorAddress.Converter();
     }
 
+    // Frequent events aren't logged every time; instead, we log how many times they happened.
+    @Scheduled(fixedRate = 10, timeUnit = TimeUnit.SECONDS)
+    void logEventSummaries() {
+        LogEvent.logSummaries(Duration.ofSeconds(10));
+    }
+
     /// Initializes the Eureka configuration with the right settings.
     private static class EurekaInit {
-        EurekaInit(EurekaInstanceConfigBean config, Server server) {
+        EurekaInit(@Nullable EurekaInstanceConfigBean config, Server server) {
+            if (config == null) {
+                return;
+            }
+
             // Before we register this server with Eureka,
             // put the correct instance id: the hexadecimal format of this server's instance id.
             config.setInstanceId(server.idString());
@@ -3,12 +3,109 @@ package cy.cav.framework;
 import jakarta.annotation.*;
 import org.springframework.boot.context.properties.*;
 
+import java.time.*;
 import java.util.*;
 
 @ConfigurationProperties(prefix = "cav.framework")
-public record FrameworkConfig(Map<String, String> metadata, List<String> applications, @Nullable String serverId) {
+public record FrameworkConfig(Map<String, String> metadata, List<String> applications, @Nullable String serverId,
+                              Tracing tracing, Discovery discovery, Rebalancing rebalancing, MailboxLimits mailbox) {
     public FrameworkConfig {
         metadata = metadata == null ? Map.of() : metadata;
         applications = applications == null ? List.of() : applications;
+        tracing = tracing == null ? new Tracing(0, null, null, 0) : tracing;
+        discovery = discovery == null ? new Discovery(null, null, null, null, null, null) : discovery;
+        rebalancing = rebalancing == null ? new Rebalancing(null, null, 0, 0) : rebalancing;
+        mailbox = mailbox == null ? new MailboxLimits(0, 0) : mailbox;
+    }
+
+    /// Settings of message tracing, under `cav.framework.tracing`.
+    ///
+    /// @param sampleRate the fraction of messages starting a new trace, between 0 and 1; 0 by default
+    /// @param exporter   where spans are stored; in memory by default
+    /// @param file       the file spans are appended to, with the [Exporter#FILE] exporter
+    /// @param capacity   how many spans are kept with the [Exporter#MEMORY] exporter
+    public record Tracing(double sampleRate, Exporter exporter, String file, int capacity) {
+        public Tracing {
+            exporter = exporter == null ? Exporter.MEMORY : exporter;
+            file = file == null ? "spans.jsonl" : file;
+            capacity = capacity <= 0 ? 10_000 : capacity;
+        }
+    }
+
+    public enum Exporter { NONE, MEMORY, FILE }
+
+    /// Settings of server discovery, under `cav.framework.discovery`.
+    ///
+    /// With the `static` and `gossip` modes, the Eureka client isn't needed: disable it with
+    /// `eureka.client.enabled: false`.
+    ///
+    /// @param mode           how other servers are found; Eureka by default
+    /// @param peers          all servers of the network, with the [DiscoveryMode#STATIC] mode
+    /// @param seeds          the URLs of servers to gossip with first, with the [DiscoveryMode#GOSSIP] mode
+    /// @param url            the URL other servers use to reach this one; guessed from the host address
+    ///                       and the port when missing
+    /// @param gossipInterval the time between two gossip rounds; 200 ms by default
+    /// @param failureTimeout the time after which a server that stopped gossiping is considered gone;
+    ///                       3 seconds by default
+    public record Discovery(DiscoveryMode mode, List<Peer> peers, List<String> seeds, @Nullable String url,
+                            Duration gossipInterval, Duration failureTimeout) {
+        public Discovery {
+            mode = mode == null ? DiscoveryMode.EUREKA : mode;
+            peers = peers == null ? List.of() : peers;
+            seeds = seeds == null ? List.of() : seeds;
+            gossipInterval = gossipInterval == null ? Duration.ofMillis(200) : gossipInterval;
+            failureTimeout = failureTimeout == null ? Duration.ofSeconds(3) : failureTimeout;
+        }
+    }
+
+    /// A server of the network written in the configuration, with the [DiscoveryMode#STATIC] mode.
+    ///
+    /// @param id       the id of the server in hexadecimal, as in `cav.framework.server-id`
+    /// @param appName  the application name of the server
+    /// @param url      the URL of the server
+    /// @param metadata the metadata of the server
+    public record Peer(String id, String appName, String url, Map<String, String> metadata) {
+        public Peer {
+            metadata = metadata == null ? Map.of() : metadata;
+        }
+
+        Server toServer() {
+            return new Server(HexFormat.fromHexDigitsToLong(id), appName, url, metadata);
+        }
+    }
+
+    public enum DiscoveryMode { EUREKA, STATIC, GOSSIP }
+
+    /// Settings of the [Rebalancer], under `cav.framework.rebalancing`.
+    ///
+    /// @param enabled   whether applications spawn a rebalancer; false by default, since new actors already
+    ///                  spread over servers with a [HashRing]
+    /// @param period    the time between two looks at the load of servers; 30 seconds by default
+    /// @param tolerance how much more loaded than the average a server can be before moving actors away,
+    ///                  as a fraction of the average; 0.1 by default
+    /// @param maxMoves  the maximum number of actors moved at once; 500 by default
+    public record Rebalancing(Boolean enabled, Duration period, double tolerance, int maxMoves) {
+        public Rebalancing {
+            enabled = enabled != null && enabled;
+            period = period == null ? Duration.ofSeconds(30) : period;
+            tolerance = tolerance <= 0 ? 0.1 : tolerance;
+            maxMoves = maxMoves <= 0 ? 500 : maxMoves;
+        }
+    }
+
+    /// Limits of the [World]'s mailbox, under `cav.framework.mailbox`.
+    ///
+    /// Past a limit, requests fail with [RequestFailedResponse.Reason#OVERLOADED], the oldest notifications
+    /// are dropped, and other servers get a `503` response until the world catches up. Responses and
+    /// [system][MessagePriority#SYSTEM] messages are always accepted.
+    ///
+    /// @param maxEnvelopes         the maximum number of envelopes waiting in the world; 200000 by default
+    /// @param maxEnvelopesPerActor the maximum number of envelopes waiting for a single actor, unless it sets its
+    ///                             own with [Actor#mailboxLimit(int)]; 10000 by default
+    public record MailboxLimits(int maxEnvelopes, int maxEnvelopesPerActor) {
+        public MailboxLimits {
+            maxEnvelopes = maxEnvelopes <= 0 ? 200_000 : maxEnvelopes;
+            maxEnvelopesPerActor = maxEnvelopesPerActor <= 0 ? 10_000 : maxEnvelopesPerActor;
+        }
     }
 }
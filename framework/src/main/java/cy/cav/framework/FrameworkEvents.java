@@ -0,0 +1,127 @@
+package cy.cav.framework;
+
+import jdk.jfr.*;
+
+/// Java Flight Recorder events emitted by the [World], to diagnose issues from a recording without
+/// turning on debug logs.
+///
+/// Start a recording with `-XX:StartFlightRecording` (or `jcmd <pid> JFR.start`), then open it with
+/// JDK Mission Control or `jfr print --categories CAV`. All events are enabled by default, except
+/// [EnvelopeEnqueued] which fires for every single message; enable it in a custom `.jfc` file when needed.
+///
+/// Events are only filled in and committed when they're enabled in a running recording, so they cost
+/// next to nothing otherwise.
+final class FrameworkEvents {
+    private FrameworkEvents() {}
+
+    @Name("cav.EnvelopeEnqueued")
+    @Label("Envelope Enqueued")
+    @Category({"CAV", "World"})
+    @Description("An envelope has been added to the world's mailbox")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class EnvelopeEnqueued extends Event {
+        @Label("Message Type")
+        Class<?> messageType;
+        @Label("Sender Server")
+        long senderServer;
+        @Label("Receiver Actor")
+        long receiverActor;
+        @Label("Request Id")
+        long requestId;
+        @Label("Mailbox Depth")
+        int mailboxDepth;
+    }
+
+    @Name("cav.EnvelopeDispatched")
+    @Label("Envelope Dispatched")
+    @Category({"CAV", "World"})
+    @Description("An actor processed an envelope; the duration is the processing time")
+    @StackTrace(false)
+    static final class EnvelopeDispatched extends Event {
+        @Label("Actor Class")
+        Class<?> actorClass;
+        @Label("Message Type")
+        Class<?> messageType;
+        @Label("Receiver Actor")
+        long receiverActor;
+        @Label("Request Id")
+        long requestId;
+        @Label("Queued Time")
+        @Description("Time between sending the envelope and dispatching it")
+        @Timespan
+        long queued;
+    }
+
+    @Name("cav.ActorSpawned")
+    @Label("Actor Spawned")
+    @Category({"CAV", "Actors"})
+    @StackTrace(false)
+    static final class ActorSpawned extends Event {
+        @Label("Actor Class")
+        Class<?> actorClass;
+        @Label("Actor Number")
+        long actorNumber;
+    }
+
+    @Name("cav.ActorDespawned")
+    @Label("Actor Despawned")
+    @Category({"CAV", "Actors"})
+    @StackTrace(false)
+    static final class ActorDespawned extends Event {
+        @Label("Actor Class")
+        Class<?> actorClass;
+        @Label("Actor Number")
+        long actorNumber;
+    }
+
+    @Name("cav.ActorMigrated")
+    @Label("Actor Migrated")
+    @Category({"CAV", "Actors"})
+    @Description("An actor moved to another server, or failed to; the duration is the time it took")
+    @StackTrace(false)
+    static final class ActorMigrated extends Event {
+        @Label("Actor Class")
+        Class<?> actorClass;
+        @Label("Actor Number")
+        long actorNumber;
+        @Label("Target Server")
+        long targetServer;
+        @Label("Moved")
+        boolean moved;
+    }
+
+    @Name("cav.TimerFired")
+    @Label("Timer Fired")
+    @Category({"CAV", "World"})
+    @Description("A delayed message has been sent")
+    @StackTrace(false)
+    static final class TimerFired extends Event {
+        @Label("Message Type")
+        Class<?> messageType;
+        @Label("Sender Actor")
+        long senderActor;
+        @Label("Receiver Actor")
+        long receiverActor;
+        @Label("Delay")
+        @Timespan
+        long delay;
+    }
+
+    @Name("cav.RequestTimedOut")
+    @Label("Request Timed Out")
+    @Category({"CAV", "World"})
+    @Description("A request got no response in time")
+    @StackTrace(false)
+    static final class RequestTimedOut extends Event {
+        @Label("Request Type")
+        Class<?> requestType;
+        @Label("Request Id")
+        long requestId;
+        @Label("Sender Actor")
+        long senderActor;
+        @Label("Waited")
+        @Timespan
+        long waited;
+    }
+}
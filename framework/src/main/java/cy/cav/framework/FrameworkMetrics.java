@@ -0,0 +1,268 @@
+package cy.cav.framework;
+
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.Timer;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Publishes metrics of the framework to Micrometer: mailbox depth, time spent processing and waiting
+/// for envelopes, pending requests, network latency, retries...
+///
+/// With Spring Boot Actuator, the metrics are available on the `/actuator/metrics` endpoint.
+///
+/// Meters are created once and cached, so recording a value on the main loop doesn't allocate.
+public final class FrameworkMetrics {
+    private final MeterRegistry registry;
+
+    // Processing time of envelopes, by actor class, then by message class.
+    private final ClassValue<ClassValue<Timer>> dispatchTimers = new ClassValue<>() {
+        @Override
+        protected ClassValue<Timer> computeValue(Class<?> actorClass) {
+            return new ClassValue<>() {
+                @Override
+                protected Timer computeValue(Class<?> messageClass) {
+                    return Timer.builder("cav.world.dispatch")
+                            .description("Time spent by actors processing an envelope")
+                            .tag("actor", nameOf(actorClass))
+                            .tag("message", nameOf(messageClass))
+                            .publishPercentileHistogram()
+                            .register(registry);
+                }
+            };
+        }
+    };
+    private final ClassValue<Counter> ackRetries = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> actorClass) {
+            return Counter.builder("cav.ack.retries")
+                    .description("Messages sent again because no acknowledgment came")
+                    .tag("actor", nameOf(actorClass))
+                    .register(registry);
+        }
+    };
+    private final ClassValue<Counter> restarts = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> actorClass) {
+            return Counter.builder("cav.supervisor.restarts")
+                    .description("Actors replaced by a fresh one after failing")
+                    .tag("actor", nameOf(actorClass))
+                    .register(registry);
+        }
+    };
+    private final ClassValue<Counter> ackGiveUps = new ClassValue<>() {
+        @Override
+        protected Counter computeValue(Class<?> actorClass) {
+            return Counter.builder("cav.ack.give-ups")
+                    .description("Messages that were never acknowledged, after all retries")
+                    .tag("actor", nameOf(actorClass))
+                    .register(registry);
+        }
+    };
+
+    // Queued time of envelopes, by origin (local, then remote), then by priority.
+    private final Timer[][] queued = new Timer[2][MessagePriority.values().length];
+    private final Counter requestTimeouts;
+    private final Counter outsideRetries;
+    private final Counter outsideReceived;
+    private final Counter outsideRejected;
+    private final Counter migrations;
+    private final Counter failedMigrations;
+    private final Counter forwarded;
+    private final Counter stashed;
+    private final Counter stashReplayed;
+    private final Counter stashShed;
+    // Envelopes shed by the world, by limit (actor, then world), then by action (rejected, then dropped).
+    private final Counter[][] shed = new Counter[2][2];
+    // Latency and failures of envelopes sent to other servers, by server id. Removed when the server leaves,
+    // so restarted servers with new ids don't pile up meters.
+    private final ConcurrentMap<Long, Peer> peers = new ConcurrentHashMap<>();
+
+    public FrameworkMetrics(MeterRegistry registry) {
+        this.registry = registry;
+
+        for (MessagePriority priority : MessagePriority.values()) {
+            this.queued[0][priority.ordinal()] = queuedTimer("local", priority);
+            this.queued[1][priority.ordinal()] = queuedTimer("remote", priority);
+        }
+        this.requestTimeouts = Counter.builder("cav.world.requests.timeouts")
+                .description("Requests that got no response in time")
+                .register(registry);
+        this.outsideRetries = Counter.builder("cav.outside.retries")
+                .description("Attempts to send an envelope again because the receiver server wasn't found")
+                .register(registry);
+        this.outsideReceived = Counter.builder("cav.outside.received")
+                .description("Envelopes received from other servers")
+                .register(registry);
+        this.outsideRejected = Counter.builder("cav.outside.rejected")
+                .description("Invalid envelopes received from other servers")
+                .register(registry);
+        this.migrations = migrationCounter("moved");
+        this.failedMigrations = migrationCounter("failed");
+        this.forwarded = Counter.builder("cav.world.forwarded")
+                .description("Envelopes forwarded to the new address of an actor that moved to another server")
+                .register(registry);
+        this.stashed = Counter.builder("cav.supervisor.stashed")
+                .description("Envelopes stashed by supervisors while attached to their actor")
+                .register(registry);
+        this.stashReplayed = Counter.builder("cav.supervisor.replayed")
+                .description("Stashed envelopes processed by actors once their supervisor detached")
+                .register(registry);
+        this.stashShed = Counter.builder("cav.supervisor.stash.shed")
+                .description("Envelopes dropped or rejected because the stash of a supervisor was full")
+                .register(registry);
+        String[] limits = {"actor", "world"};
+        String[] actions = {"rejected", "dropped"};
+        for (int limit = 0; limit < 2; limit++) {
+            for (int action = 0; action < 2; action++) {
+                this.shed[limit][action] = Counter.builder("cav.world.shed")
+                        .description("Envelopes rejected or dropped because a mailbox limit was reached")
+                        .tag("limit", limits[limit])
+                        .tag("action", actions[action])
+                        .register(registry);
+            }
+        }
+    }
+
+    /// Registers a gauge reading its value from the supplier. Used by [World] for queue and map sizes.
+    ///
+    /// @param tags the keys and values of the tags of the gauge, if any
+    void gauge(String name, String description, Supplier<Number> value, String... tags) {
+        Gauge.builder(name, value)
+                .description(description)
+                .tags(tags)
+                .strongReference(true)
+                .register(registry);
+    }
+
+    /// Records the time it took an actor to process a message.
+    void dispatched(Class<?> actorClass, Class<?> messageClass, long nanos) {
+        dispatchTimers.get(actorClass).get(messageClass).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /// Records the time between the moment an envelope has been sent and the moment it's dispatched.
+    ///
+    /// For envelopes coming from other servers, this includes the network time, and may be off
+    /// when clocks aren't in sync.
+    void queued(Instant sentAt, Instant now, boolean local, MessagePriority priority) {
+        long nanos = CoarseClock.nanosBetween(sentAt, now);
+        queued[local ? 0 : 1][priority.ordinal()].record(Math.max(0, nanos), TimeUnit.NANOSECONDS);
+    }
+
+    void requestsTimedOut(int count) {
+        requestTimeouts.increment(count);
+    }
+
+    /// Records the time it took for a server to answer to an envelope we sent.
+    void sent(long serverId, long nanos, boolean success) {
+        Peer peer = peerOf(serverId);
+        peer.latency.record(nanos, TimeUnit.NANOSECONDS);
+        if (!success) {
+            peer.failures.increment();
+        }
+    }
+
+    /// Removes the meters of a server that left the network.
+    void peerLeft(long serverId) {
+        Peer peer = peers.remove(serverId);
+        if (peer != null) {
+            registry.remove(peer.latency);
+            registry.remove(peer.failures);
+        }
+    }
+
+    void sendRetried() {
+        outsideRetries.increment();
+    }
+
+    void received(boolean valid) {
+        (valid ? outsideReceived : outsideRejected).increment();
+    }
+
+    void migrated(boolean moved) {
+        (moved ? migrations : failedMigrations).increment();
+    }
+
+    void forwarded() {
+        forwarded.increment();
+    }
+
+    void restarted(Class<? extends Actor> actorClass) {
+        restarts.get(actorClass).increment();
+    }
+
+    void stashed() {
+        stashed.increment();
+    }
+
+    void stashReplayed(int count) {
+        stashReplayed.increment(count);
+    }
+
+    void stashShed() {
+        stashShed.increment();
+    }
+
+    /// Counts an envelope shed because a mailbox limit was reached.
+    ///
+    /// @param perActor true for the limit of an actor, false for the limit of the world
+    /// @param rejected true when a request failed right away, false when a notification was dropped
+    void shed(boolean perActor, boolean rejected) {
+        shed[perActor ? 0 : 1][rejected ? 0 : 1].increment();
+    }
+
+    /// Counts a message sent again by an actor using acknowledgments.
+    public void ackRetried(Class<? extends Actor> actorClass) {
+        ackRetries.get(actorClass).increment();
+    }
+
+    /// Counts a message an actor gave up on after retrying too many times.
+    public void ackGaveUp(Class<? extends Actor> actorClass) {
+        ackGiveUps.get(actorClass).increment();
+    }
+
+    private Timer queuedTimer(String origin, MessagePriority priority) {
+        return Timer.builder("cav.world.queued")
+                .description("Time between sending an envelope and dispatching it")
+                .tag("origin", origin)
+                .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter migrationCounter(String outcome) {
+        return Counter.builder("cav.world.migrations")
+                .description("Actors moved to another server")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private Peer peerOf(long serverId) {
+        Peer peer = peers.get(serverId);
+        if (peer != null) {
+            return peer;
+        }
+
+        String id = HexFormat.of().toHexDigits(serverId);
+        return peers.computeIfAbsent(serverId, _ -> new Peer(
+                Timer.builder("cav.outside.send")
+                        .description("Time for another server to accept an envelope")
+                        .tag("peer", id)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                Counter.builder("cav.outside.send.failures")
+                        .description("Envelopes other servers failed to accept")
+                        .tag("peer", id)
+                        .register(registry)
+        ));
+    }
+
+    private static String nameOf(Class<?> type) {
+        String name = type.getSimpleName();
+        return name.isEmpty() ? type.getName() : name;
+    }
+
+    private record Peer(Timer latency, Counter failures) { }
+}
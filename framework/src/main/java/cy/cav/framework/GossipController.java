@@ -0,0 +1,23 @@
+package cy.cav.framework;
+
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.*;
+
+/// Receives the gossip of other servers at `/gossip`, when using the [GossipNetwork].
+@RestController
+class GossipController {
+    private final Network network;
+
+    GossipController(Network network) {
+        this.network = network;
+    }
+
+    @PostMapping("/gossip")
+    GossipNetwork.Gossip gossip(@RequestBody GossipNetwork.Gossip gossip) {
+        if (!(network instanceof GossipNetwork gossipNetwork)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "This server doesn't gossip.");
+        }
+        return gossipNetwork.exchange(gossip);
+    }
+}
@@ -0,0 +1,329 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+import org.slf4j.*;
+import org.springframework.boot.web.context.*;
+import org.springframework.context.event.*;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.*;
+import org.springframework.scheduling.*;
+import org.springframework.web.reactive.function.client.*;
+import reactor.core.publisher.*;
+
+import java.net.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Finds servers by gossiping with them: every now and then, each server sends the list of servers it knows
+/// to another server, which sends back its own list. Both keep the most recent information of each server.
+///
+/// Servers first gossip with the seed URLs of `cav.framework.discovery.seeds`, so the seeds need to be
+/// started first, but any server of the network can be a seed. Gossip is sent to the `/gossip` endpoint,
+/// over HTTP like envelopes, and is handled by [GossipController].
+///
+/// ## How membership changes spread
+///
+/// - When a server learns about a server joining or leaving, it gossips with a few other servers right away,
+///   so the change reaches the whole network within a few milliseconds.
+/// - Each server increments its own heartbeat at every round. A server whose heartbeat didn't change for
+///   `failure-timeout` is considered gone.
+/// - A server stopping properly tells all servers it knows that it's leaving.
+/// - Each start of a server is a new incarnation, newer than all the previous ones. A server restarting with the
+///   same id is known again right away, even though its heartbeat starts over.
+/// - Servers only learn that a server left when they knew it, so gone servers are eventually forgotten by all.
+public class GossipNetwork extends Network {
+    private static final Logger log = LoggerFactory.getLogger(GossipNetwork.class);
+
+    // How many servers to gossip with right away when something changed.
+    private static final int FANOUT = 3;
+    // Gossip with a seed every few rounds, so parts of the network that lost each other meet again.
+    private static final int SEED_ROUND_PERIOD = 10;
+    // How long to wait for each server when telling them we're leaving.
+    private static final Duration LEAVE_TIMEOUT = Duration.ofSeconds(1);
+
+    private final List<String> applications;
+    private final List<String> seeds;
+    private final @Nullable String configuredUrl;
+    private final Duration interval;
+    private final long failureTimeoutNanos;
+    private final TaskScheduler scheduler;
+    private final WebClient webClient = WebClient.create();
+
+    // Everything we know about every server, including ourselves; by server id.
+    private final ConcurrentMap<Long, Entry> members = new ConcurrentHashMap<>();
+    private volatile @Nullable Member self;
+    private volatile @Nullable ScheduledFuture<?> rounds;
+    private int round = 0;
+
+    public GossipNetwork(Server server, List<String> applications, FrameworkConfig.Discovery config,
+                         TaskScheduler scheduler) {
+        super(server);
+        this.applications = applications.stream().map(String::toUpperCase).toList();
+        this.seeds = List.copyOf(config.seeds());
+        this.configuredUrl = config.url();
+        this.interval = config.gossipInterval();
+        this.failureTimeoutNanos = config.failureTimeout().toNanos();
+        this.scheduler = Objects.requireNonNull(scheduler);
+    }
+
+    // We need to know the port of the web server to tell others where to find us.
+    @EventListener(WebServerInitializedEvent.class)
+    private void onWebServerReady(WebServerInitializedEvent event) {
+        String url = configuredUrl;
+        if (url == null) {
+            try {
+                url = "http://" + InetAddress.getLocalHost().getHostAddress() + ":" + event.getWebServer().getPort();
+            } catch (UnknownHostException e) {
+                throw new IllegalStateException("Can't find the address of this host; set cav.framework.discovery.url", e);
+            }
+        }
+
+        join(url);
+    }
+
+    /// Starts gossiping, other servers reaching this one at the URL.
+    void join(String url) {
+        Server server = server();
+        // The start time increases from one start to the next, without storing anything.
+        Member member = new Member(server.idString(), server.appName(), url, server.metadata(),
+                System.currentTimeMillis(), 0, false);
+        self = member;
+        members.put(server.id(), new Entry(member, System.nanoTime()));
+        log.info("Joining the network as {} from seeds {}", url, seeds);
+
+        // Introduce ourselves to the seeds right away.
+        for (String seed : seeds) {
+            if (!sameUrl(seed, url)) {
+                gossipWith(seed);
+            }
+        }
+        rounds = scheduler.scheduleAtFixedRate(this::round, interval);
+    }
+
+    // Tell everyone we're leaving, so they stop sending envelopes right away.
+    @EventListener(ContextClosedEvent.class)
+    private void onClosed() {
+        Member member = self;
+        ScheduledFuture<?> scheduled = rounds;
+        if (member == null || scheduled == null) {
+            return;
+        }
+
+        scheduled.cancel(false);
+        Member leaving = member.next(true);
+        self = leaving;
+        members.put(server().id(), new Entry(leaving, System.nanoTime()));
+
+        var gossip = gossip();
+        for (Entry entry : members.values()) {
+            if (isPeer(entry)) {
+                try {
+                    post(entry.member.url(), gossip).block(LEAVE_TIMEOUT);
+                } catch (RuntimeException e) {
+                    log.debug("Couldn't tell {} we're leaving", entry.member.url(), e);
+                }
+            }
+        }
+    }
+
+    /// Merges the gossip of another server, and returns everything we know in exchange.
+    ///
+    /// Called by [GossipController].
+    Gossip exchange(Gossip gossip) {
+        merge(gossip);
+        return gossip();
+    }
+
+    private void round() {
+        try {
+            Member member = self;
+            if (member == null) {
+                return;
+            }
+
+            // Show we're still alive.
+            Member beating = member.next(false);
+            self = beating;
+            members.put(server().id(), new Entry(beating, System.nanoTime()));
+
+            boolean changed = forgetSilentServers();
+
+            List<String> peers = peerUrls();
+            round++;
+            if (peers.isEmpty() || (round % SEED_ROUND_PERIOD == 0 && !seeds.isEmpty())) {
+                String seed = seeds.isEmpty() ? null : seeds.get(ThreadLocalRandom.current().nextInt(seeds.size()));
+                if (seed != null && !sameUrl(seed, beating.url())) {
+                    gossipWith(seed);
+                }
+            }
+            if (!peers.isEmpty()) {
+                gossipWith(peers.get(ThreadLocalRandom.current().nextInt(peers.size())));
+            }
+
+            if (changed) {
+                publish();
+            }
+        } catch (RuntimeException e) {
+            log.error("Gossip round failed", e);
+        }
+    }
+
+    private void gossipWith(String url) {
+        post(url, gossip()).subscribe(this::merge, e -> log.debug("Couldn't gossip with {}", url, e));
+    }
+
+    private Mono<Gossip> post(String url, Gossip gossip) {
+        return webClient.post()
+                .uri(url + (url.endsWith("/") ? "gossip" : "/gossip"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(gossip)
+                .retrieve()
+                .bodyToMono(Gossip.class);
+    }
+
+    private synchronized void merge(Gossip gossip) {
+        boolean changed = false;
+        long now = System.nanoTime();
+        for (Member member : gossip.members()) {
+            if (member.id() == null || member.appName() == null || member.url() == null) {
+                continue;
+            }
+            long id;
+            try {
+                id = HexFormat.fromHexDigitsToLong(member.id());
+            } catch (IllegalArgumentException _) {
+                continue;
+            }
+            if (id == server().id()) {
+                continue;
+            }
+
+            // Only keep newer information, and don't learn about servers that left before we knew them:
+            // tombstones would go back and forth between servers forgetting them at different times.
+            Entry previous = members.get(id);
+            if (previous == null ? member.left() : !member.isNewerThan(previous.member)) {
+                continue;
+            }
+            members.put(id, new Entry(member, now));
+
+            boolean wasAlive = previous != null && !previous.member.left();
+            if (wasAlive != !member.left()) {
+                changed = true;
+                log.info("Server {} ({}) {} the network", member.id(), member.url(), member.left() ? "left" : "joined");
+            } else if (wasAlive && !previous.member.sameServer(member)) {
+                // Restarted somewhere else, or with other metadata.
+                changed = true;
+                log.info("Server {} ({}) changed", member.id(), member.url());
+            }
+        }
+
+        if (changed) {
+            publish();
+            spread();
+        }
+    }
+
+    /// Marks servers we haven't heard from in a while as gone, and forgets servers gone for long.
+    private synchronized boolean forgetSilentServers() {
+        boolean changed = false;
+        long now = System.nanoTime();
+        for (var it = members.entrySet().iterator(); it.hasNext(); ) {
+            var mapEntry = it.next();
+            Entry entry = mapEntry.getValue();
+            if (mapEntry.getKey() == server().id() || now - entry.seenAtNanos < failureTimeoutNanos) {
+                continue;
+            }
+
+            if (!entry.member.left()) {
+                // Keep the same heartbeat: if the server is still alive, its next heartbeat will bring it back.
+                Member m = entry.member;
+                mapEntry.setValue(new Entry(new Member(m.id(), m.appName(), m.url(), m.metadata(), m.incarnation(),
+                        m.heartbeat(), true), entry.seenAtNanos));
+                changed = true;
+                log.warn("Server {} ({}) stopped gossiping; considering it gone", m.id(), m.url());
+            } else if (now - entry.seenAtNanos > 3 * failureTimeoutNanos) {
+                // Remembering gone servers a bit prevents old gossip from bringing them back.
+                it.remove();
+            }
+        }
+        return changed;
+    }
+
+    // Gossip with a few servers right away, so changes spread quickly.
+    private void spread() {
+        List<String> peers = new ArrayList<>(peerUrls());
+        Collections.shuffle(peers);
+        for (String url : peers.subList(0, Math.min(FANOUT, peers.size()))) {
+            gossipWith(url);
+        }
+    }
+
+    private synchronized void publish() {
+        var servers = new HashMap<Long, Server>();
+        for (var mapEntry : members.entrySet()) {
+            Member member = mapEntry.getValue().member;
+            if (!member.left() && applications.contains(member.appName().toUpperCase())) {
+                servers.put(mapEntry.getKey(), new Server(mapEntry.getKey(), member.appName(), member.url(),
+                        member.metadata()));
+            }
+        }
+        updateServers(servers);
+    }
+
+    private List<String> peerUrls() {
+        return members.values().stream()
+                .filter(this::isPeer)
+                .map(e -> e.member.url())
+                .toList();
+    }
+
+    private boolean isPeer(Entry entry) {
+        return !entry.member.left() && !entry.member.id().equals(server().idString());
+    }
+
+    private Gossip gossip() {
+        return new Gossip(members.values().stream().map(e -> e.member).toList());
+    }
+
+    private static boolean sameUrl(String a, String b) {
+        return a.replaceAll("/+$", "").equalsIgnoreCase(b.replaceAll("/+$", ""));
+    }
+
+    /// What a server knows about the servers of the network.
+    record Gossip(List<Member> members) {
+        Gossip {
+            members = members == null ? List.of() : members;
+        }
+    }
+
+    /// What a server knows about another server.
+    ///
+    /// @param id          the id of the server, in hexadecimal
+    /// @param incarnation when the server started, in milliseconds since the epoch; higher is more recent
+    /// @param heartbeat   incremented by the server at each round; higher is more recent within an incarnation
+    /// @param left        true when the server left the network, or stopped gossiping
+    record Member(String id, String appName, String url, Map<String, String> metadata, long incarnation,
+                  long heartbeat, boolean left) {
+        Member {
+            metadata = metadata == null ? Map.of() : metadata;
+        }
+
+        /// Returns true when this information is more recent than the other one, about the same server.
+        boolean isNewerThan(Member other) {
+            return incarnation != other.incarnation ? incarnation > other.incarnation : heartbeat > other.heartbeat;
+        }
+
+        /// Returns true when both members have the same application, URL and metadata.
+        boolean sameServer(Member other) {
+            return appName.equals(other.appName) && url.equals(other.url) && metadata.equals(other.metadata);
+        }
+
+        /// Returns the information of the next heartbeat.
+        Member next(boolean left) {
+            return new Member(id, appName, url, metadata, incarnation, heartbeat + 1, left);
+        }
+    }
+
+    private record Entry(Member member, long seenAtNanos) { }
+}
@@ -0,0 +1,170 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.function.*;
+
+import static cy.cav.framework.Hashes.*;
+
+/// Gives each key a server among some servers of the [Network], so that keys spread evenly over servers and
+/// most keys keep the same server when servers join or leave.
+///
+/// Each server is placed at many points of a ring of hashes ("virtual nodes"); a key belongs to the server of the
+/// first point after the hash of the key. When a server joins, it takes a small part of the keys of every other
+/// server; when it leaves, its keys spread over all the others.
+///
+/// Unlike [ServerIndex], the server of the network is part of the ring when it matches. Everyone knowing the same
+/// servers agrees on the server of each key.
+///
+/// ## Example
+///
+/// ```java
+/// HashRing ring = network.ring(server -> server.metadata().containsKey("supportsPrefecture"));
+/// Server home = ring.serverFor(beneficiaryId);
+/// ```
+///
+/// @see Network#ring(Predicate)
+/// @see World#spawn(HashRing, UUID, ActorSnapshot)
+public final class HashRing {
+    // Enough points per server to keep the share of each server within a few percent of the average.
+    private static final int VIRTUAL_NODES = 160;
+
+    private final Server self;
+    private final Predicate<Server> filter;
+
+    // Servers currently in the ring, by id; only used when updating.
+    private final Map<Long, Server> members = new HashMap<>();
+    // Replaced when servers change, so readers never lock.
+    private volatile Points points;
+
+    HashRing(Server self, Predicate<Server> filter) {
+        this.self = self;
+        this.filter = filter;
+        if (filter.test(self)) {
+            members.put(self.id(), self);
+        }
+        this.points = build(members.values());
+    }
+
+    /// Returns the server of the key, or null when the ring is empty.
+    public @Nullable Server serverFor(UUID key) {
+        return serverFor(hash(key));
+    }
+
+    /// Returns the server of the key, or null when the ring is empty.
+    public @Nullable Server serverFor(String key) {
+        return serverFor(mix(key.hashCode() * 0x9e3779b97f4a7c15L));
+    }
+
+    /// Returns the server owning the point right after the hash, or null when the ring is empty.
+    public @Nullable Server serverFor(long hash) {
+        Points current = points;
+        if (current.hashes.length == 0) {
+            return null;
+        }
+        return current.servers[firstPointAfter(current, hash)];
+    }
+
+    /// Returns the first server accepted by the filter, going around the ring from the key: the server of the key
+    /// when accepted, otherwise the one that would get the key if it left. Returns null when no server is accepted.
+    ///
+    /// Useful to skip servers that are down, like with [ServerHealth#isHealthy(long)].
+    public @Nullable Server serverFor(UUID key, Predicate<Server> filter) {
+        Points current = points;
+        if (current.hashes.length == 0) {
+            return null;
+        }
+
+        int start = firstPointAfter(current, hash(key));
+        Server rejected = null;
+        for (int i = 0; i < current.hashes.length; i++) {
+            Server server = current.servers[(start + i) % current.hashes.length];
+            // Points of a rejected server are often next to each other; don't test it again and again.
+            if (server == rejected) {
+                continue;
+            }
+            if (filter.test(server)) {
+                return server;
+            }
+            rejected = server;
+        }
+        return null;
+    }
+
+    private static int firstPointAfter(Points current, long hash) {
+        int index = Arrays.binarySearch(current.hashes, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Past the last point, go around the ring.
+        return index == current.hashes.length ? 0 : index;
+    }
+
+    private static long hash(UUID key) {
+        return mix(key.getMostSignificantBits() ^ mix(key.getLeastSignificantBits()));
+    }
+
+    /// Returns the servers of the ring, in no particular order.
+    public Set<Server> servers() {
+        return points.distinct;
+    }
+
+    /// Updates the ring with the changes of the network. Called by [Network].
+    synchronized void update(Network.Change change) {
+        boolean updated = false;
+        for (Server server : change.removed()) {
+            updated |= members.remove(server.id()) != null;
+        }
+        for (Server server : change.changed()) {
+            // The server may have gained or lost what the ring is about.
+            updated |= members.remove(server.id()) != null;
+            if (filter.test(server)) {
+                members.put(server.id(), server);
+                updated = true;
+            }
+        }
+        for (Server server : change.added()) {
+            if (filter.test(server)) {
+                members.put(server.id(), server);
+                updated = true;
+            }
+        }
+
+        if (updated) {
+            points = build(members.values());
+        }
+    }
+
+    private static Points build(Collection<Server> servers) {
+        // Sort by id, so ties between hashes are broken the same way everywhere.
+        List<Server> sorted = servers.stream().sorted(Comparator.comparingLong(Server::id)).toList();
+
+        long[] allHashes = new long[sorted.size() * VIRTUAL_NODES];
+        Integer[] order = new Integer[allHashes.length];
+        for (int s = 0; s < sorted.size(); s++) {
+            long seed = mix(sorted.get(s).id());
+            for (int v = 0; v < VIRTUAL_NODES; v++) {
+                int i = s * VIRTUAL_NODES + v;
+                allHashes[i] = mix(seed + v * 0x9e3779b97f4a7c15L);
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, Comparator.comparingLong((Integer i) -> allHashes[i]).thenComparingInt(i -> i));
+
+        long[] hashes = new long[order.length];
+        Server[] owners = new Server[order.length];
+        for (int i = 0; i < order.length; i++) {
+            hashes[i] = allHashes[order[i]];
+            owners[i] = sorted.get(order[i] / VIRTUAL_NODES);
+        }
+        return new Points(hashes, owners);
+    }
+
+    /// The points of the ring, sorted by hash, with the server owning each point.
+    private record Points(long[] hashes, Server[] servers, Set<Server> distinct) {
+        Points(long[] hashes, Server[] servers) {
+            this(hashes, servers, Set.copyOf(Arrays.asList(servers)));
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package cy.cav.framework;
+
+/// Hash functions shared by the ways of spreading keys over servers, like [HashRing].
+public final class Hashes {
+    private Hashes() {}
+
+    /// The finalizer of SplitMix64: spreads the bits of similar numbers far apart.
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
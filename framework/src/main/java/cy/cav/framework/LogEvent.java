@@ -0,0 +1,104 @@
+package cy.cav.framework;
+
+import org.slf4j.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/// Something that happens way too often to be logged every time, like sending an envelope.
+///
+/// Each occurrence is counted, but only a few of them are logged: at most one per interval.
+/// Counts are logged periodically in a summary line, by the logger of the class owning the event.
+///
+/// ## Example
+///
+/// ```java
+/// private static final LogEvent SENT = LogEvent.of(MyActor.class, "sent");
+///
+/// void send(Message message) {
+///     if (SENT.sample()) {
+///         log.info("Sent message of type {}", message.getClass().getSimpleName());
+///     }
+/// }
+/// ```
+///
+/// Calling [#sample()] doesn't allocate; log arguments are only computed when the line is logged.
+public final class LogEvent {
+    private static final Duration DEFAULT_INTERVAL = Duration.ofSeconds(1);
+    // All events ever created, so summaries can be logged.
+    private static final List<LogEvent> events = new CopyOnWriteArrayList<>();
+
+    private final Logger logger;
+    private final String name;
+    private final long intervalNanos;
+
+    private final LongAdder count = new LongAdder();
+    private final LongAdder logged = new LongAdder();
+    private final AtomicLong nextLogNanos = new AtomicLong(System.nanoTime());
+
+    private LogEvent(Logger logger, String name, long intervalNanos) {
+        this.logger = logger;
+        this.name = name;
+        this.intervalNanos = intervalNanos;
+    }
+
+    /// Creates an event logging at most one line per second.
+    ///
+    /// @param owner the class owning the event, whose logger is used for summaries
+    /// @param name  the name of the event, shown in summaries
+    public static LogEvent of(Class<?> owner, String name) {
+        return of(owner, name, DEFAULT_INTERVAL);
+    }
+
+    /// Creates an event logging at most one line per interval.
+    ///
+    /// @param owner    the class owning the event, whose logger is used for summaries
+    /// @param name     the name of the event, shown in summaries
+    /// @param interval the minimum time between two logged lines
+    public static LogEvent of(Class<?> owner, String name, Duration interval) {
+        var event = new LogEvent(LoggerFactory.getLogger(owner), name, interval.toNanos());
+        events.add(event);
+        return event;
+    }
+
+    /// Counts an occurrence of this event, and returns true when it should be logged.
+    public boolean sample() {
+        count.increment();
+
+        long now = System.nanoTime();
+        long next = nextLogNanos.get();
+        if (now - next >= 0 && nextLogNanos.compareAndSet(next, now + intervalNanos)) {
+            logged.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /// Counts an occurrence of this event, without ever logging it.
+    public void count() {
+        count.increment();
+    }
+
+    /// Logs the counts of all events since the last summary, then resets them. Events that didn't
+    /// happen are skipped.
+    ///
+    /// Called periodically by [Framework].
+    static void logSummaries(Duration period) {
+        // Group events by logger, so each class logs one line.
+        Map<Logger, StringJoiner> lines = new LinkedHashMap<>();
+        for (LogEvent event : events) {
+            long count = event.count.sumThenReset();
+            long logged = event.logged.sumThenReset();
+            if (count == 0 || !event.logger.isInfoEnabled()) {
+                continue;
+            }
+
+            lines.computeIfAbsent(event.logger, _ -> new StringJoiner(", "))
+                    .add(event.name + "=" + count + " (" + logged + " logged)");
+        }
+
+        lines.forEach((logger, line) -> logger.info("Events in the last {}s: {}", period.toSeconds(), line));
+    }
+}
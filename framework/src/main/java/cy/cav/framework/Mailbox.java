@@ -0,0 +1,135 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.concurrent.locks.*;
+
+/// The envelopes waiting to be dispatched by a [World], in one lane per [MessagePriority].
+///
+/// Lanes are served by weighted round-robin: each lane can give as many envelopes as its weight per round, and a
+/// new round starts once all lanes with envelopes used their turns. Bulk envelopes keep going during busy times,
+/// only slower.
+///
+/// Envelopes only keep their order within a lane: an envelope can overtake an older one of a lower priority, even
+/// when both go from the same sender to the same receiver.
+///
+/// Each envelope remembers the actor it's counted for by the mailbox limits, so the count goes back to the same
+/// actor when the envelope leaves, even when another actor took its address since.
+///
+/// Any thread can add envelopes; only the main loop takes them.
+final class Mailbox {
+    private static final MessagePriority[] PRIORITIES = MessagePriority.values();
+    // How far to look for a notification in a lane, so dropping one never holds the lock for long.
+    private static final int MAX_DROP_SCAN = 64;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    @SuppressWarnings("unchecked")
+    private final ArrayDeque<Entry>[] lanes = new ArrayDeque[PRIORITIES.length];
+    // Envelopes each lane can still give in this round.
+    private final int[] turns = new int[PRIORITIES.length];
+    private volatile int size = 0;
+
+    Mailbox() {
+        for (int i = 0; i < lanes.length; i++) {
+            lanes[i] = new ArrayDeque<>();
+            turns[i] = PRIORITIES[i].weight;
+        }
+    }
+
+    /// Adds the envelope at the end of its lane. Its notification can be dropped when the mailbox is full.
+    ///
+    /// @param countedFor the actor that counted the envelope with [Actor#enqueued]; null when none did
+    void add(Envelope<?> envelope, MessagePriority priority, @Nullable Actor countedFor) {
+        add(envelope, priority, countedFor, true);
+    }
+
+    /// Adds the envelope at the end of its lane.
+    ///
+    /// @param countedFor the actor that counted the envelope with [Actor#enqueued]; null when none did
+    /// @param sheddable  false when the envelope must never be [dropped][#dropOldestNotification]
+    void add(Envelope<?> envelope, MessagePriority priority, @Nullable Actor countedFor, boolean sheddable) {
+        lock.lock();
+        try {
+            lanes[priority.ordinal()].addLast(new Entry(envelope, countedFor, sheddable));
+            // Only the main loop waits, and only when the mailbox is empty.
+            if (size++ == 0) {
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Takes the next envelope to dispatch, waiting for one when the mailbox is empty.
+    Entry take() throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                notEmpty.await();
+            }
+            size--;
+            return next();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Removes the oldest notification that can be shed of the lanes of the priority and less important ones,
+    /// starting with the least important lane.
+    ///
+    /// @return the removed entry; null when there's no notification to drop
+    @Nullable Entry dropOldestNotification(MessagePriority atMost) {
+        lock.lock();
+        try {
+            for (int i = lanes.length - 1; i >= atMost.ordinal(); i--) {
+                Iterator<Entry> iterator = lanes[i].iterator();
+                for (int scanned = 0; scanned < MAX_DROP_SCAN && iterator.hasNext(); scanned++) {
+                    Entry entry = iterator.next();
+                    if (entry.sheddable() && entry.envelope().body() instanceof Message.Notification) {
+                        iterator.remove();
+                        size--;
+                        return entry;
+                    }
+                }
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /// Returns the number of envelopes waiting in all lanes.
+    int size() {
+        return size;
+    }
+
+    /// Returns the number of envelopes waiting in the lane of the priority.
+    int size(MessagePriority priority) {
+        lock.lock();
+        try {
+            return lanes[priority.ordinal()].size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Entry next() {
+        while (true) {
+            for (int i = 0; i < lanes.length; i++) {
+                if (turns[i] > 0 && !lanes[i].isEmpty()) {
+                    turns[i]--;
+                    return lanes[i].pollFirst();
+                }
+            }
+            // Every lane with envelopes used its turns: start a new round.
+            for (int i = 0; i < lanes.length; i++) {
+                turns[i] = PRIORITIES[i].weight;
+            }
+        }
+    }
+
+    /// An envelope waiting in the mailbox, and the actor it's counted for; null when it isn't counted.
+    record Entry(Envelope<?> envelope, @Nullable Actor countedFor, boolean sheddable) { }
+}
@@ -0,0 +1,68 @@
+package cy.cav.framework;
+
+import java.lang.annotation.*;
+
+/// How soon the [World] dispatches an envelope compared to other envelopes waiting in its mailbox.
+///
+/// Each priority has its own lane in the mailbox. Lanes are served in turns, by weight: while all lanes have
+/// envelopes, the world dispatches 16 system envelopes, then 4 interactive ones, then 1 bulk one, and so on.
+/// Envelopes of the same lane are dispatched in the order they arrived, and a lane never waits forever.
+///
+/// Envelopes of different priorities don't keep their order, even between the same two actors: a response sent
+/// after a bulk notification may be processed first. Actors relying on the order of their messages must give them
+/// the same priority.
+///
+/// The priority of an envelope is:
+/// - the one given by its sender, like with [Actor#send(ActorAddress, Message.Notification, MessagePriority)]
+/// - otherwise, the one of its message type, declared with [Of]
+/// - otherwise, [#SYSTEM] for responses, so waiting requests complete quickly, and [#INTERACTIVE] for the rest
+///
+/// ## Example
+///
+/// ```java
+/// @MessagePriority.Of(MessagePriority.BULK)
+/// record PayEveryone(LocalDate month) implements Message.Notification { }
+/// ```
+public enum MessagePriority {
+    /// Messages of the framework and responses, which are quick to process and unblock others.
+    SYSTEM(16),
+    /// Messages someone is waiting for, like requests made by the REST API.
+    INTERACTIVE(4),
+    /// Messages of background jobs, sent by the thousands, like monthly payments and retries.
+    BULK(1);
+
+    private static final ClassValue<MessagePriority> ofType = new ClassValue<>() {
+        @Override
+        protected MessagePriority computeValue(Class<?> type) {
+            Of declared = type.getAnnotation(Of.class);
+            if (declared != null) {
+                return declared.value();
+            }
+            return Message.Response.class.isAssignableFrom(type) ? SYSTEM : INTERACTIVE;
+        }
+    };
+
+    final int weight;
+
+    MessagePriority(int weight) {
+        this.weight = weight;
+    }
+
+    /// Returns the priority of envelopes containing messages of the given type, unless the sender chose another one.
+    public static MessagePriority of(Class<? extends Message> messageType) {
+        return ofType.get(messageType);
+    }
+
+    /// Returns the priority of the envelope: the one given by the sender, or the one of its message type.
+    public static MessagePriority of(Envelope<?> envelope) {
+        return envelope.priority() != null ? envelope.priority() : ofType.get(envelope.body().getClass());
+    }
+
+    /// Declares the priority of envelopes containing messages of the annotated type.
+    @Documented
+    @Retention(RetentionPolicy.RUNTIME)
+    @Target(ElementType.TYPE)
+    public @interface Of {
+        MessagePriority value();
+    }
+}
@@ -0,0 +1,25 @@
+package cy.cav.framework;
+
+import java.util.concurrent.atomic.*;
+
+/// Gives a small, unique integer to each [Message] class, so [Router] can find handlers with an array lookup
+/// instead of hashing classes.
+///
+/// Ids are dense: they start at 0 and are given in the order classes are first seen. They're only valid in
+/// this JVM; never send them over the network.
+final class MessageTypes {
+    private MessageTypes() {}
+
+    private static final AtomicInteger nextId = new AtomicInteger();
+    private static final ClassValue<Integer> ids = new ClassValue<>() {
+        @Override
+        protected Integer computeValue(Class<?> type) {
+            return nextId.getAndIncrement();
+        }
+    };
+
+    /// Returns the id of the given message class.
+    static int idOf(Class<?> messageClass) {
+        return ids.get(messageClass);
+    }
+}
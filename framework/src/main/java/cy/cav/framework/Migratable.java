@@ -0,0 +1,31 @@
+package cy.cav.framework;
+
+/// An [Actor] that can move to another server while it's alive, using [World#migrate(ActorAddress, Server)].
+///
+/// Moving an actor takes a [snapshot][#snapshot()] of its state between two envelopes, spawns a new actor from it
+/// on the other server, then despawns the old one. Only the snapshot moves: running timers and requests waiting
+/// for a response are lost, so the new actor should start them again when it spawns.
+///
+/// ## Example
+///
+/// ```java
+/// class Counter extends Actor implements Migratable {
+///     int count;
+///
+///     Counter(ActorInit init, int count) { super(init); this.count = count; }
+///
+///     @Override
+///     public ActorSnapshot snapshot() { return new Snapshot(count); }
+///
+///     record Snapshot(int count) implements ActorSnapshot { }
+/// }
+///
+/// // On every server:
+/// world.migrations().register(Counter.Snapshot.class, (init, snapshot) -> new Counter(init, snapshot.count()));
+/// ```
+public interface Migratable {
+    /// Returns the state of this actor, to spawn it again on another server.
+    ///
+    /// Called on the main loop, between two envelopes.
+    ActorSnapshot snapshot();
+}
@@ -0,0 +1,46 @@
+package cy.cav.framework;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Knows how to spawn actors from a [snapshot][ActorSnapshot] of their state: [Migratable] actors moving to this
+/// world, and actors spawned here by other servers.
+///
+/// Every server that can receive actors must register the same snapshot types, usually when starting:
+///
+/// ```java
+/// world.migrations().register(Counter.Snapshot.class, (init, snapshot) -> new Counter(init, snapshot.count()));
+/// ```
+///
+/// @see World#migrate(ActorAddress, Server)
+/// @see World#spawn(HashRing, UUID, ActorSnapshot)
+public final class Migrations {
+    private final Map<Class<?>, BiFunction<ActorInit, ActorSnapshot, Actor>> factories = new ConcurrentHashMap<>();
+
+    Migrations() {}
+
+    /// Registers the function spawning actors from snapshots of the given type.
+    ///
+    /// @param snapshotType the type of the snapshot
+    /// @param factory      creates the actor from the snapshot, like the creator given to [World#spawn]
+    /// @return this object, to register more types
+    public <S extends ActorSnapshot> Migrations register(Class<S> snapshotType,
+                                                         BiFunction<ActorInit, ? super S, ? extends Actor> factory) {
+        Objects.requireNonNull(factory);
+        factories.put(snapshotType, (init, snapshot) -> factory.apply(init, snapshotType.cast(snapshot)));
+        return this;
+    }
+
+    /// Creates the actor of the snapshot.
+    ///
+    /// @throws IllegalArgumentException when the snapshot type hasn't been registered
+    Actor create(ActorInit init, ActorSnapshot snapshot) {
+        var factory = factories.get(snapshot.getClass());
+        if (factory == null) {
+            throw new IllegalArgumentException("Can't spawn actors from snapshots of type "
+                                               + snapshot.getClass().getName() + "; register it first");
+        }
+        return factory.apply(init, snapshot);
+    }
+}
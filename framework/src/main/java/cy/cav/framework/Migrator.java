@@ -0,0 +1,182 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Spawned in every [World] at [World#MIGRATOR_NUMBER], to receive actors moving from other servers, or spawned
+/// by other servers with [World#spawn(HashRing, java.util.UUID, ActorSnapshot)].
+///
+/// Also tells [Rebalancer]s how busy its world is, and keeps track of actors of other servers that moved,
+/// so envelopes go straight to their new address.
+///
+/// Remembers the outcome of each migration and spawn for a while, so asking for the same one again gives the same
+/// actor, and it can be aborted before it even arrives: see [AbortMigration] and [AbortSpawn].
+public final class Migrator extends Actor {
+    // How long to remember migrations; longer than the server moving an actor takes to give up asking.
+    private static final long MIGRATION_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    static final Router<Migrator> router = new Router<Migrator>()
+            .routeDeferred(SpawnMigrated.class, Migrator::spawnMigrated)
+            .route(AbortMigration.class, Migrator::abortMigration)
+            .routeDeferred(Spawn.class, Migrator::spawn)
+            .route(AbortSpawn.class, Migrator::abortSpawn)
+            .route(ActorMoved.class, Migrator::actorMoved)
+            .route(LoadRequest.class, Migrator::load);
+
+    // Migrations of actors from other servers by their address there, in the order they were first seen.
+    private final LinkedHashMap<ActorAddress, Migration> migrations = new LinkedHashMap<>();
+    // Actors spawned for other servers by the id of the spawn, in the order they were first seen.
+    private final LinkedHashMap<UUID, Migration> spawns = new LinkedHashMap<>();
+
+    Migrator(ActorInit init) {
+        super(init);
+    }
+
+    /// Returns the address of the migrator of the given server.
+    public static ActorAddress of(Server server) {
+        return server.address(World.MIGRATOR_NUMBER);
+    }
+
+    /// Returns the address of the migrator of the server with the given id.
+    static ActorAddress of(long serverId) {
+        return new ActorAddress(serverId, World.MIGRATOR_NUMBER);
+    }
+
+    @Override
+    protected void process(Envelope<?> envelope) {
+        router.process(this, envelope);
+    }
+
+    private CompletionStage<Spawned> spawnMigrated(SpawnMigrated request) {
+        forgetOldMigrations();
+        Migration known = migrations.get(request.from());
+        if (known != null && known.id().equals(request.migrationId())) {
+            // Asked again, or aborted before it arrived: give the same answer.
+            return known.spawned() != null
+                    ? CompletableFuture.completedFuture(new Spawned(known.spawned()))
+                    : CompletableFuture.failedFuture(new IllegalStateException("Moving " + request.from() + " was aborted"));
+        }
+
+        ActorAddress spawned = world.spawnFrom(request.snapshot());
+        remember(request.from(), new Migration(request.migrationId(), spawned, System.nanoTime()));
+        log.debug("Actor {} moved here to {}", request.from(), spawned);
+        return CompletableFuture.completedFuture(new Spawned(spawned));
+    }
+
+    private MigrationStatus abortMigration(AbortMigration request) {
+        forgetOldMigrations();
+        Migration known = migrations.get(request.from());
+        if (known != null && known.id().equals(request.migrationId())) {
+            return new MigrationStatus(known.spawned());
+        }
+
+        // Refuse the migration if it ever arrives.
+        remember(request.from(), new Migration(request.migrationId(), null, System.nanoTime()));
+        return new MigrationStatus(null);
+    }
+
+    private void remember(ActorAddress from, Migration migration) {
+        migrations.remove(from);
+        migrations.put(from, migration);
+    }
+
+    private void forgetOldMigrations() {
+        long now = System.nanoTime();
+        for (var known : List.of(migrations.values(), spawns.values())) {
+            Iterator<Migration> iterator = known.iterator();
+            while (iterator.hasNext() && now - iterator.next().atNanos() > MIGRATION_TTL_NANOS) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private CompletionStage<Spawned> spawn(Spawn request) {
+        forgetOldMigrations();
+        Migration known = spawns.get(request.spawnId());
+        if (known != null) {
+            // Asked again, or aborted before it arrived: give the same answer.
+            return known.spawned() != null
+                    ? CompletableFuture.completedFuture(new Spawned(known.spawned()))
+                    : CompletableFuture.failedFuture(new IllegalStateException("Spawn " + request.spawnId() + " was aborted"));
+        }
+
+        ActorAddress spawned = world.spawnFrom(request.initialState());
+        spawns.put(request.spawnId(), new Migration(request.spawnId(), spawned, System.nanoTime()));
+        return CompletableFuture.completedFuture(new Spawned(spawned));
+    }
+
+    private MigrationStatus abortSpawn(AbortSpawn request) {
+        forgetOldMigrations();
+        Migration known = spawns.get(request.spawnId());
+        if (known != null) {
+            return new MigrationStatus(known.spawned());
+        }
+
+        // Refuse the spawn if it ever arrives.
+        spawns.put(request.spawnId(), new Migration(request.spawnId(), null, System.nanoTime()));
+        return new MigrationStatus(null);
+    }
+
+    private void actorMoved(ActorMoved message) {
+        world.redirect(message.from(), message.to());
+    }
+
+    private Load load(LoadRequest request) {
+        return world.load();
+    }
+
+    /// Asks the migrator to spawn an actor moving from another server. Asking again for the same migration gives
+    /// the same actor.
+    ///
+    /// @param from        the address of the actor on its current server
+    /// @param snapshot    the state of the actor
+    /// @param migrationId the id of this attempt to move the actor
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record SpawnMigrated(ActorAddress from, ActorSnapshot snapshot, UUID migrationId)
+            implements Message.Request<Spawned> { }
+
+    /// Asks the migrator to cancel a migration that got no answer, unless the actor already spawned.
+    ///
+    /// Once aborted, the migration is refused if its [SpawnMigrated] request comes later.
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record AbortMigration(ActorAddress from, UUID migrationId) implements Message.Request<MigrationStatus> { }
+
+    /// @param spawned the address of the actor when it spawned before the migration or spawn was aborted; null when
+    ///                it's aborted
+    public record MigrationStatus(@Nullable ActorAddress spawned) implements Message.Response { }
+
+    /// Asks the migrator to spawn a new actor, for another server. Asking again with the same id gives the same actor.
+    ///
+    /// @param spawnId      the id of this spawn, the same for every attempt
+    /// @param initialState the state of the new actor, which spawns like a moving actor
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record Spawn(UUID spawnId, ActorSnapshot initialState) implements Message.Request<Spawned> { }
+
+    /// Asks the migrator to cancel a spawn that got no answer, unless the actor already spawned.
+    ///
+    /// Once aborted, the spawn is refused if its [Spawn] request comes later.
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record AbortSpawn(UUID spawnId) implements Message.Request<MigrationStatus> { }
+
+    /// @param address the address of the spawned actor
+    public record Spawned(ActorAddress address) implements Message.Response { }
+
+    /// Sent by the tombstone of an actor that moved, to the migrator of the servers still sending it envelopes.
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record ActorMoved(ActorAddress from, ActorAddress to) implements Message.Notification { }
+
+    /// Asks the migrator how busy its world is.
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record LoadRequest() implements Message.Request<Load> { }
+
+    /// How busy a world is.
+    ///
+    /// @param actors       the number of actors in the world
+    /// @param migratable   the number of actors that can move to another server
+    /// @param mailboxDepth the number of envelopes waiting to be dispatched
+    public record Load(int actors, int migratable, int mailboxDepth) implements Message.Response { }
+
+    private record Migration(UUID id, @Nullable ActorAddress spawned, long atNanos) { }
+}
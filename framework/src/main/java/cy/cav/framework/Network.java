@@ -1,79 +1,149 @@
 package cy.cav.framework;
 
-import com.netflix.appinfo.*;
-import com.netflix.discovery.*;
-import com.netflix.discovery.shared.*;
-import jakarta.annotation.*;
-import org.springframework.beans.factory.*;
-import org.springframework.boot.web.context.*;
-import org.springframework.context.event.EventListener;
+import org.slf4j.*;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Knows the other servers of the network, so envelopes can be sent to their worlds.
+///
+/// How servers are found depends on `cav.framework.discovery.mode`:
+/// - `eureka` (default): servers registered in the Eureka server, with [EurekaNetwork]
+/// - `static`: a fixed list of servers written in the configuration, with [StaticNetwork]
+/// - `gossip`: servers telling each other who they know, starting from a few seed URLs, with [GossipNetwork]
+///
+/// Instead of scanning [#servers()] over and over, use [#subscribe(Consumer)] to know when servers join,
+/// leave or change, [#index(Function)] to find servers by what they're able to do, or [#ring(Predicate)]
+/// to spread keys over servers.
+///
+/// @see FrameworkConfig.Discovery
+public abstract class Network {
+    private static final Logger log = LoggerFactory.getLogger(Network.class);
 
-public class Network {
-    private final ObjectProvider<EurekaClient> eurekaClientProvider;
-    private final List<String> applications;
     private final Server server;
-    private @Nullable EurekaClient eurekaClient;
+    private final List<Consumer<Change>> listeners = new CopyOnWriteArrayList<>();
 
     private volatile Map<Long, Server> serverMap = Map.of();
 
-    public Network(ObjectProvider<EurekaClient> eurekaClientProvider,
-                   List<String> applications,
-                   Server server) {
-        this.eurekaClientProvider = Objects.requireNonNull(eurekaClientProvider);
-        this.applications = applications.stream().map(String::toUpperCase).toList();
+    protected Network(Server server) {
         this.server = Objects.requireNonNull(server);
     }
 
-    @EventListener(WebServerInitializedEvent.class)
-    private void onWebServerReady() {
-        eurekaClient = eurekaClientProvider.getObject();
-        eurekaClient.registerEventListener(this::onEurekaEvent);
+    /// Returns the servers known on the network by id, without the server of this network.
+    public Map<Long, Server> servers() {
+        return serverMap;
+    }
 
-        // Refresh the cache now!
-        onEurekaEvent(new CacheRefreshedEvent());
+    /// Calls the listener every time servers join, leave or change, right after [#servers()] is updated.
+    ///
+    /// The listener is called on the thread updating the network; it should be quick. Listeners living shorter
+    /// than the network, like actors, must [cancel][Subscription#cancel()] the subscription when they're done.
+    public Subscription subscribe(Consumer<Change> listener) {
+        Objects.requireNonNull(listener);
+        // Wrap the listener, so subscribing the same listener twice gives two subscriptions.
+        Consumer<Change> subscribed = listener::accept;
+        listeners.add(subscribed);
+        return () -> listeners.remove(subscribed);
+    }
+
+    /// Creates an index of the servers of the network, kept up to date when servers change.
+    ///
+    /// @param keysOf gives the keys of a server, like what it's able to do; called once per server and change
+    public <K> ServerIndex<K> index(Function<Server, ? extends Collection<K>> keysOf) {
+        var index = new ServerIndex<K>(keysOf);
+        // Updates are locked, so no change is missed nor indexed twice.
+        synchronized (this) {
+            subscribe(index::update);
+            index.update(new Change(List.copyOf(serverMap.values()), List.of(), List.of()));
+        }
+        return index;
     }
 
-    @SuppressWarnings("unchecked")
-    private void onEurekaEvent(EurekaEvent event) {
-        if (!(event instanceof CacheRefreshedEvent) || eurekaClient == null) { return; }
-
-        // The Eureka client has updated its cache, let's see which servers are available on the network and
-        // update our local cache.
-
-        var entries = new ArrayList<Map.Entry<Long, Server>>();
-
-        // Look over all registered servers.
-        for (Application application : eurekaClient.getApplications().getRegisteredApplications()) {
-            // Make sure we care about that app
-            if (!applications.contains(application.getName())) { continue; }
-
-            for (InstanceInfo instance : application.getInstances()) {
-                long serverId;
-                try {
-                    // Because the instance id is a string, we need to convert it to a number.
-                    // Server ids are stored in hexadecimal format, so we need to indicate
-                    // that it's in a hexa (16) format.
-                    serverId = Long.parseUnsignedLong(instance.getInstanceId(), 16);
-                } catch (NumberFormatException _) {
-                    // Nothing to do, just not a valid id
-                    return;
-                }
-
-                // Put the server in the map, and don't register ourselves, no need to.
-                if (serverId != server.id()) {
-                    Server newServer = new Server(serverId, application.getName(), instance.getHomePageUrl(),
-                            instance.getMetadata());
-                    entries.add(Map.entry(serverId, newServer));
-                }
+    /// Creates a [HashRing] of the servers matching the filter, including the server of this network,
+    /// kept up to date when servers change.
+    ///
+    /// @param filter tells whether a server is part of the ring, like what it's able to do
+    public HashRing ring(Predicate<Server> filter) {
+        var ring = new HashRing(server, filter);
+        synchronized (this) {
+            subscribe(ring::update);
+            ring.update(new Change(List.copyOf(serverMap.values()), List.of(), List.of()));
+        }
+        return ring;
+    }
+
+    /// Returns the server this network belongs to.
+    protected Server server() {
+        return server;
+    }
+
+    /// Replaces the servers known on the network, and tells listeners what changed.
+    ///
+    /// Servers that didn't change keep the same instance, so they can be used as keys of derived caches.
+    /// Nothing happens when no server changed.
+    ///
+    /// @param servers the servers by id; the server of this network is ignored
+    protected synchronized void updateServers(Map<Long, Server> servers) {
+        Map<Long, Server> previous = serverMap;
+        var next = new HashMap<Long, Server>(servers.size());
+        var added = new ArrayList<Server>();
+        var changed = new ArrayList<Server>();
+        for (Server newServer : servers.values()) {
+            if (newServer.id() == server.id()) {
+                continue;
+            }
+
+            Server oldServer = previous.get(newServer.id());
+            if (oldServer == null) {
+                added.add(newServer);
+            } else if (!oldServer.equals(newServer)) {
+                changed.add(newServer);
+            } else {
+                newServer = oldServer;
+            }
+            next.put(newServer.id(), newServer);
+        }
+
+        var removed = new ArrayList<Server>();
+        for (Server oldServer : previous.values()) {
+            if (!next.containsKey(oldServer.id())) {
+                removed.add(oldServer);
             }
         }
 
-        serverMap = Map.ofEntries(entries.toArray(Map.Entry[]::new));
+        if (added.isEmpty() && changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+
+        serverMap = Map.copyOf(next);
+        var change = new Change(added, removed, changed);
+        for (Consumer<Change> listener : listeners) {
+            try {
+                listener.accept(change);
+            } catch (RuntimeException e) {
+                log.error("Network listener failed for change {}", change, e);
+            }
+        }
     }
 
-    public Map<Long, Server> servers() {
-        return serverMap;
+    /// Stops calling a listener given to [#subscribe(Consumer)].
+    @FunctionalInterface
+    public interface Subscription {
+        /// Stops calling the listener. Does nothing when already cancelled.
+        void cancel();
+    }
+
+    /// What changed in the network since the last update.
+    ///
+    /// @param added   servers that joined the network
+    /// @param removed servers that left the network
+    /// @param changed servers whose URL, metadata or application changed, with their new information
+    public record Change(List<Server> added, List<Server> removed, List<Server> changed) {
+        public Change {
+            added = List.copyOf(added);
+            removed = List.copyOf(removed);
+            changed = List.copyOf(changed);
+        }
     }
 }
@@ -1,14 +1,25 @@
 package cy.cav.framework;
 
+import jakarta.annotation.*;
 import jakarta.servlet.http.*;
 import org.slf4j.*;
 import org.springframework.http.*;
 import org.springframework.web.bind.annotation.*;
 
-/// Receives envelopes from the network using an HTTP endpoint available at path `/mailbox`
+import java.util.*;
+
+/// Receives envelopes from the network using an HTTP endpoint available at path `/mailbox`,
+/// and several envelopes at once at path `/mailbox/batch`.
+///
+/// When the [World] is [overloaded][World#isOverloaded()], envelopes that can be shed are refused with a `503`
+/// response, or listed as refused in the response to a batch, so the sender counts a failure for this server and
+/// slows down (see [ServerHealth]).
 @RestController
 class OutsideReceiver {
     private static final Logger log = LoggerFactory.getLogger(OutsideReceiver.class);
+    private static final LogEvent RECEIVED = LogEvent.of(OutsideReceiver.class, "received");
+    private static final LogEvent REJECTED = LogEvent.of(OutsideReceiver.class, "rejected");
+    private static final LogEvent OVERLOADED = LogEvent.of(OutsideReceiver.class, "overloaded");
     private final World world;
 
     OutsideReceiver(World world) {
@@ -17,18 +28,90 @@ class OutsideReceiver {
 
     @PostMapping("/mailbox")
     ResponseEntity<?> receive(@RequestBody Envelope<Message> envelope, HttpServletRequest httpServletRequest) {
+        if (refuse(envelope, httpServletRequest)) {
+            return overloaded();
+        }
+        String error = accept(envelope, httpServletRequest);
+        if (error != null) {
+            return ResponseEntity.badRequest().body(error);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    /// Receives envelopes sent together. Invalid envelopes are dropped without failing the others,
+    /// so the sender never sends valid envelopes twice.
+    ///
+    /// When the world is overloaded, envelopes that can be shed are refused and the others are accepted; the
+    /// response lists the refused ones, so the sender only fails those.
+    @PostMapping("/mailbox/batch")
+    BatchReceipt receiveBatch(@RequestBody List<Envelope<Message>> envelopes, HttpServletRequest httpServletRequest) {
+        List<Integer> refused = new ArrayList<>();
+        for (int i = 0; i < envelopes.size(); i++) {
+            Envelope<Message> envelope = envelopes.get(i);
+            if (refuse(envelope, httpServletRequest)) {
+                refused.add(i);
+            } else {
+                accept(envelope, httpServletRequest);
+            }
+        }
+        return new BatchReceipt(refused);
+    }
+
+    /// Returns true when the world is too busy to take the envelope.
+    private boolean refuse(Envelope<Message> envelope, HttpServletRequest httpServletRequest) {
+        if (!world.isOverloaded() || !World.isSheddable(envelope)) {
+            return false;
+        }
+
+        if (OVERLOADED.sample()) {
+            log.warn("Too many envelopes waiting; refusing envelopes from host {}, like: {} to {}",
+                    httpServletRequest.getRemoteAddr(), envelope.body().getClass().getSimpleName(),
+                    envelope.receiver());
+        }
+        world.metrics().shed(false, envelope.body() instanceof Message.Request<?>);
+        return true;
+    }
+
+    private static ResponseEntity<?> overloaded() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body("Too many envelopes waiting");
+    }
+
+    /// Gives the envelope to the world, or returns why it's invalid.
+    private @Nullable String accept(Envelope<Message> envelope, HttpServletRequest httpServletRequest) {
         // Make sure this envelope is destined to this server.
         if (world.server().id() != envelope.receiver().serverId()) {
-            log.warn("Received invalid envelope from host {} with a wrong server id: {}",
-                    httpServletRequest.getRemoteAddr(), envelope);
+            if (REJECTED.sample()) {
+                log.warn("Received invalid envelope from host {} with a wrong server id: {}",
+                        httpServletRequest.getRemoteAddr(), envelope);
+            }
 
-            return ResponseEntity.badRequest().body("Wrong server id!");
+            world.metrics().received(false);
+            return "Wrong server id!";
         }
 
         // Then simply give the envelope to the world!
-        log.info("Received envelope from host {}: {}", httpServletRequest.getRemoteAddr(), envelope);
-        world.receive(envelope);
+        if (RECEIVED.sample()) {
+            log.info("Received envelope from host {}: {} to {}", httpServletRequest.getRemoteAddr(),
+                    envelope.body().getClass().getSimpleName(), envelope.receiver());
+        }
+        try {
+            world.receive(envelope);
+        } catch (IllegalArgumentException e) {
+            if (REJECTED.sample()) {
+                log.warn("Received invalid envelope from host {}: {}", httpServletRequest.getRemoteAddr(), envelope, e);
+            }
+            world.metrics().received(false);
+            return e.getMessage();
+        }
 
-        return ResponseEntity.ok().build();
+        world.metrics().received(true);
+        return null;
     }
+
+    /// The response to a batch of envelopes.
+    ///
+    /// @param refused the indexes of the envelopes refused because the world is overloaded, in increasing order
+    record BatchReceipt(List<Integer> refused) { }
 }
@@ -6,86 +6,135 @@ import com.netflix.discovery.shared.*;
 import org.apache.http.HttpHeaders;
 import org.slf4j.*;
 import org.springframework.beans.factory.*;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.context.*;
 import org.springframework.context.event.EventListener;
 import org.springframework.http.*;
-import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.*;
 import org.springframework.stereotype.*;
 import org.springframework.web.reactive.function.client.*;
 
-import java.time.Instant;
+import java.time.*;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+import java.util.function.*;
 
-/// Sends messages to outside actors on the network, using Eureka to find servers.
+/// Sends messages to outside actors on the network, using the [Network] to find servers.
 ///
-/// Used internally by the framework in [World].
+/// The [Transport] used by the framework in [World].
 ///
 /// Messages are sent to the `/mailbox` endpoint of other servers, which [OutsideReceiver] receives.
+/// Several messages to the same server can be sent at once to the `/mailbox/batch` endpoint.
 ///
 /// @see OutsideReceiver
 @Component
-class OutsideSender {
+class OutsideSender implements Transport {
     private static final Logger log = LoggerFactory.getLogger(OutsideSender.class);
 
-    private static final int MAX_SEND_ATTEMPTS = 10;  // Maximum number of attempts to send a message before giving up.
-    private static final long RETRY_DELAY_MS = 1000L; // 1 delay for each try
+    // How long to keep envelopes to servers that aren't known yet, waiting for them to join the network.
+    private static final Duration PARK_TIMEOUT = Duration.ofSeconds(10);
+    // Maximum number of envelopes waiting for their server; envelopes above that fail right away.
+    private static final int MAX_PARKED = 10_000;
 
-    // Scheduler for retrying sending messages
-    @Autowired
-    private TaskScheduler scheduler;
+    // Sending envelopes happens all the time; only log a few of them.
+    private static final LogEvent SENT = LogEvent.of(OutsideSender.class, "sent");
+    private static final LogEvent DELIVERED = LogEvent.of(OutsideSender.class, "delivered");
+    private static final LogEvent RETRIED = LogEvent.of(OutsideSender.class, "retried");
+    private static final LogEvent FAILED = LogEvent.of(OutsideSender.class, "failed");
 
     private final Network network;
+    private final FrameworkMetrics metrics;
+    private final long parkTimeoutNanos;
     private final WebClient webClient; // Allows us to do run requests in a callback fashion
 
-    OutsideSender(Network network) {
+    // Called when we give up sending an envelope, so the world can fail requests early.
+    private volatile Consumer<Envelope<?>> deliveryFailureListener = _ -> { };
+    // Called with envelopes a server refused because it's overloaded, so the world can fail requests early.
+    private volatile Consumer<List<Envelope<?>>> refusedListener = _ -> { };
+    // Called with the id of a server once it accepted envelopes, so the world knows it's up.
+    private volatile LongConsumer deliveredListener = _ -> { };
+
+    // Envelopes waiting for their receiver server to join the network, by server id.
+    // Queues are only touched inside compute methods of the map, which lock their entry.
+    private final ConcurrentMap<Long, Queue<Parked>> parked = new ConcurrentHashMap<>();
+    private final AtomicInteger parkedCount = new AtomicInteger();
+
+    OutsideSender(Network network, FrameworkMetrics metrics) {
+        this(network, metrics, PARK_TIMEOUT);
+    }
+
+    /// @param parkTimeout how long to keep envelopes to servers that aren't known yet
+    OutsideSender(Network network, FrameworkMetrics metrics, Duration parkTimeout) {
         // We need to use ObjectProvider cause otherwise EurekaClient is completely broken
         // and registers with port 0??
         this.network = network;
+        this.metrics = metrics;
+        this.parkTimeoutNanos = parkTimeout.toNanos();
         this.webClient = WebClient.builder()
                 .defaultHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON_VALUE)
                 .build();
+
+        // Send waiting envelopes as soon as their server shows up, and forget servers that left.
+        network.subscribe(change -> {
+            change.added().forEach(server -> sendParked(server.id()));
+            change.changed().forEach(server -> sendParked(server.id()));
+            change.removed().forEach(server -> metrics.peerLeft(server.id()));
+        });
+    }
+
+    /// Gives up on envelopes waiting for their server every second, with the scheduler of the world.
+    @Override
+    public void start(TaskScheduler scheduler) {
+        scheduler.scheduleAtFixedRate(this::failExpiredEnvelopes, Duration.ofSeconds(1));
+    }
+
+    @Override
+    public void onDeliveryFailure(Consumer<Envelope<?>> listener) {
+        this.deliveryFailureListener = Objects.requireNonNull(listener);
+    }
+
+    @Override
+    public void onRefused(Consumer<List<Envelope<?>>> listener) {
+        this.refusedListener = Objects.requireNonNull(listener);
+    }
+
+    @Override
+    public void onDelivered(LongConsumer listener) {
+        this.deliveredListener = Objects.requireNonNull(listener);
     }
 
     /// Sends the envelope destined to an outside actor on the network.
     ///
     /// May not succeed due to network errors.
     ///
-    /// @param retry true when it should retry over and over if the message fails to send
+    /// @param retry true when it should wait for the receiver server to join the network, when it's not known yet
+    @Override
     public void send(Envelope<?> envelope, boolean retry) {
-        send(envelope, retry ? 0 : Integer.MAX_VALUE);
-    }
-
-    private void send(Envelope<?> envelope, int attempt) {
         // Find the URL of the server this envelope should be sent to.
-        Server receiver = network.servers().getOrDefault(envelope.receiver().serverId(), null);
+        Server receiver = network.servers().get(envelope.receiver().serverId());
         String receiverUrl = receiver != null ? receiver.url() : null;
 
         if (receiverUrl == null) {
-            if (attempt < MAX_SEND_ATTEMPTS) {
-                int nextAttempt = attempt + 1;
-                log.warn(
-                        "Failed to find URL for receiver (attempt {}/{}). Retrying in {} ms. Envelope: {}",
-                        nextAttempt, MAX_SEND_ATTEMPTS, RETRY_DELAY_MS, envelope
-                );
-                scheduler.schedule(
-                        () -> send(envelope, nextAttempt),
-                        Instant.now().plusMillis(RETRY_DELAY_MS)
-                );
-            } else {
-                // Retrying exhausted
-                log.error(
-                        "Failed to send envelope after {} attempts, can't find URL for receiver server id. Envelope: {}",
-                        MAX_SEND_ATTEMPTS, envelope
-                );
+            if (!retry || !park(envelope)) {
+                if (FAILED.sample()) {
+                    log.error("Failed to send envelope, can't find URL for receiver server id. {}", describe(envelope));
+                }
                 // TODO: plus tard, envoyer l’enveloppe vers un service d’erreur / dead-letter queue
+                deliveryFailureListener.accept(envelope);
             }
             return;
         }
 
-        // Now send the envelope!
-        log.info("Sending envelope to server at URL {}: {}", receiverUrl, envelope);
+        post(envelope, receiverUrl);
+    }
+
+    /// Sends the envelope to the server at the URL.
+    private void post(Envelope<?> envelope, String receiverUrl) {
+        if (SENT.sample()) {
+            log.info("Sending envelope to server at URL {}: {}", receiverUrl, describe(envelope));
+        }
+        long serverId = envelope.receiver().serverId();
+        long startNanos = System.nanoTime();
         webClient.post()
                 .uri(receiverUrl + (receiverUrl.endsWith("/") ? "mailbox" : "/mailbox"))
                 .contentType(MediaType.APPLICATION_JSON)
@@ -94,13 +143,190 @@ class OutsideSender {
                 .toBodilessEntity()
                 .subscribe(r -> {
                     // We got a response from the OutsideReceiver controller!
+                    metrics.sent(serverId, System.nanoTime() - startNanos, r.getStatusCode().is2xxSuccessful());
                     if (r.getStatusCode().is2xxSuccessful()) {
-                        log.info("Successfully sent envelope to external server at URL {}: {}", receiverUrl, envelope);
+                        DELIVERED.count();
+                        deliveredListener.accept(serverId);
                     } else {
-                        log.error("Failed to send envelope to external server at URL {} (status code {}): {}",
-                                receiverUrl, r.getStatusCode(), envelope);
+                        if (FAILED.sample()) {
+                            log.error("Failed to send envelope to external server at URL {} (status code {}): {}",
+                                    receiverUrl, r.getStatusCode(), describe(envelope));
+                        }
+                        deliveryFailureListener.accept(envelope);
+                    }
+                }, e -> {
+                    metrics.sent(serverId, System.nanoTime() - startNanos, false);
+                    if (isOverloaded(e)) {
+                        refusedListener.accept(List.of(envelope));
+                        return;
+                    }
+                    if (FAILED.sample()) {
+                        log.error("Failed to send envelope to external server at URL {}: {}",
+                                receiverUrl, describe(envelope), e);
+                    }
+                    deliveryFailureListener.accept(envelope);
+                });
+    }
+
+    /// Sends the envelopes to outside actors, in one HTTP request per server.
+    ///
+    /// When the server of some envelopes isn't known yet, these envelopes are sent one by one like in [#send].
+    @Override
+    public void sendAll(List<Envelope<?>> envelopes, boolean retry) {
+        Map<Long, List<Envelope<?>>> byServer = new HashMap<>();
+        for (Envelope<?> envelope : envelopes) {
+            byServer.computeIfAbsent(envelope.receiver().serverId(), _ -> new ArrayList<>()).add(envelope);
+        }
+
+        byServer.forEach((serverId, batch) -> {
+            Server receiver = network.servers().get(serverId);
+            if (batch.size() == 1 || receiver == null || receiver.url() == null) {
+                batch.forEach(envelope -> send(envelope, retry));
+                return;
+            }
+
+            String receiverUrl = receiver.url();
+            if (SENT.sample()) {
+                log.info("Sending {} envelopes to server at URL {}, like: {}", batch.size(), receiverUrl,
+                        describe(batch.getFirst()));
+            }
+            long startNanos = System.nanoTime();
+            webClient.post()
+                    .uri(receiverUrl + (receiverUrl.endsWith("/") ? "mailbox/batch" : "/mailbox/batch"))
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .bodyValue(batch)
+                    .retrieve()
+                    .toEntity(OutsideReceiver.BatchReceipt.class)
+                    .subscribe(r -> {
+                        metrics.sent(serverId, System.nanoTime() - startNanos, r.getStatusCode().is2xxSuccessful());
+                        if (!r.getStatusCode().is2xxSuccessful()) {
+                            if (FAILED.sample()) {
+                                log.error("Failed to send {} envelopes to external server at URL {} (status code {})",
+                                        batch.size(), receiverUrl, r.getStatusCode());
+                            }
+                            batch.forEach(deliveryFailureListener);
+                            return;
+                        }
+
+                        // The server takes what it can when overloaded, and tells which envelopes it refused.
+                        OutsideReceiver.BatchReceipt receipt = r.getBody();
+                        List<Envelope<?>> refused = new ArrayList<>();
+                        if (receipt != null) {
+                            for (int index : receipt.refused()) {
+                                if (index >= 0 && index < batch.size()) {
+                                    refused.add(batch.get(index));
+                                }
+                            }
+                        }
+                        DELIVERED.count();
+                        if (refused.isEmpty()) {
+                            deliveredListener.accept(serverId);
+                        } else {
+                            refusedListener.accept(refused);
+                        }
+                    }, e -> {
+                        metrics.sent(serverId, System.nanoTime() - startNanos, false);
+                        if (isOverloaded(e)) {
+                            refusedListener.accept(batch);
+                            return;
+                        }
+                        if (FAILED.sample()) {
+                            log.error("Failed to send {} envelopes to external server at URL {}",
+                                    batch.size(), receiverUrl, e);
+                        }
+                        batch.forEach(deliveryFailureListener);
+                    });
+        });
+    }
+
+    // True when the server answered 503: it's up, but has too many envelopes waiting.
+    private static boolean isOverloaded(Throwable e) {
+        return e instanceof WebClientResponseException response
+               && response.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE;
+    }
+
+    /// Keeps the envelope until its receiver server joins the network. Returns false when too many envelopes
+    /// are already waiting.
+    private boolean park(Envelope<?> envelope) {
+        if (parkedCount.incrementAndGet() > MAX_PARKED) {
+            parkedCount.decrementAndGet();
+            return false;
+        }
+
+        long serverId = envelope.receiver().serverId();
+        var entry = new Parked(envelope, System.nanoTime() + parkTimeoutNanos);
+        parked.compute(serverId, (_, queue) -> {
+            queue = queue != null ? queue : new ArrayDeque<>();
+            queue.add(entry);
+            return queue;
+        });
+
+        metrics.sendRetried();
+        if (RETRIED.sample()) {
+            log.warn("Receiver server isn't known yet; waiting up to {} ms for it to join the network. {}",
+                    TimeUnit.NANOSECONDS.toMillis(parkTimeoutNanos), describe(envelope));
+        }
+
+        // The server may have joined while we were parking the envelope.
+        sendParked(serverId);
+        return true;
+    }
+
+    /// Sends all envelopes waiting for the server, once its URL is known.
+    ///
+    /// Until then, they keep waiting until their deadline.
+    private void sendParked(long serverId) {
+        Server receiver = network.servers().get(serverId);
+        if (receiver == null || receiver.url() == null) {
+            return;
+        }
+
+        Queue<Parked> queue = parked.remove(serverId);
+        if (queue == null) {
+            return;
+        }
+
+        parkedCount.addAndGet(-queue.size());
+        for (Parked entry : queue) {
+            post(entry.envelope, receiver.url());
+        }
+    }
+
+    /// Gives up on envelopes whose server didn't show up in time. Run by the scheduler given to [#start].
+    void failExpiredEnvelopes() {
+        long now = System.nanoTime();
+        List<Envelope<?>> expired = new ArrayList<>();
+        for (Long serverId : parked.keySet()) {
+            parked.computeIfPresent(serverId, (_, queue) -> {
+                queue.removeIf(entry -> {
+                    if (now - entry.deadlineNanos >= 0) {
+                        expired.add(entry.envelope);
+                        return true;
                     }
-                }, e -> log.error("Failed to send envelope to external server at URL {}: {}",
-                        receiverUrl, envelope, e));
+                    return false;
+                });
+                return queue.isEmpty() ? null : queue;
+            });
+        }
+        if (expired.isEmpty()) {
+            return;
+        }
+
+        parkedCount.addAndGet(-expired.size());
+        for (Envelope<?> envelope : expired) {
+            if (FAILED.sample()) {
+                log.error("Failed to send envelope after waiting {} ms, can't find URL for receiver server id. {}",
+                        TimeUnit.NANOSECONDS.toMillis(parkTimeoutNanos), describe(envelope));
+            }
+            deliveryFailureListener.accept(envelope);
+        }
+    }
+
+    private record Parked(Envelope<?> envelope, long deadlineNanos) { }
+
+    // A short description of the envelope, without formatting the whole message.
+    private static String describe(Envelope<?> envelope) {
+        return envelope.body().getClass().getSimpleName() + " from " + envelope.sender()
+               + " to " + envelope.receiver() + " (request " + envelope.requestId() + ")";
     }
 }
\ No newline at end of file
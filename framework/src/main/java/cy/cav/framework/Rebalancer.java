@@ -0,0 +1,151 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/// Moves [Migratable] actors from this server to the least busy server when this server is much busier than
+/// the others, for instance when a new server joins the network.
+///
+/// Every period, asks the [Migrator] of each candidate server how busy its world is. The load of a server is its
+/// number of migratable actors plus its mailbox depth. When the load of this server is above the average (plus the
+/// tolerance), moves actors to the least loaded server, until both would be close to the average.
+///
+/// Each server only moves its own actors, so there's nothing to coordinate: a rebalancer runs on every server.
+///
+/// Answers and finished moves come back as messages, since a timed out request completes outside the main loop.
+///
+/// ## Example
+///
+/// ```java
+/// world.spawn(init -> new Rebalancer(init, () -> network.servers().values(), config.rebalancing()));
+/// ```
+///
+/// @see World#migrate(ActorAddress, Server)
+public class Rebalancer extends Actor {
+    // Not worth moving fewer actors than that.
+    private static final int MIN_MOVES = 10;
+
+    private final Supplier<? extends Collection<Server>> candidates;
+    private final FrameworkConfig.Rebalancing settings;
+    // Actors still moving from the last round; no new round starts before they're done.
+    private int moving = 0;
+    // Loads of the other servers in this round, and how many of them didn't answer yet.
+    private final Map<Server, Migrator.Load> loads = new HashMap<>();
+    private int waiting = 0;
+
+    static final Router<Rebalancer> router = new Router<Rebalancer>()
+            .route(Round.class, Rebalancer::round)
+            .route(LoadReceived.class, Rebalancer::loadReceived)
+            .route(MigrationDone.class, Rebalancer::migrationDone);
+
+    /// @param candidates the servers actors can move to; this server is ignored when given
+    /// @param settings   how often to look at the load, and how many actors to move
+    public Rebalancer(ActorInit init, Supplier<? extends Collection<Server>> candidates,
+                      FrameworkConfig.Rebalancing settings) {
+        super(init);
+        this.candidates = Objects.requireNonNull(candidates);
+        this.settings = Objects.requireNonNull(settings);
+    }
+
+    @Override
+    protected void spawned() {
+        sendDelayed(address, new Round(), settings.period());
+    }
+
+    @Override
+    protected void process(Envelope<?> envelope) {
+        router.process(this, envelope);
+    }
+
+    private void round(Round message) {
+        sendDelayed(address, new Round(), settings.period());
+        if (moving > 0 || waiting > 0) {
+            return;
+        }
+
+        List<Server> servers = candidates.get().stream()
+                .filter(s -> s.id() != world.server().id())
+                .toList();
+        if (servers.isEmpty()) {
+            return;
+        }
+
+        // Ask everyone at once, then balance when the last one answered (or failed to).
+        loads.clear();
+        waiting = servers.size();
+        for (Server server : servers) {
+            query(Migrator.of(server), new Migrator.LoadRequest())
+                    .whenComplete((load, e) -> send(address, new LoadReceived(server, e == null ? load : null)));
+        }
+    }
+
+    private void loadReceived(LoadReceived message) {
+        if (message.load() != null) {
+            loads.put(message.server(), message.load());
+        }
+        if (--waiting == 0) {
+            balance(world.load());
+        }
+    }
+
+    private void migrationDone(MigrationDone message) {
+        moving--;
+    }
+
+    private void balance(Migrator.Load own) {
+        if (loads.isEmpty()) {
+            return;
+        }
+
+        long ownLoad = loadOf(own);
+        long total = ownLoad;
+        Server lightest = null;
+        long lightestLoad = Long.MAX_VALUE;
+        for (var entry : loads.entrySet()) {
+            long load = loadOf(entry.getValue());
+            total += load;
+            if (load < lightestLoad) {
+                lightest = entry.getKey();
+                lightestLoad = load;
+            }
+        }
+
+        double average = (double) total / (loads.size() + 1);
+        if (ownLoad <= average * (1 + settings.tolerance())) {
+            return;
+        }
+
+        // Don't go below the average here, nor above it there.
+        long moves = (long) Math.min(ownLoad - average, average - lightestLoad);
+        moves = Math.min(moves, Math.min(settings.maxMoves(), own.migratable()));
+        if (moves < MIN_MOVES) {
+            return;
+        }
+
+        log.info("Moving {} actors to server {} (load: {} here, {} there, {} on average)",
+                moves, lightest.idString(), ownLoad, lightestLoad, Math.round(average));
+        Server target = lightest;
+        for (ActorAddress actor : world.migratableActors((int) moves)) {
+            moving++;
+            world.migrate(actor, target).whenComplete((_, _) -> send(address, new MigrationDone()));
+        }
+    }
+
+    private static long loadOf(Migrator.Load load) {
+        return (long) load.migratable() + load.mailboxDepth();
+    }
+
+    /// Sent by the rebalancer to itself to look at the load of servers.
+    @MessagePriority.Of(MessagePriority.BULK)
+    private record Round() implements Message.Notification { }
+
+    /// Sent by the rebalancer to itself once a server answered with its load, or failed to (null load).
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    private record LoadReceived(Server server, @Nullable Migrator.Load load) implements Message.Notification { }
+
+    /// Sent by the rebalancer to itself once an actor moved, or failed to.
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    private record MigrationDone() implements Message.Notification { }
+}
@@ -0,0 +1,22 @@
+package cy.cav.framework;
+
+/// Thrown during a request-response conversation using [Message.Response] when the receiver actor
+/// failed to give a proper response.
+///
+/// Unlike [ActorNotFoundException], it's unchecked: it's usually caused by a bug in the receiver,
+/// or by a server going down, which the sender can't do much about.
+///
+/// @see RequestFailedResponse
+public class RequestFailedException extends RuntimeException {
+    private final RequestFailedResponse.Reason reason;
+
+    public RequestFailedException(String message, RequestFailedResponse.Reason reason) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /// Why the request failed.
+    public RequestFailedResponse.Reason reason() {
+        return reason;
+    }
+}
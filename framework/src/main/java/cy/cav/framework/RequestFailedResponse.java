@@ -0,0 +1,21 @@
+package cy.cav.framework;
+
+/// Sent as a response to a request when the receiver actor couldn't give a proper response.
+///
+/// The sender sees it as a [RequestFailedException].
+///
+/// @param address the address of the actor which failed to respond
+/// @param reason  why the request failed
+/// @param detail  some more info about the failure, like the message type; can be empty
+public record RequestFailedResponse(ActorAddress address, Reason reason, String detail) implements Message.Response {
+    public enum Reason {
+        /// The actor doesn't know how to handle this type of request.
+        UNHANDLED,
+        /// The actor threw an exception while processing the request.
+        FAILED,
+        /// The request couldn't be delivered to the server of the actor.
+        UNREACHABLE,
+        /// The actor, or its whole world, had too many envelopes waiting to take the request.
+        OVERLOADED
+    }
+}
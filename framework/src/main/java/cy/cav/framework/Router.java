@@ -1,6 +1,7 @@
 package cy.cav.framework;
 
 import java.util.*;
+import java.util.concurrent.*;
 
 /// Gives a handy syntax to process incoming messages by their type.
 ///
@@ -53,59 +54,60 @@ import java.util.*;
 /// @see Envelope
 /// @see Actor
 public class Router<A extends Actor> {
-    // Class ---> Function for requests
-    private final Map<Class<? extends Message>, SyncEnvelopeHandler<A, ?, ?>> syncMappings = new HashMap<>();
-    // Class ---> Function for notifications
-    private final Map<Class<? extends Message>, AsyncEnvelopeHandler<A, ?>> asyncMappings = new HashMap<>();
+    // Class ---> Function, for both requests and notifications
+    private final Map<Class<? extends Message>, Route<A>> routes = new HashMap<>();
+    // Message type id ---> Function, compiled from the routes above on first use.
+    // Replaced by null when a route is added, so it gets compiled again.
+    private volatile Route<A>[] table = null;
 
     /// Processes the envelope using the functions given to this router; more precisely,
     /// the function matching the envelope's message type.
     ///
-    /// Does nothing if the message type isn't recognized. (For now)
+    /// When no function handles the message type:
+    /// - for requests, responds immediately with a [RequestFailedResponse] so the sender doesn't wait
+    ///   for nothing until the request times out
+    /// - for notifications, does nothing
     ///
     /// @param actor    the actor who's processing this envelope
     /// @param envelope the envelope the actor just received
-    @SuppressWarnings("unchecked")
     public void process(A actor, Envelope<?> envelope) {
-        if (envelope.body() instanceof Message.Request) {
-            // This is a request, find a function that can respond to the request.
-            Message.Response response = respond(actor, (Envelope<Message.Request<Message.Response>>) envelope);
-
-            if (response != null) {
-                // We called the function and got a response message in return; send our response now.
-                actor.respond(envelope, response);
-            }
-        } else {
-            // This is a notification, find a function that can respond to the notification.
-            receive(actor, envelope);
+        Route<A>[] table = this.table;
+        if (table == null) {
+            table = compile();
         }
 
-        // todo: respond err if message type not handled by either handler in requests
-        //       Would be bad to let a request timeout because we don't know how to answer...
-    }
-
-    /// Used internally. Finds the function to use for a request-response envelope, and calls it.
-    ///
-    /// @return the message created by the function; null when no function found, can't be null if there's a function
-    @SuppressWarnings("unchecked")
-    private <O extends Message.Response, I extends Message.Request<O>> O respond(A actor, Envelope<I> envelope) {
-        var handler = (SyncEnvelopeHandler<A, I, O>) syncMappings.getOrDefault(envelope.body().getClass(), null);
+        // Find the function with a simple array lookup.
+        int typeId = MessageTypes.idOf(envelope.body().getClass());
+        Route<A> route = typeId < table.length ? table[typeId] : null;
 
-        if (handler == null) {
-            return null;
-        } else {
-            return Objects.requireNonNull(handler.respond(actor, envelope), "Response can't be null!");
+        if (route != null) {
+            route.dispatch(actor, envelope);
+        } else if (envelope.body() instanceof Message.Request<?>) {
+            // Would be bad to let a request timeout because we don't know how to answer...
+            actor.respond(envelope, new RequestFailedResponse(actor.address(), RequestFailedResponse.Reason.UNHANDLED,
+                    envelope.body().getClass().getName()));
         }
     }
 
-    /// Used internally. Finds the function to use for a notification envelope, and calls it.
+    /// Builds the table of functions indexed by message type id.
     @SuppressWarnings("unchecked")
-    private <I extends Message> void receive(A actor, Envelope<I> envelope) {
-        var handler = (AsyncEnvelopeHandler<A, I>) asyncMappings.getOrDefault(envelope.body().getClass(), null);
-
-        if (handler != null) {
-            handler.receive(actor, envelope);
+    private Route<A>[] compile() {
+        int length = 0;
+        for (Class<? extends Message> messageClass : routes.keySet()) {
+            length = Math.max(length, MessageTypes.idOf(messageClass) + 1);
         }
+
+        Route<A>[] table = new Route[length];
+        routes.forEach((messageClass, route) -> table[MessageTypes.idOf(messageClass)] = route);
+
+        this.table = table;
+        return table;
+    }
+
+    private Router<A> addRoute(Class<? extends Message> messageClass, Route<A> route) {
+        routes.put(messageClass, route);
+        table = null; // Compile again on next use
+        return this;
     }
 
     /// Calls the function when receiving a **request** of the given class.
@@ -113,10 +115,14 @@ public class Router<A extends Actor> {
     /// @param messageClass the class of the message
     /// @param function     the function to call when receiving the message of this class,
     ///                      with signature `ResponseType func(Actor, Envelope<MessageType>)`
+    @SuppressWarnings("unchecked")
     public <O extends Message.Response, I extends Message.Request<O>> Router<A> route(Class<I> messageClass,
                                                                              SyncEnvelopeHandler<A, I, O> function) {
-        syncMappings.put(messageClass, function);
-        return this;
+        return addRoute(messageClass, (actor, envelope) -> {
+            O response = function.respond(actor, (Envelope<I>) envelope);
+            // We called the function and got a response message in return; send our response now.
+            actor.respond(envelope, Objects.requireNonNull(response, "Response can't be null!"));
+        });
     }
 
     /// Calls the function when receiving a **request** of the given class.
@@ -124,21 +130,48 @@ public class Router<A extends Actor> {
     /// @param messageClass the class of the message
     /// @param function     the function to call when receiving the message of this class,
     ///                      with signature `ResponseType func(Actor, MessageType)`
+    @SuppressWarnings("unchecked")
     public <O extends Message.Response, I extends Message.Request<O>> Router<A> route(Class<I> messageClass,
                                                                              SyncBodyHandler<A, I, O> function) {
-        return route(messageClass, (A actor, Envelope<I> envelope) -> function.respond(actor, envelope.body()));
+        return addRoute(messageClass, (actor, envelope) -> {
+            O response = function.respond(actor, (I) envelope.body());
+            actor.respond(envelope, Objects.requireNonNull(response, "Response can't be null!"));
+        });
     }
 
-    // TODO: Completable future for request/response... If we ever need that?
+    /// Calls the function when receiving a **request** of the given class, and responds once the
+    /// [CompletionStage] it returns completes: for instance, after querying another actor.
+    ///
+    /// When the stage fails, the sender receives a [RequestFailedResponse].
+    ///
+    /// @param messageClass the class of the message
+    /// @param function     the function to call when receiving the message of this class,
+    ///                      with signature `CompletionStage<ResponseType> func(Actor, MessageType)`
+    @SuppressWarnings("unchecked")
+    public <O extends Message.Response, I extends Message.Request<O>> Router<A> routeDeferred(Class<I> messageClass,
+                                                                                     DeferredBodyHandler<A, I, O> function) {
+        return addRoute(messageClass, (actor, envelope) -> {
+            CompletionStage<? extends O> response = function.respond(actor, (I) envelope.body());
+            response.whenComplete((body, e) -> {
+                if (e == null) {
+                    actor.respond(envelope, Objects.requireNonNull(body, "Response can't be null!"));
+                } else {
+                    Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                    actor.respond(envelope, new RequestFailedResponse(actor.address(),
+                            RequestFailedResponse.Reason.FAILED, cause.toString()));
+                }
+            });
+        });
+    }
 
     /// Calls the function when receiving a **notification** of the given class.
     ///
     /// @param messageClass the class of the message
     /// @param function     the function to call when receiving the message of this class,
     ///                      with signature `void func(Actor, Envelope<MessageType>)`
+    @SuppressWarnings("unchecked")
     public <I extends Message.Notification> Router<A> route(Class<I> messageClass, AsyncEnvelopeHandler<A, I> function) {
-        asyncMappings.put(messageClass, function);
-        return this;
+        return addRoute(messageClass, (actor, envelope) -> function.receive(actor, (Envelope<I>) envelope));
     }
 
     /// Calls the function when receiving a **notification** of the given class.
@@ -146,9 +179,15 @@ public class Router<A extends Actor> {
     /// @param messageClass the class of the message
     /// @param function     the function to call when receiving the message of this class,
     ///                      with signature `void func(Actor, MessageType>`
+    @SuppressWarnings("unchecked")
     public <I extends Message.Notification> Router<A> route(Class<I> messageClass, AsyncBodyHandler<A, I> function) {
-        asyncMappings.put(messageClass, (A actor, Envelope<I> envelope) -> function.receive(actor, envelope.body()));
-        return this;
+        return addRoute(messageClass, (actor, envelope) -> function.receive(actor, (I) envelope.body()));
+    }
+
+    /// A compiled route: calls the user's function and sends the response, if there's one.
+    @FunctionalInterface
+    private interface Route<A extends Actor> {
+        void dispatch(A actor, Envelope<?> envelope);
     }
 
     // The following looks like entire gibberish, but that's how we need to define lambdas in Java!
@@ -163,6 +202,11 @@ public class Router<A extends Actor> {
         O respond(A actor, I body);
     }
 
+    @FunctionalInterface
+    public interface DeferredBodyHandler<A extends Actor, I extends Message.Request<O>, O extends Message.Response> {
+        CompletionStage<? extends O> respond(A actor, I body);
+    }
+
     @FunctionalInterface
     public interface AsyncEnvelopeHandler<A extends Actor, I extends Message> {
         void receive(A actor, Envelope<I> envelope);
@@ -0,0 +1,88 @@
+package cy.cav.framework;
+
+import org.slf4j.*;
+
+import java.util.concurrent.*;
+
+/// Knows which servers of the network seem down, so actors stop sending them messages for a while and pick
+/// other servers instead.
+///
+/// Each server has a [CircuitBreaker]. Failures come from envelopes the [Transport] couldn't deliver, from servers
+/// refusing envelopes because they're overloaded, and from messages never acknowledged (see [cy.cav.framework.reliable.AckRetryer]). Once several messages in a row
+/// failed, the server is unhealthy: nothing is sent to it until a wait is over, then a single message probes it.
+/// Envelopes the server accepted, responses to requests sent to it, and acknowledgments from it make it healthy
+/// again right away. Other envelopes coming from the server don't: they say nothing about what we send it.
+///
+/// Get it with [World#serverHealth()]. Safe to use from any thread.
+public final class ServerHealth {
+    private static final Logger log = LoggerFactory.getLogger(ServerHealth.class);
+    private static final LogEvent OPENED = LogEvent.of(ServerHealth.class, "opened");
+
+    private final long selfId;
+    // Breakers of servers that failed lately, by server id. Healthy servers have none.
+    private final ConcurrentLongMap<CircuitBreaker> breakers = new ConcurrentLongMap<>();
+
+    ServerHealth(long selfId) {
+        this.selfId = selfId;
+    }
+
+    /// Returns true when the server can be picked to receive messages: it's healthy, or it's waiting for a probe.
+    public boolean isHealthy(long serverId) {
+        CircuitBreaker breaker = breakers.size() == 0 ? null : breakers.get(serverId);
+        return breaker == null || breaker.isHealthy(System.nanoTime());
+    }
+
+    /// Returns true when a message can be sent to the server now. When the server is waiting for a probe,
+    /// only returns true once: the caller's message is the probe.
+    public boolean allows(long serverId) {
+        CircuitBreaker breaker = breakers.size() == 0 ? null : breakers.get(serverId);
+        return breaker == null || breaker.allows(System.nanoTime());
+    }
+
+    /// Records a message that reached the server, or an answer to a message sent to it.
+    public void succeeded(long serverId) {
+        // Most of the time, every server is fine: don't lock anything.
+        if (breakers.size() == 0) {
+            return;
+        }
+
+        CircuitBreaker breaker = breakers.remove(serverId);
+        if (breaker != null && breaker.isOpen()) {
+            log.info("Server {} is back", Long.toHexString(serverId));
+        }
+    }
+
+    /// Records a message that couldn't reach the server, or wasn't acknowledged in time.
+    public void failed(long serverId) {
+        if (serverId == selfId || serverId == 0) {
+            return;
+        }
+
+        CircuitBreaker breaker = breakers.get(serverId);
+        if (breaker == null) {
+            synchronized (this) {
+                breaker = breakers.get(serverId);
+                if (breaker == null) {
+                    breaker = new CircuitBreaker();
+                    breakers.put(serverId, breaker);
+                }
+            }
+        }
+
+        if (breaker.failed(System.nanoTime()) && OPENED.sample()) {
+            log.warn("Server {} seems down; sending it nothing for {} s", Long.toHexString(serverId),
+                    TimeUnit.NANOSECONDS.toSeconds(breaker.openNanos()));
+        }
+    }
+
+    /// Returns the number of servers messages can't go through, except for probes.
+    int unhealthyCount() {
+        int[] count = {0};
+        breakers.forEach(breaker -> {
+            if (breaker.isOpen()) {
+                count[0]++;
+            }
+        });
+        return count[0];
+    }
+}
@@ -0,0 +1,113 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Finds servers of the [Network] by key, like what they're able to do, without scanning all servers.
+///
+/// Keys of a server are computed once when it joins or changes, then the index is updated from the changes
+/// of the network. Lookups don't allocate and take constant time; use them freely on hot paths.
+///
+/// The server of the network itself is never part of the index.
+///
+/// ## Example
+///
+/// ```java
+/// ServerIndex<String> byApp = network.index(server -> List.of(server.appName()));
+/// List<Server> services = byApp.servers("cav-service");
+/// ```
+///
+/// @param <K> the type of keys
+/// @see Network#index(Function)
+public final class ServerIndex<K> {
+    private final Function<Server, ? extends Collection<K>> keysOf;
+
+    // Keys of every indexed server, to remove servers from the right places.
+    private final Map<Long, Collection<K>> keysByServer = new HashMap<>();
+    // Replaced when servers change, so readers never lock.
+    private volatile Map<K, Servers> index = Map.of();
+
+    ServerIndex(Function<Server, ? extends Collection<K>> keysOf) {
+        this.keysOf = keysOf;
+    }
+
+    /// Returns the servers having the key, in no particular order.
+    public List<Server> servers(K key) {
+        Servers servers = index.get(key);
+        return servers != null ? servers.list : List.of();
+    }
+
+    /// Returns true when the server with the id has the key.
+    public boolean contains(K key, long serverId) {
+        Servers servers = index.get(key);
+        return servers != null && servers.byId.containsKey(serverId);
+    }
+
+    /// Returns a random server having the key, or null when there's none.
+    public @Nullable Server pick(K key) {
+        List<Server> servers = servers(key);
+        return servers.isEmpty() ? null : servers.get(ThreadLocalRandom.current().nextInt(servers.size()));
+    }
+
+    /// Updates the index with the changes of the network. Called by [Network].
+    synchronized void update(Network.Change change) {
+        var next = new HashMap<>(index);
+        Set<K> touched = new HashSet<>();
+
+        for (Server server : change.removed()) {
+            remove(server, next, touched);
+        }
+        for (Server server : change.changed()) {
+            remove(server, next, touched);
+            add(server, next, touched);
+        }
+        for (Server server : change.added()) {
+            add(server, next, touched);
+        }
+
+        if (!touched.isEmpty()) {
+            next.values().removeIf(servers -> servers.list.isEmpty());
+            index = Map.copyOf(next);
+        }
+    }
+
+    private void remove(Server server, Map<K, Servers> next, Set<K> touched) {
+        Collection<K> keys = keysByServer.remove(server.id());
+        if (keys == null) {
+            return;
+        }
+
+        for (K key : keys) {
+            Servers servers = next.get(key);
+            if (servers != null) {
+                var byId = new HashMap<>(servers.byId);
+                byId.remove(server.id());
+                next.put(key, new Servers(byId));
+                touched.add(key);
+            }
+        }
+    }
+
+    private void add(Server server, Map<K, Servers> next, Set<K> touched) {
+        Collection<K> keys = List.copyOf(keysOf.apply(server));
+        keysByServer.put(server.id(), keys);
+
+        for (K key : keys) {
+            Servers servers = next.get(key);
+            var byId = servers != null ? new HashMap<>(servers.byId) : new HashMap<Long, Server>();
+            byId.put(server.id(), server);
+            next.put(key, new Servers(byId));
+            touched.add(key);
+        }
+    }
+
+    // Servers having a key, as a list for random picks and as a map for lookups by id.
+    private record Servers(List<Server> list, Map<Long, Server> byId) {
+        Servers(Map<Long, Server> byId) {
+            this(List.copyOf(byId.values()), Map.copyOf(byId));
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package cy.cav.framework;
+
+import java.util.*;
+
+/// Knows a fixed list of servers, written in the configuration under `cav.framework.discovery.peers`.
+///
+/// No discovery server is needed, and all servers are known as soon as the world starts, which suits tests
+/// and small deployments. Servers can't join or leave while running.
+public class StaticNetwork extends Network {
+    /// @param server the server of this network
+    /// @param peers  all servers of the network; the server of this network may be part of it
+    /// @throws IllegalArgumentException when two servers have the same id
+    public StaticNetwork(Server server, List<Server> peers) {
+        super(server);
+        var servers = new HashMap<Long, Server>();
+        for (Server peer : peers) {
+            Server duplicate = servers.putIfAbsent(peer.id(), peer);
+            if (duplicate != null) {
+                throw new IllegalArgumentException("Two servers of cav.framework.discovery.peers have the id "
+                        + peer.idString() + ": " + duplicate.url() + " and " + peer.url());
+            }
+        }
+        updateServers(servers);
+    }
+}
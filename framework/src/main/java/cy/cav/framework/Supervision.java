@@ -0,0 +1,205 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Built-in [Supervisor]s, to give to [World#spawn(Function, Function)] and its variants.
+///
+/// - [#restart(Function)] replaces a failing actor by a fresh one at the same address, waiting longer and longer
+///   between restarts, and gives up when it restarts too often
+/// - [#escalate(ActorAddress)] despawns a failing actor and tells another actor, like the one that spawned it
+///
+/// ## Example
+///
+/// ```java
+/// world.spawn(Calculator::new, Supervision.restart(Calculator::new)
+///         .backoff(Duration.ofMillis(100), Duration.ofSeconds(30))
+///         .maxRestarts(10, Duration.ofMinutes(1))
+///         .escalateTo(address));
+/// ```
+public final class Supervision {
+    private Supervision() {}
+
+    /// Restarts failing actors with a fresh state made by the factory, usually the same function that spawned them.
+    ///
+    /// By default, waits 100 ms before the first restart, doubling up to 30 seconds, and gives up after 10 restarts
+    /// in a minute. Configure it with the methods of [Restart].
+    ///
+    /// Only for actors whose state can be made again from scratch: actors that
+    /// [prevent restarts][Actor#preventRestarts(String)], like actors with an [cy.cav.framework.reliable.AckRetryer],
+    /// can't be spawned with it.
+    public static Restart restart(Function<ActorInit, Actor> factory) {
+        return new Restart(factory);
+    }
+
+    /// Despawns failing actors, and sends an [ActorFailed] notification to the parent.
+    public static Function<Actor, Supervisor> escalate(ActorAddress parent) {
+        Objects.requireNonNull(parent);
+        return actor -> new Escalating(actor, parent);
+    }
+
+    /// How to restart failing actors. Each spawned actor gets its own count of restarts.
+    public static final class Restart implements Function<Actor, Supervisor> {
+        private final Function<ActorInit, Actor> factory;
+        private long minBackoffNanos = TimeUnit.MILLISECONDS.toNanos(100);
+        private long maxBackoffNanos = TimeUnit.SECONDS.toNanos(30);
+        private int maxRestarts = 10;
+        private long windowNanos = TimeUnit.MINUTES.toNanos(1);
+        private @Nullable ActorAddress parent;
+
+        private Restart(Function<ActorInit, Actor> factory) {
+            this.factory = Objects.requireNonNull(factory);
+        }
+
+        /// Sets how long to wait before restarting the actor: `min` the first time, then twice as long for each
+        /// restart in the window, up to `max`. Envelopes received meanwhile are [stashed][Supervisor#stash(Envelope)]
+        /// and processed by the restarted actor.
+        public Restart backoff(Duration min, Duration max) {
+            if (min.isNegative() || max.compareTo(min) < 0) {
+                throw new IllegalArgumentException("Invalid backoff: " + min + " to " + max);
+            }
+            this.minBackoffNanos = min.toNanos();
+            this.maxBackoffNanos = max.toNanos();
+            return this;
+        }
+
+        /// Sets how many restarts are allowed within the window. Past that, the actor despawns, and the parent
+        /// is told when there's one.
+        public Restart maxRestarts(int maxRestarts, Duration window) {
+            if (maxRestarts < 0 || window.isNegative() || window.isZero()) {
+                throw new IllegalArgumentException("Invalid restart limit: " + maxRestarts + " in " + window);
+            }
+            this.maxRestarts = maxRestarts;
+            this.windowNanos = window.toNanos();
+            return this;
+        }
+
+        /// Sends an [ActorFailed] notification to the parent when giving up on the actor.
+        public Restart escalateTo(ActorAddress parent) {
+            this.parent = Objects.requireNonNull(parent);
+            return this;
+        }
+
+        @Override
+        public Supervisor apply(Actor actor) {
+            return new Restarting(actor, this, new ArrayDeque<>());
+        }
+
+        /// Returns how long to wait before the next restart, after `restarts` restarts in the window.
+        private long backoffNanos(int restarts) {
+            long backoff = minBackoffNanos << Math.min(restarts, 30);
+            return backoff < 0 || backoff > maxBackoffNanos ? maxBackoffNanos : backoff;
+        }
+    }
+
+    /// Sent to the parent of an actor that failed and was despawned.
+    ///
+    /// @param actor    the address of the actor
+    /// @param error    the error that made it fail the last time
+    /// @param restarts the number of times it was restarted before giving up
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    public record ActorFailed(ActorAddress actor, String error, int restarts) implements Message.Notification { }
+
+    /// Sent by a restarting supervisor to the actor, once the backoff is over.
+    @MessagePriority.Of(MessagePriority.SYSTEM)
+    record RestartNow() implements Message.Notification { }
+
+    private static final class Restarting extends Supervisor {
+        private final Restart strategy;
+        // When the actor failed lately, from the oldest to the most recent; shared by all restarts of the actor.
+        private final ArrayDeque<Long> failures;
+
+        Restarting(Actor actor, Restart strategy, ArrayDeque<Long> failures) {
+            super(actor);
+            if (actor.restartsPrevented() != null) {
+                throw new IllegalArgumentException("Actor " + actor.address + " can't be restarted: "
+                                                   + actor.restartsPrevented());
+            }
+            this.strategy = strategy;
+            this.failures = failures;
+        }
+
+        @Override
+        protected HandleAction handle(Exception e, Envelope<?> envelope) {
+            long now = System.nanoTime();
+            while (!failures.isEmpty() && now - failures.peekFirst() > strategy.windowNanos) {
+                failures.pollFirst();
+            }
+            int restarts = failures.size();
+
+            if (restarts >= strategy.maxRestarts) {
+                actor.log.error("Actor {} failed {} times in {} s; despawning it", actor.address, restarts + 1,
+                        TimeUnit.NANOSECONDS.toSeconds(strategy.windowNanos), e);
+                if (strategy.parent != null) {
+                    world.send(actor.address, strategy.parent, new ActorFailed(actor.address, e.toString(), restarts));
+                }
+                actor.despawn();
+                // The actor fails the request itself.
+                return HandleAction.IGNORE;
+            }
+
+            // The envelope made the actor fail; don't give it to the restarted actor.
+            world.respond(actor.address, envelope, new RequestFailedResponse(actor.address,
+                    RequestFailedResponse.Reason.FAILED, e.toString()));
+            failures.addLast(now);
+            long backoffNanos = strategy.backoffNanos(restarts);
+            if (failed(actor).sample()) {
+                actor.log.warn("Actor {} failed while processing {}; restarting it in {} ms", actor.address,
+                        envelope.body().getClass().getSimpleName(), TimeUnit.NANOSECONDS.toMillis(backoffNanos), e);
+            }
+            actor.sendDelayed(actor.address, new RestartNow(), Duration.ofNanos(backoffNanos));
+            return HandleAction.ATTACH;
+        }
+
+        @Override
+        protected ProcessAction process(Envelope<?> envelope) {
+            if (!(envelope.body() instanceof RestartNow)) {
+                stash(envelope);
+                return ProcessAction.STAY_ATTACHED;
+            }
+
+            Actor fresh;
+            try {
+                fresh = world.restart(actor, strategy.factory, a -> new Restarting(a, strategy, failures));
+            } catch (RuntimeException e) {
+                // Try again later, like any other failure.
+                if (handle(e, envelope) == HandleAction.ATTACH) {
+                    return ProcessAction.STAY_ATTACHED;
+                }
+                for (Envelope<?> stashed : takeStash()) {
+                    world.respond(world.server().address(), stashed, new ActorNotFoundResponse(actor.address));
+                }
+                return ProcessAction.DESPAWN;
+            }
+            fresh.replay(takeStash());
+            // This actor is gone; the fresh one took its place.
+            return ProcessAction.STAY_ATTACHED;
+        }
+    }
+
+    private static final class Escalating extends Supervisor {
+        private final ActorAddress parent;
+
+        Escalating(Actor actor, ActorAddress parent) {
+            super(actor);
+            this.parent = parent;
+        }
+
+        @Override
+        protected HandleAction handle(Exception e, Envelope<?> envelope) {
+            actor.log.error("Actor {} failed; despawning it and telling {}", actor.address, parent, e);
+            world.send(actor.address, parent, new ActorFailed(actor.address, e.toString(), 0));
+            actor.despawn();
+            return HandleAction.IGNORE;
+        }
+
+        @Override
+        protected ProcessAction process(Envelope<?> envelope) {
+            return ProcessAction.DETACH;
+        }
+    }
+}
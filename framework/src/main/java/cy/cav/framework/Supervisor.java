@@ -9,22 +9,42 @@ import java.util.*;
 /// The [#handle(Exception, Envelope)] method is used to know what to do when encountering a specific error.
 ///
 /// The [#process(Envelope)] method is called when the supervisor is attached to the actor, meaning it has
-/// taken control of the actor temporarily.
+/// taken control of the actor temporarily. Envelopes it can't handle yet can be [stashed][#stash(Envelope)]:
+/// once detached, the actor processes them right away, in the order they came, before any newer envelope.
 public abstract class Supervisor {
     private static final Logger log = LoggerFactory.getLogger(Supervisor.class);
+    private static final LogEvent STASH_FULL = LogEvent.of(Supervisor.class, "stash-full");
+    private static final int DEFAULT_MAX_STASH = 1000;
+    private static final Envelope<?>[] NO_ENVELOPES = new Envelope<?>[0];
+    // Failures are sampled by actor class, so an actor failing all the time doesn't hide the failures of others.
+    private static final ClassValue<LogEvent> FAILED = new ClassValue<>() {
+        @Override
+        protected LogEvent computeValue(Class<?> actorClass) {
+            return LogEvent.of(actorClass, "failed");
+        }
+    };
 
     /// The actor this supervisor... supervises.
     protected final Actor actor;
     /// The world this supervisor's actor is in.
     protected final World world;
-    /// The stash of envelopes to send after being detached from the actor.
-    ///
-    /// Is emptied after every detachment.
-    protected final List<Envelope<?>> stash = new ArrayList<>();
+    /// The envelopes the actor processes once detached, from the oldest to the most recent.
+    private final ArrayDeque<Envelope<?>> stash = new ArrayDeque<>();
+    private final int maxStash;
 
+    /// Creates a supervisor stashing at most 1000 envelopes.
     protected Supervisor(Actor actor) {
+        this(actor, DEFAULT_MAX_STASH);
+    }
+
+    /// Creates a supervisor stashing at most `maxStash` envelopes.
+    protected Supervisor(Actor actor, int maxStash) {
+        if (maxStash < 1) {
+            throw new IllegalArgumentException("maxStash must be positive: " + maxStash);
+        }
         this.actor = actor;
         this.world = actor.world;
+        this.maxStash = maxStash;
     }
 
     /// Returns what the supervisor should do when it sees a particular error.
@@ -47,22 +67,80 @@ public abstract class Supervisor {
         actor.process(envelope);
     }
 
-    /// Called by [Actor] when it has detached the supervisor so it can send messages to World
-    /// when the actor is in now in the ALIVE state.
-    void flushStash() {
-        stash.forEach(world::receive);
+    /// Keeps the envelope for the actor to process once the supervisor detaches.
+    ///
+    /// When the stash is full, the oldest notification is dropped to make room; when there's none, requests fail
+    /// right away with [RequestFailedResponse.Reason#OVERLOADED] and notifications are dropped.
+    protected final void stash(Envelope<?> envelope) {
+        if (stash.size() >= maxStash && !dropOldestNotification()) {
+            world.metrics().stashShed();
+            if (STASH_FULL.sample()) {
+                log.warn("Stash of actor {} is full ({} envelopes); dropping {}", actor, stash.size(),
+                        envelope.body().getClass().getSimpleName());
+            }
+            world.respond(actor.address, envelope, new RequestFailedResponse(actor.address,
+                    RequestFailedResponse.Reason.OVERLOADED, envelope.body().getClass().getSimpleName()));
+            return;
+        }
+
+        stash.addLast(envelope);
+        world.metrics().stashed();
+    }
+
+    /// Returns the number of stashed envelopes.
+    protected final int stashSize() {
+        return stash.size();
+    }
+
+    /// Called by [Actor] when it has detached the supervisor: returns the stashed envelopes, from the oldest to the
+    /// most recent, and empties the stash.
+    Envelope<?>[] takeStash() {
+        if (stash.isEmpty()) {
+            return NO_ENVELOPES;
+        }
+        Envelope<?>[] envelopes = stash.toArray(NO_ENVELOPES);
         stash.clear();
+        return envelopes;
+    }
+
+    /// Called by [Actor] when an envelope of the stash attached this supervisor again: puts back the envelopes of the
+    /// stash not processed yet, starting at `from`, before the ones stashed since.
+    void unstash(Envelope<?>[] envelopes, int from) {
+        for (int i = envelopes.length - 1; i >= from; i--) {
+            stash.addFirst(envelopes[i]);
+        }
+    }
+
+    /// Returns the event to sample failures of the actor with.
+    static LogEvent failed(Actor actor) {
+        return FAILED.get(actor.getClass());
+    }
+
+    private boolean dropOldestNotification() {
+        Iterator<Envelope<?>> iterator = stash.iterator();
+        while (iterator.hasNext()) {
+            Envelope<?> envelope = iterator.next();
+            if (envelope.body() instanceof Message.Notification) {
+                iterator.remove();
+                world.metrics().stashShed();
+                return true;
+            }
+        }
+        return false;
     }
 
     public enum HandleAction {
         /// Ignore the message and let the actor continue living normally.
+        ///
+        /// If the message is a request, the sender immediately receives a [RequestFailedResponse].
         IGNORE,
         /// Take over control of the actor and start processing messages instead of running its own behavior.
         ATTACH
     }
 
     public enum ProcessAction {
-        /// Stop processing the actor's messages and send any [stashed messages][Supervisor#stash].
+        /// Stop processing the actor's messages and let the actor process the
+        /// [stashed messages][Supervisor#stash(Envelope)].
         DETACH,
         /// Keep processing the actor's messages.
         STAY_ATTACHED,
@@ -71,6 +149,9 @@ public abstract class Supervisor {
     }
 
     /// Logs message processing failures and continues as if nothing happened.
+    ///
+    /// Failures are logged once per second at most for each actor class, so a failing actor doesn't flood the logs.
+    /// See [Supervision] for other strategies.
     public static final class Default extends Supervisor {
         public Default(Actor actor) {
             super(actor);
@@ -78,7 +159,9 @@ public abstract class Supervisor {
 
         @Override
         protected HandleAction handle(Exception e, Envelope<?> envelope) {
-            log.error("Exception happened while actor {} is processing envelope", actor, e);
+            if (failed(actor).sample()) {
+                log.error("Exception happened while actor {} is processing envelope", actor, e);
+            }
             return HandleAction.IGNORE;
         }
 
@@ -0,0 +1,66 @@
+package cy.cav.framework;
+
+import jakarta.annotation.*;
+
+import java.util.*;
+
+/// Takes the place of an actor moving to another server; see [World#migrate(ActorAddress, Server)].
+///
+/// While the actor is moving, holds the envelopes sent to it. Once it moved, forwards them to its new address,
+/// and tells the servers of their senders where the actor went, until the tombstone expires.
+final class Tombstone extends Actor {
+    // Envelopes received while the actor is moving; null once it moved or failed to.
+    private @Nullable List<Envelope<?>> held = new ArrayList<>();
+    private @Nullable ActorAddress movedTo;
+    private boolean released = false;
+    private volatile long expiresAtNanos;
+    // Servers already told where the actor went.
+    private final Set<Long> toldServers = new HashSet<>();
+
+    Tombstone(ActorInit init) {
+        super(init);
+    }
+
+    // Can be called by the main loop while the migration completes on another thread, so everything is synchronized.
+    @Override
+    protected synchronized void process(Envelope<?> envelope) {
+        if (held != null) {
+            held.add(envelope);
+        } else if (movedTo != null) {
+            world.forward(envelope, movedTo);
+
+            long senderServer = envelope.sender().serverId();
+            if (toldServers.add(senderServer)) {
+                send(Migrator.of(senderServer), new Migrator.ActorMoved(address, movedTo));
+            }
+        } else if (released) {
+            // The actor is back in the world.
+            world.receive(envelope);
+        }
+    }
+
+    /// Forwards the held envelopes, and all envelopes coming next, to the new address of the actor.
+    synchronized void movedTo(ActorAddress newAddress, long expiresAtNanos) {
+        this.movedTo = newAddress;
+        this.expiresAtNanos = expiresAtNanos;
+        List<Envelope<?>> envelopes = held;
+        held = null;
+        if (envelopes != null) {
+            envelopes.forEach(this::process);
+        }
+    }
+
+    /// Gives the held envelopes back to the world, once the actor is back in it because it failed to move.
+    synchronized void release() {
+        released = true;
+        List<Envelope<?>> envelopes = held;
+        held = null;
+        if (envelopes != null) {
+            envelopes.forEach(world::receive);
+        }
+    }
+
+    long expiresAtNanos() {
+        return expiresAtNanos;
+    }
+}
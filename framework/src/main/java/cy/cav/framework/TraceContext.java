@@ -0,0 +1,25 @@
+package cy.cav.framework;
+
+import java.util.concurrent.*;
+
+/// Identifies the span of a traced envelope, and the trace it belongs to.
+///
+/// A trace starts when a message is sent outside of any trace (like from a REST controller) and the
+/// [tracer][cy.cav.framework.tracing.Tracer] decides to sample it. Then, every message sent while an actor
+/// processes a traced envelope becomes a child span in the same trace, even across servers.
+///
+/// @param traceId      the id shared by all spans of the trace
+/// @param spanId       the id of this span, unique in the trace
+/// @param parentSpanId the id of the span that caused this one; 0 for the root span
+public record TraceContext(long traceId, long spanId, long parentSpanId) {
+    /// Starts a new trace with a root span.
+    public static TraceContext root() {
+        var random = ThreadLocalRandom.current();
+        return new TraceContext(random.nextLong(), random.nextLong(), 0);
+    }
+
+    /// Creates a span in the same trace, with this span as its parent.
+    public TraceContext child() {
+        return new TraceContext(traceId, ThreadLocalRandom.current().nextLong(), spanId);
+    }
+}
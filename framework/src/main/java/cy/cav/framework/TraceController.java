@@ -0,0 +1,28 @@
+package cy.cav.framework;
+
+import cy.cav.framework.tracing.*;
+import org.springframework.http.*;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.*;
+
+import java.util.*;
+
+/// Gives the spans of a trace at `/traces/{traceId}`, when they're kept in an [InMemorySpanStore].
+///
+/// The trace id is written in decimal, as in spans and envelopes.
+@RestController
+class TraceController {
+    private final SpanStore store;
+
+    TraceController(SpanStore store) {
+        this.store = store;
+    }
+
+    @GetMapping("/traces/{traceId}")
+    List<Span> trace(@PathVariable long traceId) {
+        if (!(store instanceof InMemorySpanStore memoryStore)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Spans aren't kept in memory.");
+        }
+        return memoryStore.trace(traceId);
+    }
+}
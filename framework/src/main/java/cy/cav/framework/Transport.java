@@ -0,0 +1,49 @@
+package cy.cav.framework;
+
+import org.springframework.scheduling.*;
+
+import java.util.*;
+import java.util.function.*;
+
+/// Carries envelopes from a [World] to the worlds of other servers.
+///
+/// The framework sends envelopes over HTTP with [OutsideSender]; other transports can be used to run
+/// several worlds in the same process, like in tests and load harnesses.
+public interface Transport {
+    /// Sends the envelope destined to an actor living on another server.
+    ///
+    /// May not succeed; when the transport gives up on the envelope, it calls the delivery failure listener.
+    ///
+    /// @param retry true when it should retry over and over if the message fails to send
+    void send(Envelope<?> envelope, boolean retry);
+
+    /// Sends envelopes destined to actors living on other servers, at once when the transport can.
+    ///
+    /// Sends envelopes one by one by default.
+    ///
+    /// @param retry true when it should retry over and over if a message fails to send
+    default void sendAll(List<Envelope<?>> envelopes, boolean retry) {
+        for (Envelope<?> envelope : envelopes) {
+            send(envelope, retry);
+        }
+    }
+
+    /// Called once by [World#start()] with the scheduler of the world, to run the periodic work of the transport.
+    ///
+    /// Does nothing by default.
+    default void start(TaskScheduler scheduler) { }
+
+    /// Sets the function to call when an envelope couldn't be sent. Used by [World].
+    void onDeliveryFailure(Consumer<Envelope<?>> listener);
+
+    /// Sets the function to call when a server refused envelopes because it's overloaded, with the refused envelopes
+    /// of that server. Used by [World].
+    ///
+    /// Never called by default: envelopes that couldn't be sent then all go to the delivery failure listener.
+    default void onRefused(Consumer<List<Envelope<?>>> listener) { }
+
+    /// Sets the function to call with the id of a server once it accepted envelopes. Used by [World].
+    ///
+    /// Never called by default: servers then only seem up again once they answer requests or acknowledge messages.
+    default void onDelivered(LongConsumer listener) { }
+}
@@ -1,5 +1,7 @@
 package cy.cav.framework;
 
+import cy.cav.framework.reliable.*;
+import cy.cav.framework.tracing.*;
 import jakarta.annotation.*;
 import org.slf4j.*;
 import org.springframework.context.*;
@@ -21,36 +23,120 @@ import java.util.function.*;
 /// - send requests with [#query(ActorAddress, ActorAddress, Message.Request)]
 /// - start processing messages with [#start()]
 ///
+/// - spawn actors on the server owning a key with [#spawn(HashRing, UUID, ActorSnapshot)]
+/// - move actors to another server with [#migrate(ActorAddress, Server)]
+/// - share acknowledged messages between actors with [#sharedAckStore(Class)]
+///
 /// ## What you CANNOT do with it
 /// - despawn actors; only actors can despawn themselves using [Actor#despawn()]
 ///
+/// ## Diagnosing
+///
+/// The world doesn't log every envelope. Instead, it emits [Java Flight Recorder events][FrameworkEvents]
+/// for dispatches, spawns, timers and timeouts, which can be recorded in production.
+///
 /// @see Actor
 public class World implements SmartLifecycle {
     /// Maximum value for a special actor number, exclusive.
     public static final long SPECIAL_ACTOR_NUM_MAX = 66536;
+    /// Special number of the [Migrator] spawned in every world. The top of the special range is kept
+    /// for the framework.
+    public static final long MIGRATOR_NUMBER = SPECIAL_ACTOR_NUM_MAX - 1;
+
+    // How long to wait for a response before failing the request.
+    private static final long REQUEST_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    // How long an actor that moved leaves a tombstone behind, and how long senders remember where it went.
+    private static final long TOMBSTONE_TTL_NANOS = TimeUnit.MINUTES.toNanos(5);
+    // How many times to ask a silent server to abort a migration or spawn before giving up.
+    private static final int MIGRATION_ABORT_ATTEMPTS = 5;
+    // Limits of shared ack stores: requests are usually sent again within minutes.
+    private static final int SHARED_ACK_STRIPES = 16;
+    private static final int SHARED_ACK_MAX_ENTRIES = 200_000;
+    private static final Duration SHARED_ACK_TTL = Duration.ofHours(1);
+    // Default limits of the mailbox, when the world isn't made by the framework.
+    private static final int DEFAULT_MAX_ENVELOPES = 200_000;
+    private static final int DEFAULT_MAX_ENVELOPES_PER_ACTOR = 10_000;
 
     // Used to write messages in the console with priorities (warning, info, error)
     private static final Logger log = LoggerFactory.getLogger(World.class);
+    // When overloaded, envelopes are shed by the thousands.
+    private static final LogEvent SHED = LogEvent.of(World.class, "shed");
+    // A broken supervisor may fail for every envelope.
+    private static final LogEvent DISPATCH_FAILED = LogEvent.of(World.class, "dispatch-failed");
 
-    private final BlockingQueue<Envelope<?>> mailbox = new LinkedBlockingQueue<>();
-    private final ConcurrentMap<Long, Actor> actors = new ConcurrentHashMap<>();
-    private final ConcurrentMap<Long, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final Mailbox mailbox = new Mailbox();
+    // Actors and pending requests are indexed by primitive longs, so the main loop never boxes numbers.
+    private final ActorTable actors = new ActorTable();
+    private final ConcurrentLongMap<PendingRequest> pendingRequests = new ConcurrentLongMap<>();
+    // Tombstones of actors that moved to another server, in the order they expire.
+    private final Queue<Tombstone> tombstones = new ConcurrentLinkedQueue<>();
+    // Where actors of other servers went, learned from their tombstones. Almost always empty.
+    private final ConcurrentMap<ActorAddress, Redirect> redirects = new ConcurrentHashMap<>();
+    private final Migrations migrations = new Migrations();
+    private final ConcurrentMap<Class<?>, SharedAckStore<?>> sharedAckStores = new ConcurrentHashMap<>();
+    private final ServerHealth serverHealth;
+    private volatile int maxEnvelopes = DEFAULT_MAX_ENVELOPES;
+    private volatile int maxEnvelopesPerActor = DEFAULT_MAX_ENVELOPES_PER_ACTOR;
 
     private final Server server;
-    private final OutsideSender outsideSender;
+    private final Transport transport;
     private final TaskScheduler taskScheduler;
+    private final FrameworkMetrics metrics;
+    private final Tracer tracer;
 
     private volatile boolean running = false;
     private volatile Thread mainLoopThread = null;
+    // The trace of the envelope being dispatched. Only used by the main loop thread.
+    private @Nullable TraceContext currentTrace = null;
 
     private final AtomicLong nextActorNumber = new AtomicLong(SPECIAL_ACTOR_NUM_MAX);
     private final AtomicLong nextRequestId = new AtomicLong(1);
 
+    // Gives the time for envelopes without reading the system clock for every message.
+    private final CoarseClock clock = new CoarseClock();
+
     /// Creates a new [World]. Called by [Framework].
-    World(Server server, OutsideSender outsideSender, TaskScheduler taskScheduler) {
+    World(Server server, Transport transport, TaskScheduler taskScheduler, FrameworkMetrics metrics,
+          Tracer tracer) {
         this.server = Objects.requireNonNull(server);
-        this.outsideSender = Objects.requireNonNull(outsideSender);
+        this.transport = Objects.requireNonNull(transport);
         this.taskScheduler = Objects.requireNonNull(taskScheduler);
+        this.metrics = Objects.requireNonNull(metrics);
+        this.tracer = Objects.requireNonNull(tracer);
+        this.serverHealth = new ServerHealth(server.id());
+
+        transport.onDeliveryFailure(this::deliveryFailed);
+        transport.onRefused(this::refused);
+        transport.onDelivered(serverHealth::succeeded);
+
+        metrics.gauge("cav.world.mailbox.depth", "Envelopes waiting to be dispatched", mailbox::size);
+        for (MessagePriority priority : MessagePriority.values()) {
+            metrics.gauge("cav.world.mailbox.lane.depth", "Envelopes waiting to be dispatched, by priority",
+                    () -> mailbox.size(priority), "priority", priority.name().toLowerCase(Locale.ROOT));
+        }
+        metrics.gauge("cav.world.actors", "Actors living in the world", actors::size);
+        metrics.gauge("cav.world.requests.pending", "Requests waiting for a response", pendingRequests::size);
+        metrics.gauge("cav.servers.unhealthy", "Servers that seem down, receiving nothing but probes",
+                serverHealth::unhealthyCount);
+    }
+
+    /// Sets the limits of the mailbox (200000 envelopes, and 10000 per actor by default). Past a limit, requests fail
+    /// right away with [RequestFailedResponse.Reason#OVERLOADED], and the oldest notifications are dropped.
+    ///
+    /// Responses and [system][MessagePriority#SYSTEM] messages are never shed. Actors can have their own limit
+    /// with [Actor#mailboxLimit(int)].
+    ///
+    /// @param maxEnvelopes         the maximum number of envelopes waiting to be dispatched
+    /// @param maxEnvelopesPerActor the maximum number of envelopes waiting for a single actor
+    /// @return this world
+    public World mailboxLimits(int maxEnvelopes, int maxEnvelopesPerActor) {
+        if (maxEnvelopes < 1 || maxEnvelopesPerActor < 1) {
+            throw new IllegalArgumentException("Mailbox limits must be positive: " + maxEnvelopes + ", "
+                                               + maxEnvelopesPerActor);
+        }
+        this.maxEnvelopes = maxEnvelopes;
+        this.maxEnvelopesPerActor = maxEnvelopesPerActor;
+        return this;
     }
 
     /// Starts the message-processing loop in a new thread running in the background.
@@ -61,6 +147,8 @@ public class World implements SmartLifecycle {
             throw new IllegalStateException("The world cannot start more than one time.");
         }
         running = true;
+        spawn(Migrator::new, MIGRATOR_NUMBER);
+        transport.start(taskScheduler);
         mainLoopThread = Thread.ofPlatform()
                 .name("World Main Loop")
                 .start(this::startMainLoop);
@@ -86,13 +174,20 @@ public class World implements SmartLifecycle {
         while (running) {
             // First off, read the incoming envelope from the queue.
             // If there's no incoming envelope yet, the "take()" call will wait until one arrives.
-            Envelope<?> envelope;
+            Mailbox.Entry entry;
             try {
-                envelope = mailbox.take();
+                entry = mailbox.take();
             } catch (InterruptedException e) {
                 // The thread is stopping; stop listening to messages in the envelope queue.
                 break;
             }
+            Envelope<?> envelope = entry.envelope();
+
+            // Give the envelope back to the actor it was counted for, which may not live at its address anymore.
+            if (entry.countedFor() != null && !entry.countedFor().dequeued(envelope)) {
+                // The actor had too many envelopes; this notification is one of the oldest ones, drop it.
+                continue;
+            }
 
             // Make sure this envelope is actually destined for this server. Else it doesn't make any sense.
             if (envelope.receiver().serverId() != server.id()) {
@@ -100,9 +195,17 @@ public class World implements SmartLifecycle {
                 continue;
             }
 
-            // See if this envelope is destined for this server, in which case we're processing a
-            // response to a request.
-            if (envelope.receiver().isServerAddress()) {
+            Instant dispatchedAt = clock.now();
+            metrics.queued(envelope.sentAt(), dispatchedAt, envelope.sender().serverId() == server.id(),
+                    MessagePriority.of(envelope));
+
+            // Messages sent while handling this envelope will continue its trace.
+            TraceContext trace = envelope.trace();
+            currentTrace = trace;
+
+            // See if this envelope is a response to a request. Responses are sent to the address of the sender
+            // of the request: the server address when the world made the request, or the address of the actor.
+            if (envelope.receiver().isServerAddress() || envelope.body() instanceof Message.Response) {
                 // Find the request this envelope responds to.
                 PendingRequest request = pendingRequests.remove(envelope.requestId());
                 if (request == null) {
@@ -110,40 +213,67 @@ public class World implements SmartLifecycle {
                     continue;
                 }
 
-                // If an actor sent this request, we need to make sure it's still alive!
+                // If an actor sent this request, we need to make sure it's still alive, and didn't move!
                 // Otherwise, ignore the request.
-                if (request.senderActorNum != 0 && !actors.containsKey(request.senderActorNum)) {
+                if (request.senderActorNum != 0 && !isAlive(request.senderActorNum)) {
                     log.info("Received response envelope for request {}, but sender is dead! {}", envelope.requestId(), envelope);
                     continue;
                 }
 
                 // Complete the future with the message contained inside the envelope.
-                log.debug("Received response envelope for request {}: {}", envelope.requestId(), envelope);
+                long startNanos = System.nanoTime();
                 try {
                     var future = (CompletableFuture<Object>) request.future;
                     if (envelope.body() instanceof ActorNotFoundResponse(ActorAddress address)) {
                         future.completeExceptionally(new ActorNotFoundException("Failed to find actor " + address));
+                    } else if (envelope.body() instanceof RequestFailedResponse(var address, var reason, var detail)) {
+                        future.completeExceptionally(new RequestFailedException(
+                                "Actor " + address + " failed to respond (" + reason + "): " + detail, reason));
                     } else {
                         future.complete(envelope.body());
                     }
                 } catch (Exception e) {
                     log.error("Exception occurred while processing request response for envelope {}", envelope, e);
                 }
+                if (trace != null) {
+                    tracer.record(envelope, trace, dispatchedAt, System.nanoTime() - startNanos);
+                }
 
                 // We're done; read the next envelope.
                 continue;
             }
 
             // Find the actor to send the envelope to.
-            Actor receiver = actors.getOrDefault(envelope.receiver().actorNumber(), null);
+            Actor receiver = actors.get(envelope.receiver().actorNumber());
             if (receiver != null) {
                 // The actor has been found! Let it process the envelope.
-                log.debug("Received envelope for actor {}: {}", receiver, envelope);
+                var event = new FrameworkEvents.EnvelopeDispatched();
+                event.begin();
+                long startNanos = System.nanoTime();
                 try {
                     receiver.acceptEnvelope(envelope);
                 } catch (Exception e) {
                     // In case the supervisor doesn't do its work properly...
-                    log.error("Exception occured while actor {} is processing envelope {}", receiver, envelope, e);
+                    if (DISPATCH_FAILED.sample()) {
+                        log.error("Exception occured while actor {} is processing envelope {}", receiver, envelope, e);
+                    }
+                    // Don't let the sender wait for a response that will never come.
+                    respond(envelope.receiver(), envelope,
+                            new RequestFailedResponse(envelope.receiver(), RequestFailedResponse.Reason.FAILED, e.toString()));
+                }
+                long processingNanos = System.nanoTime() - startNanos;
+                event.end();
+                if (event.shouldCommit()) {
+                    event.actorClass = receiver.getClass();
+                    event.messageType = envelope.body().getClass();
+                    event.receiverActor = envelope.receiver().actorNumber();
+                    event.requestId = envelope.requestId();
+                    event.queued = Math.max(0, CoarseClock.nanosBetween(envelope.sentAt(), dispatchedAt));
+                    event.commit();
+                }
+                metrics.dispatched(receiver.getClass(), envelope.body().getClass(), processingNanos);
+                if (trace != null) {
+                    tracer.record(envelope, trace, dispatchedAt, processingNanos);
                 }
             } else {
                 // Then the actor is either:
@@ -158,11 +288,11 @@ public class World implements SmartLifecycle {
             }
         }
 
+        currentTrace = null;
+
         // The main loop has ended; it's time to destroy all actors.
         log.info("Main loop ended; despawning all actors...");
-        for (Actor actor : actors.values()) {
-            actor.reportDespawned();
-        }
+        actors.forEach(Actor::reportDespawned);
     }
 
     /// Spawns a new actor using the given creator function, with a generated actor number.
@@ -224,28 +354,278 @@ public class World implements SmartLifecycle {
         Actor actor = creator.apply(new ActorInit(this, id));
         Objects.requireNonNull(actor, "The created actor is null!");
 
+        // Make its supervisor before registering it, so a supervisor refusing the actor leaves nothing behind.
+        Supervisor supervisor = supervisorCreator != null ? supervisorCreator.apply(actor) : null;
+
         // Register the actor in the map of existing actors and let it know that we've spawned it.
         Actor existing = actors.putIfAbsent(id.actorNumber(), actor);
         if (existing != null) {
             throw new IllegalStateException("An actor with the same number already exists! " + actorNumber);
         }
         // todo: what if this throws an exception? + possible race condition
-        actor.reportSpawned(supervisorCreator != null ? supervisorCreator.apply(actor) : null);
+        actor.reportSpawned(supervisor);
 
-        log.debug("New actor of id {} spawned: {}", id, actor);
+        var event = new FrameworkEvents.ActorSpawned();
+        if (event.shouldCommit()) {
+            event.actorClass = actor.getClass();
+            event.actorNumber = actorNumber;
+            event.commit();
+        }
 
         // Return the id we created.
         return id;
     }
 
+    /// Called by [Supervision] to replace a failed actor by a fresh one at the same address. The failed actor
+    /// despawns, which cancels its timers, and envelopes waiting for it go to the fresh one. They still count for
+    /// the mailbox limit of the failed actor, not the fresh one.
+    ///
+    /// @return the fresh actor, which isn't given the failed actor's stash yet
+    Actor restart(Actor actor, Function<ActorInit, Actor> factory, Function<Actor, Supervisor> supervisorCreator) {
+        long actorNumber = actor.address().actorNumber();
+        Actor fresh = factory.apply(new ActorInit(this, actor.address()));
+        Objects.requireNonNull(fresh, "The created actor is null!");
+        Supervisor supervisor = supervisorCreator.apply(fresh);
+        if (!actors.replace(actorNumber, actor, fresh)) {
+            throw new IllegalStateException("Actor " + actor.address() + " can't restart");
+        }
+
+        actor.reportDespawned();
+        fresh.reportSpawned(supervisor);
+
+        var event = new FrameworkEvents.ActorSpawned();
+        if (event.shouldCommit()) {
+            event.actorClass = fresh.getClass();
+            event.actorNumber = actorNumber;
+            event.commit();
+        }
+        metrics.restarted(fresh.getClass());
+        return fresh;
+    }
+
+    /// Spawns an actor from its snapshot, using the function registered in [#migrations()]. Used for actors moving
+    /// from another server, and actors placed here by [#spawn(HashRing, UUID, ActorSnapshot)].
+    ActorAddress spawnFrom(ActorSnapshot snapshot) {
+        return spawn(init -> migrations.create(init, snapshot));
+    }
+
+    /// Moves a [Migratable] actor of this world to another server.
+    ///
+    /// Takes a [snapshot][Migratable#snapshot()] of the actor, and asks the [Migrator] of the other server to spawn
+    /// it again. Meanwhile, envelopes sent to the actor are held. Then:
+    /// - when the actor spawned on the other server, it despawns here, and leaves a tombstone at its address for
+    ///   5 minutes. The tombstone forwards envelopes to the new address, and tells the servers of their senders
+    ///   where the actor went, so their next envelopes go there directly. After that, the old address is unknown.
+    /// - otherwise, the actor stays here and processes the envelopes it missed.
+    ///
+    /// When the other server doesn't answer, the actor may have spawned there anyway: before taking the actor back,
+    /// the other server is asked to [abort][Migrator.AbortMigration] the migration, a few times if needed. When
+    /// the actor did spawn, it's moved after all. An actor is only taken back without an answer once the other
+    /// server stayed silent for all attempts, which means it's most likely down.
+    ///
+    /// Must be called on the main loop, by an actor. The actor must be [alive][ActorState#ALIVE].
+    ///
+    /// @param actorAddress the address of the actor to move
+    /// @param target       the server to move the actor to, which must know how to spawn it
+    ///                     (see [Migrations#register(Class, BiFunction)])
+    /// @return a [CompletionStage] completing with the new address of the actor, or failing when it didn't move
+    public CompletionStage<ActorAddress> migrate(ActorAddress actorAddress, Server target) {
+        if (Thread.currentThread() != mainLoopThread) {
+            throw new IllegalStateException("Actors can only be moved by actors, on the main loop.");
+        }
+        if (actorAddress.serverId() != server.id() || target.id() == server.id()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException(
+                    "Can't move actor " + actorAddress + " to server " + target.idString()));
+        }
+
+        long actorNumber = actorAddress.actorNumber();
+        Actor actor = actors.get(actorNumber);
+        if (!(actor instanceof Migratable migratable) || actor.state() != ActorState.ALIVE) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Actor " + actorAddress + " can't move"));
+        }
+
+        // Take the snapshot before anything else: if it fails, nothing changed.
+        ActorSnapshot snapshot = migratable.snapshot();
+        var tombstone = new Tombstone(new ActorInit(this, actorAddress));
+        if (!actors.replace(actorNumber, actor, tombstone)) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Actor " + actorAddress + " can't move"));
+        }
+        tombstone.reportSpawned(null);
+
+        var event = new FrameworkEvents.ActorMigrated();
+        event.begin();
+        UUID migrationId = UUID.randomUUID();
+        return query(null, Migrator.of(target), new Migrator.SpawnMigrated(actorAddress, snapshot, migrationId))
+                .thenApply(Migrator.Spawned::address)
+                .exceptionallyCompose(e -> abort(target, new Migrator.AbortMigration(actorAddress, migrationId),
+                        "actor " + actorAddress + " moved there; keeping it here", e, 1))
+                .handle((newAddress, e) -> {
+                    event.end();
+                    boolean moved = e == null;
+                    if (moved) {
+                        actor.reportDespawned();
+                        tombstone.movedTo(newAddress, System.nanoTime() + TOMBSTONE_TTL_NANOS);
+                        tombstones.add(tombstone);
+                    } else {
+                        log.warn("Failed to move actor {} to server {}", actorAddress, target.idString(), e);
+                        actors.replace(actorNumber, tombstone, actor);
+                        tombstone.release();
+                    }
+                    metrics.migrated(moved);
+
+                    if (event.shouldCommit()) {
+                        event.actorClass = actor.getClass();
+                        event.actorNumber = actorNumber;
+                        event.targetServer = target.id();
+                        event.moved = moved;
+                        event.commit();
+                    }
+
+                    if (!moved) {
+                        throw e instanceof CompletionException ce ? ce : new CompletionException(e);
+                    }
+                    return newAddress;
+                });
+    }
+
+    /// Asks the target server to abort a migration or spawn that failed, and completes with the address of the actor
+    /// if it spawned there anyway. Fails with the cause once it's surely aborted, or when the target server didn't
+    /// answer any attempt.
+    ///
+    /// @param what what the target server may have done, for logs
+    private CompletionStage<ActorAddress> abort(Server target, Message.Request<Migrator.MigrationStatus> abort,
+                                                String what, Throwable cause, int attempt) {
+        return query(null, Migrator.of(target), abort)
+                .handle((status, e) -> {
+                    if (e == null) {
+                        return status.spawned() != null
+                                ? CompletableFuture.completedFuture(status.spawned())
+                                : CompletableFuture.<ActorAddress>failedFuture(cause);
+                    }
+                    if (attempt >= MIGRATION_ABORT_ATTEMPTS) {
+                        log.error("Server {} didn't tell whether {}", target.idString(), what, e);
+                        return CompletableFuture.<ActorAddress>failedFuture(cause);
+                    }
+                    // Unreachable servers fail requests right away; give them some time.
+                    return CompletableFuture.supplyAsync(
+                                    () -> abort(target, abort, what, cause, attempt + 1),
+                                    CompletableFuture.delayedExecutor(attempt, TimeUnit.SECONDS))
+                            .thenCompose(Function.identity());
+                })
+                .thenCompose(Function.identity());
+    }
+
+    /// Returns the addresses of at most `limit` actors of this world that can move to another server.
+    List<ActorAddress> migratableActors(int limit) {
+        var addresses = new ArrayList<ActorAddress>();
+        actors.forEach(actor -> {
+            if (addresses.size() < limit && actor instanceof Migratable && actor.state() == ActorState.ALIVE) {
+                addresses.add(actor.address);
+            }
+        });
+        return addresses;
+    }
+
+    /// Returns how busy this world is. Used by [Migrator] to answer [Rebalancer]s.
+    Migrator.Load load() {
+        int[] migratable = {0};
+        actors.forEach(actor -> {
+            if (actor instanceof Migratable && actor.state() == ActorState.ALIVE) {
+                migratable[0]++;
+            }
+        });
+        return new Migrator.Load(actors.size(), migratable[0], mailbox.size());
+    }
+
+    /// Returns the spawn functions of actors moving to this world.
+    public Migrations migrations() {
+        return migrations;
+    }
+
+    /// Returns the [SharedAckStore] of all actors of this world sending acknowledgments of the given type,
+    /// creating it the first time. The store keeps 200000 messages for an hour at most.
+    @SuppressWarnings("unchecked")
+    public <Out extends Message.Notification & Acknowledgeable> SharedAckStore<Out> sharedAckStore(Class<Out> type) {
+        return (SharedAckStore<Out>) sharedAckStores.computeIfAbsent(type,
+                _ -> new SharedAckStore<Out>(SHARED_ACK_STRIPES, SHARED_ACK_MAX_ENTRIES, SHARED_ACK_TTL));
+    }
+
+    /// Called by [Migrator] when an actor of another server moved: envelopes sent to its old address go to
+    /// the new one for a while.
+    void redirect(ActorAddress from, ActorAddress to) {
+        redirects.put(from, new Redirect(to, System.nanoTime() + TOMBSTONE_TTL_NANOS));
+    }
+
+    /// Called by [Tombstone] to send an envelope to the new address of an actor that moved, keeping its
+    /// sender and request id, so the response goes straight to the sender.
+    void forward(Envelope<?> envelope, ActorAddress receiver) {
+        sendEnvelope(new Envelope<Message>(envelope.sender(), receiver, envelope.requestId(), envelope.body(),
+                envelope.sentAt(), envelope.trace(), envelope.priority()), true);
+        metrics.forwarded();
+    }
+
+    /// Returns true when the actor with the given number lives in this world, and didn't move.
+    private boolean isAlive(long actorNumber) {
+        Actor actor = actors.get(actorNumber);
+        return actor != null && !(actor instanceof Tombstone);
+    }
+
+    /// Spawns an actor on the server owning the key in the ring: on this server or on another one. Spreads actors
+    /// evenly over the servers of the ring, whichever server spawns them.
+    ///
+    /// The actor is created from its initial state, using the function registered in the [#migrations()] of the
+    /// chosen server. When it's another server, the initial state travels in a request to its [Migrator]. When that
+    /// request gets no answer, the spawn is aborted there, unless the actor already spawned: then it completes
+    /// with its address anyway.
+    ///
+    /// ## Example
+    ///
+    /// ```java
+    /// HashRing ring = network.ring(server -> server.metadata().containsKey("supportsCounters"));
+    /// world.spawn(ring, counterId, new Counter.Snapshot(0))
+    ///         .thenAccept(address -> log.info("Counter spawned at {}", address));
+    /// ```
+    ///
+    /// @param ring         the servers that can host the actor
+    /// @param key          the key of the actor, like the id of the entity it represents
+    /// @param initialState the state of the new actor
+    /// @return a [CompletionStage] completing with the address of the actor once it spawned, or failing when the
+    ///         ring is empty or the chosen server couldn't spawn it
+    public CompletionStage<ActorAddress> spawn(HashRing ring, UUID key, ActorSnapshot initialState) {
+        Server target = ring.serverFor(key);
+        if (target == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("No server can host actor " + key));
+        }
+        if (target.id() == server.id()) {
+            try {
+                return CompletableFuture.completedFuture(spawnFrom(initialState));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+
+        // Abort the spawn when it gets no answer, so it doesn't leave an actor nobody knows about.
+        UUID spawnId = UUID.randomUUID();
+        return query(null, Migrator.of(target), new Migrator.Spawn(spawnId, initialState))
+                .thenApply(Migrator.Spawned::address)
+                .exceptionallyCompose(e -> abort(target, new Migrator.AbortSpawn(spawnId),
+                        "actor " + key + " spawned there", e, 1));
+    }
+
     /// Called only by [Actor] to despawn itself. Always use [Actor#despawn()].
     /// This thing is package-protected for a reason...
-    void despawn(Long actorNumber) {
+    void despawn(long actorNumber) {
         // Remove it from the map. If it really exists, make sure it's aware of its death.
         Actor despawnedActor = actors.remove(actorNumber);
         if (despawnedActor != null) {
             despawnedActor.reportDespawned(); // todo: what if this throws an exception?
-            log.debug("Actor number {} despawned: {}", despawnedActor.address, despawnedActor);
+
+            var event = new FrameworkEvents.ActorDespawned();
+            if (event.shouldCommit()) {
+                event.actorClass = despawnedActor.getClass();
+                event.actorNumber = actorNumber;
+                event.commit();
+            }
         }
     }
 
@@ -257,12 +637,76 @@ public class World implements SmartLifecycle {
     /// @param receiver the id of the actor to send the message to
     /// @param body     the body of the message
     public void send(@Nullable ActorAddress sender, ActorAddress receiver, Message.Notification body) {
+        send(sender, receiver, body, null, null);
+    }
+
+    /// Sends a **notification** to an actor, with another [MessagePriority] than the one of its message type.
+    ///
+    /// Notifications are NOT guaranteed to be sent to the receiver.
+    ///
+    /// @param sender   the actor that sent the message; can be null
+    /// @param receiver the id of the actor to send the message to
+    /// @param body     the body of the message
+    /// @param priority how soon the receiver's world dispatches the message
+    public void send(@Nullable ActorAddress sender, ActorAddress receiver, Message.Notification body,
+                     MessagePriority priority) {
+        send(sender, receiver, body, null, Objects.requireNonNull(priority));
+    }
+
+    /// Sends a **notification** to an actor, continuing the given trace instead of the current one.
+    ///
+    /// Useful to keep messages sent later on (like retries) in the trace that caused them.
+    ///
+    /// Notifications are NOT guaranteed to be sent to the receiver.
+    ///
+    /// @param sender   the actor that sent the message; can be null
+    /// @param receiver the id of the actor to send the message to
+    /// @param body     the body of the message
+    /// @param parent   the trace to continue; null to use the current trace, like other methods
+    public void send(@Nullable ActorAddress sender, ActorAddress receiver, Message.Notification body,
+                     @Nullable TraceContext parent) {
+        send(sender, receiver, body, parent, null);
+    }
+
+    private void send(@Nullable ActorAddress sender, ActorAddress receiver, Message.Notification body,
+                      @Nullable TraceContext parent, @Nullable MessagePriority priority) {
         // Put the message in an envelope, so the postman "knows" which actor to send the message to.
         sender = sender != null ? sender : server.address();
-        var envelope = new Envelope<>(sender, receiver, 0, body, Instant.now());
+        TraceContext trace = parent != null ? parent.child() : nextTrace();
+        var envelope = new Envelope<>(sender, receiver, 0, body, clock.now(), trace, priority);
         sendEnvelope(envelope, true);
     }
 
+    /// Sends **notifications** to several actors at once. Notifications to actors of the same server are sent
+    /// together when the transport can, which costs less than sending them one by one.
+    ///
+    /// Notifications are NOT guaranteed to be sent to their receiver.
+    ///
+    /// @param sender   the actor that sent the messages; can be null
+    /// @param messages the messages and their receiver
+    public void sendAll(@Nullable ActorAddress sender, List<Outgoing> messages) {
+        sender = sender != null ? sender : server.address();
+        List<Envelope<?>> remote = new ArrayList<>();
+        for (Outgoing message : messages) {
+            TraceContext trace = message.parent() != null ? message.parent().child() : nextTrace();
+            Envelope<?> envelope = new Envelope<Message>(sender, message.receiver(), 0, message.body(), clock.now(),
+                    trace);
+            if (!redirects.isEmpty()) {
+                envelope = redirected(envelope);
+            }
+
+            if (envelope.receiver().serverId() == server.id()) {
+                enqueue(envelope);
+            } else {
+                remote.add(envelope);
+            }
+        }
+
+        if (!remote.isEmpty()) {
+            transport.sendAll(remote, true);
+        }
+    }
+
     /// Sends a **request** to an actor and **doesn't care about its response**.
     ///
     /// Requests are NOT guaranteed to be sent to the destination actor.
@@ -273,7 +717,7 @@ public class World implements SmartLifecycle {
     public void send(@Nullable ActorAddress sender, ActorAddress receiver, Message.Request<?> body) {
         // Put the message in an envelope, so the postman "knows" which actor to send the message to.
         sender = sender != null ? sender : server.address();
-        var envelope = new Envelope<>(sender, receiver, 0, body, Instant.now());
+        var envelope = new Envelope<>(sender, receiver, 0, body, clock.now(), nextTrace());
         sendEnvelope(envelope, true);
     }
 
@@ -281,7 +725,8 @@ public class World implements SmartLifecycle {
     ///
     /// The [CompletionStage] will be complete:
     /// - successfully, when the receiver responds to this request
-    /// - unsuccessfully, when the receiver takes too long to respond (30 seconds) or doesn't know how to handle the request (TODO)
+    /// - unsuccessfully, when the receiver takes too long to respond (30 seconds), doesn't know how to handle the
+    ///   request or fails to handle it (see [RequestFailedException])
     ///
     /// The [CompletionStage] will always complete on the World main loop thread.
     ///
@@ -305,7 +750,8 @@ public class World implements SmartLifecycle {
     ///
     /// The [CompletionStage] will be complete:
     /// - successfully, when the receiver responds to this request
-    /// - unsuccessfully, when the receiver takes too long to respond (30 seconds) or doesn't know how to handle the request (TODO)
+    /// - unsuccessfully, when the receiver takes too long to respond (30 seconds), doesn't know how to handle the
+    ///   request or fails to handle it (see [RequestFailedException])
     ///
     /// The [CompletionStage] will always complete on the World main loop thread.
     ///
@@ -329,11 +775,12 @@ public class World implements SmartLifecycle {
         var future = new CompletableFuture<T>();
         long requestId = nextRequestId.getAndIncrement();
         long senderNum = sender != null && sender.serverId() == server.id() ? sender.actorNumber() : 0;
-        pendingRequests.put(requestId, new PendingRequest(future, Instant.now().plusSeconds(30), senderNum));
+        pendingRequests.put(requestId, new PendingRequest(future, requestId, body.getClass(),
+                System.nanoTime() + REQUEST_TIMEOUT_NANOS, senderNum));
 
         // Put the message in an envelope, so the postman "knows" which actor to send the message to.
         sender = sender != null ? sender : server.address();
-        var envelope = new Envelope<>(sender, receiver, requestId, body, Instant.now());
+        var envelope = new Envelope<>(sender, receiver, requestId, body, clock.now(), nextTrace());
         sendEnvelope(envelope, retry);
 
         // Return the future we've created earlier.
@@ -351,6 +798,7 @@ public class World implements SmartLifecycle {
     /// @param receiver the id of the actor to send the message to
     /// @param body     the body of the message
     /// @throws ActorNotFoundException when the receiver actor does not exist
+    /// @throws RequestFailedException when the receiver actor couldn't handle the request
     public <T extends Message.Response> T querySync(ActorAddress receiver, Message.Request<T> body)
             throws ActorNotFoundException {
         try {
@@ -362,6 +810,8 @@ public class World implements SmartLifecycle {
         } catch (ExecutionException e) {
             if (e.getCause() instanceof ActorNotFoundException anfEx) {
                 throw anfEx;
+            } else if (e.getCause() instanceof RequestFailedException rfEx) {
+                throw rfEx;
             } else {
                 throw new RuntimeException("Unknown query sync exception", e);
             }
@@ -373,7 +823,22 @@ public class World implements SmartLifecycle {
         timer.setFuture(taskScheduler.schedule(() -> {
             // Remove the timer from the actor's list of active timers.'
             timer.unregister();
-            send(sender, receiver, body);
+            if (receiver.equals(sender) && actors.contains(receiver.actorNumber())) {
+                // Timers of an actor to itself keep it going, like retries or periodic work: it waits for them and
+                // never sends them again, so they're never shed.
+                enqueue(new Envelope<>(sender, receiver, 0, body, clock.now(), nextTrace()), false);
+            } else {
+                send(sender, receiver, body);
+            }
+
+            var event = new FrameworkEvents.TimerFired();
+            if (event.shouldCommit()) {
+                event.messageType = body.getClass();
+                event.senderActor = sender.actorNumber();
+                event.receiverActor = receiver.actorNumber();
+                event.delay = delay.toNanos();
+                event.commit();
+            }
         }, Instant.now().plus(delay)));
     }
 
@@ -386,64 +851,284 @@ public class World implements SmartLifecycle {
         }
 
         // Put the message in an envelope, so the postman "knows" which actor to send the message to.
-        var newEnv = new Envelope<>(responder, envelope.sender(), envelope.requestId(), body, Instant.now());
+        var newEnv = new Envelope<>(responder, envelope.sender(), envelope.requestId(), body, clock.now(), nextTrace());
         sendEnvelope(newEnv, true);
     }
 
     /// Used internally to send an envelope either to this world or to the network.
     private void sendEnvelope(Envelope<?> envelope, boolean retry) {
+        if (!redirects.isEmpty()) {
+            envelope = redirected(envelope);
+        }
+
         if (envelope.receiver().serverId() == server.id()) {
             // The actor we want to send the message to is in this world!
             // Just add the envelope to our local queue.
-            mailbox.add(envelope);
-            log.debug("Sent envelope {} to this world's mailbox", envelope);
+            enqueue(envelope);
         } else {
             // The message is destined to another server. Send it on the network!
-            outsideSender.send(envelope, retry);
+            transport.send(envelope, retry);
+        }
+    }
+
+    /// Sends the envelope to the new address of its receiver when it moved to another server.
+    ///
+    /// Responses are never redirected: they must go back to the world that made the request.
+    private Envelope<?> redirected(Envelope<?> envelope) {
+        if (envelope.body() instanceof Message.Response) {
+            return envelope;
+        }
+
+        Redirect redirect = redirects.get(envelope.receiver());
+        if (redirect == null) {
+            return envelope;
+        }
+        return new Envelope<Message>(envelope.sender(), redirect.to(), envelope.requestId(), envelope.body(),
+                envelope.sentAt(), envelope.trace(), envelope.priority());
+    }
+
+    /// Called by the [Transport] when it gave up sending an envelope to another server.
+    ///
+    /// The receiver's server is one step closer to being [unhealthy][ServerHealth]. When the envelope contains
+    /// a request made by this world, fails the request right away instead of letting it time out.
+    private void deliveryFailed(Envelope<?> envelope) {
+        serverHealth.failed(envelope.receiver().serverId());
+        failRequest(envelope, RequestFailedResponse.Reason.UNREACHABLE,
+                "Couldn't deliver the request to server " + HexFormat.of().toHexDigits(envelope.receiver().serverId()));
+    }
+
+    // Called by the transport when a server was too busy to take envelopes, which all went to that server.
+    private void refused(List<Envelope<?>> envelopes) {
+        if (envelopes.isEmpty()) {
+            return;
+        }
+
+        // A single answer of the server, however many envelopes it refused.
+        long serverId = envelopes.getFirst().receiver().serverId();
+        serverHealth.failed(serverId);
+        String detail = "Server " + HexFormat.of().toHexDigits(serverId) + " has too many envelopes waiting";
+        for (Envelope<?> envelope : envelopes) {
+            failRequest(envelope, RequestFailedResponse.Reason.OVERLOADED, detail);
+        }
+    }
+
+    /// Fails the request in the envelope, when it was sent by this world, with a [RequestFailedResponse].
+    private void failRequest(Envelope<?> envelope, RequestFailedResponse.Reason reason, String detail) {
+        if (envelope.requestId() == 0
+            || !(envelope.body() instanceof Message.Request<?>)
+            || envelope.sender().serverId() != server.id()) {
+            return;
+        }
+
+        var failure = new RequestFailedResponse(envelope.receiver(), reason, detail);
+        TraceContext trace = envelope.trace() != null ? envelope.trace().child() : null;
+        enqueue(new Envelope<>(envelope.receiver(), envelope.sender(), envelope.requestId(), failure, clock.now(), trace));
+    }
+
+    /// Adds the envelope to the lane of its [MessagePriority] in the mailbox, so the main loop dispatches it,
+    /// unless it's shed because of the [mailbox limits][#mailboxLimits(int, int)].
+    private void enqueue(Envelope<?> envelope) {
+        enqueue(envelope, true);
+    }
+
+    /// Adds the envelope to the lane of its [MessagePriority] in the mailbox, so the main loop dispatches it.
+    ///
+    /// @param canShed false to never shed the envelope, even when [isSheddable] says it can be
+    private void enqueue(Envelope<?> envelope, boolean canShed) {
+        MessagePriority priority = MessagePriority.of(envelope);
+        boolean sheddable = canShed && isSheddable(envelope, priority);
+        // Only envelopes that can be shed count for the limit of their actor.
+        Actor countedFor = null;
+        if (sheddable) {
+            countedFor = actors.get(envelope.receiver().actorNumber());
+            if (!admit(envelope, priority, countedFor)) {
+                return;
+            }
+            if (countedFor != null) {
+                countedFor.enqueued(envelope);
+            }
+        }
+        mailbox.add(envelope, priority, countedFor, sheddable);
+
+        var event = new FrameworkEvents.EnvelopeEnqueued();
+        if (event.shouldCommit()) {
+            event.messageType = envelope.body().getClass();
+            event.senderServer = envelope.sender().serverId();
+            event.receiverActor = envelope.receiver().actorNumber();
+            event.requestId = envelope.requestId();
+            event.mailboxDepth = mailbox.size();
+            event.commit();
+        }
+    }
+
+    /// Applies the mailbox limits to an envelope that can be shed, making room for it when needed.
+    ///
+    /// @return false when the envelope must not be added to the mailbox
+    private boolean admit(Envelope<?> envelope, MessagePriority priority, @Nullable Actor receiver) {
+        int actorLimit = receiver != null ? receiver.mailboxLimitOr(maxEnvelopesPerActor) : Integer.MAX_VALUE;
+        boolean actorFull = receiver != null && receiver.waitingEnvelopes() >= actorLimit;
+        boolean worldFull = mailbox.size() >= maxEnvelopes;
+        if (!actorFull && !worldFull) {
+            return true;
+        }
+
+        // Requests fail right away, so their sender doesn't wait for nothing.
+        if (envelope.body() instanceof Message.Request<?>) {
+            metrics.shed(actorFull, true);
+            if (SHED.sample()) {
+                log.warn("Too many envelopes waiting for {} ({} in the world); failing request {}",
+                        actorFull ? "actor " + envelope.receiver() : "this world", mailbox.size(),
+                        envelope.body().getClass().getSimpleName());
+            }
+            respond(envelope.receiver(), envelope, new RequestFailedResponse(envelope.receiver(),
+                    RequestFailedResponse.Reason.OVERLOADED, envelope.body().getClass().getSimpleName()));
+            return false;
+        }
+
+        // Notifications take the place of older ones, which were more likely sent again already.
+        if (worldFull) {
+            metrics.shed(false, false);
+            Mailbox.Entry dropped = mailbox.dropOldestNotification(priority);
+            if (dropped == null) {
+                // Everything waiting is more important: drop this one instead.
+                return false;
+            }
+            if (dropped.countedFor() != null) {
+                dropped.countedFor().unqueued();
+            }
+        }
+        if (receiver != null && receiver.waitingEnvelopes() >= actorLimit) {
+            metrics.shed(true, false);
+            if (!receiver.dropOldestNotification()) {
+                // Everything waiting for the actor is a request, or is dropped already: drop this one instead.
+                return false;
+            }
         }
+        if (SHED.sample()) {
+            log.warn("Too many envelopes waiting for {} ({} in the world); dropping old notifications",
+                    actorFull ? "actor " + envelope.receiver() : "this world", mailbox.size());
+        }
+        return true;
+    }
+
+    /// Returns true when the envelope can be shed when the mailbox is full: responses and system messages
+    /// are always accepted.
+    static boolean isSheddable(Envelope<?> envelope) {
+        return isSheddable(envelope, MessagePriority.of(envelope));
+    }
+
+    private static boolean isSheddable(Envelope<?> envelope, MessagePriority priority) {
+        return priority != MessagePriority.SYSTEM
+               && !envelope.receiver().isServerAddress()
+               && !(envelope.body() instanceof Message.Response);
+    }
+
+    /// Returns true when the mailbox is full: envelopes that can be shed are rejected or dropped.
+    ///
+    /// Used by [OutsideReceiver] to tell other servers to slow down.
+    public boolean isOverloaded() {
+        return mailbox.size() >= maxEnvelopes;
+    }
+
+    /// Returns the trace of a new envelope: when an actor is processing a traced envelope, continues its trace;
+    /// otherwise, maybe starts a new one.
+    private @Nullable TraceContext nextTrace() {
+        TraceContext parent = Thread.currentThread() == mainLoopThread ? currentTrace : null;
+        return parent != null ? parent.child() : tracer.sample();
+    }
+
+    /// Returns the trace of the envelope being processed, when called by an actor processing a traced envelope;
+    /// null otherwise.
+    public @Nullable TraceContext currentTrace() {
+        return Thread.currentThread() == mainLoopThread ? currentTrace : null;
     }
 
     /// Receives an envelope coming from any source, let it be from the network or from somewhere else.
     ///
     /// You can call this method to receive envelopes coming from any service, like a message bus.
+    ///
+    /// @throws IllegalArgumentException when the envelope is invalid
     public void receive(Envelope<?> envelope) {
-        mailbox.add(envelope);
+        // Envelopes built by this world are always valid, but we can't say the same for others.
+        envelope.validate();
+        // The server answered, so it's up. Failures made up by this world, like when the server is unreachable or
+        // overloaded, never come this way; nor do other envelopes, which say nothing about what we send it.
+        if (envelope.body() instanceof Message.Response) {
+            serverHealth.succeeded(envelope.sender().serverId());
+        }
+        enqueue(envelope);
     }
 
     /// Returns the server this world runs on.
     public Server server() { return server; }
 
+    /// Returns the metrics of the framework, which actors can use to report their own events.
+    public FrameworkMetrics metrics() { return metrics; }
+
+    /// Returns which servers seem down, to avoid sending them messages.
+    public ServerHealth serverHealth() { return serverHealth; }
+
     // Called every now and then to terminate any pending requests that are pending for way too long.
     @Scheduled(fixedRate = 1000) // todo: configurable rate
-    private void cleanupTimedOutRequests() {
-        record Entry(long id, PendingRequest request) { }
-
-        // First, identify all requests that have expired.
-        var expiredRequests = new ArrayList<Entry>();
-        var now = Instant.now();
-        pendingRequests.forEach((id, request) -> {
-            if (request.timeoutAt().isBefore(now)) {
-                expiredRequests.add(new Entry(id, request));
-            }
-        });
-
-        // Now, remove them all from the map.
-        for (Entry entry : expiredRequests) {
-            pendingRequests.remove(entry.id);
+    void cleanupTimedOutRequests() {
+        // First, remove all requests that have expired from the map.
+        long now = System.nanoTime();
+        List<PendingRequest> expiredRequests = pendingRequests.removeIf(request -> now - request.timeoutAtNanos() > 0);
+        if (!expiredRequests.isEmpty()) {
+            metrics.requestsTimedOut(expiredRequests.size());
         }
 
         // Then, and only after we've cleaned up the map, mark complete the requests with a failure.
-        for (Entry entry : expiredRequests) {
+        for (PendingRequest request : expiredRequests) {
             // TODO: QUITE IMPORTANT! Queue completions in the event queue for actor because we're hitting
             //       obvious race conditions!
-            entry.request.future.completeExceptionally(new TimeoutException());
+            request.future.completeExceptionally(new TimeoutException());
+
+            var event = new FrameworkEvents.RequestTimedOut();
+            if (event.shouldCommit()) {
+                event.requestType = request.requestType();
+                event.requestId = request.requestId();
+                event.senderActor = request.senderActorNum();
+                event.waited = now - request.timeoutAtNanos() + REQUEST_TIMEOUT_NANOS;
+                event.commit();
+            }
+        }
+    }
+
+    // Called every now and then to forget actors that moved to another server a while ago.
+    @Scheduled(fixedRate = 1000)
+    void forgetMovedActors() {
+        long now = System.nanoTime();
+        Tombstone tombstone;
+        while ((tombstone = tombstones.peek()) != null && now - tombstone.expiresAtNanos() > 0) {
+            tombstones.poll();
+            if (actors.get(tombstone.address.actorNumber()) == tombstone) {
+                actors.remove(tombstone.address.actorNumber());
+            }
+        }
+
+        if (!redirects.isEmpty()) {
+            redirects.values().removeIf(redirect -> now - redirect.expiresAtNanos() > 0);
         }
     }
 
     /// A request to an actor to which we're still waiting for its response.
     ///
     /// @param future         the future to complete once we receive the response
-    /// @param timeoutAt      the time at which we'll give up and mark the request as failed
+    /// @param requestId      the id of the request
+    /// @param requestType    the class of the request message
+    /// @param timeoutAtNanos the [System#nanoTime()] at which we'll give up and mark the request as failed
     /// @param senderActorNum the actor who started the request; 0 when there's no actor
-    record PendingRequest(CompletableFuture<?> future, Instant timeoutAt, long senderActorNum) { }
+    record PendingRequest(CompletableFuture<?> future, long requestId, Class<?> requestType,
+                          long timeoutAtNanos, long senderActorNum) { }
+
+    /// Where an actor of another server moved, until when.
+    private record Redirect(ActorAddress to, long expiresAtNanos) { }
+
+    /// A notification to send with [#sendAll(ActorAddress, List)].
+    ///
+    /// @param receiver the actor to send the message to
+    /// @param body     the body of the message
+    /// @param parent   the trace to continue; null to use the current trace
+    public record Outgoing(ActorAddress receiver, Message.Notification body, @Nullable TraceContext parent) { }
 }
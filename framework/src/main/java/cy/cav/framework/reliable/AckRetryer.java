@@ -6,13 +6,37 @@ import jakarta.annotation.*;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /// Sends messages over and over until the receiver responds with an acknowledgment.
+///
+/// Retries don't each have their own timer: they're grouped by the tick (one second) they're due, and all retries of
+/// a tick are sent at once with [World#sendAll], in one batch per server. Delays are jittered (20 % by default), so
+/// messages sent together at first don't stay together.
+///
+/// Messages without acknowledgment count as failures of their server in the [ServerHealth] of the world: once a
+/// server seems down, messages to it wait until a single message probes it. Messages waiting like this still count
+/// as retries. Receiver functions can skip unhealthy servers using [ServerHealth#isHealthy(long)].
+///
+/// Pending messages live in the retryer of the actor, and are lost when it despawns: actors with a retryer
+/// [can't be restarted][Actor#preventRestarts(String)] by [Supervision#restart(java.util.function.Function)].
 public class AckRetryer {
+    private static final long TICK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final double DEFAULT_JITTER = 0.2;
+
     private final Map<UUID, PendingMessage<?>> pendingMessages = new HashMap<>();
+    // Ack ids of pending messages by the tick they're due. May contain ids of messages acknowledged since.
+    private final TreeMap<Long, List<UUID>> buckets = new TreeMap<>();
     private final Actor actor;
     private final DelayFunction delayFunction;
     private int maxRetries;
+    private double jitter = DEFAULT_JITTER;
+
+    // The timer sending the next retries, and the tick it fires at.
+    private @Nullable Timer tickTimer;
+    private long timerTick;
+    // True while sending due messages, which schedules the timer once at the end.
+    private boolean retrying;
 
     /// Creates an [AckRetryer] with the given delay function and a default max retry count of 100.
     ///
@@ -29,6 +53,7 @@ public class AckRetryer {
     ///                                            a negative value will stop retrying this message forever
     /// @param maxRetries    the maximum number of retries before giving up (at least 1 retry will be done regardless)
     public AckRetryer(Actor actor, DelayFunction delayFunction, int maxRetries) {
+        actor.preventRestarts("its AckRetryer would lose the messages waiting for an acknowledgment");
         this.actor = actor;
         this.delayFunction = delayFunction;
         this.maxRetries = maxRetries;
@@ -44,6 +69,15 @@ public class AckRetryer {
         return new AckRetryer(actor, retryCount -> baseDelay.plus(increment.multipliedBy(retryCount)));
     }
 
+    /// Creates an [AckRetryer] that will retry messages with a delay of `baseDelay * 2^(retryCount - 1)`,
+    /// up to `maxDelay`
+    public static AckRetryer exponentialDelay(Actor actor, Duration baseDelay, Duration maxDelay) {
+        return new AckRetryer(actor, retryCount -> {
+            Duration delay = baseDelay.multipliedBy(1L << Math.min(retryCount - 1, 30));
+            return delay.compareTo(maxDelay) > 0 ? maxDelay : delay;
+        });
+    }
+
     /// Sends a message to an actor, trying to send it over and over until the actor responds with an acknowledgment.
     public <T extends Message.Notification & Acknowledgeable> void send(ActorAddress receiver, T message) {
         send(_ -> receiver, message);
@@ -56,18 +90,19 @@ public class AckRetryer {
         }
 
         // Save the pending message. (retryCount = 1 since we're going to send the message once)
-        PendingMessage<T> pendingMessage = new PendingMessage<>(message, receiverFunction, 1);
+        PendingMessage<T> pendingMessage = new PendingMessage<>(message, receiverFunction, 1, actor.world().currentTrace());
         pendingMessages.put(message.ackId(), pendingMessage);
 
-        // Send a first attempt.
+        // Send a first attempt, unless the server is known to be down.
+        long now = System.nanoTime();
         ActorAddress receiver = receiverFunction.choose(0);
-        if (receiver != null) {
+        if (receiver != null && allows(receiver)) {
             actor.send(receiver, message);
+            pendingMessage.lastServerId = receiver.serverId();
         }
 
         // Schedule the retry.
-        Duration delay = delayFunction.compute(pendingMessage.retryCount);
-        pendingMessage.retryTimer = actor.sendDelayed(actor.address(), new RetrySend(message.ackId()), delay);
+        schedule(pendingMessage, jittered(delayFunction.compute(pendingMessage.retryCount)), now);
     }
 
     /// After a while, sends a message to an actor, trying to send it over and over
@@ -84,14 +119,15 @@ public class AckRetryer {
         }
 
         // Save the pending message. (retryCount = 0 since we're not going to send the message yet)
-        PendingMessage<T> pendingMessage = new PendingMessage<>(message, receiverFunction, 0);
+        PendingMessage<T> pendingMessage = new PendingMessage<>(message, receiverFunction, 0, actor.world().currentTrace());
         pendingMessages.put(message.ackId(), pendingMessage);
 
         // Schedule the retry with the same duration as the initial delay.
-        pendingMessage.retryTimer = actor.sendDelayed(actor.address(), new RetrySend(message.ackId()), initialDelay);
+        schedule(pendingMessage, initialDelay, System.nanoTime());
     }
 
     public void giveUp(UUID ackId) {
+        // Its id stays in its bucket, and is skipped once due.
         pendingMessages.remove(ackId);
     }
 
@@ -101,41 +137,15 @@ public class AckRetryer {
     public boolean process(Envelope<?> envelope) {
         if (envelope.body() instanceof Acknowledgeable acknowledgeable) {
             PendingMessage<?> pendingMessage = pendingMessages.remove(acknowledgeable.ackId());
-            if (pendingMessage != null) {
-                pendingMessage.retryTimer.cancel();
+            if (pendingMessage != null && pendingMessage.lastServerId != 0) {
+                actor.world().serverHealth().succeeded(pendingMessage.lastServerId);
             }
             return false;
         }
 
-        if (envelope.body() instanceof RetrySend retrySend) {
-            PendingMessage<?> pendingMessage = pendingMessages.getOrDefault(retrySend.id, null);
-            if (pendingMessage == null) {
-                // Probably a timer that was canceled too late
-                return true;
-            }
-
-            // Send the message again
-            ActorAddress receiver = pendingMessage.receiverFunction.choose(pendingMessage.retryCount);
-            if (receiver != null) {
-                actor.send(receiver, pendingMessage.message);
-            }
-
-            // When we have too much retries, give up.
-            pendingMessage.retryCount++;
-            if (pendingMessage.retryCount > maxRetries) {
-                pendingMessages.remove(retrySend.id);
-                return true;
-            }
-
-            // When we have a negative delay, give up.
-            Duration delay = delayFunction.compute(pendingMessage.retryCount);
-            if (delay.isNegative()) {
-                pendingMessages.remove(retrySend.id);
-                return true;
-            }
-
-            // Otherwise, reschedule the retry.
-            pendingMessage.retryTimer = actor.sendDelayed(actor.address(), retrySend, delay);
+        if (envelope.body() instanceof RetryTick) {
+            tickTimer = null;
+            retryDueMessages();
             return true;
         }
 
@@ -147,20 +157,139 @@ public class AckRetryer {
         return this;
     }
 
+    /// Sets how much delays vary randomly, as a fraction of the delay: with 0.2, a 10 seconds delay lasts
+    /// between 8 and 12 seconds. 0 disables jitter.
+    public AckRetryer jitter(double jitter) {
+        if (jitter < 0 || jitter >= 1) {
+            throw new IllegalArgumentException("jitter must be between 0 and 1: " + jitter);
+        }
+        this.jitter = jitter;
+        return this;
+    }
+
+    /// Sends all messages due by now, in one batch per server.
+    private void retryDueMessages() {
+        long now = System.nanoTime();
+        long currentTick = Math.floorDiv(now, TICK_NANOS);
+        List<World.Outgoing> outgoing = new ArrayList<>();
+
+        retrying = true;
+        Map.Entry<Long, List<UUID>> bucket;
+        while ((bucket = buckets.firstEntry()) != null && bucket.getKey() <= currentTick) {
+            buckets.pollFirstEntry();
+            for (UUID id : bucket.getValue()) {
+                PendingMessage<?> pendingMessage = pendingMessages.get(id);
+                // Skip messages acknowledged since, and ids left behind by messages given up then sent again.
+                if (pendingMessage != null && pendingMessage.dueTick == bucket.getKey()) {
+                    retry(pendingMessage, now, outgoing);
+                }
+            }
+        }
+        retrying = false;
+
+        if (!outgoing.isEmpty()) {
+            actor.world().sendAll(actor.address(), outgoing);
+        }
+        scheduleTimer(now);
+    }
+
+    private void retry(PendingMessage<?> pendingMessage, long now, List<World.Outgoing> outgoing) {
+        // The last attempt wasn't acknowledged in time.
+        if (pendingMessage.lastServerId != 0) {
+            actor.world().serverHealth().failed(pendingMessage.lastServerId);
+            pendingMessage.lastServerId = 0;
+        }
+
+        // Send the message again, in the trace of the first attempt
+        ActorAddress receiver = pendingMessage.receiverFunction.choose(pendingMessage.retryCount);
+        if (receiver != null && allows(receiver)) {
+            outgoing.add(new World.Outgoing(receiver, pendingMessage.message, pendingMessage.trace));
+            pendingMessage.lastServerId = receiver.serverId();
+            actor.world().metrics().ackRetried(actor.getClass());
+        }
+
+        // When we have too much retries, give up.
+        pendingMessage.retryCount++;
+        if (pendingMessage.retryCount > maxRetries) {
+            pendingMessages.remove(pendingMessage.message.ackId());
+            actor.world().metrics().ackGaveUp(actor.getClass());
+            return;
+        }
+
+        // When we have a negative delay, give up.
+        Duration delay = delayFunction.compute(pendingMessage.retryCount);
+        if (delay.isNegative()) {
+            pendingMessages.remove(pendingMessage.message.ackId());
+            actor.world().metrics().ackGaveUp(actor.getClass());
+            return;
+        }
+
+        // Otherwise, schedule the next retry.
+        schedule(pendingMessage, jittered(delay), now);
+    }
+
+    // Messages to this server never wait: actors of the world are never down on their own.
+    private boolean allows(ActorAddress receiver) {
+        return receiver.serverId() == actor.address().serverId()
+               || actor.world().serverHealth().allows(receiver.serverId());
+    }
+
+    /// Puts the message in the bucket of the tick it's due, rounded up.
+    private void schedule(PendingMessage<?> pendingMessage, Duration delay, long now) {
+        long dueTick = Math.floorDiv(now + delay.toNanos() + TICK_NANOS - 1, TICK_NANOS);
+        pendingMessage.dueTick = dueTick;
+        buckets.computeIfAbsent(dueTick, _ -> new ArrayList<>()).add(pendingMessage.message.ackId());
+
+        if (!retrying && (tickTimer == null || dueTick < timerTick)) {
+            scheduleTimer(now);
+        }
+    }
+
+    /// Makes sure the timer fires at the first tick with messages.
+    private void scheduleTimer(long now) {
+        Long firstTick = buckets.isEmpty() ? null : buckets.firstKey();
+        if (tickTimer != null) {
+            if (firstTick != null && firstTick == timerTick) {
+                return;
+            }
+            tickTimer.cancel();
+            tickTimer = null;
+        }
+        if (firstTick == null) {
+            return;
+        }
+
+        Duration delay = Duration.ofNanos(Math.max(0, firstTick * TICK_NANOS - now));
+        tickTimer = actor.sendDelayed(actor.address(), new RetryTick(), delay);
+        timerTick = firstTick;
+    }
+
+    private Duration jittered(Duration delay) {
+        if (jitter == 0 || delay.isNegative()) {
+            return delay;
+        }
+        double factor = 1 + jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+        return Duration.ofNanos((long) (delay.toNanos() * factor));
+    }
+
     private static class PendingMessage<T extends Message.Notification & Acknowledgeable> {
         T message;
         ActorFunction receiverFunction;
         int retryCount;
-        Timer retryTimer;
+        long dueTick;
+        long lastServerId; // The server of the last attempt, 0 when it wasn't sent
+        @Nullable TraceContext trace;
 
-        public PendingMessage(T message, ActorFunction receiverFunction, int retryCount) {
+        public PendingMessage(T message, ActorFunction receiverFunction, int retryCount, @Nullable TraceContext trace) {
             this.message = message;
             this.receiverFunction = receiverFunction;
             this.retryCount = retryCount;
+            this.trace = trace;
         }
     }
 
-    private record RetrySend(UUID id) implements Message.Notification { }
+    @MessagePriority.Of(MessagePriority.BULK)
+    private record RetryTick() implements Message.Notification { }
 
     /// A function that takes in the count of retries and returns how much time it should wait.
     @FunctionalInterface
@@ -3,35 +3,142 @@ package cy.cav.framework.reliable;
 import cy.cav.framework.*;
 import jakarta.annotation.*;
 
+import java.time.*;
 import java.util.*;
 import java.util.function.*;
 
 /// Keeps a history of acknowledged messages with their answers.
 ///
+/// The history is bounded: once it holds [#maxEntries(int)] messages, the oldest one is forgotten for each new one,
+/// and messages older than [#expireAfter(Duration)] are forgotten too. Requests sent again after their message is
+/// forgotten are processed again, so limits must leave enough time for the senders to stop retrying.
+///
+/// Actors can have lots of stores, so they are kept small: nothing is allocated before the first message, ids are
+/// stored as two `long`s in an open addressing table, and stores made with [#idsOnly(Actor, Function)] don't keep
+/// the messages at all, when the message can be made back from its id.
+///
 /// @param <Out> the type of the response message to save and send back if the request is already acknowledged
 public class AckStore<Out extends Message.Notification & Acknowledgeable> {
-    private static final int MAX_ENTRIES = 10000;
-
-    // List of all requests we've received and processed.
-    private final Map<UUID, Out> acknowledgedMessages = new LinkedHashMap<>() {
-        @Override
-        protected boolean removeEldestEntry(Map.Entry<UUID, Out> eldest) {
-            return size() > MAX_ENTRIES;
-        }
-    };
+    private static final int DEFAULT_MAX_ENTRIES = 10000;
+    private static final int INITIAL_CAPACITY = 8;
 
     private final Actor actor;
+    // Makes the message of an id, for stores that only keep ids; null when messages are kept.
+    private final @Nullable Function<UUID, ? extends Out> messageOf;
+    private int maxEntries = DEFAULT_MAX_ENTRIES;
+    private long ttlNanos = 0; // 0 = never expire
+
+    // Entries from the oldest to the most recent, in a circular buffer starting at head.
+    // All arrays are null until the first message is added, and when all messages expired.
+    private long[] mostSigBits;
+    private long[] leastSigBits;
+    private long[] expiresAt; // Only when entries expire
+    private Object[] messages; // Only when messages are kept
+    private int head;
+    private int size;
+
+    // Open addressing table with linear probing: the position of the entry in the buffer plus one, 0 when empty.
+    // Always at least twice as large as the buffer.
+    private int[] slots;
+
+    public AckStore(Actor actor) {
+        this(actor, null);
+    }
+
+    private AckStore(Actor actor, @Nullable Function<UUID, ? extends Out> messageOf) {
+        this.actor = actor;
+        this.messageOf = messageOf;
+    }
 
-    public AckStore(Actor actor) { this.actor = actor; }
+    /// Creates a store keeping only the ids of acknowledged messages, for messages holding nothing but their id.
+    ///
+    /// @param actor     the actor sending the messages
+    /// @param messageOf makes the message to send back from its id
+    public static <Out extends Message.Notification & Acknowledgeable> AckStore<Out> idsOnly(
+            Actor actor, Function<UUID, ? extends Out> messageOf) {
+        return new AckStore<>(actor, Objects.requireNonNull(messageOf));
+    }
+
+    /// Sets the maximum number of messages in the store (10000 by default).
+    public AckStore<Out> maxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        return this;
+    }
+
+    /// Forgets messages some time after they're added (never by default). Must be set before adding messages.
+    public AckStore<Out> expireAfter(Duration ttl) {
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive: " + ttl);
+        }
+        if (size > 0) {
+            throw new IllegalStateException("Can't change the ttl of a store with messages");
+        }
+        this.ttlNanos = ttl.toNanos();
+        return this;
+    }
 
     /// Registers a response message as an acknowledgment to a request.
+    ///
+    /// Adding a message with the id of a saved one replaces it, without making it more recent.
     public void add(Out message) {
-        acknowledgedMessages.put(message.ackId(), message);
+        UUID id = message.ackId();
+        long msb = id.getMostSignificantBits();
+        long lsb = id.getLeastSignificantBits();
+        long now = ttlNanos != 0 ? System.nanoTime() : 0;
+        removeExpired(now);
+
+        int existing = find(msb, lsb);
+        if (existing >= 0) {
+            if (messages != null) {
+                messages[existing] = message;
+            }
+            return;
+        }
+
+        while (size >= maxEntries) {
+            removeOldest();
+        }
+        if (mostSigBits == null || size == mostSigBits.length) {
+            grow();
+        }
+
+        int position = (head + size) % mostSigBits.length;
+        mostSigBits[position] = msb;
+        leastSigBits[position] = lsb;
+        if (messages != null) {
+            messages[position] = message;
+        }
+        if (expiresAt != null) {
+            expiresAt[position] = now + ttlNanos;
+        }
+        insertSlot(position);
+        size++;
+    }
+
+    /// Returns all saved response messages, from the oldest to the most recent.
+    ///
+    /// Useful to put them in the [snapshot][ActorSnapshot] of an actor, and [add][#add] them back when it moved.
+    public List<Out> acknowledged() {
+        removeExpired(System.nanoTime());
+
+        var list = new ArrayList<Out>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(messageAt((head + i) % mostSigBits.length));
+        }
+        return list;
     }
 
     /// Gets the response message associated with the acknowledgment id.
     public @Nullable Out get(UUID ackId) {
-        return acknowledgedMessages.getOrDefault(ackId, null);
+        if (expiresAt != null) {
+            removeExpired(System.nanoTime());
+        }
+
+        int position = find(ackId.getMostSignificantBits(), ackId.getLeastSignificantBits());
+        return position >= 0 ? messageAt(position) : null;
     }
 
     /// Gets the response message associated with the acknowledgment id contained in the given message.
@@ -39,6 +146,27 @@ public class AckStore<Out extends Message.Notification & Acknowledgeable> {
         return get(msg.ackId());
     }
 
+    /// Returns the number of saved messages, including expired ones not removed yet.
+    public int size() {
+        return size;
+    }
+
+    /// Estimates the memory used by the store in bytes, without the saved messages themselves.
+    public long memoryBytes() {
+        // Object headers take 16 bytes, and references 4 bytes, like on most 64-bit JVMs.
+        long bytes = 16 + 7 * 4 + 3 * 4 + 8;
+        if (mostSigBits != null) {
+            bytes += 2 * (16 + 8L * mostSigBits.length) + 16 + 4L * slots.length;
+        }
+        if (expiresAt != null) {
+            bytes += 16 + 8L * expiresAt.length;
+        }
+        if (messages != null) {
+            bytes += 16 + 4L * messages.length;
+        }
+        return bytes;
+    }
+
     /// Sends a notification to an actor and saves the message as an acknowledged one.
     public void send(ActorAddress receiver, Out message) {
         add(message);
@@ -63,4 +191,123 @@ public class AckStore<Out extends Message.Notification & Acknowledgeable> {
         actor.send(receiver, existing);
         return true;
     }
+
+    @SuppressWarnings("unchecked")
+    private Out messageAt(int position) {
+        if (messages != null) {
+            return (Out) messages[position];
+        }
+        return messageOf.apply(new UUID(mostSigBits[position], leastSigBits[position]));
+    }
+
+    /// Returns the position of the entry with the id in the buffer, or -1 when there's none.
+    private int find(long msb, long lsb) {
+        if (slots == null) {
+            return -1;
+        }
+
+        int mask = slots.length - 1;
+        for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+            int slot = slots[i];
+            if (slot == 0) {
+                return -1;
+            }
+            if (mostSigBits[slot - 1] == msb && leastSigBits[slot - 1] == lsb) {
+                return slot - 1;
+            }
+        }
+    }
+
+    private void insertSlot(int position) {
+        int mask = slots.length - 1;
+        int i = hash(mostSigBits[position], leastSigBits[position]) & mask;
+        while (slots[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        slots[i] = position + 1;
+    }
+
+    private void removeExpired(long now) {
+        if (expiresAt == null) {
+            return;
+        }
+
+        // Entries are added in order, so the ones expiring first are the oldest.
+        while (size > 0 && expiresAt[head] - now <= 0) {
+            removeOldest();
+        }
+        if (size == 0) {
+            // Most stores are idle most of the time; give the memory back until the next message.
+            mostSigBits = null;
+            leastSigBits = null;
+            expiresAt = null;
+            messages = null;
+            slots = null;
+            head = 0;
+        }
+    }
+
+    private void removeOldest() {
+        int mask = slots.length - 1;
+        int hole = hash(mostSigBits[head], leastSigBits[head]) & mask;
+        while (slots[hole] != head + 1) {
+            hole = (hole + 1) & mask;
+        }
+
+        // Move back the following entries that can't be found anymore once there's a hole before them.
+        for (int i = (hole + 1) & mask; slots[i] != 0; i = (i + 1) & mask) {
+            int slot = slots[i];
+            int home = hash(mostSigBits[slot - 1], leastSigBits[slot - 1]) & mask;
+            if (((i - home) & mask) >= ((i - hole) & mask)) {
+                slots[hole] = slot;
+                hole = i;
+            }
+        }
+        slots[hole] = 0;
+
+        if (messages != null) {
+            messages[head] = null;
+        }
+        head = (head + 1) % mostSigBits.length;
+        size--;
+    }
+
+    /// Makes room for more entries, up to maxEntries, putting the oldest entry first.
+    private void grow() {
+        int oldCapacity = mostSigBits == null ? 0 : mostSigBits.length;
+        int capacity = Math.min(maxEntries, Math.max(INITIAL_CAPACITY, oldCapacity * 2));
+
+        long[] newMost = new long[capacity];
+        long[] newLeast = new long[capacity];
+        long[] newExpiresAt = ttlNanos != 0 ? new long[capacity] : null;
+        Object[] newMessages = messageOf == null ? new Object[capacity] : null;
+        for (int i = 0; i < size; i++) {
+            int from = (head + i) % oldCapacity;
+            newMost[i] = mostSigBits[from];
+            newLeast[i] = leastSigBits[from];
+            if (newExpiresAt != null) {
+                newExpiresAt[i] = expiresAt[from];
+            }
+            if (newMessages != null) {
+                newMessages[i] = messages[from];
+            }
+        }
+        mostSigBits = newMost;
+        leastSigBits = newLeast;
+        expiresAt = newExpiresAt;
+        messages = newMessages;
+        head = 0;
+
+        slots = new int[Integer.highestOneBit(capacity) * 4];
+        for (int i = 0; i < size; i++) {
+            insertSlot(i);
+        }
+    }
+
+    private static int hash(long msb, long lsb) {
+        // Random UUIDs are already well spread, but other ids may only differ by a few bits.
+        long h = (msb * 0x9e3779b97f4a7c15L) ^ lsb;
+        h *= 0xbf58476d1ce4e5b9L;
+        return (int) (h ^ (h >>> 32));
+    }
 }
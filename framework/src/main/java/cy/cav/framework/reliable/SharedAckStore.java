@@ -0,0 +1,128 @@
+package cy.cav.framework.reliable;
+
+import cy.cav.framework.*;
+import jakarta.annotation.*;
+
+import java.time.*;
+import java.util.*;
+
+/// Like an [AckStore], but shared by all actors of a [World] answering the same kind of requests, so a request
+/// sent again to another of these actors is still answered from the store.
+///
+/// Actors use it from several threads, so the store is split in stripes by acknowledgment id, each locked on its own.
+/// Get the store of a message type with [World#sharedAckStore(Class)].
+///
+/// ```java
+/// private final SharedAckStore<CalculateAllowance.Ack> ackStore = world.sharedAckStore(CalculateAllowance.Ack.class);
+///
+/// void calculate(Envelope<CalculateAllowance> envelope) {
+///     if (ackStore.sendIfAcknowledged(this, envelope)) {
+///         return;
+///     }
+///     // ...
+///     ackStore.send(this, envelope.sender(), ack);
+/// }
+/// ```
+///
+/// @param <Out> the type of the response message to save and send back if the request is already acknowledged
+public final class SharedAckStore<Out extends Message.Notification & Acknowledgeable> {
+    private final AckStore<Out>[] stripes;
+    private final int shift;
+
+    /// Creates a store.
+    ///
+    /// @param stripes    the number of stripes, rounded up to a power of two; more stripes mean less waiting
+    ///                   between threads
+    /// @param maxEntries the maximum number of messages in the whole store, spread over stripes
+    /// @param ttl        how long messages are kept
+    @SuppressWarnings("unchecked")
+    public SharedAckStore(int stripes, int maxEntries, Duration ttl) {
+        if (stripes < 1) {
+            throw new IllegalArgumentException("stripes must be positive: " + stripes);
+        }
+
+        int count = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        int perStripe = Math.max(1, (maxEntries + count - 1) / count);
+        this.stripes = new AckStore[count];
+        for (int i = 0; i < count; i++) {
+            // Stripes never send messages themselves, so they have no actor.
+            this.stripes[i] = new AckStore<Out>(null).maxEntries(perStripe).expireAfter(ttl);
+        }
+        this.shift = 32 - Integer.numberOfTrailingZeros(count);
+    }
+
+    /// Registers a response message as an acknowledgment to a request.
+    public void add(Out message) {
+        AckStore<Out> stripe = stripeOf(message.ackId());
+        synchronized (stripe) {
+            stripe.add(message);
+        }
+    }
+
+    /// Gets the response message associated with the acknowledgment id.
+    public @Nullable Out get(UUID ackId) {
+        AckStore<Out> stripe = stripeOf(ackId);
+        synchronized (stripe) {
+            return stripe.get(ackId);
+        }
+    }
+
+    /// Sends a notification from an actor and saves the message as an acknowledged one.
+    public void send(Actor actor, ActorAddress receiver, Out message) {
+        add(message);
+        actor.send(receiver, message);
+    }
+
+    /// Sends the saved message from the actor to the sender, only if the request contained in the envelope
+    /// has already been acknowledged.
+    ///
+    /// @return true when the response was sent, false otherwise
+    public <In extends Message & Acknowledgeable> boolean sendIfAcknowledged(Actor actor, Envelope<In> request) {
+        Out existing = get(request.body().ackId());
+        if (existing == null) { return false; }
+
+        actor.send(request.sender(), existing);
+        return true;
+    }
+
+    /// Returns the number of saved messages, including expired ones not removed yet.
+    public int size() {
+        int size = 0;
+        for (AckStore<Out> stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.size();
+            }
+        }
+        return size;
+    }
+
+    /// Estimates the memory used by the store in bytes, without the saved messages themselves.
+    public long memoryBytes() {
+        long bytes = 16 + 16 + 4L * stripes.length;
+        for (AckStore<Out> stripe : stripes) {
+            synchronized (stripe) {
+                bytes += stripe.memoryBytes();
+            }
+        }
+        return bytes;
+    }
+
+    /// Returns the number of stripes.
+    int stripeCount() {
+        return stripes.length;
+    }
+
+    /// Returns the index of the stripe keeping the message with the acknowledgment id.
+    int stripeIndex(UUID ackId) {
+        if (stripes.length == 1) {
+            return 0;
+        }
+        // Use the top bits of the hash: the stripes use the bottom ones for their own table.
+        int h = Long.hashCode(ackId.getMostSignificantBits() ^ ackId.getLeastSignificantBits()) * 0x9e3779b9;
+        return h >>> shift;
+    }
+
+    private AckStore<Out> stripeOf(UUID ackId) {
+        return stripes[stripeIndex(ackId)];
+    }
+}
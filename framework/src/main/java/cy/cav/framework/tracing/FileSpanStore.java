@@ -0,0 +1,80 @@
+package cy.cav.framework.tracing;
+
+import com.fasterxml.jackson.databind.*;
+import org.slf4j.*;
+
+import java.io.*;
+import java.nio.charset.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/// Appends spans to a file, one JSON object per line.
+///
+/// Spans are written by a background thread so the world never waits for the disk.
+/// When the thread can't keep up, new spans are dropped.
+public class FileSpanStore implements SpanStore, Closeable {
+    private static final Logger log = LoggerFactory.getLogger(FileSpanStore.class);
+    private static final int QUEUE_CAPACITY = 16384;
+
+    private final BlockingQueue<Span> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final ObjectWriter writer;
+    private final Writer output;
+    private final Thread thread;
+
+    public FileSpanStore(Path file, ObjectMapper objectMapper) throws IOException {
+        this.writer = objectMapper.writerFor(Span.class);
+        this.output = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        this.thread = Thread.ofPlatform()
+                .name("Span Writer")
+                .daemon()
+                .start(this::writeLoop);
+    }
+
+    @Override
+    public void record(Span span) {
+        if (!queue.offer(span)) {
+            log.debug("Span queue full; dropping span {}", span);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        thread.interrupt();
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        output.close();
+    }
+
+    private void writeLoop() {
+        List<Span> batch = new ArrayList<>();
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                write(batch);
+            }
+        } catch (InterruptedException e) {
+            // Closing; write what's left.
+            queue.drainTo(batch);
+            write(batch);
+        }
+    }
+
+    private void write(List<Span> batch) {
+        try {
+            for (Span span : batch) {
+                output.write(writer.writeValueAsString(span));
+                output.write('\n');
+            }
+            output.flush();
+        } catch (IOException e) {
+            log.error("Failed to write {} spans", batch.size(), e);
+        }
+        batch.clear();
+    }
+}
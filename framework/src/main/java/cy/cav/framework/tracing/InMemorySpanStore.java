@@ -0,0 +1,40 @@
+package cy.cav.framework.tracing;
+
+import java.util.*;
+
+/// Keeps the most recent spans in memory, forgetting the oldest ones when full.
+///
+/// Spans of a trace can be read back with [#trace(long)], which the `/traces/{traceId}` endpoint uses.
+public class InMemorySpanStore implements SpanStore {
+    private final Span[] spans;
+    private int next = 0;
+    private int size = 0;
+
+    /// @param capacity the maximum number of spans to keep
+    public InMemorySpanStore(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.spans = new Span[capacity];
+    }
+
+    @Override
+    public synchronized void record(Span span) {
+        spans[next] = span;
+        next = (next + 1) % spans.length;
+        size = Math.min(size + 1, spans.length);
+    }
+
+    /// Returns all stored spans of a trace, from the oldest to the most recent.
+    public synchronized List<Span> trace(long traceId) {
+        List<Span> result = new ArrayList<>();
+        int start = (next - size + spans.length) % spans.length;
+        for (int i = 0; i < size; i++) {
+            Span span = spans[(start + i) % spans.length];
+            if (span.traceId() == traceId) {
+                result.add(span);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package cy.cav.framework.tracing;
+
+import cy.cav.framework.*;
+
+import java.time.*;
+
+/// A hop of a trace: an envelope that has been sent, then dispatched by a world.
+///
+/// @param traceId         the id of the trace
+/// @param spanId          the id of this span
+/// @param parentSpanId    the id of the parent span; 0 for the root span
+/// @param sender          the sender of the envelope
+/// @param receiver        the receiver of the envelope
+/// @param message         the simple name of the message class
+/// @param sentAt          when the envelope was sent
+/// @param dispatchedAt    when the world started dispatching the envelope
+/// @param processingNanos how long it took to process the envelope, in nanoseconds
+public record Span(long traceId, long spanId, long parentSpanId,
+                   ActorAddress sender, ActorAddress receiver, String message,
+                   Instant sentAt, Instant dispatchedAt, long processingNanos) {
+    /// Time between sending the envelope and dispatching it. For envelopes coming from other servers, includes
+    /// the network time, and depends on clocks being in sync.
+    public Duration queued() {
+        return Duration.between(sentAt, dispatchedAt);
+    }
+}
@@ -0,0 +1,12 @@
+package cy.cav.framework.tracing;
+
+/// Receives the spans recorded by a [Tracer].
+///
+/// Called on the world main loop thread: implementations must not block.
+@FunctionalInterface
+public interface SpanStore {
+    /// Doesn't store anything.
+    SpanStore NONE = _ -> { };
+
+    void record(Span span);
+}
@@ -0,0 +1,47 @@
+package cy.cav.framework.tracing;
+
+import cy.cav.framework.*;
+import jakarta.annotation.*;
+
+import java.time.*;
+import java.util.concurrent.*;
+
+/// Decides which messages start a trace, and records spans of traced envelopes in a [SpanStore].
+///
+/// Only messages sent outside of any trace are sampled; messages sent while processing a traced envelope
+/// always continue its trace. With a sample rate of 0, nothing is traced and envelopes carry no trace.
+public class Tracer {
+    private final double sampleRate;
+    private final SpanStore store;
+
+    /// @param sampleRate the fraction of new messages starting a trace, between 0 and 1
+    /// @param store      where to record spans
+    public Tracer(double sampleRate, SpanStore store) {
+        if (!(sampleRate >= 0 && sampleRate <= 1)) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleRate = sampleRate;
+        this.store = store;
+    }
+
+    /// A tracer that never traces anything.
+    public static Tracer disabled() {
+        return new Tracer(0, SpanStore.NONE);
+    }
+
+    /// Returns the trace context of a new message sent outside of any trace: a new trace when sampled,
+    /// null otherwise.
+    public @Nullable TraceContext sample() {
+        if (sampleRate == 0 || ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            return null;
+        }
+        return TraceContext.root();
+    }
+
+    /// Records the span of a traced envelope that has been dispatched.
+    public void record(Envelope<?> envelope, TraceContext trace, Instant dispatchedAt, long processingNanos) {
+        store.record(new Span(trace.traceId(), trace.spanId(), trace.parentSpanId(),
+                envelope.sender(), envelope.receiver(), envelope.body().getClass().getSimpleName(),
+                envelope.sentAt(), dispatchedAt, processingNanos));
+    }
+}
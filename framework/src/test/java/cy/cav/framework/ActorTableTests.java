@@ -0,0 +1,138 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ActorTableTests {
+    private final World world = TestWorlds.create(1);
+    private final ActorTable table = new ActorTable();
+
+    private Actor actor(long number) {
+        return new TestWorlds.Sink(new ActorInit(world, new ActorAddress(1, number)));
+    }
+
+    @Test
+    void putGetRemove() {
+        Actor actor = actor(5000);
+
+        assertThat(table.putIfAbsent(5000, actor)).isNull();
+        assertThat(table.get(5000)).isSameAs(actor);
+        assertThat(table.contains(5000)).isTrue();
+        assertThat(table.get(5001)).isNull();
+        assertThat(table.size()).isEqualTo(1);
+
+        assertThat(table.remove(5000)).isSameAs(actor);
+        assertThat(table.get(5000)).isNull();
+        assertThat(table.remove(5000)).isNull();
+        assertThat(table.size()).isZero();
+    }
+
+    @Test
+    void putIfAbsentKeepsExistingActor() {
+        Actor first = actor(42);
+        Actor second = actor(42);
+
+        table.putIfAbsent(42, first);
+
+        assertThat(table.putIfAbsent(42, second)).isSameAs(first);
+        assertThat(table.get(42)).isSameAs(first);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void replaceOnlyExpectedActor() {
+        Actor first = actor(42);
+        Actor second = actor(42);
+        Actor third = actor(42);
+        table.putIfAbsent(42, first);
+
+        assertThat(table.replace(42, second, third)).isFalse();
+        assertThat(table.replace(42, first, second)).isTrue();
+        assertThat(table.get(42)).isSameAs(second);
+        assertThat(table.replace(43, first, second)).isFalse();
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void numbersOutsideOfSegmentsGoToOverflow() {
+        long huge = Long.MAX_VALUE - 3;
+        long negative = -7;
+        Actor a = actor(huge);
+        Actor b = actor(negative);
+
+        assertThat(table.putIfAbsent(huge, a)).isNull();
+        assertThat(table.putIfAbsent(negative, b)).isNull();
+        assertThat(table.get(huge)).isSameAs(a);
+        assertThat(table.get(negative)).isSameAs(b);
+        assertThat(table.size()).isEqualTo(2);
+
+        assertThat(table.remove(huge)).isSameAs(a);
+        assertThat(table.size()).isEqualTo(1);
+    }
+
+    @Test
+    void segmentsCanBeReusedAfterRelease() {
+        // Fill two segments, empty the first one (releasing it), then use it again.
+        for (long n = 1; n < 2 * 4096; n++) {
+            table.putIfAbsent(n, actor(n));
+        }
+        for (long n = 1; n < 4096; n++) {
+            assertThat(table.remove(n)).isNotNull();
+        }
+        assertThat(table.size()).isEqualTo(4096);
+
+        Actor again = actor(10);
+        assertThat(table.putIfAbsent(10, again)).isNull();
+        assertThat(table.get(10)).isSameAs(again);
+        assertThat(table.get(5000)).isNotNull();
+    }
+
+    @Test
+    void forEachSeesAllActors() {
+        Set<Long> numbers = new HashSet<>(List.of(1L, 4095L, 4096L, 100_000L, Long.MAX_VALUE));
+        for (long n : numbers) {
+            table.putIfAbsent(n, actor(n));
+        }
+
+        Set<Long> seen = new HashSet<>();
+        table.forEach(actor -> seen.add(actor.address.actorNumber()));
+
+        assertThat(seen).isEqualTo(numbers);
+    }
+
+    @Test
+    void concurrentSpawnsAndDespawnsKeepCount() throws Exception {
+        int threads = 4;
+        int perThread = 20_000;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                long base = 1 + (long) t * perThread;
+                futures.add(executor.submit(() -> {
+                    for (long n = base; n < base + perThread; n++) {
+                        assertThat(table.putIfAbsent(n, actor(n))).isNull();
+                    }
+                    // Keep one in two actors.
+                    for (long n = base; n < base + perThread; n += 2) {
+                        assertThat(table.remove(n)).isNotNull();
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get(30, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(table.size()).isEqualTo(threads * perThread / 2);
+        for (long n = 1; n <= (long) threads * perThread; n++) {
+            assertThat(table.contains(n)).isEqualTo(n % 2 == 0);
+        }
+    }
+}
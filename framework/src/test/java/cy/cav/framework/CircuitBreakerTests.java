@@ -0,0 +1,92 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import static cy.cav.framework.CircuitBreaker.*;
+import static org.assertj.core.api.Assertions.*;
+
+class CircuitBreakerTests {
+    private final CircuitBreaker breaker = new CircuitBreaker();
+    private long now = 1_000_000_000L;
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            breaker.failed(now);
+        }
+    }
+
+    @Test
+    void opensAfterFailuresInARow() {
+        fail(FAILURE_THRESHOLD - 1);
+        assertThat(breaker.isOpen()).isFalse();
+        assertThat(breaker.allows(now)).isTrue();
+
+        assertThat(breaker.failed(now)).isTrue();
+
+        assertThat(breaker.isOpen()).isTrue();
+        assertThat(breaker.isHealthy(now)).isFalse();
+        assertThat(breaker.allows(now)).isFalse();
+        assertThat(breaker.openNanos()).isEqualTo(MIN_OPEN_NANOS);
+    }
+
+    @Test
+    void letsASingleProbeThroughOnceTheWaitIsOver() {
+        fail(FAILURE_THRESHOLD);
+        now += MIN_OPEN_NANOS;
+
+        assertThat(breaker.isHealthy(now)).isTrue();
+        assertThat(breaker.allows(now)).isTrue();
+        assertThat(breaker.allows(now)).isFalse();
+        assertThat(breaker.isHealthy(now)).isFalse();
+    }
+
+    @Test
+    void waitsLongerEachTimeTheProbeFails() {
+        fail(FAILURE_THRESHOLD);
+        now += MIN_OPEN_NANOS;
+        breaker.allows(now);
+
+        assertThat(breaker.failed(now)).isTrue();
+
+        assertThat(breaker.openNanos()).isEqualTo(2 * MIN_OPEN_NANOS);
+        now += MIN_OPEN_NANOS;
+        assertThat(breaker.allows(now)).isFalse();
+        now += MIN_OPEN_NANOS;
+        assertThat(breaker.allows(now)).isTrue();
+    }
+
+    @Test
+    void ignoresFailuresOfMessagesSentBeforeItOpened() {
+        fail(FAILURE_THRESHOLD);
+        long openNanos = breaker.openNanos();
+
+        assertThat(breaker.failed(now)).isFalse();
+
+        assertThat(breaker.openNanos()).isEqualTo(openNanos);
+        now += MIN_OPEN_NANOS;
+        assertThat(breaker.allows(now)).isTrue();
+    }
+
+    @Test
+    void sendsAnotherProbeWhenTheFirstNeverComesBack() {
+        fail(FAILURE_THRESHOLD);
+        now += MIN_OPEN_NANOS;
+        breaker.allows(now);
+
+        now += MIN_OPEN_NANOS;
+
+        assertThat(breaker.allows(now)).isTrue();
+    }
+
+    @Test
+    void neverWaitsMoreThanTheMaximum() {
+        fail(FAILURE_THRESHOLD);
+        for (int i = 0; i < 40; i++) {
+            now += breaker.openNanos();
+            breaker.allows(now);
+            breaker.failed(now);
+        }
+
+        assertThat(breaker.openNanos()).isEqualTo(MAX_OPEN_NANOS);
+    }
+}
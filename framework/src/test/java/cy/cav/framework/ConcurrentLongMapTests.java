@@ -0,0 +1,78 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ConcurrentLongMapTests {
+    private final ConcurrentLongMap<String> map = new ConcurrentLongMap<>();
+
+    @Test
+    void putGetRemove() {
+        assertThat(map.put(1, "a")).isNull();
+        assertThat(map.put(1, "b")).isEqualTo("a");
+        assertThat(map.get(1)).isEqualTo("b");
+        assertThat(map.get(2)).isNull();
+        assertThat(map.size()).isEqualTo(1);
+
+        assertThat(map.remove(1)).isEqualTo("b");
+        assertThat(map.remove(1)).isNull();
+        assertThat(map.size()).isZero();
+    }
+
+    @Test
+    void keyZeroIsReserved() {
+        assertThatIllegalArgumentException().isThrownBy(() -> map.put(0, "a"));
+        assertThat(map.get(0)).isNull();
+    }
+
+    @Test
+    void matchesHashMapUnderRandomOperations() {
+        // Few distinct keys, so removals often shift collided entries back.
+        Map<Long, String> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 200_000; i++) {
+            long key = 1 + random.nextInt(5_000);
+            switch (random.nextInt(3)) {
+                case 0 -> assertThat(map.put(key, "v" + i)).isEqualTo(expected.put(key, "v" + i));
+                case 1 -> assertThat(map.remove(key)).isEqualTo(expected.remove(key));
+                default -> assertThat(map.get(key)).isEqualTo(expected.get(key));
+            }
+        }
+
+        assertThat(map.size()).isEqualTo(expected.size());
+        for (var entry : expected.entrySet()) {
+            assertThat(map.get(entry.getKey())).isEqualTo(entry.getValue());
+        }
+    }
+
+    @Test
+    void removeIfRemovesMatchingValuesAndShrinks() {
+        for (long key = 1; key <= 10_000; key++) {
+            map.put(key, key % 100 == 0 ? "keep" + key : "drop");
+        }
+
+        List<String> removed = map.removeIf("drop"::equals);
+
+        assertThat(removed).hasSize(9_900);
+        assertThat(map.size()).isEqualTo(100);
+        for (long key = 100; key <= 10_000; key += 100) {
+            assertThat(map.get(key)).isEqualTo("keep" + key);
+        }
+        assertThat(map.get(99)).isNull();
+    }
+
+    @Test
+    void forEachSeesAllValues() {
+        map.put(-5, "a");
+        map.put(Long.MIN_VALUE, "b");
+        map.put(Long.MAX_VALUE, "c");
+
+        List<String> values = new ArrayList<>();
+        map.forEach(values::add);
+
+        assertThat(values).containsExactlyInAnyOrder("a", "b", "c");
+    }
+}
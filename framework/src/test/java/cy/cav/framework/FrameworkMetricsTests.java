@@ -0,0 +1,34 @@
+package cy.cav.framework;
+
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class FrameworkMetricsTests {
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final FrameworkMetrics metrics = new FrameworkMetrics(registry);
+
+    @Test
+    void peerMetersAreRemovedWhenThePeerLeaves() {
+        metrics.sent(0xA, 1_000, true);
+        metrics.sent(0xB, 1_000, false);
+        assertThat(registry.find("cav.outside.send").timers()).hasSize(2);
+
+        metrics.peerLeft(0xA);
+
+        assertThat(registry.find("cav.outside.send").timers()).hasSize(1);
+        assertThat(registry.find("cav.outside.send.failures").tag("peer", "000000000000000a").counter()).isNull();
+        assertThat(registry.find("cav.outside.send.failures").tag("peer", "000000000000000b").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void peerMetersComeBackAfterLeaving() {
+        metrics.sent(0xA, 1_000, true);
+        metrics.peerLeft(0xA);
+        metrics.sent(0xA, 2_000, true);
+
+        assertThat(registry.get("cav.outside.send").tag("peer", "000000000000000a").timer().count()).isEqualTo(1);
+    }
+}
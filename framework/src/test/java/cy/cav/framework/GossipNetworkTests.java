@@ -0,0 +1,90 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+import org.springframework.scheduling.concurrent.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class GossipNetworkTests {
+    private static final String PEER_ID = "00000000000000aa";
+    private static final long PEER = 0xAA;
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private GossipNetwork network;
+
+    @BeforeEach
+    void setUp() {
+        scheduler.initialize();
+        // No rounds during tests; only exchanges.
+        var config = new FrameworkConfig.Discovery(FrameworkConfig.DiscoveryMode.GOSSIP, null, null, null,
+                Duration.ofHours(1), Duration.ofHours(1));
+        network = new GossipNetwork(new Server(1L, "test", null, Map.of()), List.of("test"), config, scheduler);
+        network.join("http://127.0.0.1:1");
+    }
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdown();
+    }
+
+    private static GossipNetwork.Member peer(String url, long incarnation, long heartbeat, boolean left) {
+        return new GossipNetwork.Member(PEER_ID, "test", url, Map.of(), incarnation, heartbeat, left);
+    }
+
+    private void receive(GossipNetwork.Member member) {
+        network.exchange(new GossipNetwork.Gossip(List.of(member)));
+    }
+
+    @Test
+    void newerHeartbeatsReplaceOlderOnes() {
+        receive(peer("http://127.0.0.1:2", 1, 5, false));
+        assertThat(network.servers()).containsKey(PEER);
+
+        // An old leave doesn't remove the server.
+        receive(peer("http://127.0.0.1:2", 1, 4, true));
+        assertThat(network.servers()).containsKey(PEER);
+
+        receive(peer("http://127.0.0.1:2", 1, 6, true));
+        assertThat(network.servers()).doesNotContainKey(PEER);
+    }
+
+    @Test
+    void restartedServerIsKnownAgainRightAway() {
+        receive(peer("http://127.0.0.1:2", 1, 500, false));
+        receive(peer("http://127.0.0.1:2", 1, 501, true));
+        assertThat(network.servers()).doesNotContainKey(PEER);
+
+        // The heartbeat starts over, but the incarnation is newer.
+        receive(peer("http://127.0.0.1:3", 2, 0, false));
+
+        assertThat(network.servers().get(PEER).url()).isEqualTo("http://127.0.0.1:3");
+    }
+
+    @Test
+    void oldIncarnationIsIgnored() {
+        receive(peer("http://127.0.0.1:3", 2, 0, false));
+        receive(peer("http://127.0.0.1:2", 1, 1000, true));
+
+        assertThat(network.servers().get(PEER).url()).isEqualTo("http://127.0.0.1:3");
+    }
+
+    @Test
+    void restartAtAnotherUrlUpdatesTheServer() {
+        receive(peer("http://127.0.0.1:2", 1, 10, false));
+        receive(peer("http://127.0.0.1:3", 2, 0, false));
+
+        assertThat(network.servers().get(PEER).url()).isEqualTo("http://127.0.0.1:3");
+    }
+
+    @Test
+    void unknownServersThatLeftAreNotLearned() {
+        GossipNetwork.Gossip answer = network.exchange(new GossipNetwork.Gossip(
+                List.of(peer("http://127.0.0.1:2", 1, 10, true))));
+
+        assertThat(answer.members()).extracting(GossipNetwork.Member::id).doesNotContain(PEER_ID);
+        assertThat(network.servers()).isEmpty();
+    }
+}
@@ -0,0 +1,119 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.function.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class HashRingTests {
+    private static final int KEYS = 10_000;
+
+    private final TestNetwork network = new TestNetwork(TestNetwork.server(1, "ring"));
+    private final HashRing ring = network.ring(server -> server.metadata().get("capabilities").contains("ring"));
+
+    @Test
+    void includesItselfWhenItMatches() {
+        assertThat(ring.servers()).containsExactly(network.server());
+        assertThat(ring.serverFor(UUID.randomUUID())).isEqualTo(network.server());
+
+        HashRing other = network.ring(_ -> false);
+        assertThat(other.servers()).isEmpty();
+        assertThat(other.serverFor(UUID.randomUUID())).isNull();
+        assertThat(other.serverFor("key")).isNull();
+        assertThat(other.serverFor(UUID.randomUUID(), _ -> true)).isNull();
+    }
+
+    @Test
+    void spreadsKeysEvenly() {
+        network.set(TestNetwork.server(2, "ring"), TestNetwork.server(3, "ring"), TestNetwork.server(4, "ring"),
+                TestNetwork.server(5, "other"));
+
+        Map<Long, Integer> counts = new HashMap<>();
+        for (UUID key : keys()) {
+            counts.merge(ring.serverFor(key).id(), 1, Integer::sum);
+        }
+
+        assertThat(counts).containsOnlyKeys(1L, 2L, 3L, 4L);
+        // Each server gets a quarter of the keys, give or take a fifth.
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(KEYS / 4 * 4 / 5, KEYS / 4 * 6 / 5));
+    }
+
+    @Test
+    void movesFewKeysWhenAServerJoins() {
+        network.set(TestNetwork.server(2, "ring"), TestNetwork.server(3, "ring"));
+        Map<UUID, Long> before = owners();
+
+        Server four = TestNetwork.server(4, "ring");
+        network.set(TestNetwork.server(2, "ring"), TestNetwork.server(3, "ring"), four);
+        Map<UUID, Long> after = owners();
+
+        int moved = 0;
+        for (UUID key : before.keySet()) {
+            if (!before.get(key).equals(after.get(key))) {
+                // Keys only move to the new server.
+                assertThat(after.get(key)).isEqualTo(four.id());
+                moved++;
+            }
+        }
+        // The new server takes about a quarter of the keys.
+        assertThat(moved).isBetween(KEYS / 4 * 4 / 5, KEYS / 4 * 6 / 5);
+    }
+
+    @Test
+    void agreesWithRingsOfOtherServers() {
+        network.set(TestNetwork.server(2, "ring"), TestNetwork.server(3, "ring"));
+        var otherNetwork = new TestNetwork(TestNetwork.server(2, "ring"));
+        otherNetwork.set(TestNetwork.server(1, "ring"), TestNetwork.server(3, "ring"));
+        HashRing other = otherNetwork.ring(server -> server.metadata().get("capabilities").contains("ring"));
+
+        for (UUID key : keys()) {
+            assertThat(other.serverFor(key).id()).isEqualTo(ring.serverFor(key).id());
+        }
+    }
+
+    @Test
+    void skipsRejectedServersLikeIfTheyLeft() {
+        network.set(TestNetwork.server(2, "ring"), TestNetwork.server(3, "ring"));
+        Map<UUID, Server> withTwo = new HashMap<>();
+        for (UUID key : keys()) {
+            withTwo.put(key, ring.serverFor(key, server -> server.id() != 2));
+        }
+
+        network.set(TestNetwork.server(3, "ring"));
+
+        for (UUID key : keys()) {
+            assertThat(withTwo.get(key).id()).isEqualTo(ring.serverFor(key).id());
+        }
+        Predicate<Server> none = _ -> false;
+        assertThat(ring.serverFor(UUID.randomUUID(), none)).isNull();
+    }
+
+    @Test
+    void forgetsServersThatNoLongerMatch() {
+        network.set(TestNetwork.server(2, "ring"));
+        assertThat(ring.servers()).extracting(Server::id).containsExactlyInAnyOrder(1L, 2L);
+
+        network.set(TestNetwork.server(2, "other"));
+
+        assertThat(ring.servers()).extracting(Server::id).containsExactly(1L);
+    }
+
+    private Map<UUID, Long> owners() {
+        Map<UUID, Long> owners = new HashMap<>();
+        for (UUID key : keys()) {
+            owners.put(key, ring.serverFor(key).id());
+        }
+        return owners;
+    }
+
+    private static List<UUID> keys() {
+        var random = new Random(42);
+        List<UUID> keys = new ArrayList<>();
+        for (int i = 0; i < KEYS; i++) {
+            keys.add(new UUID(random.nextLong(), random.nextLong()));
+        }
+        return keys;
+    }
+}
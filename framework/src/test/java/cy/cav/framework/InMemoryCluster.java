@@ -0,0 +1,224 @@
+package cy.cav.framework;
+
+import com.fasterxml.jackson.core.type.*;
+import com.fasterxml.jackson.databind.*;
+import com.fasterxml.jackson.databind.json.*;
+import cy.cav.framework.tracing.*;
+import io.micrometer.core.instrument.*;
+import io.micrometer.core.instrument.simple.*;
+import org.springframework.scheduling.concurrent.*;
+
+import java.io.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Runs several [World]s in the same process, connected to each other without HTTP nor Eureka.
+///
+/// Each world gets its own [Network], which always knows every other world of the cluster, and a [Transport]
+/// which puts envelopes directly in the mailbox of the receiving world. Used by tests, and to load the whole
+/// system with a single JVM.
+///
+/// When `jsonWire` is true, envelopes are turned into JSON and back before being received, like
+/// [OutsideSender] and [OutsideReceiver] do, so the cost of serialization is part of the measure.
+///
+/// Tests can make the transport lose envelopes with [#deliveries(Function)].
+public final class InMemoryCluster implements AutoCloseable {
+    private static final TypeReference<Envelope<Message>> ENVELOPE_TYPE = new TypeReference<>() { };
+
+    private final boolean jsonWire;
+    // Configured like the ObjectMapper of Spring Boot.
+    private final ObjectMapper mapper = JsonMapper.builder()
+            .findAndAddModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .build();
+
+    private final ThreadPoolTaskScheduler scheduler = new ThreadPoolTaskScheduler();
+    private final Map<Long, Node> nodes = new ConcurrentHashMap<>();
+    private final List<ScheduledFuture<?>> cleanups = new CopyOnWriteArrayList<>();
+    // Decides what happens to each envelope going from a world to another.
+    private volatile Function<Envelope<?>, Delivery> deliveries = _ -> Delivery.DELIVER;
+    // Envelopes that were lost, in the order they were sent.
+    private final List<Envelope<?>> lost = new CopyOnWriteArrayList<>();
+    // Sizes of the batches sent with Transport.sendAll, in the order they were sent.
+    private final List<Integer> batches = new CopyOnWriteArrayList<>();
+    private long nextServerId = 1;
+
+    /// Creates a cluster giving envelopes as they are to the receiving world.
+    public InMemoryCluster() {
+        this(false);
+    }
+
+    public InMemoryCluster(boolean jsonWire) {
+        this.jsonWire = jsonWire;
+        scheduler.setPoolSize(2);
+        scheduler.setThreadNamePrefix("cluster-scheduler-");
+        scheduler.initialize();
+    }
+
+    /// Adds a new world to the cluster, and lets all other worlds know about it.
+    ///
+    /// The world isn't started.
+    ///
+    /// @param appName  the application name of the server, like `cav-service`
+    /// @param metadata the metadata of the server, like `supportsCalculators`
+    public synchronized World addWorld(String appName, Map<String, String> metadata) {
+        long id = nextServerId++;
+        Server server = new Server(id, appName, "mem://" + id, metadata);
+
+        var network = new ClusterNetwork(server);
+        var registry = new SimpleMeterRegistry();
+        var metrics = new FrameworkMetrics(registry);
+        World world = new World(server, new ClusterTransport(), scheduler, metrics, Tracer.disabled());
+        nodes.put(id, new Node(world, network, registry));
+
+        for (Node node : nodes.values()) {
+            node.network.refresh();
+        }
+        return world;
+    }
+
+    /// Adds and starts a new world, without any metadata.
+    public World add() {
+        World world = addWorld("test", Map.of());
+        start(nodes.get(world.server().id()));
+        return world;
+    }
+
+    /// Returns the network seen by the world.
+    public Network network(World world) {
+        return nodes.get(world.server().id()).network;
+    }
+
+    /// Returns the meters of the world, like `cav.world.mailbox.depth` or `cav.world.dispatch`.
+    public MeterRegistry registry(World world) {
+        return nodes.get(world.server().id()).registry;
+    }
+
+    /// Returns all worlds of the cluster.
+    public List<World> worlds() {
+        return nodes.values().stream().map(Node::world).toList();
+    }
+
+    /// Starts all worlds that aren't started yet.
+    public void start() {
+        for (Node node : nodes.values()) {
+            if (!node.world.isRunning()) {
+                start(node);
+            }
+        }
+    }
+
+    /// Sets what happens to envelopes sent from now on.
+    public void deliveries(Function<Envelope<?>, Delivery> deliveries) {
+        this.deliveries = Objects.requireNonNull(deliveries);
+    }
+
+    /// Returns the envelopes lost until now.
+    public List<Envelope<?>> lost() {
+        return lost;
+    }
+
+    /// Returns the sizes of the batches of envelopes sent at once until now.
+    public List<Integer> batches() {
+        return batches;
+    }
+
+    /// Gives an envelope to its world, like if it had been delivered late.
+    public void deliver(Envelope<?> envelope) {
+        nodes.get(envelope.receiver().serverId()).world.receive(envelope);
+    }
+
+    /// Stops all worlds.
+    @Override
+    public void close() {
+        cleanups.forEach(f -> f.cancel(false));
+        for (Node node : nodes.values()) {
+            if (node.world.isRunning()) {
+                node.world.stop();
+            }
+        }
+        scheduler.shutdown();
+    }
+
+    // Starts the world, and times out its requests and forgets moved actors like Framework does.
+    private void start(Node node) {
+        node.world.start();
+        cleanups.add(scheduler.scheduleAtFixedRate(node.world::cleanupTimedOutRequests, Duration.ofSeconds(1)));
+        cleanups.add(scheduler.scheduleAtFixedRate(node.world::forgetMovedActors, Duration.ofSeconds(1)));
+    }
+
+    public enum Delivery {
+        /// The envelope reaches its world.
+        DELIVER,
+        /// The envelope is lost, and the sending world is told.
+        LOSE,
+        /// The envelope reaches its world, but the sending world is told it was lost, like after a timeout.
+        DELIVER_BUT_FAIL
+    }
+
+    private record Node(World world, ClusterNetwork network, MeterRegistry registry) { }
+
+    /// Knows every other world of the cluster.
+    private final class ClusterNetwork extends Network {
+        ClusterNetwork(Server server) {
+            super(server);
+        }
+
+        void refresh() {
+            Map<Long, Server> servers = new HashMap<>();
+            for (Node node : nodes.values()) {
+                servers.put(node.world.server().id(), node.world.server());
+            }
+            updateServers(servers);
+        }
+    }
+
+    /// Puts envelopes in the mailbox of the receiving world.
+    private final class ClusterTransport implements Transport {
+        private volatile Consumer<Envelope<?>> deliveryFailureListener = _ -> { };
+        private volatile LongConsumer deliveredListener = _ -> { };
+
+        @Override
+        public void send(Envelope<?> envelope, boolean retry) {
+            Node receiver = nodes.get(envelope.receiver().serverId());
+            Delivery delivery = receiver == null ? Delivery.LOSE : deliveries.apply(envelope);
+            if (delivery != Delivery.LOSE) {
+                receiver.world.receive(jsonWire ? throughJson(envelope) : envelope);
+            } else {
+                lost.add(envelope);
+            }
+            if (delivery != Delivery.DELIVER) {
+                deliveryFailureListener.accept(envelope);
+            } else {
+                deliveredListener.accept(envelope.receiver().serverId());
+            }
+        }
+
+        @Override
+        public void sendAll(List<Envelope<?>> envelopes, boolean retry) {
+            batches.add(envelopes.size());
+            Transport.super.sendAll(envelopes, retry);
+        }
+
+        @Override
+        public void onDeliveryFailure(Consumer<Envelope<?>> listener) {
+            this.deliveryFailureListener = Objects.requireNonNull(listener);
+        }
+
+        @Override
+        public void onDelivered(LongConsumer listener) {
+            this.deliveredListener = Objects.requireNonNull(listener);
+        }
+
+        private Envelope<?> throughJson(Envelope<?> envelope) {
+            try {
+                return mapper.readValue(mapper.writeValueAsBytes(envelope), ENVELOPE_TYPE);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
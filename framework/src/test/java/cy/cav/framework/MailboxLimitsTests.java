@@ -0,0 +1,208 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+import org.springframework.mock.web.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.stream.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class MailboxLimitsTests {
+    // Envelopes are sent before the world starts, so they all wait in the mailbox.
+    private final World world = TestWorlds.create(1);
+
+    @AfterEach
+    void tearDown() {
+        world.stop();
+    }
+
+    private Recorder spawnRecorder() {
+        return spawnRecorder(0);
+    }
+
+    private Recorder spawnRecorder(long number) {
+        Recorder[] recorder = new Recorder[1];
+        world.spawn(init -> recorder[0] = new Recorder(init), number, null);
+        return recorder[0];
+    }
+
+    private void sendNotes(Recorder recorder, int from, int to) {
+        for (int i = from; i < to; i++) {
+            world.send(null, recorder.address(), new Note(i));
+        }
+    }
+
+    private static List<Integer> range(int from, int to) {
+        return IntStream.range(from, to).boxed().toList();
+    }
+
+    @Test
+    void dropsTheOldestNotificationsPastTheLimitOfTheActor() {
+        world.mailboxLimits(1000, 10);
+        Recorder recorder = spawnRecorder();
+        sendNotes(recorder, 0, 25);
+
+        world.start();
+
+        await().until(() -> recorder.received.contains(24));
+        assertThat(recorder.received).isEqualTo(range(15, 25));
+        assertThat(recorder.waitingEnvelopes()).isZero();
+    }
+
+    @Test
+    void failsRequestsPastTheLimitOfTheActor() {
+        world.mailboxLimits(1000, 10);
+        Recorder recorder = spawnRecorder();
+        sendNotes(recorder, 0, 10);
+
+        var response = world.query(null, recorder.address(), new Ask()).toCompletableFuture();
+        world.start();
+
+        assertThatThrownBy(() -> response.get(10, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOfSatisfying(RequestFailedException.class,
+                        e -> assertThat(e.reason()).isEqualTo(RequestFailedResponse.Reason.OVERLOADED));
+        await().until(() -> recorder.received.size() == 10);
+        assertThat(recorder.waitingEnvelopes()).isZero();
+    }
+
+    @Test
+    void dropsTheOldestNotificationsPastTheLimitOfTheWorld() {
+        world.mailboxLimits(10, 1000);
+        Recorder first = spawnRecorder();
+        Recorder second = spawnRecorder();
+        sendNotes(first, 0, 8);
+        sendNotes(second, 0, 8);
+
+        world.start();
+
+        await().until(() -> second.received.size() == 8);
+        assertThat(first.received).isEqualTo(range(6, 8));
+        assertThat(first.waitingEnvelopes()).isZero();
+        assertThat(second.waitingEnvelopes()).isZero();
+    }
+
+    @Test
+    void onlyCountsEnvelopesOnceForTheActorTheyWereCountedFor() throws Exception {
+        world.mailboxLimits(1000, 10);
+        // Sent before the actor exists, then never counted.
+        var early = new ActorAddress(1, 42);
+        for (int i = 0; i < 5; i++) {
+            world.send(null, early, new Note(i));
+        }
+        Recorder recorder = spawnRecorder(42);
+        // System envelopes are never shed, so never counted either.
+        for (int i = 5; i < 10; i++) {
+            world.send(null, recorder.address(), new Note(i), MessagePriority.SYSTEM);
+        }
+        world.start();
+        await().until(() -> recorder.received.size() == 10);
+        assertThat(recorder.waitingEnvelopes()).isZero();
+
+        // The limit still works afterward.
+        var paused = new CountDownLatch(1);
+        recorder.paused = paused;
+        world.send(null, recorder.address(), new Note(10));
+        await().until(() -> recorder.received.size() == 11);
+        sendNotes(recorder, 11, 36);
+        paused.countDown();
+
+        await().until(() -> recorder.received.contains(35));
+        assertThat(recorder.received.subList(11, recorder.received.size())).isEqualTo(range(26, 36));
+        assertThat(recorder.waitingEnvelopes()).isZero();
+    }
+
+    @Test
+    void dropsTheNewNotificationWhenOnlyRequestsWait() {
+        world.mailboxLimits(1000, 3);
+        Recorder recorder = spawnRecorder();
+        for (int i = 0; i < 3; i++) {
+            world.query(null, recorder.address(), new Ask());
+        }
+        sendNotes(recorder, 0, 2);
+
+        world.start();
+
+        await().until(() -> recorder.asked == 3);
+        assertThat(recorder.received).isEmpty();
+        assertThat(recorder.waitingEnvelopes()).isZero();
+    }
+
+    @Test
+    void neverDropsTheTimersOfAnActorToItself() throws InterruptedException {
+        world.mailboxLimits(2, 1000);
+        Recorder recorder = spawnRecorder();
+        recorder.sendDelayed(recorder.address(), new Note(-1), Duration.ZERO);
+        Thread.sleep(200);
+        // Newer notifications push out the oldest ones, but not the timer.
+        sendNotes(recorder, 0, 10);
+
+        world.start();
+
+        await().until(() -> recorder.received.contains(9));
+        assertThat(recorder.received).contains(-1);
+        assertThat(recorder.received).hasSizeLessThan(11);
+    }
+
+    @Test
+    void refusesOnlyTheEnvelopesOfABatchThatCanBeShed() {
+        world.mailboxLimits(1, 1000);
+        Recorder recorder = spawnRecorder();
+        sendNotes(recorder, 0, 1);
+        assertThat(world.isOverloaded()).isTrue();
+
+        var from = new ActorAddress(2, 1000);
+        List<Envelope<Message>> batch = List.of(
+                new Envelope<>(from, recorder.address(), 0, new Note(1), Instant.now()),
+                new Envelope<>(from, recorder.address(), 0, new Note(2), Instant.now(), null, MessagePriority.SYSTEM),
+                new Envelope<>(from, recorder.address(), 0, new Note(3), Instant.now()));
+        var receipt = new OutsideReceiver(world).receiveBatch(batch, new MockHttpServletRequest());
+
+        assertThat(receipt.refused()).containsExactly(0, 2);
+        world.start();
+        await().until(() -> recorder.received.contains(2));
+        assertThat(recorder.received).doesNotContain(1, 3);
+    }
+
+    private record Note(int index) implements Message.Notification { }
+
+    private record Ask() implements Message.Request<Answer> { }
+
+    private record Answer() implements Message.Response { }
+
+    private static final class Recorder extends Actor {
+        final List<Integer> received = new CopyOnWriteArrayList<>();
+        volatile int asked;
+        // When set, the actor waits after its next note, so the following ones pile up.
+        volatile CountDownLatch paused;
+
+        Recorder(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            switch (envelope.body()) {
+                case Note(int index) -> {
+                    received.add(index);
+                    CountDownLatch latch = paused;
+                    if (latch != null) {
+                        paused = null;
+                        try {
+                            latch.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                case Ask() -> {
+                    asked++;
+                    respond(envelope, new Answer());
+                }
+                default -> { }
+            }
+        }
+    }
+}
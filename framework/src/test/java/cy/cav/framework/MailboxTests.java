@@ -0,0 +1,94 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+import java.util.*;
+
+import static cy.cav.framework.MessagePriority.*;
+import static org.assertj.core.api.Assertions.*;
+
+class MailboxTests {
+    private static final ActorAddress SENDER = new ActorAddress(1, 1);
+    private static final ActorAddress RECEIVER = new ActorAddress(1, 2);
+
+    private final Mailbox mailbox = new Mailbox();
+
+    private void add(MessagePriority priority, int count) {
+        for (int i = 0; i < count; i++) {
+            mailbox.add(envelope(new Note(priority, i)), priority, null);
+        }
+    }
+
+    private static Envelope<?> envelope(Message body) {
+        return new Envelope<>(SENDER, RECEIVER, 0, body, Instant.EPOCH);
+    }
+
+    private List<MessagePriority> take(int count) throws InterruptedException {
+        List<MessagePriority> taken = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            taken.add(((Note) mailbox.take().envelope().body()).priority());
+        }
+        return taken;
+    }
+
+    @Test
+    void servesLanesInTurnsByWeight() throws InterruptedException {
+        add(BULK, 4);
+        add(INTERACTIVE, 8);
+        add(SYSTEM, 32);
+
+        List<MessagePriority> round = new ArrayList<>();
+        round.addAll(Collections.nCopies(SYSTEM.weight, SYSTEM));
+        round.addAll(Collections.nCopies(INTERACTIVE.weight, INTERACTIVE));
+        round.addAll(Collections.nCopies(BULK.weight, BULK));
+
+        assertThat(take(round.size())).isEqualTo(round);
+        assertThat(take(round.size())).isEqualTo(round);
+        assertThat(take(2)).containsExactly(BULK, BULK);
+        assertThat(mailbox.size()).isZero();
+    }
+
+    @Test
+    void startsANewRoundWhenLanesWithEnvelopesUsedTheirTurns() throws InterruptedException {
+        add(BULK, 3);
+        add(INTERACTIVE, 5);
+
+        assertThat(take(8)).containsExactly(INTERACTIVE, INTERACTIVE, INTERACTIVE, INTERACTIVE, BULK,
+                INTERACTIVE, BULK, BULK);
+    }
+
+    @Test
+    void keepsTheOrderWithinALaneOnly() throws InterruptedException {
+        mailbox.add(envelope(new Note(BULK, 0)), BULK, null);
+        mailbox.add(envelope(new Note(INTERACTIVE, 0)), INTERACTIVE, null);
+        mailbox.add(envelope(new Note(INTERACTIVE, 1)), INTERACTIVE, null);
+
+        // The bulk envelope was added first, but is taken last.
+        assertThat(mailbox.take().envelope().body()).isEqualTo(new Note(INTERACTIVE, 0));
+        assertThat(mailbox.take().envelope().body()).isEqualTo(new Note(INTERACTIVE, 1));
+        assertThat(mailbox.take().envelope().body()).isEqualTo(new Note(BULK, 0));
+    }
+
+    @Test
+    void dropsTheOldestNotificationOfTheLeastImportantLane() {
+        mailbox.add(envelope(new Ask()), BULK, null);
+        add(BULK, 2);
+        add(INTERACTIVE, 1);
+
+        assertThat(mailbox.dropOldestNotification(INTERACTIVE).envelope().body()).isEqualTo(new Note(BULK, 0));
+        assertThat(mailbox.dropOldestNotification(INTERACTIVE).envelope().body()).isEqualTo(new Note(BULK, 1));
+        assertThat(mailbox.dropOldestNotification(BULK)).isNull();
+        assertThat(mailbox.dropOldestNotification(INTERACTIVE).envelope().body()).isEqualTo(new Note(INTERACTIVE, 0));
+        assertThat(mailbox.dropOldestNotification(SYSTEM)).isNull();
+
+        assertThat(mailbox.size()).isEqualTo(1);
+        assertThat(mailbox.size(BULK)).isEqualTo(1);
+    }
+
+    private record Note(MessagePriority priority, int index) implements Message.Notification { }
+
+    private record Ask() implements Message.Request<Answer> { }
+
+    private record Answer() implements Message.Response { }
+}
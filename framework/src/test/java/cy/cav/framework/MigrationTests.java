@@ -0,0 +1,167 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class MigrationTests {
+    private final InMemoryCluster cluster = new InMemoryCluster();
+    // Counters that are spawned and not despawned, in all worlds.
+    private final Set<Counter> alive = ConcurrentHashMap.newKeySet();
+    private World source;
+    private World target;
+
+    @BeforeEach
+    void setUp() {
+        source = cluster.add();
+        target = cluster.add();
+        for (World world : List.of(source, target)) {
+            world.migrations().register(Counter.Snapshot.class, (init, snapshot) -> new Counter(init, alive, snapshot.count()));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cluster.close();
+    }
+
+    private ActorAddress spawnCounter(int count) {
+        return source.spawn(init -> new Counter(init, alive, count));
+    }
+
+    @Test
+    void movesActorWithItsState() throws Exception {
+        ActorAddress address = spawnCounter(7);
+
+        ActorAddress moved = TestWorlds.onMainLoop(source, () -> source.migrate(address, target.server()))
+                .get(10, TimeUnit.SECONDS);
+
+        assertThat(moved.serverId()).isEqualTo(target.server().id());
+        await().until(() -> alive.size() == 1 && alive.iterator().next().address.equals(moved));
+        assertThat(alive.iterator().next().count).isEqualTo(7);
+    }
+
+    @Test
+    void movesAnywayWhenTheTargetSpawnedWithoutAnswering() throws Exception {
+        ActorAddress address = spawnCounter(3);
+        cluster.deliveries(envelope -> envelope.body() instanceof Migrator.SpawnMigrated
+                ? InMemoryCluster.Delivery.DELIVER_BUT_FAIL
+                : InMemoryCluster.Delivery.DELIVER);
+
+        ActorAddress moved = TestWorlds.onMainLoop(source, () -> source.migrate(address, target.server()))
+                .get(10, TimeUnit.SECONDS);
+
+        // A single copy, on the target.
+        assertThat(moved.serverId()).isEqualTo(target.server().id());
+        await().until(() -> alive.size() == 1 && alive.iterator().next().address.equals(moved));
+    }
+
+    @Test
+    void keepsActorWhenTheTargetAbortedAndRefusesLateMigration() throws Exception {
+        ActorAddress address = spawnCounter(3);
+        cluster.deliveries(envelope -> envelope.body() instanceof Migrator.SpawnMigrated
+                ? InMemoryCluster.Delivery.LOSE
+                : InMemoryCluster.Delivery.DELIVER);
+
+        var migration = TestWorlds.onMainLoop(source, () -> source.migrate(address, target.server()));
+
+        assertThatThrownBy(() -> migration.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        assertThat(alive).singleElement().extracting(counter -> counter.address).isEqualTo(address);
+
+        // The request arrives late: the target refuses it.
+        cluster.deliveries(_ -> InMemoryCluster.Delivery.DELIVER);
+        Envelope<?> late = cluster.lost().getFirst();
+        var spawnAgain = source.query(null, Migrator.of(target.server()), (Migrator.SpawnMigrated) late.body());
+        assertThatThrownBy(() -> spawnAgain.toCompletableFuture().get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RequestFailedException.class);
+        assertThat(alive).singleElement().extracting(counter -> counter.address).isEqualTo(address);
+    }
+
+    @Test
+    void spawnsOnceWhenTheTargetSpawnedWithoutAnswering() throws Exception {
+        HashRing onTarget = cluster.network(source).ring(s -> s.id() == target.server().id());
+        cluster.deliveries(envelope -> envelope.body() instanceof Migrator.Spawn
+                ? InMemoryCluster.Delivery.DELIVER_BUT_FAIL
+                : InMemoryCluster.Delivery.DELIVER);
+
+        ActorAddress spawned = source.spawn(onTarget, UUID.randomUUID(), new Counter.Snapshot(4))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertThat(spawned.serverId()).isEqualTo(target.server().id());
+        await().until(() -> alive.size() == 1 && alive.iterator().next().address.equals(spawned));
+    }
+
+    @Test
+    void refusesLateSpawnOnceAborted() throws Exception {
+        HashRing onTarget = cluster.network(source).ring(s -> s.id() == target.server().id());
+        cluster.deliveries(envelope -> envelope.body() instanceof Migrator.Spawn
+                ? InMemoryCluster.Delivery.LOSE
+                : InMemoryCluster.Delivery.DELIVER);
+
+        var spawn = source.spawn(onTarget, UUID.randomUUID(), new Counter.Snapshot(4)).toCompletableFuture();
+        assertThatThrownBy(() -> spawn.get(10, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+
+        // The request arrives late, like after a timeout: the target refuses it.
+        cluster.deliveries(_ -> InMemoryCluster.Delivery.DELIVER);
+        Envelope<?> late = cluster.lost().getFirst();
+        var spawnAgain = source.query(null, Migrator.of(target.server()), (Migrator.Spawn) late.body());
+        assertThatThrownBy(() -> spawnAgain.toCompletableFuture().get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RequestFailedException.class);
+        assertThat(alive).isEmpty();
+    }
+
+    @Test
+    void sameMigrationSpawnsOnce() throws Exception {
+        var request = new Migrator.SpawnMigrated(new ActorAddress(source.server().id(), 12345),
+                new Counter.Snapshot(1), UUID.randomUUID());
+
+        ActorAddress first = source.query(null, Migrator.of(target.server()), request)
+                .toCompletableFuture().get(10, TimeUnit.SECONDS).address();
+        ActorAddress second = source.query(null, Migrator.of(target.server()), request)
+                .toCompletableFuture().get(10, TimeUnit.SECONDS).address();
+        Migrator.MigrationStatus status = source.query(null, Migrator.of(target.server()),
+                        new Migrator.AbortMigration(request.from(), request.migrationId()))
+                .toCompletableFuture().get(10, TimeUnit.SECONDS);
+
+        assertThat(second).isEqualTo(first);
+        assertThat(status.spawned()).isEqualTo(first);
+        assertThat(alive).hasSize(1);
+    }
+
+    static final class Counter extends Actor implements Migratable {
+        private final Set<Counter> alive;
+        int count;
+
+        Counter(ActorInit init, Set<Counter> alive, int count) {
+            super(init);
+            this.alive = alive;
+            this.count = count;
+        }
+
+        @Override
+        protected void spawned() {
+            alive.add(this);
+        }
+
+        @Override
+        protected void despawned() {
+            alive.remove(this);
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            count++;
+        }
+
+        @Override
+        public ActorSnapshot snapshot() {
+            return new Snapshot(count);
+        }
+
+        record Snapshot(int count) implements ActorSnapshot { }
+    }
+}
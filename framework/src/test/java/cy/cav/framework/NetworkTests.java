@@ -0,0 +1,53 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.function.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class NetworkTests {
+    private final TestNetwork network = new TestNetwork(TestNetwork.server(1));
+
+    @Test
+    void listenersGetChanges() {
+        List<Network.Change> changes = new ArrayList<>();
+        network.subscribe(changes::add);
+        Server two = TestNetwork.server(2);
+        Server three = TestNetwork.server(3);
+
+        network.set(two, three);
+        network.set(two, three);
+        network.set(three);
+
+        assertThat(changes).hasSize(2);
+        assertThat(changes.get(0).added()).containsExactlyInAnyOrder(two, three);
+        assertThat(changes.get(1).removed()).containsExactly(two);
+    }
+
+    @Test
+    void cancelledListenersGetNothing() {
+        List<Network.Change> changes = new ArrayList<>();
+        Network.Subscription subscription = network.subscribe(changes::add);
+
+        subscription.cancel();
+        subscription.cancel();
+        network.set(TestNetwork.server(2));
+
+        assertThat(changes).isEmpty();
+    }
+
+    @Test
+    void sameListenerCanBeSubscribedTwice() {
+        List<Network.Change> changes = new ArrayList<>();
+        Consumer<Network.Change> listener = changes::add;
+        Network.Subscription first = network.subscribe(listener);
+        network.subscribe(listener);
+
+        first.cancel();
+        network.set(TestNetwork.server(2));
+
+        assertThat(changes).hasSize(1);
+    }
+}
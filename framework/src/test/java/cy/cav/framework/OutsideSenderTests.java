@@ -0,0 +1,118 @@
+package cy.cav.framework;
+
+import com.sun.net.httpserver.*;
+import io.micrometer.core.instrument.simple.*;
+import org.junit.jupiter.api.*;
+
+import java.io.*;
+import java.net.*;
+import java.nio.charset.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class OutsideSenderTests {
+    private final Server self = new Server(1L, "test", null, Map.of());
+    private final TestNetwork network = new TestNetwork(self);
+    private final World world = TestWorlds.create(self, new OutsideSender(network,
+            new FrameworkMetrics(new SimpleMeterRegistry()), Duration.ofMillis(300)));
+    private final ActorAddress unknown = new ActorAddress(2, 1000);
+
+    // A server answering like an overloaded OutsideReceiver: 503 to single envelopes, and refusing some of a batch.
+    private HttpServer overloaded;
+    private volatile String batchReceipt = "{\"refused\":[]}";
+
+    @BeforeEach
+    void setUp() throws IOException {
+        overloaded = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        overloaded.createContext("/mailbox", exchange -> respond(exchange, 503, ""));
+        overloaded.createContext("/mailbox/batch", exchange -> respond(exchange, 200, batchReceipt));
+        overloaded.start();
+        world.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.stop();
+        overloaded.stop(0);
+    }
+
+    @Test
+    void requestsToServersThatNeverShowUpFailWithoutSpring() {
+        var response = world.query(null, unknown, new Ask()).toCompletableFuture();
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(RequestFailedException.class);
+    }
+
+    @Test
+    void serversWithoutUrlDontGiveMoreTime() throws InterruptedException {
+        var response = world.query(null, unknown, new Ask()).toCompletableFuture();
+
+        // The server keeps changing without ever getting a URL; envelopes still expire on time.
+        long start = System.nanoTime();
+        for (int i = 0; !response.isDone() && i < 50; i++) {
+            network.set(new Server(2L, "test", null, Map.of("change", String.valueOf(i))));
+            Thread.sleep(100);
+        }
+
+        assertThat(response).isCompletedExceptionally();
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(3));
+    }
+
+    @Test
+    void onlyRefusedEnvelopesOfABatchFail() {
+        network.set(overloadedServer());
+        batchReceipt = "{\"refused\":[1]}";
+        var sender = new OutsideSender(network, new FrameworkMetrics(new SimpleMeterRegistry()));
+        List<Envelope<?>> refused = new CopyOnWriteArrayList<>();
+        List<Envelope<?>> failed = new CopyOnWriteArrayList<>();
+        sender.onRefused(refused::addAll);
+        sender.onDeliveryFailure(failed::add);
+
+        List<Envelope<?>> batch = List.of(envelope(1), envelope(2), envelope(3));
+        sender.sendAll(batch, false);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> !refused.isEmpty());
+        assertThat(refused).containsExactly(batch.get(1));
+        assertThat(failed).isEmpty();
+    }
+
+    @Test
+    void requestsToOverloadedServersFailAsOverloaded() {
+        network.set(overloadedServer());
+        batchReceipt = "{\"refused\":[0]}";
+
+        var response = world.query(null, unknown, new Ask()).toCompletableFuture();
+
+        assertThatThrownBy(() -> response.get(5, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOfSatisfying(RequestFailedException.class,
+                        e -> assertThat(e.reason()).isEqualTo(RequestFailedResponse.Reason.OVERLOADED));
+    }
+
+    private Server overloadedServer() {
+        return new Server(2L, "test", "http://localhost:" + overloaded.getAddress().getPort(), Map.of());
+    }
+
+    private Envelope<?> envelope(long requestId) {
+        return new Envelope<>(self.address(), unknown, requestId, new Ask(), Instant.now());
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private record Ask() implements Message.Request<Answer> { }
+
+    private record Answer() implements Message.Response { }
+}
@@ -0,0 +1,59 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class RebalancerTests {
+    private static final FrameworkConfig.Rebalancing SETTINGS =
+            new FrameworkConfig.Rebalancing(true, Duration.ofMillis(100), 0.1, 500);
+
+    private final InMemoryCluster cluster = new InMemoryCluster();
+    private final Set<MigrationTests.Counter> alive = ConcurrentHashMap.newKeySet();
+    private final World busy = cluster.add();
+    private final World idle = cluster.add();
+
+    @BeforeEach
+    void setUp() {
+        for (World world : List.of(busy, idle)) {
+            world.migrations().register(MigrationTests.Counter.Snapshot.class,
+                    (init, snapshot) -> new MigrationTests.Counter(init, alive, snapshot.count()));
+        }
+        for (int i = 0; i < 100; i++) {
+            busy.spawn(init -> new MigrationTests.Counter(init, alive, 0));
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        cluster.close();
+    }
+
+    private long livingOn(World world) {
+        return alive.stream().filter(c -> c.address.serverId() == world.server().id()).count();
+    }
+
+    @Test
+    void movesActorsUntilBothServersAreEven() throws InterruptedException {
+        busy.spawn(init -> new Rebalancer(init, () -> List.of(idle.server()), SETTINGS));
+
+        await().until(() -> livingOn(idle) == 50 && livingOn(busy) == 50);
+
+        // Balanced now; later rounds leave actors where they are.
+        Thread.sleep(500);
+        assertThat(livingOn(idle)).isEqualTo(50);
+    }
+
+    @Test
+    void balancesWithTheServersThatAnswered() {
+        Server gone = new Server(99L, "test", "mem://99", Map.of());
+        busy.spawn(init -> new Rebalancer(init, () -> List.of(gone, idle.server()), SETTINGS));
+
+        await().until(() -> livingOn(idle) == 50);
+    }
+}
@@ -0,0 +1,106 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class ServerHealthTests {
+    private final InMemoryCluster cluster = new InMemoryCluster();
+    private final World world = cluster.add();
+    private final World other = cluster.add();
+    private final long otherId = other.server().id();
+
+    @AfterEach
+    void tearDown() {
+        cluster.close();
+    }
+
+    private void makeOtherSeemDown() {
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD; i++) {
+            world.serverHealth().failed(otherId);
+        }
+        assertThat(world.serverHealth().isHealthy(otherId)).isFalse();
+    }
+
+    @Test
+    void serversAreHealthyUntilMessagesFail() {
+        ServerHealth health = world.serverHealth();
+        assertThat(health.isHealthy(otherId)).isTrue();
+
+        makeOtherSeemDown();
+
+        assertThat(health.allows(otherId)).isFalse();
+        assertThat(health.unhealthyCount()).isEqualTo(1);
+        health.succeeded(otherId);
+        assertThat(health.isHealthy(otherId)).isTrue();
+        assertThat(health.unhealthyCount()).isZero();
+    }
+
+    @Test
+    void successesResetFailures() {
+        ServerHealth health = world.serverHealth();
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            health.failed(otherId);
+        }
+        health.succeeded(otherId);
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD - 1; i++) {
+            health.failed(otherId);
+        }
+
+        assertThat(health.isHealthy(otherId)).isTrue();
+        assertThat(health.unhealthyCount()).isZero();
+    }
+
+    @Test
+    void neverGivesUpOnItself() {
+        long selfId = world.server().id();
+        for (int i = 0; i < CircuitBreaker.FAILURE_THRESHOLD * 2; i++) {
+            world.serverHealth().failed(selfId);
+        }
+
+        assertThat(world.serverHealth().isHealthy(selfId)).isTrue();
+    }
+
+    @Test
+    void envelopesFromAServerDontMakeItHealthy() throws InterruptedException {
+        ActorAddress sink = world.spawn(TestWorlds.Sink::new);
+        makeOtherSeemDown();
+
+        other.send(null, sink, new Hello());
+
+        // The other server can send us envelopes while not receiving ours.
+        Thread.sleep(200);
+        assertThat(world.serverHealth().isHealthy(otherId)).isFalse();
+    }
+
+    @Test
+    void deliveredEnvelopesMakeTheServerHealthy() {
+        ActorAddress sink = other.spawn(TestWorlds.Sink::new);
+        makeOtherSeemDown();
+
+        world.send(null, sink, new Hello());
+
+        await().until(() -> world.serverHealth().isHealthy(otherId));
+    }
+
+    @Test
+    void failingToReachTheServerDoesntMakeItHealthy() {
+        ActorAddress sink = other.spawn(TestWorlds.Sink::new);
+        makeOtherSeemDown();
+        cluster.deliveries(_ -> InMemoryCluster.Delivery.LOSE);
+
+        var response = world.query(null, sink, new Ask()).toCompletableFuture();
+
+        assertThatThrownBy(() -> response.get(10, TimeUnit.SECONDS)).hasCauseInstanceOf(RequestFailedException.class);
+        assertThat(world.serverHealth().isHealthy(otherId)).isFalse();
+    }
+
+    private record Hello() implements Message.Notification { }
+
+    private record Ask() implements Message.Request<Answer> { }
+
+    private record Answer() implements Message.Response { }
+}
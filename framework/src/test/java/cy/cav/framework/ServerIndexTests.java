@@ -0,0 +1,62 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ServerIndexTests {
+    private final TestNetwork network = new TestNetwork(TestNetwork.server(1, "a", "b"));
+    private final ServerIndex<String> index = network.index(
+            server -> List.of(server.metadata().get("capabilities").split(",")));
+
+    @Test
+    void indexesServersByKeyWithoutItself() {
+        Server two = TestNetwork.server(2, "a");
+        Server three = TestNetwork.server(3, "a", "b");
+
+        network.set(two, three);
+
+        assertThat(index.servers("a")).containsExactlyInAnyOrder(two, three);
+        assertThat(index.servers("b")).containsExactly(three);
+        assertThat(index.servers("c")).isEmpty();
+        assertThat(index.contains("b", 3)).isTrue();
+        assertThat(index.contains("b", 2)).isFalse();
+        assertThat(index.contains("a", 1)).isFalse();
+        assertThat(index.pick("b")).isEqualTo(three);
+        assertThat(index.pick("c")).isNull();
+    }
+
+    @Test
+    void followsRemovedAndChangedServers() {
+        network.set(TestNetwork.server(2, "a"), TestNetwork.server(3, "b"));
+
+        Server changed = TestNetwork.server(2, "b");
+        network.set(changed);
+
+        assertThat(index.servers("a")).isEmpty();
+        assertThat(index.servers("b")).containsExactly(changed);
+        assertThat(index.contains("b", 3)).isFalse();
+    }
+
+    @Test
+    void knowsServersThatJoinedBeforeTheIndex() {
+        var network = new TestNetwork(TestNetwork.server(1));
+        Server two = TestNetwork.server(2, "a");
+        network.set(two);
+
+        ServerIndex<String> late = network.index(server -> List.of(server.metadata().get("capabilities")));
+
+        assertThat(late.servers("a")).containsExactly(two);
+    }
+
+    @Test
+    void serversWithoutKeysAreNotIndexed() {
+        ServerIndex<String> none = network.index(_ -> List.of());
+
+        network.set(TestNetwork.server(2, "a"));
+
+        assertThat(none.servers("a")).isEmpty();
+    }
+}
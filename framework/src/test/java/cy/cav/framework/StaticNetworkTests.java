@@ -0,0 +1,31 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class StaticNetworkTests {
+    private final Server self = new Server(1L, "test", "http://localhost:1", Map.of());
+
+    @Test
+    void knowsPeersExceptItself() {
+        var other = new Server(2L, "test", "http://localhost:2", Map.of());
+
+        var network = new StaticNetwork(self, List.of(self, other));
+
+        assertThat(network.servers()).containsOnlyKeys(2L);
+    }
+
+    @Test
+    void duplicateIdsFailClearly() {
+        var a = new Server(2L, "test", "http://localhost:2", Map.of());
+        var b = new Server(2L, "test", "http://localhost:3", Map.of());
+
+        assertThatIllegalArgumentException()
+                .isThrownBy(() -> new StaticNetwork(self, List.of(a, b)))
+                .withMessageContaining("0000000000000002")
+                .withMessageContaining("http://localhost:3");
+    }
+}
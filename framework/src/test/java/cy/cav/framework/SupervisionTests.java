@@ -0,0 +1,192 @@
+package cy.cav.framework;
+
+import cy.cav.framework.reliable.*;
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class SupervisionTests {
+    // Envelopes the world sent to other servers.
+    private final List<Envelope<?>> sent = new CopyOnWriteArrayList<>();
+    private final World world = TestWorlds.create(new Server(1L, "test", null, Map.of()), new Outbox(sent));
+    // What each counter saw, as "instance:count".
+    private final List<String> seen = new CopyOnWriteArrayList<>();
+    private final List<Supervision.ActorFailed> failures = new CopyOnWriteArrayList<>();
+    private ActorAddress parent;
+
+    @BeforeEach
+    void setUp() {
+        world.start();
+        parent = world.spawn(init -> new Parent(init, failures));
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.stop();
+    }
+
+    private void send(ActorAddress address, String... names) {
+        for (String name : names) {
+            world.send(null, address, new Note(name));
+        }
+    }
+
+    @Test
+    void restartsFailingActorsWithAFreshStateAndTheStash() {
+        var restart = Supervision.restart(init -> new Counter(init, seen, "fresh"))
+                .backoff(Duration.ofMillis(200), Duration.ofSeconds(1));
+        ActorAddress address = world.spawn(init -> new Counter(init, seen, "first"), restart);
+
+        // The notes sent right after the failure are stashed during the backoff.
+        send(address, "count", "count", "fail", "count", "count");
+
+        await().until(() -> seen.size() == 4);
+        assertThat(seen).containsExactly("first:1", "first:2", "fresh:1", "fresh:2");
+    }
+
+    @Test
+    void failsTheRequestThatMadeTheActorFail() {
+        ActorAddress address = world.spawn(init -> new Counter(init, seen, "first"),
+                Supervision.restart(init -> new Counter(init, seen, "fresh")));
+
+        var response = world.query(null, address, new Ask("fail")).toCompletableFuture();
+
+        assertThatThrownBy(() -> response.get(10, TimeUnit.SECONDS))
+                .cause()
+                .isInstanceOfSatisfying(RequestFailedException.class,
+                        e -> assertThat(e.reason()).isEqualTo(RequestFailedResponse.Reason.FAILED));
+    }
+
+    @Test
+    void givesUpAfterTooManyRestartsAndTellsTheParent() {
+        var restart = Supervision.restart(init -> new Counter(init, seen, "fresh"))
+                .backoff(Duration.ZERO, Duration.ZERO)
+                .maxRestarts(1, Duration.ofMinutes(1))
+                .escalateTo(parent);
+        ActorAddress address = world.spawn(init -> new Counter(init, seen, "first"), restart);
+
+        send(address, "fail", "count");
+        await().until(() -> seen.equals(List.of("fresh:1")));
+        // An actor of another server asks the last time, and gets a single response.
+        world.receive(new Envelope<>(new ActorAddress(2, 1000), address, 7, new Ask("fail"), Instant.now()));
+        send(address, "count");
+
+        await().until(() -> failures.size() == 1);
+        assertThat(failures.getFirst().actor()).isEqualTo(address);
+        assertThat(failures.getFirst().restarts()).isEqualTo(1);
+        assertThat(seen).containsExactly("fresh:1");
+        await().until(() -> !sent.isEmpty());
+        assertThat(sent).singleElement().satisfies(envelope -> {
+            assertThat(envelope.requestId()).isEqualTo(7);
+            assertThat(envelope.body()).isInstanceOfSatisfying(RequestFailedResponse.class,
+                    failed -> assertThat(failed.reason()).isEqualTo(RequestFailedResponse.Reason.FAILED));
+        });
+    }
+
+    @Test
+    void escalatingDespawnsAndTellsTheParent() {
+        ActorAddress address = world.spawn(init -> new Counter(init, seen, "first"), Supervision.escalate(parent));
+
+        send(address, "fail", "count");
+
+        await().until(() -> failures.size() == 1);
+        assertThat(failures.getFirst().actor()).isEqualTo(address);
+        assertThat(seen).isEmpty();
+    }
+
+    @Test
+    void refusesToRestartActorsWithAnAckRetryer() {
+        var restart = Supervision.restart(Retrying::new);
+
+        assertThatThrownBy(() -> world.spawn(Retrying::new, 500, restart))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("AckRetryer");
+
+        // Nothing was left behind.
+        assertThatCode(() -> world.spawn(Retrying::new, 500)).doesNotThrowAnyException();
+    }
+
+    @Test
+    void samplesFailuresByActorClass() {
+        Actor first = new Counter(new ActorInit(world, new ActorAddress(1, 1000)), seen, "first");
+        Actor second = new Counter(new ActorInit(world, new ActorAddress(1, 1001)), seen, "second");
+        Actor other = new Retrying(new ActorInit(world, new ActorAddress(1, 1002)));
+
+        assertThat(Supervisor.failed(first)).isSameAs(Supervisor.failed(second));
+        assertThat(Supervisor.failed(first)).isNotSameAs(Supervisor.failed(other));
+    }
+
+    private record Note(String name) implements Message.Notification { }
+
+    private record Ask(String name) implements Message.Request<Answer> { }
+
+    private record Answer() implements Message.Response { }
+
+    private static final class Counter extends Actor {
+        private final List<String> seen;
+        private final String instance;
+        private int count;
+
+        Counter(ActorInit init, List<String> seen, String instance) {
+            super(init);
+            this.seen = seen;
+            this.instance = instance;
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            String name = switch (envelope.body()) {
+                case Note note -> note.name();
+                case Ask ask -> ask.name();
+                default -> "";
+            };
+            if (name.equals("fail")) {
+                throw new IllegalStateException("Failing on purpose");
+            }
+            seen.add(instance + ":" + ++count);
+        }
+    }
+
+    private static final class Parent extends Actor {
+        private final List<Supervision.ActorFailed> failures;
+
+        Parent(ActorInit init, List<Supervision.ActorFailed> failures) {
+            super(init);
+            this.failures = failures;
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            if (envelope.body() instanceof Supervision.ActorFailed failed) {
+                failures.add(failed);
+            }
+        }
+    }
+
+    private record Outbox(List<Envelope<?>> sent) implements Transport {
+        @Override
+        public void send(Envelope<?> envelope, boolean retry) {
+            sent.add(envelope);
+        }
+
+        @Override
+        public void onDeliveryFailure(Consumer<Envelope<?>> listener) { }
+    }
+
+    private static final class Retrying extends Actor {
+        private final AckRetryer retryer = AckRetryer.constantDelay(this, Duration.ofSeconds(1));
+
+        Retrying(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            retryer.process(envelope);
+        }
+    }
+}
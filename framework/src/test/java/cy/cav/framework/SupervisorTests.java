@@ -0,0 +1,96 @@
+package cy.cav.framework;
+
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class SupervisorTests {
+    private final World world = TestWorlds.create(1);
+    private final List<String> processed = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        world.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        world.stop();
+    }
+
+    private void send(ActorAddress address, String... names) {
+        for (String name : names) {
+            world.send(null, address, new Note(name));
+        }
+    }
+
+    @Test
+    void replaysTheStashInOrderBeforeNewerEnvelopes() {
+        // Detaches on the 4th envelope it sees.
+        ActorAddress address = world.spawn(init -> new Recorder(init, processed), actor -> new Stashing(actor, 4));
+
+        send(address, "fail", "a", "b", "c", "d", "e");
+
+        await().until(() -> processed.size() == 5);
+        assertThat(processed).containsExactly("a", "b", "c", "d", "e");
+    }
+
+    @Test
+    void keepsTheOrderWhenTheStashFailsAgain() {
+        // Detaches on the 5th and 7th envelopes it sees.
+        ActorAddress address = world.spawn(init -> new Recorder(init, processed), actor -> new Stashing(actor, 5, 7));
+
+        // "fail" attaches the supervisor, which stashes the next ones until "d"; "fail again" attaches it again
+        // while replaying, so "b" to "d" go back to the stash, before "e" and "f".
+        send(address, "fail", "a", "fail again", "b", "c", "d", "e", "f");
+
+        await().until(() -> processed.size() == 6);
+        assertThat(processed).containsExactly("a", "b", "c", "d", "e", "f");
+    }
+
+    private record Note(String name) implements Message.Notification { }
+
+    private static final class Recorder extends Actor {
+        private final List<String> processed;
+
+        Recorder(ActorInit init, List<String> processed) {
+            super(init);
+            this.processed = processed;
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            String name = ((Note) envelope.body()).name();
+            if (name.startsWith("fail")) {
+                throw new IllegalStateException(name);
+            }
+            processed.add(name);
+        }
+    }
+
+    /// Attaches on failures, stashes everything, and detaches after seeing some envelopes.
+    private static final class Stashing extends Supervisor {
+        private final Set<Integer> detachAt = new HashSet<>();
+        private int seen;
+
+        Stashing(Actor actor, Integer... detachAt) {
+            super(actor);
+            this.detachAt.addAll(List.of(detachAt));
+        }
+
+        @Override
+        protected HandleAction handle(Exception e, Envelope<?> envelope) {
+            return HandleAction.ATTACH;
+        }
+
+        @Override
+        protected ProcessAction process(Envelope<?> envelope) {
+            stash(envelope);
+            return detachAt.contains(++seen) ? ProcessAction.DETACH : ProcessAction.STAY_ATTACHED;
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package cy.cav.framework;
+
+import java.util.*;
+
+/// A [Network] whose servers are set by tests.
+final class TestNetwork extends Network {
+    TestNetwork(Server server) {
+        super(server);
+    }
+
+    /// Replaces all servers of the network.
+    void set(Server... servers) {
+        var map = new HashMap<Long, Server>();
+        for (Server server : servers) {
+            map.put(server.id(), server);
+        }
+        updateServers(map);
+    }
+
+    static Server server(long id, String... capabilities) {
+        return new Server(id, "test", "http://localhost:" + id, Map.of("capabilities", String.join(",", capabilities)));
+    }
+}
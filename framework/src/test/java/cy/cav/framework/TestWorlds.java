@@ -0,0 +1,86 @@
+package cy.cav.framework;
+
+import cy.cav.framework.tracing.*;
+import io.micrometer.core.instrument.simple.*;
+import org.springframework.scheduling.concurrent.*;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+/// Creates [World]s and actors outside of Spring, for tests and benchmarks.
+///
+/// Public for the benchmarks, which get it from the test jar of the framework.
+public final class TestWorlds {
+    private TestWorlds() {}
+
+    /// Creates a world that isn't connected to any network; envelopes sent to other servers are dropped.
+    ///
+    /// The world isn't started.
+    public static World create(long serverId) {
+        Server server = new Server(serverId, "test", null, Map.of());
+
+        var network = new StaticNetwork(server, List.of());
+        return create(server, new OutsideSender(network, new FrameworkMetrics(new SimpleMeterRegistry())));
+    }
+
+    /// Creates a world sending envelopes to other servers with the transport.
+    ///
+    /// The world isn't started.
+    static World create(Server server, Transport transport) {
+        var scheduler = new ThreadPoolTaskScheduler();
+        scheduler.setThreadNamePrefix("test-scheduler-");
+        scheduler.initialize();
+
+        var metrics = new FrameworkMetrics(new SimpleMeterRegistry());
+        return new World(server, transport, scheduler, metrics, Tracer.disabled());
+    }
+
+    /// Runs the action on the main loop of the started world, like an actor would, and returns its result.
+    static <T> CompletableFuture<T> onMainLoop(World world, Supplier<? extends CompletionStage<T>> action) {
+        var result = new CompletableFuture<T>();
+        ActorAddress runner = world.spawn(Runner::new);
+        world.send(null, runner, new Run(() -> {
+            try {
+                action.get().whenComplete((value, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(value);
+                    }
+                });
+            } catch (RuntimeException e) {
+                result.completeExceptionally(e);
+            }
+        }));
+        return result;
+    }
+
+    /// Runs the action on the main loop of the started world, and waits for it.
+    static void onMainLoop(World world, Runnable action) throws Exception {
+        onMainLoop(world, () -> {
+            action.run();
+            return CompletableFuture.completedFuture(null);
+        }).get(10, TimeUnit.SECONDS);
+    }
+
+    private record Run(Runnable action) implements Message.Notification { }
+
+    private static final class Runner extends Actor {
+        Runner(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            despawn();
+            ((Run) envelope.body()).action().run();
+        }
+    }
+
+    /// An actor ignoring everything it receives; used as the receiver of messages a test doesn't care about.
+    public static final class Sink extends Actor {
+        public Sink(ActorInit init) { super(init); }
+
+        @Override
+        protected void process(Envelope<?> envelope) { }
+    }
+}
@@ -0,0 +1,131 @@
+package cy.cav.framework.reliable;
+
+import cy.cav.framework.*;
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class AckRetryerTests {
+    private final InMemoryCluster cluster = new InMemoryCluster();
+    private final World senderWorld = cluster.add();
+    private final World receiverWorld = cluster.add();
+    // Ack ids of the pings received, in order.
+    private final List<UUID> received = new CopyOnWriteArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        cluster.close();
+    }
+
+    private ActorAddress spawnSender(Function<Actor, AckRetryer> retryer) {
+        return senderWorld.spawn(init -> new Sender(init, retryer));
+    }
+
+    @Test
+    void retriesMessagesDueTogetherInOneBatch() {
+        ActorAddress receiver = receiverWorld.spawn(init -> new Receiver(init, received, false));
+        ActorAddress sender = spawnSender(actor -> AckRetryer.constantDelay(actor, Duration.ofSeconds(1)).jitter(0));
+
+        senderWorld.send(null, sender, new SendPings(receiver, 3));
+
+        await().until(() -> received.size() >= 6);
+        assertThat(cluster.batches()).startsWith(3);
+        assertThat(new HashSet<>(received.subList(0, 3))).isEqualTo(new HashSet<>(received.subList(3, 6)));
+    }
+
+    @Test
+    void stopsRetryingAcknowledgedMessages() throws InterruptedException {
+        ActorAddress receiver = receiverWorld.spawn(init -> new Receiver(init, received, true));
+        ActorAddress sender = spawnSender(actor -> AckRetryer.constantDelay(actor, Duration.ofSeconds(1)).jitter(0));
+
+        senderWorld.send(null, sender, new SendPings(receiver, 2));
+
+        await().until(() -> received.size() == 2);
+        Thread.sleep(2500);
+        assertThat(received).hasSize(2);
+        assertThat(cluster.batches()).isEmpty();
+    }
+
+    @Test
+    void givesUpAfterMaxRetries() throws InterruptedException {
+        ActorAddress receiver = receiverWorld.spawn(init -> new Receiver(init, received, false));
+        ActorAddress sender = spawnSender(actor -> AckRetryer.constantDelay(actor, Duration.ofSeconds(1))
+                .jitter(0)
+                .maxRetries(2));
+
+        senderWorld.send(null, sender, new SendPings(receiver, 1));
+
+        // The first attempt, then two retries.
+        await().atMost(Duration.ofSeconds(10)).until(() -> received.size() == 3);
+        Thread.sleep(2500);
+        assertThat(received).hasSize(3);
+    }
+
+    @Test
+    void stopsSendingToAServerThatSeemsDown() {
+        ActorAddress receiver = receiverWorld.spawn(init -> new Receiver(init, received, true));
+        ActorAddress sender = spawnSender(actor -> AckRetryer.constantDelay(actor, Duration.ofMinutes(1)));
+        cluster.deliveries(_ -> InMemoryCluster.Delivery.LOSE);
+
+        senderWorld.send(null, sender, new SendPings(receiver, 10));
+
+        await().until(() -> !senderWorld.serverHealth().isHealthy(receiverWorld.server().id()));
+        // Messages sent once the server seemed down wait for a probe instead.
+        assertThat(cluster.lost()).hasSize(5);
+        assertThat(received).isEmpty();
+    }
+
+    private record Ping(UUID ackId) implements Message.Notification, Acknowledgeable { }
+
+    private record Pong(UUID ackId) implements Message.Notification, Acknowledgeable { }
+
+    private record SendPings(ActorAddress receiver, int count) implements Message.Notification { }
+
+    private static final class Sender extends Actor {
+        private final AckRetryer retryer;
+
+        Sender(ActorInit init, Function<Actor, AckRetryer> retryer) {
+            super(init);
+            this.retryer = retryer.apply(this);
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            if (retryer.process(envelope)) {
+                return;
+            }
+            if (envelope.body() instanceof SendPings(ActorAddress receiver, int count)) {
+                for (int i = 0; i < count; i++) {
+                    retryer.send(receiver, new Ping(UUID.randomUUID()));
+                }
+            }
+        }
+    }
+
+    private static final class Receiver extends Actor {
+        private final List<UUID> received;
+        private final boolean acknowledges;
+
+        Receiver(ActorInit init, List<UUID> received, boolean acknowledges) {
+            super(init);
+            this.received = received;
+            this.acknowledges = acknowledges;
+        }
+
+        @Override
+        protected void process(Envelope<?> envelope) {
+            if (envelope.body() instanceof Ping(UUID ackId)) {
+                received.add(ackId);
+                if (acknowledges) {
+                    send(envelope.sender(), new Pong(ackId));
+                }
+            }
+        }
+    }
+}
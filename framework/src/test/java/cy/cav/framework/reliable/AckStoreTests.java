@@ -0,0 +1,140 @@
+package cy.cav.framework.reliable;
+
+import cy.cav.framework.*;
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class AckStoreTests {
+    // The store only needs an actor to send messages, which these tests don't do.
+    private final AckStore<Ack> store = new AckStore<>(null);
+
+    @Test
+    void findsAddedMessages() {
+        Ack first = new Ack(UUID.randomUUID(), 1);
+        Ack second = new Ack(UUID.randomUUID(), 2);
+
+        store.add(first);
+        store.add(second);
+
+        assertThat(store.get(first.ackId())).isEqualTo(first);
+        assertThat(store.get(second)).isEqualTo(second);
+        assertThat(store.get(UUID.randomUUID())).isNull();
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    void replacesMessagesWithTheSameIdWithoutMakingThemRecent() {
+        Ack first = new Ack(UUID.randomUUID(), 1);
+        Ack second = new Ack(UUID.randomUUID(), 2);
+        store.maxEntries(2);
+        store.add(first);
+        store.add(second);
+
+        Ack replaced = new Ack(first.ackId(), 3);
+        store.add(replaced);
+        store.add(new Ack(UUID.randomUUID(), 4));
+
+        assertThat(store.size()).isEqualTo(2);
+        assertThat(store.get(first.ackId())).isNull();
+        assertThat(store.get(second)).isEqualTo(second);
+    }
+
+    @Test
+    void growsKeepingMessagesInOrder() {
+        List<Ack> added = new ArrayList<>();
+        long emptyBytes = store.memoryBytes();
+
+        for (int i = 0; i < 1000; i++) {
+            Ack ack = new Ack(new UUID(i, 0), i);
+            store.add(ack);
+            added.add(ack);
+        }
+
+        assertThat(store.acknowledged()).isEqualTo(added);
+        assertThat(added).allSatisfy(ack -> assertThat(store.get(ack)).isEqualTo(ack));
+        assertThat(store.memoryBytes()).isGreaterThan(emptyBytes + 1000 * 16);
+    }
+
+    @Test
+    void findsRemainingMessagesAfterEvictingTheOldest() {
+        // Ids differing by a few bits, and a small table, make lots of entries probe past each other.
+        store.maxEntries(50);
+        var expected = new LinkedHashMap<UUID, Ack>();
+        var random = new Random(42);
+
+        for (int i = 0; i < 5000; i++) {
+            var ack = new Ack(new UUID(random.nextInt(200), random.nextInt(4)), i);
+            store.add(ack);
+            // Replacing a message keeps its place in the map, like in the store.
+            expected.put(ack.ackId(), ack);
+            if (expected.size() > 50) {
+                expected.remove(expected.keySet().iterator().next());
+            }
+
+            for (Ack kept : expected.values()) {
+                assertThat(store.get(kept.ackId())).isEqualTo(kept);
+            }
+        }
+        assertThat(store.acknowledged()).containsExactlyElementsOf(expected.values());
+        for (int msb = 0; msb < 200; msb++) {
+            for (int lsb = 0; lsb < 4; lsb++) {
+                UUID id = new UUID(msb, lsb);
+                assertThat(store.get(id)).isEqualTo(expected.get(id));
+            }
+        }
+    }
+
+    @Test
+    void forgetsExpiredMessagesAndFreesMemory() {
+        long emptyBytes = store.memoryBytes();
+        store.expireAfter(Duration.ofMillis(50));
+        Ack ack = new Ack(UUID.randomUUID(), 1);
+
+        store.add(ack);
+        assertThat(store.get(ack)).isEqualTo(ack);
+
+        await().atMost(Duration.ofSeconds(5)).until(() -> store.get(ack) == null);
+        assertThat(store.size()).isZero();
+        assertThat(store.memoryBytes()).isEqualTo(emptyBytes);
+        assertThat(store.acknowledged()).isEmpty();
+
+        Ack next = new Ack(UUID.randomUUID(), 2);
+        store.add(next);
+        assertThat(store.get(next)).isEqualTo(next);
+    }
+
+    @Test
+    void forgetsOnlyExpiredMessages() throws InterruptedException {
+        store.expireAfter(Duration.ofMillis(200));
+        Ack old = new Ack(UUID.randomUUID(), 1);
+        store.add(old);
+        Thread.sleep(250);
+
+        Ack recent = new Ack(UUID.randomUUID(), 2);
+        store.add(recent);
+
+        assertThat(store.get(old)).isNull();
+        assertThat(store.get(recent)).isEqualTo(recent);
+        assertThatThrownBy(() -> store.expireAfter(Duration.ofSeconds(1))).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void idsOnlyStoresMakeMessagesBack() {
+        AckStore<Ack> ids = AckStore.idsOnly(null, id -> new Ack(id, 0));
+        UUID id = UUID.randomUUID();
+
+        ids.add(new Ack(id, 1));
+
+        assertThat(ids.get(id)).isEqualTo(new Ack(id, 0));
+        assertThat(ids.acknowledged()).containsExactly(new Ack(id, 0));
+        store.add(new Ack(id, 1));
+        assertThat(ids.memoryBytes()).isLessThan(store.memoryBytes());
+    }
+
+    record Ack(UUID ackId, int n) implements Message.Notification, Acknowledgeable { }
+}
@@ -0,0 +1,87 @@
+package cy.cav.framework.reliable;
+
+import cy.cav.framework.*;
+import org.junit.jupiter.api.*;
+
+import java.time.*;
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.awaitility.Awaitility.*;
+
+class SharedAckStoreTests {
+    private static SharedAckStore<Ack> store(int stripes, int maxEntries) {
+        return new SharedAckStore<>(stripes, maxEntries, Duration.ofMinutes(1));
+    }
+
+    @Test
+    void roundsStripesUpToAPowerOfTwo() {
+        assertThat(store(1, 100).stripeCount()).isEqualTo(1);
+        assertThat(store(2, 100).stripeCount()).isEqualTo(2);
+        assertThat(store(3, 100).stripeCount()).isEqualTo(4);
+        assertThat(store(5, 100).stripeCount()).isEqualTo(8);
+        assertThat(store(8, 100).stripeCount()).isEqualTo(8);
+        assertThat(store(9, 100).stripeCount()).isEqualTo(16);
+        assertThatThrownBy(() -> store(0, 100)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void picksStripesWithTheTopBitsOfTheHash() {
+        SharedAckStore<Ack> store = store(4, 100);
+
+        // These ids only differ in the top bits of their hash; they'd all share a stripe picked by the bottom bits.
+        Set<Integer> used = new HashSet<>();
+        for (int i = 0; i < 16; i++) {
+            used.add(store.stripeIndex(new UUID(0, (long) i << 28)));
+        }
+
+        assertThat(used).containsExactlyInAnyOrder(0, 1, 2, 3);
+    }
+
+    @Test
+    void spreadsMessagesEvenlyOverStripes() {
+        SharedAckStore<Ack> store = store(8, 100);
+        int[] counts = new int[store.stripeCount()];
+        var random = new Random(42);
+
+        for (int i = 0; i < 40_000; i++) {
+            counts[store.stripeIndex(new UUID(random.nextLong(), random.nextLong()))]++;
+        }
+
+        assertThat(Arrays.stream(counts)).allSatisfy(count -> assertThat(count).isBetween(4500, 5500));
+    }
+
+    @Test
+    void boundsEachStripe() {
+        // 10 messages over 4 stripes: 3 per stripe.
+        SharedAckStore<Ack> store = store(4, 10);
+        // Fewer messages than stripes: still one per stripe.
+        SharedAckStore<Ack> tiny = store(4, 2);
+
+        for (int i = 0; i < 1000; i++) {
+            store.add(new Ack(UUID.randomUUID()));
+            tiny.add(new Ack(UUID.randomUUID()));
+        }
+
+        assertThat(store.size()).isEqualTo(12);
+        assertThat(tiny.size()).isEqualTo(4);
+    }
+
+    @Test
+    void forgetsExpiredMessagesInEveryStripe() {
+        var store = new SharedAckStore<Ack>(4, 1000, Duration.ofMillis(50));
+        List<Ack> added = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Ack ack = new Ack(UUID.randomUUID());
+            store.add(ack);
+            added.add(ack);
+        }
+        assertThat(added).allSatisfy(ack -> assertThat(store.get(ack.ackId())).isEqualTo(ack));
+
+        await().atMost(Duration.ofSeconds(5))
+                .until(() -> added.stream().allMatch(ack -> store.get(ack.ackId()) == null));
+        assertThat(store.size()).isZero();
+    }
+
+    record Ack(UUID ackId) implements Message.Notification, Acknowledgeable { }
+}
@@ -2,6 +2,8 @@ package cy.cav.protocol;
 
 import cy.cav.framework.*;
 
+import java.util.*;
+
 /**
  * Allocation types managed
  */
@@ -17,5 +19,15 @@ public enum AllowanceType {
     public ActorAddress calculatorActor(Server server) {
         return server.address(calculatorActorNumber);
     }
+
+    /**
+     * Returns the allowance types the server has calculators for: all of them when it has the
+     * {@link ServerCapability#CALCULATORS} capability, none otherwise.
+     */
+    public static Set<AllowanceType> calculatedBy(Server server) {
+        return ServerCapability.CALCULATORS.isSupportedBy(server)
+                ? EnumSet.allOf(AllowanceType.class)
+                : EnumSet.noneOf(AllowanceType.class);
+    }
 }
 
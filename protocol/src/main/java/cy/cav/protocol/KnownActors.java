@@ -11,4 +11,5 @@ public final class KnownActors {
     
     // Actors
     public static final Long PREFECTURE = 100L;  // manages beneficiary actors
+    public static final Long DIRECTORY = 102L;   // knows where beneficiary actors live, on prefecture servers
 }
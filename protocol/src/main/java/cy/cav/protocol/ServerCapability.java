@@ -0,0 +1,39 @@
+package cy.cav.protocol;
+
+import cy.cav.framework.*;
+
+import java.util.*;
+
+/// What a server of the CAV is able to do, read from its metadata.
+///
+/// Parse capabilities once with [#of(Server)], for instance in a [ServerIndex], instead of reading
+/// the metadata on every request.
+public enum ServerCapability {
+    /// Has a prefecture actor, at [KnownActors#PREFECTURE].
+    PREFECTURE("supportsPrefecture"),
+    /// Has calculator actors for every [AllowanceType].
+    CALCULATORS("supportsCalculators");
+
+    private final String metadataKey;
+
+    ServerCapability(String metadataKey) { this.metadataKey = metadataKey; }
+
+    /// Returns the metadata entry telling whether a server has this capability, set to `true` when it does.
+    public String metadataKey() { return metadataKey; }
+
+    /// Returns true when the metadata of the server says it has this capability.
+    public boolean isSupportedBy(Server server) {
+        return Boolean.parseBoolean(server.metadata().getOrDefault(metadataKey, ""));
+    }
+
+    /// Returns all capabilities of the server.
+    public static Set<ServerCapability> of(Server server) {
+        var capabilities = EnumSet.noneOf(ServerCapability.class);
+        for (ServerCapability capability : values()) {
+            if (capability.isSupportedBy(server)) {
+                capabilities.add(capability);
+            }
+        }
+        return capabilities;
+    }
+}
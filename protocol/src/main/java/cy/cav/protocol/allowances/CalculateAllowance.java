@@ -10,6 +10,7 @@ import java.util.*;
 /**
  * Request to calculate any allowance.
  */
+@MessagePriority.Of(MessagePriority.BULK)
 public record CalculateAllowance(
         BeneficiaryProfile profile,
         UUID ackId
@@ -21,6 +22,7 @@ public record CalculateAllowance(
     /// Result of a calculation request
     ///
     /// @param message some additional info for the user concerning the calculation; empty string if there's none
+    @MessagePriority.Of(MessagePriority.BULK)
     public record Ack(
             AllowanceType type,
             BigDecimal amount,
@@ -6,7 +6,9 @@ import cy.cav.framework.reliable.*;
 import java.time.*;
 import java.util.*;
 
+@MessagePriority.Of(MessagePriority.BULK)
 public record PayAllowances(LocalDate month, UUID ackId) implements Message.Notification, Acknowledgeable {
+    @MessagePriority.Of(MessagePriority.BULK)
     public record Ack(UUID ackId) implements Notification, Acknowledgeable {
     }
 }
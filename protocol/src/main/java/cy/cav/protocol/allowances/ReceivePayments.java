@@ -6,6 +6,8 @@ import cy.cav.protocol.*;
 
 import java.util.*;
 
+@MessagePriority.Of(MessagePriority.BULK)
 public record ReceivePayments(List<Payment> payments, UUID ackId) implements Message.Notification, Acknowledgeable {
+    @MessagePriority.Of(MessagePriority.BULK)
     public record Ack(UUID ackId) implements Message.Notification, Acknowledgeable {}
 }
@@ -0,0 +1,11 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+
+import java.util.*;
+
+/// Where the actor of a beneficiary currently lives.
+///
+/// @param version increases every time the beneficiary actor gets a new address; set by the prefecture owning the
+///                beneficiary. The directory ignores entries older than the one it has, which may arrive late.
+public record DirectoryEntry(UUID beneficiaryId, ActorAddress address, long version) { }
@@ -0,0 +1,35 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+import cy.cav.protocol.*;
+import jakarta.annotation.*;
+
+import java.util.*;
+
+/// Splits the beneficiary directory across prefecture servers: each beneficiary has a home prefecture,
+/// whose directory actor knows where the beneficiary actor lives.
+///
+/// The home is the server of the beneficiary on the [HashRing] of prefectures, the same ring that places
+/// beneficiary actors. Everyone knowing the same prefectures agrees on the same home, and when a prefecture joins
+/// or leaves, only a small part of the beneficiaries move.
+public final class DirectoryPartitions {
+    private DirectoryPartitions() {}
+
+    /// Returns the ring of the prefecture servers of the network, this one included when it's a prefecture.
+    ///
+    /// The ring follows the network; keep it instead of making a new one for each beneficiary.
+    public static HashRing prefectures(Network network) {
+        return network.ring(ServerCapability.PREFECTURE::isSupportedBy);
+    }
+
+    /// Returns the directory actor of the home prefecture of the beneficiary, or null when there's no prefecture.
+    public static @Nullable ActorAddress directoryActor(UUID beneficiaryId, HashRing prefectures) {
+        Server home = prefectures.serverFor(beneficiaryId);
+        return home != null ? directoryActor(home) : null;
+    }
+
+    /// Returns the address of the directory actor of a prefecture server.
+    public static ActorAddress directoryActor(Server prefecture) {
+        return prefecture.address(KnownActors.DIRECTORY);
+    }
+}
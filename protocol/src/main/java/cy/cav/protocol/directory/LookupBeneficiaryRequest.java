@@ -0,0 +1,8 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+
+import java.util.*;
+
+/// Asks the directory where the actor of a beneficiary lives.
+public record LookupBeneficiaryRequest(UUID beneficiaryId) implements Message.Request<LookupBeneficiaryResponse> { }
@@ -0,0 +1,12 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+import jakarta.annotation.*;
+
+import java.util.*;
+
+/// Where the actor of a beneficiary lives.
+///
+/// @param address the address of the beneficiary actor; null when the directory doesn't know the beneficiary
+public record LookupBeneficiaryResponse(UUID beneficiaryId, @Nullable ActorAddress address)
+        implements Message.Response { }
@@ -0,0 +1,15 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+
+import java.util.*;
+
+/// Tells the directory where beneficiary actors live, replacing their previous addresses.
+///
+/// Sent by prefectures to the directory actor of each entry's [home prefecture][DirectoryPartitions].
+@MessagePriority.Of(MessagePriority.BULK)
+public record RegisterBeneficiaries(List<DirectoryEntry> entries) implements Message.Notification {
+    public RegisterBeneficiaries {
+        entries = List.copyOf(entries);
+    }
+}
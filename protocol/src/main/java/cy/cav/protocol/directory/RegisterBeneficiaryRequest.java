@@ -0,0 +1,10 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+
+/// Tells the directory where a beneficiary actor lives, and waits until it's known; like
+/// [RegisterBeneficiaries], for a single entry.
+///
+/// Sent by the prefecture creating an account before answering, so the beneficiary can be looked up as soon as
+/// the account exists.
+public record RegisterBeneficiaryRequest(DirectoryEntry entry) implements Message.Request<RegisterBeneficiaryResponse> { }
@@ -0,0 +1,6 @@
+package cy.cav.protocol.directory;
+
+import cy.cav.framework.*;
+
+/// The directory knows the beneficiary of the [RegisterBeneficiaryRequest].
+public record RegisterBeneficiaryResponse() implements Message.Response { }
@@ -38,7 +38,7 @@ if java_path is None:
     sys.exit(1)
 
 client_jar_path = root_path / "client" / "target" / "client.jar"
-service_jar_path = root_path / "service" / "target" / "service.jar"
+service_jar_path = root_path / "service" / "target" / "service-exec.jar"
 discovery_jar_path = root_path / "discovery" / "target" / "discovery.jar"
 
 # Parse the command line args
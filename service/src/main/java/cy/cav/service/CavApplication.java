@@ -18,14 +18,16 @@ public class CavApplication implements ApplicationListener<ApplicationStartedEve
     private final DefaultBeneficiaries defaultBeneficiaries;
     private final Server server;
     private final ServerFinder serverFinder;
+    private final FrameworkConfig frameworkConfig;
 
     public CavApplication(World world, Store store, DefaultBeneficiaries defaultBeneficiaries,
-                          Server server, ServerFinder serverFinder) {
+                          Server server, ServerFinder serverFinder, FrameworkConfig frameworkConfig) {
         this.world = world;
         this.store = store;
         this.defaultBeneficiaries = defaultBeneficiaries;
         this.server = server;
         this.serverFinder = serverFinder;
+        this.frameworkConfig = frameworkConfig;
     }
 
     public static void main(String[] args) {
@@ -34,8 +36,8 @@ public class CavApplication implements ApplicationListener<ApplicationStartedEve
 
     @Override
     public void onApplicationEvent(ApplicationStartedEvent event) {
-        boolean supportsPrefecture = Boolean.parseBoolean(server.metadata().getOrDefault("supportsPrefecture", ""));
-        boolean supportsCalculators = Boolean.parseBoolean(server.metadata().getOrDefault("supportsCalculators", ""));
+        boolean supportsPrefecture = ServerCapability.PREFECTURE.isSupportedBy(server);
+        boolean supportsCalculators = ServerCapability.CALCULATORS.isSupportedBy(server);
 
         if (!supportsPrefecture && !supportsCalculators) {
             throw new IllegalStateException("Can't have an app that doesn't support BOTH prefectures and calculators!");
@@ -44,13 +46,24 @@ public class CavApplication implements ApplicationListener<ApplicationStartedEve
         log.info("Starting with supportsPrefecture={} ; supportsCalculators={}", supportsPrefecture, supportsCalculators);
 
         if (supportsPrefecture) {
+            // Beneficiary actors are spawned on any prefecture server, and can move between them to balance the load
+            world.migrations().register(BeneficiaryActor.Snapshot.class,
+                    (init, snapshot) -> new BeneficiaryActor(init, snapshot, serverFinder));
+
+            // Spawn the directory first, so the prefecture can register its beneficiaries right away
+            world.spawn(init -> new DirectoryActor(init, serverFinder), KnownActors.DIRECTORY);
             // Spawn prefecture actor (manages beneficiary actors)
             world.spawn(init -> new Prefecture(init, store, defaultBeneficiaries, serverFinder), KnownActors.PREFECTURE);
+
+            // Move beneficiaries to a prefecture joining later
+            if (frameworkConfig.rebalancing().enabled()) {
+                world.spawn(init -> new Rebalancer(init, serverFinder::prefectureServers, frameworkConfig.rebalancing()));
+            }
         }
 
         if (supportsCalculators) {
-            // Spawn RSA calculator actor
-            world.spawn(RSACalculator::new, KnownActors.RSA_CALCULATOR);
+            // Spawn RSA calculator actor; it has no state of its own, so a failing one is replaced by a fresh one
+            world.spawn(RSACalculator::new, KnownActors.RSA_CALCULATOR, Supervision.restart(RSACalculator::new));
         }
     }
 }
\ No newline at end of file
@@ -2,54 +2,121 @@ package cy.cav.service;
 
 import cy.cav.framework.*;
 import cy.cav.protocol.*;
+import cy.cav.protocol.directory.*;
 import jakarta.annotation.*;
 import org.springframework.stereotype.*;
 
 import java.util.*;
+import java.util.stream.*;
 
 /// Finds a compatible server on the network when needing some specific actor.
 @Component
 public class ServerFinder {
-    private final Network network;
     private final Server server;
-    private final Random random;
+    private final ServerHealth health;
+    // What this server can calculate, and the other servers by what they can calculate.
+    private final Set<AllowanceType> localCalculators;
+    private final ServerIndex<AllowanceType> calculators;
+    // Calculator servers of each allowance type, to send all attempts of a request to the same server.
+    private final Map<AllowanceType, HashRing> calculatorRings = new EnumMap<>(AllowanceType.class);
+    private final Network network;
+    private final ServerIndex<ServerCapability> capabilities;
+    private final HashRing prefectureRing;
 
-    public ServerFinder(Network network, Server server) {
-        this.network = network;
+    public ServerFinder(Network network, Server server, World world) {
         this.server = server;
-        this.random = new Random();
+        this.health = world.serverHealth();
+        this.localCalculators = AllowanceType.calculatedBy(server);
+        this.calculators = network.index(AllowanceType::calculatedBy);
+        for (AllowanceType type : AllowanceType.values()) {
+            calculatorRings.put(type, network.ring(s -> AllowanceType.calculatedBy(s).contains(type)));
+        }
+        this.network = network;
+        this.capabilities = network.index(ServerCapability::of);
+        this.prefectureRing = DirectoryPartitions.prefectures(network);
     }
 
-    /// Finds a random server on the network that has calculator actors. When this server already supports calculators,
-    /// returns this server.
-    public @Nullable Server pickCalculatorServer() {
+    /// Finds a random server on the network that has the calculator of the allowance type, preferring servers that
+    /// don't seem down. When this server already has it, returns this server.
+    public @Nullable Server pickCalculatorServer(AllowanceType type) {
         // If this server already supports calculators, good!
-        if (Boolean.parseBoolean(server.metadata().getOrDefault("supportsCalculators", ""))) {
+        if (localCalculators.contains(type)) {
             return server;
         }
 
         // Otherwise, pick one randomly off the network
-        List<Server> calcServers = network.servers().values()
-                .stream()
-                .filter(s -> Boolean.parseBoolean(s.metadata().getOrDefault("supportsCalculators", "")))
-                .toList();
-
-        if (calcServers.isEmpty()) {
-            return null;
+        Server picked = calculators.pick(type);
+        if (picked == null || health.isHealthy(picked.id())) {
+            return picked;
         }
-
-        return calcServers.get(random.nextInt(calcServers.size()));
+        for (Server other : calculators.servers(type)) {
+            if (health.isHealthy(other.id())) {
+                return other;
+            }
+        }
+        return picked;
     }
 
     /// Finds a random server on the network that has calculator actors
     /// and makes an actor address for the calculator of the allowance type.
     /// When this server already supports calculators, returns this server.
     public @Nullable ActorAddress pickCalculatorActor(AllowanceType type) {
-        Server calcServ = pickCalculatorServer();
+        Server calcServ = pickCalculatorServer(type);
         if (calcServ == null) {
             return null;
         }
 
         return type.calculatorActor(calcServ);
     }
+
+    /// Finds the calculator of the allowance type for a request, always on the same server for the same
+    /// acknowledgment id while calculator servers don't change. Requests sent again then reach the calculator
+    /// that already answered them. When this server has the calculator, returns this server's one.
+    ///
+    /// Servers that seem down are skipped, so requests sent again go to the next server of the ring right away.
+    /// When they all seem down, returns the usual one, which gets probed once in a while.
+    public @Nullable ActorAddress pickCalculatorActor(AllowanceType type, UUID ackId) {
+        if (localCalculators.contains(type)) {
+            return type.calculatorActor(server);
+        }
+
+        HashRing ring = calculatorRings.get(type);
+        Server calcServ = ring.serverFor(ackId, s -> health.isHealthy(s.id()));
+        if (calcServ == null) {
+            calcServ = ring.serverFor(ackId);
+        }
+        return calcServ != null ? type.calculatorActor(calcServ) : null;
+    }
+
+    /// Returns the other prefecture servers of the network.
+    public List<Server> prefectureServers() {
+        return capabilities.servers(ServerCapability.PREFECTURE);
+    }
+
+    /// Returns the ring of all prefecture servers, this one included, which spreads beneficiary actors and directory
+    /// entries evenly.
+    public HashRing prefectureRing() {
+        return prefectureRing;
+    }
+
+    /// Finds the directory actor knowing where the actor of the beneficiary lives, on its home prefecture.
+    /// This server is one of the candidates when it's a prefecture.
+    public @Nullable ActorAddress pickDirectoryActor(UUID beneficiaryId) {
+        return DirectoryPartitions.directoryActor(beneficiaryId, prefectureRing);
+    }
+
+    /// Calls the listener when prefecture servers join or leave the network, which moves the home of directory
+    /// entries. The listener is called on a thread of the network, not by an actor.
+    ///
+    /// Actors must cancel the subscription when they despawn.
+    public Network.Subscription onPrefecturesChanged(Runnable listener) {
+        return network.subscribe(change -> {
+            boolean prefecturesChanged = Stream.of(change.added(), change.removed(), change.changed())
+                    .flatMap(List::stream)
+                    .anyMatch(ServerCapability.PREFECTURE::isSupportedBy);
+            if (prefecturesChanged) {
+                listener.run();
+            }
+        });
+    }
 }
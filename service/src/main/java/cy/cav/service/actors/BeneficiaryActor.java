@@ -7,13 +7,18 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import cy.cav.framework.Actor;
+import cy.cav.framework.ActorAddress;
 import cy.cav.framework.ActorInit;
+import cy.cav.framework.ActorSnapshot;
 import cy.cav.framework.Envelope;
+import cy.cav.framework.LogEvent;
+import cy.cav.framework.Migratable;
 import cy.cav.framework.Router;
 import cy.cav.framework.reliable.AckRetryer;
 import cy.cav.framework.reliable.AckStore;
@@ -42,13 +47,28 @@ import cy.cav.service.domain.Beneficiary;
  * - Stores beneficiary data
  * - Handles account retrieval requests
  * - Handles allowance request notifications
+ * <p>
+ * Is spawned on the prefecture server chosen by the prefecture ring, and can move to another prefecture server
+ * to balance the load; see {@link Snapshot}.
  */
-public class BeneficiaryActor extends Actor {
+public class BeneficiaryActor extends Actor implements Migratable {
     private static final Logger log = LoggerFactory.getLogger(BeneficiaryActor.class);
+    // Every beneficiary gets these messages at the end of the month; only log a few of them.
+    private static final LogEvent ALLOWANCE_REQUESTED = LogEvent.of(BeneficiaryActor.class, "allowance-requested");
+    private static final LogEvent ALLOWANCE_CALCULATED = LogEvent.of(BeneficiaryActor.class, "allowance-calculated");
+    private static final LogEvent MONTH_CHANGED = LogEvent.of(BeneficiaryActor.class, "month-changed");
+    private static final LogEvent PAST_MONTH = LogEvent.of(BeneficiaryActor.class, "past-month");
+    private static final LogEvent PAYMENTS_RECEIVED = LogEvent.of(BeneficiaryActor.class, "payments-received");
 
     // This actor's beneficiary data
     private final Beneficiary beneficiary;
 
+    // The prefecture which created this actor, and keeps its address
+    private final ActorAddress owner;
+
+    // True when this actor has been spawned from a snapshot: moved or placed here by another server
+    private final boolean fromSnapshot;
+
     // Store for persistence (UI display)
     private final ServerFinder serverFinder;
 
@@ -60,7 +80,10 @@ public class BeneficiaryActor extends Actor {
     /// Sends messages over and over, to calculators.
     private final AckRetryer retryer = AckRetryer.additiveDelay(this, Duration.ofSeconds(15), Duration.ofSeconds(10));
 
-    private final AckStore<ReceivePayments.Ack> paymentAckStore = new AckStore<>(this);
+    /// Payments already received. Payments come once a month, so a few dozen are plenty; acks are made back
+    /// from their id, saving memory in each of the many beneficiaries.
+    private final AckStore<ReceivePayments.Ack> paymentAckStore = AckStore.idsOnly(this, ReceivePayments.Ack::new)
+            .maxEntries(64);
 
     private LocalDate currentMonth;
 
@@ -71,15 +94,65 @@ public class BeneficiaryActor extends Actor {
             .route(PayAllowances.class, BeneficiaryActor::payAllowances)
             .route(ReceivePayments.class, BeneficiaryActor::receivePayments);
 
-    public BeneficiaryActor(ActorInit init, LocalDate currentMonth, Beneficiary beneficiary, ServerFinder serverFinder) {
+    public BeneficiaryActor(ActorInit init, ActorAddress owner, LocalDate currentMonth, Beneficiary beneficiary,
+                            ServerFinder serverFinder) {
         super(init);
         // Initialize all prevision types with default previsions.
         for (AllowanceType type : AllowanceType.values()) {
             allowancePrevisions.put(type, new AllowancePrevision(type));
         }
         this.beneficiary = beneficiary;
+        this.owner = owner;
         this.currentMonth = currentMonth;
         this.serverFinder = serverFinder;
+        this.fromSnapshot = false;
+    }
+
+    /**
+     * Creates the actor of a beneficiary from its snapshot, when it moves from another server or when
+     * a prefecture places it on this server.
+     */
+    public BeneficiaryActor(ActorInit init, Snapshot snapshot, ServerFinder serverFinder) {
+        super(init);
+        for (AllowanceType type : AllowanceType.values()) {
+            cy.cav.protocol.AllowancePrevision prevision = snapshot.previsions().get(type);
+            allowancePrevisions.put(type, prevision != null ? AllowancePrevision.fromProtocol(prevision) : new AllowancePrevision(type));
+        }
+        this.beneficiary = Beneficiary.fromProfile(snapshot.id(), snapshot.profile());
+        this.beneficiary.getPayments().addAll(snapshot.payments());
+        this.owner = snapshot.owner();
+        this.currentMonth = snapshot.currentMonth();
+        this.serverFinder = serverFinder;
+        this.fromSnapshot = true;
+        snapshot.paymentAcks().forEach(paymentAckStore::add);
+    }
+
+    @Override
+    protected void spawned() {
+        if (!fromSnapshot) {
+            return;
+        }
+
+        // Calculations waiting for a result were lost with the retryer of the old actor; start them again.
+        for (AllowancePrevision prevision : allowancePrevisions.values()) {
+            if (prevision.getState() == AllowancePrevisionState.PENDING) {
+                startPrevisionCalculation(prevision.getType());
+            }
+        }
+
+        // Let the prefecture know where we are now.
+        send(owner, new Prefecture.BeneficiaryArrived(beneficiary.getId(), address));
+    }
+
+    @Override
+    public ActorSnapshot snapshot() {
+        Map<AllowanceType, cy.cav.protocol.AllowancePrevision> previsions = new HashMap<>();
+        for (Map.Entry<AllowanceType, AllowancePrevision> entry : allowancePrevisions.entrySet()) {
+            previsions.put(entry.getKey(), entry.getValue().toProtocol());
+        }
+
+        return new Snapshot(beneficiary.getId(), owner, beneficiary.toProfile(), List.copyOf(beneficiary.getPayments()),
+                previsions, currentMonth, paymentAckStore.acknowledged());
     }
 
     @Override
@@ -117,8 +190,9 @@ public class BeneficiaryActor extends Actor {
      * Creates the request, then processes asynchronously.
      */
     RequestAllowanceResponse requestAllowance(RequestAllowanceRequest request) {
-        log.info("Processing allowance request for beneficiary: {}; {}",
-                beneficiary.getId(), request);
+        if (ALLOWANCE_REQUESTED.sample()) {
+            log.info("Processing allowance request for beneficiary: {}; {}", beneficiary.getId(), request);
+        }
 
         startPrevisionCalculation(request.type());
 
@@ -128,7 +202,7 @@ public class BeneficiaryActor extends Actor {
     private void startPrevisionCalculation(AllowanceType type) {
         // Create the message and send it to the calculator
         CalculateAllowance message = new CalculateAllowance(beneficiary.toProfile());
-        retryer.send(_ -> serverFinder.pickCalculatorActor(type), message);
+        retryer.send(_ -> serverFinder.pickCalculatorActor(type, message.ackId()), message);
 
         // Update the prevision --> PENDING
         AllowancePrevision prevision = allowancePrevisions.get(type);
@@ -139,7 +213,9 @@ public class BeneficiaryActor extends Actor {
     }
 
     private void allowanceCalculated(CalculateAllowance.Ack ack) {
-        log.info("Received allowance calculation: {}", ack);
+        if (ALLOWANCE_CALCULATED.sample()) {
+            log.info("Received allowance calculation: {}", ack);
+        }
 
         AllowancePrevision prevision = allowancePrevisions.get(ack.type());
         prevision.receiveResult(ack.ackId(), ack.amount(), ack.message());
@@ -149,7 +225,9 @@ public class BeneficiaryActor extends Actor {
         // First see if we already paid this month of allowances.
         PayAllowances message = envelope.body();
         if (currentMonth.isAfter(message.month())) {
-            log.info("Received PayAllowance with a month in the past: {}; ignoring", message.month());
+            if (PAST_MONTH.sample()) {
+                log.info("Received PayAllowance with a month in the past: {}; ignoring", message.month());
+            }
             send(envelope.sender(), new PayAllowances.Ack(message.ackId()));
             return;
         }
@@ -171,7 +249,9 @@ public class BeneficiaryActor extends Actor {
         // Switch to the next month
         LocalDate prevMonth = currentMonth;
         currentMonth = message.month().plusMonths(1);
-        log.info("Beneficiary {} has now moved from month {} to {}", address, prevMonth, currentMonth);
+        if (MONTH_CHANGED.sample()) {
+            log.info("Beneficiary {} has now moved from month {} to {}", address, prevMonth, currentMonth);
+        }
 
         // Refresh previsions
         for (AllowancePrevision prevision : allowancePrevisions.values()) {
@@ -196,8 +276,31 @@ public class BeneficiaryActor extends Actor {
             beneficiary.getPayments().add(new Payment(payment.label(), payment.amount()));
         }
 
-        log.info("Received {} payments from actor {}", message.payments().size(), envelope.sender());
+        if (PAYMENTS_RECEIVED.sample()) {
+            log.info("Received {} payments from actor {}", message.payments().size(), envelope.sender());
+        }
         paymentAckStore.send(envelope.sender(), new ReceivePayments.Ack(message.ackId()));
     }
-}
 
+    /**
+     * Everything a beneficiary actor needs to move to another server, or to spawn on another server.
+     * <p>
+     * Acknowledged payments are kept, so payments sent again by a payment process aren't received twice.
+     * Missing previsions start as unwanted.
+     */
+    public record Snapshot(UUID id,
+                           ActorAddress owner,
+                           BeneficiaryProfile profile,
+                           List<Payment> payments,
+                           Map<AllowanceType, cy.cav.protocol.AllowancePrevision> previsions,
+                           LocalDate currentMonth,
+                           List<ReceivePayments.Ack> paymentAcks) implements ActorSnapshot {
+        /**
+         * Returns the snapshot of a beneficiary who just created their account.
+         */
+        public static Snapshot newBeneficiary(Beneficiary beneficiary, ActorAddress owner, LocalDate currentMonth) {
+            return new Snapshot(beneficiary.getId(), owner, beneficiary.toProfile(), List.of(), Map.of(), currentMonth,
+                    List.of());
+        }
+    }
+}
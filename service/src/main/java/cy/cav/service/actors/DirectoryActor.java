@@ -0,0 +1,87 @@
+package cy.cav.service.actors;
+
+import cy.cav.framework.*;
+import cy.cav.protocol.directory.*;
+import cy.cav.service.*;
+import jakarta.annotation.*;
+
+import java.util.*;
+
+/// Knows where the actors of some beneficiaries live: those whose home is this prefecture server,
+/// as decided by [DirectoryPartitions].
+///
+/// Prefectures register their beneficiaries here; clients look them up by id, without knowing which server
+/// hosts them. The directory isn't the source of truth: prefectures register their beneficiaries again
+/// when prefecture servers join or leave, since homes move.
+///
+/// An entry is replaced when a newer version comes, like when its beneficiary actor moved, and is forgotten when
+/// its home isn't this server anymore.
+public class DirectoryActor extends Actor {
+    static final Router<DirectoryActor> router = new Router<DirectoryActor>()
+            .route(RegisterBeneficiaries.class, DirectoryActor::register)
+            .route(RegisterBeneficiaryRequest.class, DirectoryActor::registerNow)
+            .route(LookupBeneficiaryRequest.class, DirectoryActor::lookup)
+            .route(ForgetMovedHomes.class, DirectoryActor::forgetMovedHomes);
+
+    private final Map<UUID, DirectoryEntry> entries = new HashMap<>();
+    private final ServerFinder serverFinder;
+    private @Nullable Network.Subscription prefecturesChanged;
+
+    public DirectoryActor(ActorInit init, ServerFinder serverFinder) {
+        super(init);
+        this.serverFinder = serverFinder;
+    }
+
+    @Override
+    protected void spawned() {
+        prefecturesChanged = serverFinder.onPrefecturesChanged(() -> send(address, new ForgetMovedHomes()));
+    }
+
+    @Override
+    protected void despawned() {
+        if (prefecturesChanged != null) {
+            prefecturesChanged.cancel();
+        }
+    }
+
+    @Override
+    protected void process(Envelope<?> envelope) {
+        router.process(this, envelope);
+    }
+
+    private void register(RegisterBeneficiaries message) {
+        for (DirectoryEntry entry : message.entries()) {
+            put(entry);
+        }
+    }
+
+    private RegisterBeneficiaryResponse registerNow(RegisterBeneficiaryRequest request) {
+        put(request.entry());
+        return new RegisterBeneficiaryResponse();
+    }
+
+    private void put(DirectoryEntry entry) {
+        DirectoryEntry existing = entries.get(entry.beneficiaryId());
+        // Registrations may arrive out of order; keep the most recent address.
+        if (existing == null || entry.version() >= existing.version()) {
+            entries.put(entry.beneficiaryId(), entry);
+        }
+    }
+
+    LookupBeneficiaryResponse lookup(LookupBeneficiaryRequest request) {
+        DirectoryEntry entry = entries.get(request.beneficiaryId());
+        return new LookupBeneficiaryResponse(request.beneficiaryId(), entry != null ? entry.address() : null);
+    }
+
+    private void forgetMovedHomes(ForgetMovedHomes message) {
+        int before = entries.size();
+        entries.values().removeIf(entry -> !address.equals(serverFinder.pickDirectoryActor(entry.beneficiaryId())));
+        if (entries.size() != before) {
+            log.info("Forgot {} beneficiaries whose home is now another prefecture", before - entries.size());
+        }
+    }
+
+    /// Sent by the directory to itself when prefecture servers changed.
+    @MessagePriority.Of(MessagePriority.BULK)
+    record ForgetMovedHomes() implements Message.Notification { }
+}
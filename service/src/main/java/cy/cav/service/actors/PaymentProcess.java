@@ -11,6 +11,11 @@ import java.time.*;
 import java.util.*;
 
 public class PaymentProcess extends Actor {
+    // Lots of payment processes run at the end of the month; only log a few of them.
+    private static final LogEvent STARTED = LogEvent.of(PaymentProcess.class, "started");
+    private static final LogEvent CALCULATED = LogEvent.of(PaymentProcess.class, "calculated");
+    private static final LogEvent FINISHED = LogEvent.of(PaymentProcess.class, "finished");
+
     private static final Router<PaymentProcess> router = new Router<PaymentProcess>()
             .route(CalculateAllowance.Ack.class, PaymentProcess::allowanceCalculated)
             .route(ReceivePayments.Ack.class, PaymentProcess::paymentsReceived);
@@ -23,7 +28,8 @@ public class PaymentProcess extends Actor {
 
     private final List<Payment> paymentsToDistribute = new ArrayList<>();
 
-    private final AckRetryer retryer = AckRetryer.constantDelay(this, Duration.ofSeconds(5)).maxRetries(10000);
+    private final AckRetryer retryer = AckRetryer.exponentialDelay(this, Duration.ofSeconds(5), Duration.ofMinutes(5))
+            .maxRetries(10000);
 
     private final int totalAllowances;
 
@@ -50,10 +56,12 @@ public class PaymentProcess extends Actor {
             return;
         }
 
-        log.info("PaymentProcess ready for actor {}; sending calculation messages...", beneficiaryActor);
+        if (STARTED.sample()) {
+            log.info("PaymentProcess ready for actor {}; sending calculation messages...", beneficiaryActor);
+        }
         for (AllowanceType allowanceType : allowancesRemaining) {
-            retryer.send(_ -> serverFinder.pickCalculatorActor(allowanceType),
-                    new CalculateAllowance(profile, UUID.randomUUID()));
+            var message = new CalculateAllowance(profile, UUID.randomUUID());
+            retryer.send(_ -> serverFinder.pickCalculatorActor(allowanceType, message.ackId()), message);
         }
     }
 
@@ -69,24 +77,30 @@ public class PaymentProcess extends Actor {
                     message.amount());
             paymentsToDistribute.add(payment);
 
-            log.info("Prepared payment for actor {} about allowance {}: {} ({}/{} allowances remaining)",
-                    address, message.type(), payment, allowancesRemaining.size(), totalAllowances);
-        } else {
+            if (CALCULATED.sample()) {
+                log.info("Prepared payment for actor {} about allowance {}: {} ({}/{} allowances remaining)",
+                        address, message.type(), payment, allowancesRemaining.size(), totalAllowances);
+            }
+        } else if (CALCULATED.sample()) {
             log.info("No payment for actor {} about allowance {} ({}/{} allowances remaining)",
                     address, message.type(), allowancesRemaining.size(), totalAllowances);
         }
 
         if (!paymentsToDistribute.isEmpty()) {
-            log.info("All calculations complete; sending {} payments to actor {}", paymentsToDistribute.size(), address);
+            log.debug("All calculations complete; sending {} payments to actor {}", paymentsToDistribute.size(), address);
             retryer.send(beneficiaryActor, new ReceivePayments(paymentsToDistribute, UUID.randomUUID()));
         } else {
-            log.info("All calculations complete; no payments to send to actor {}, goodbye!", address);
+            if (FINISHED.sample()) {
+                log.info("All calculations complete; no payments to send to actor {}, goodbye!", address);
+            }
             despawn();
         }
     }
 
     void paymentsReceived(ReceivePayments.Ack ack) {
-        log.info("Actor {} has received its payments, goodbye!", address);
+        if (FINISHED.sample()) {
+            log.info("Actor {} has received its payments, goodbye!", address);
+        }
         despawn();
     }
 
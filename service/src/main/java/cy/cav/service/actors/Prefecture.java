@@ -5,14 +5,17 @@ import cy.cav.framework.reliable.*;
 import cy.cav.protocol.*;
 import cy.cav.protocol.accounts.*;
 import cy.cav.protocol.allowances.*;
+import cy.cav.protocol.directory.*;
 import cy.cav.protocol.requests.*;
 import cy.cav.service.*;
 import cy.cav.service.config.*;
 import cy.cav.service.domain.*;
+import jakarta.annotation.*;
 import org.slf4j.*;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Prefecture actor that manages beneficiary actors.
@@ -29,8 +32,10 @@ import java.util.*;
 public class Prefecture extends Actor {
     private static final Logger log = LoggerFactory.getLogger(Prefecture.class);
 
-    // Registry: maps beneficiary UUID to their actor address
-    private final Map<UUID, ActorAddress> beneficiaryActors = new HashMap<>();
+    // Registry: where the actor of each beneficiary lives, by beneficiary UUID, as registered in the directory
+    private final Map<UUID, DirectoryEntry> beneficiaryActors = new HashMap<>();
+    // The version of the last directory entry; see entry()
+    private long lastDirectoryVersion = 0;
 
     // Store for persistence (UI display and fallback)
     private final Store store;
@@ -38,20 +43,30 @@ public class Prefecture extends Actor {
     // To have an initial list of beneficiaries
     private final DefaultBeneficiaries defaultBeneficiaries;
     private final ServerFinder serverFinder;
+    private @Nullable Network.Subscription prefecturesChanged;
 
     private LocalDate currentMonth = LocalDate.now().withDayOfMonth(1);
 
-    private final AckRetryer retryer = AckRetryer.constantDelay(this, Duration.ofSeconds(15)).maxRetries(10000);
+    private final AckRetryer retryer = AckRetryer.exponentialDelay(this, Duration.ofSeconds(15), Duration.ofMinutes(5))
+            .maxRetries(10000);
+
+    // Beneficiaries registered in the directory at once, so messages don't get too big.
+    private static final int DIRECTORY_BATCH_SIZE = 1000;
+    // Every beneficiary acknowledges its payments at once when switching months.
+    private static final int MAILBOX_LIMIT = 100_000;
 
     static final Router<Prefecture> router = new Router<Prefecture>()
-            .route(CreateAccountRequest.class, Prefecture::createAccount)
+            .routeDeferred(CreateAccountRequest.class, Prefecture::createAccount)
             .route(NextMonthRequest.class, Prefecture::nextMonth)
-            .route(PrefectureStateRequest.class, Prefecture::getState);
+            .route(PrefectureStateRequest.class, Prefecture::getState)
+            .route(PublishDirectory.class, Prefecture::publishDirectory)
+            .route(BeneficiaryArrived.class, Prefecture::beneficiaryArrived);
 
     public Prefecture(ActorInit init, Store store,
                       DefaultBeneficiaries defaultBeneficiaries,
                       ServerFinder serverFinder) {
         super(init);
+        mailboxLimit(MAILBOX_LIMIT);
         this.store = store;
         this.defaultBeneficiaries = defaultBeneficiaries;
         this.serverFinder = serverFinder;
@@ -61,22 +76,44 @@ public class Prefecture extends Actor {
     protected void spawned() {
         // Make some default actors
         for (Beneficiary beneficiary : defaultBeneficiaries.getDefaultBeneficiaries()) {
-            ActorAddress actorAddress = world.spawn(init -> new BeneficiaryActor(init, currentMonth, beneficiary, serverFinder));
-            beneficiaryActors.put(beneficiary.getId(), actorAddress);
+            ActorAddress actorAddress = world.spawn(init -> new BeneficiaryActor(init, address, currentMonth, beneficiary, serverFinder));
+            beneficiaryActors.put(beneficiary.getId(), entry(beneficiary.getId(), actorAddress));
 
             log.info("Spawned default beneficiary actor: {}", actorAddress);
         }
+
+        // Homes of directory entries move when prefectures join or leave; register everyone again then.
+        prefecturesChanged = serverFinder.onPrefecturesChanged(() -> world.send(address, address, new PublishDirectory()));
+        publishDirectory(new PublishDirectory());
+    }
+
+    @Override
+    protected void despawned() {
+        if (prefecturesChanged != null) {
+            prefecturesChanged.cancel();
+        }
     }
 
     @Override
     protected void process(Envelope<?> envelope) {
+        if (retryer.process(envelope)) {
+            return;
+        }
+
         router.process(this, envelope);
     }
 
     /**
      * Creates a new beneficiary account by spawning a BeneficiaryActor.
+     * <p>
+     * The actor spawns on the prefecture server chosen by the prefecture ring for the beneficiary id, so beneficiaries
+     * spread evenly over prefectures whichever one gets the request. The prefecture of that server owns the
+     * beneficiary: it learns its address once it spawned, with {@link BeneficiaryArrived}.
+     * <p>
+     * The response waits until the directory knows the beneficiary, so it can be looked up right away. This
+     * prefecture registers it as pending (version 0), which the registration of the owning prefecture replaces.
      */
-    CreateAccountResponse createAccount(CreateAccountRequest request) {
+    CompletionStage<CreateAccountResponse> createAccount(CreateAccountRequest request) {
         log.info("Creating account for: {} {}", request.firstName(), request.lastName());
 
         // Create beneficiary domain object
@@ -95,21 +132,43 @@ public class Prefecture extends Actor {
                 LocalDate.now()
         );
 
-        // Spawn a new BeneficiaryActor for this beneficiary
-        ActorAddress actorAddress = world.spawn(init -> new BeneficiaryActor(init, currentMonth, beneficiary, serverFinder));
-        beneficiaryActors.put(beneficiary.getId(), actorAddress);
+        // Spawn a new BeneficiaryActor for this beneficiary, on its prefecture server
+        HashRing ring = serverFinder.prefectureRing();
+        Server home = ring.serverFor(beneficiary.getId());
+        ActorAddress owner = home != null ? home.address(KnownActors.PREFECTURE) : address;
+        return world.spawn(ring, beneficiary.getId(), BeneficiaryActor.Snapshot.newBeneficiary(beneficiary, owner, currentMonth))
+                .thenCompose(actorAddress -> {
+                    log.info("BeneficiaryActor spawned (ID: {}, Actor: {})", beneficiary.getId(), actorAddress);
+                    return registerPending(beneficiary.getId(), actorAddress);
+                })
+                .thenApply(actorAddress -> new CreateAccountResponse(
+                        beneficiary.getId(),
+                        actorAddress
+                ));
+    }
 
-        log.info("BeneficiaryActor spawned (ID: {}, Actor: {})", beneficiary.getId(), actorAddress);
+    /**
+     * Registers a new beneficiary in the directory, completing once the directory knows it. The account exists even
+     * when the directory doesn't answer: the owning prefecture registers it again soon.
+     */
+    private CompletionStage<ActorAddress> registerPending(UUID beneficiaryId, ActorAddress actorAddress) {
+        ActorAddress directory = serverFinder.pickDirectoryActor(beneficiaryId);
+        if (directory == null) {
+            return CompletableFuture.completedFuture(actorAddress);
+        }
 
-        return new CreateAccountResponse(
-                beneficiary.getId(),
-                actorAddress
-        );
+        return query(directory, new RegisterBeneficiaryRequest(new DirectoryEntry(beneficiaryId, actorAddress, 0)))
+                .handle((_, e) -> {
+                    if (e != null) {
+                        log.warn("Directory {} didn't register beneficiary {}", directory, beneficiaryId, e);
+                    }
+                    return actorAddress;
+                });
     }
 
     private NextMonthResponse nextMonth(NextMonthRequest nextMonthRequest) {
-        for (ActorAddress value : beneficiaryActors.values()) {
-            retryer.send(value, new PayAllowances(currentMonth, UUID.randomUUID()));
+        for (DirectoryEntry entry : beneficiaryActors.values()) {
+            retryer.send(entry.address(), new PayAllowances(currentMonth, UUID.randomUUID()));
         }
 
         LocalDate prevMonth = currentMonth;
@@ -130,11 +189,61 @@ public class Prefecture extends Actor {
                 String.format("%03d", (int) (Math.random() * 1000));
     }
 
+    /**
+     * Registers all beneficiaries of this prefecture in the directory, grouped by home prefecture.
+     */
+    private void publishDirectory(PublishDirectory message) {
+        Map<ActorAddress, List<DirectoryEntry>> entriesByDirectory = new HashMap<>();
+        for (DirectoryEntry entry : beneficiaryActors.values()) {
+            ActorAddress directory = serverFinder.pickDirectoryActor(entry.beneficiaryId());
+            if (directory != null) {
+                entriesByDirectory.computeIfAbsent(directory, _ -> new ArrayList<>()).add(entry);
+            }
+        }
+
+        entriesByDirectory.forEach((directory, entries) -> {
+            for (int i = 0; i < entries.size(); i += DIRECTORY_BATCH_SIZE) {
+                send(directory, new RegisterBeneficiaries(entries.subList(i, Math.min(entries.size(), i + DIRECTORY_BATCH_SIZE))));
+            }
+        });
+    }
+
+    /**
+     * Saves the address of a beneficiary actor which spawned on a prefecture server or moved to another one,
+     * here and in the directory.
+     */
+    private void beneficiaryArrived(BeneficiaryArrived message) {
+        DirectoryEntry entry = entry(message.beneficiaryId(), message.address());
+        beneficiaryActors.put(message.beneficiaryId(), entry);
+
+        ActorAddress directory = serverFinder.pickDirectoryActor(message.beneficiaryId());
+        if (directory != null) {
+            send(directory, new RegisterBeneficiaries(List.of(entry)));
+        }
+    }
+
+    /**
+     * Makes the directory entry of a new address of a beneficiary, newer than all previous entries.
+     * <p>
+     * Versions come from the clock rather than from a counter, so entries of a respawned prefecture are still
+     * newer than the ones of the previous prefecture.
+     */
+    private DirectoryEntry entry(UUID beneficiaryId, ActorAddress actorAddress) {
+        lastDirectoryVersion = Math.max(System.currentTimeMillis(), lastDirectoryVersion + 1);
+        return new DirectoryEntry(beneficiaryId, actorAddress, lastDirectoryVersion);
+    }
+
     private PrefectureStateResponse getState(PrefectureStateRequest request) {
         return new PrefectureStateResponse(
                 this.state().toString(),
                 this.currentMonth);
     }
 
-}
+    /// Sent by the prefecture to itself when prefecture servers changed.
+    @MessagePriority.Of(MessagePriority.BULK)
+    record PublishDirectory() implements Message.Notification { }
 
+    /// Sent by a beneficiary actor spawned from a snapshot to the prefecture owning it: once it spawned on its
+    /// prefecture server, or moved to another server.
+    public record BeneficiaryArrived(UUID beneficiaryId, ActorAddress address) implements Message.Notification { }
+}
@@ -8,14 +8,17 @@ import org.slf4j.LoggerFactory;
 import cy.cav.framework.Actor;
 import cy.cav.framework.ActorInit;
 import cy.cav.framework.Envelope;
+import cy.cav.framework.LogEvent;
 import cy.cav.framework.Router;
-import cy.cav.framework.reliable.AckStore;
+import cy.cav.framework.reliable.SharedAckStore;
 import cy.cav.protocol.AllowanceType;
 import cy.cav.protocol.allowances.CalculateAllowance;
 
 // Calculates RSA allocation amounts (calcule les montants d'allocation RSA)
 public class RSACalculator extends Actor {
     private static final Logger log = LoggerFactory.getLogger(RSACalculator.class);
+    private static final LogEvent ELIGIBLE = LogEvent.of(RSACalculator.class, "eligible");
+    private static final LogEvent NOT_ELIGIBLE = LogEvent.of(RSACalculator.class, "not-eligible");
 
     // Base amounts for RSA (montants de base RSA)
     private static final BigDecimal BASE_AMOUNT_SINGLE = BigDecimal.valueOf(600.0);      // Personne seule
@@ -28,10 +31,12 @@ public class RSACalculator extends Actor {
     static final Router<RSACalculator> router = new Router<RSACalculator>()
             .route(CalculateAllowance.class, RSACalculator::calculateRSA);
 
-    private final AckStore<CalculateAllowance.Ack> ackStore = new AckStore<>(this);
+    // Shared by all calculators of the server, so a request sent again to another one isn't calculated twice.
+    private final SharedAckStore<CalculateAllowance.Ack> ackStore;
 
     public RSACalculator(ActorInit init) {
         super(init);
+        this.ackStore = world.sharedAckStore(CalculateAllowance.Ack.class);
     }
 
     @Override
@@ -41,12 +46,11 @@ public class RSACalculator extends Actor {
 
     // Processes RSA calculation request (traite une demande de calcul RSA)
     void calculateRSA(Envelope<CalculateAllowance> envelope) {
-        if (ackStore.sendIfAcknowledged(envelope)) {
+        if (ackStore.sendIfAcknowledged(this, envelope)) {
             return;
         }
 
         CalculateAllowance request = envelope.body();
-        log.info("RSA calculation requested for beneficiary: {}", request.profile());
 
         // Check eligibility using request data (vérification d'éligibilité simplifiée)
         boolean eligible = checkEligibility(request);
@@ -55,15 +59,19 @@ public class RSACalculator extends Actor {
         if (eligible) {
             BigDecimal calculatedAmount = calculateRSAAmount(request);
 
-            log.info("RSA amount calculated: {}€ for beneficiary: {}", calculatedAmount, request.profile());
+            if (ELIGIBLE.sample()) {
+                log.info("RSA amount calculated: {}€ for beneficiary: {}", calculatedAmount, request.profile());
+            }
             message = new CalculateAllowance.Ack(AllowanceType.RSA, calculatedAmount, "", request.ackId());
         } else {
-            log.info("RSA request rejected for beneficiary: {}", request);
+            if (NOT_ELIGIBLE.sample()) {
+                log.info("RSA request rejected for beneficiary: {}", request.profile());
+            }
             message = new CalculateAllowance.Ack(AllowanceType.RSA, BigDecimal.ZERO,
                     "Vous n'êtes pas éligible au RSA. C'est dommage !", request.ackId());
         }
 
-        ackStore.send(envelope.sender(), message);
+        ackStore.send(this, envelope.sender(), message);
     }
 
 
@@ -22,6 +22,16 @@ public class AllowancePrevision {
 
     public AllowancePrevision(AllowanceType type) { this.type = type; }
 
+    /// Creates a prevision from its protocol format, without the ack id of the calculation.
+    /// Used when the beneficiary actor moves to another server; pending calculations must be started again.
+    public static AllowancePrevision fromProtocol(cy.cav.protocol.AllowancePrevision protocol) {
+        var prevision = new AllowancePrevision(protocol.type());
+        prevision.state = protocol.state();
+        prevision.lastAmount = protocol.lastAmount();
+        prevision.lastMessage = protocol.lastMessage();
+        return prevision;
+    }
+
     /// Switches this prevision to a PENDING state with the ack id of the calculation message.
     public void start(UUID ackId) {
         this.state = AllowancePrevisionState.PENDING;
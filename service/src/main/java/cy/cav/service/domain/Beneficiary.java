@@ -44,6 +44,17 @@ public class Beneficiary {
         this.registrationDate = registrationDate;
     }
 
+    /**
+     * Creates a beneficiary from its profile, with an existing id. Used when its actor moves to another server.
+     */
+    public static Beneficiary fromProfile(UUID id, BeneficiaryProfile profile) {
+        Beneficiary beneficiary = new Beneficiary(profile.firstName(), profile.lastName(), profile.birthDate(),
+                profile.email(), profile.phoneNumber(), profile.address(), profile.hasHousing(), profile.inCouple(),
+                profile.numberOfDependents(), profile.monthlyIncome(), profile.iban(), profile.registrationDate());
+        beneficiary.setId(id);
+        return beneficiary;
+    }
+
     // Getters and Setters
     public UUID getId() {
         return id;
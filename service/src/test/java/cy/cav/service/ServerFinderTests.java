@@ -0,0 +1,90 @@
+package cy.cav.service;
+
+import cy.cav.framework.*;
+import cy.cav.protocol.*;
+import org.junit.jupiter.api.*;
+
+import java.util.*;
+
+import static org.assertj.core.api.Assertions.*;
+
+class ServerFinderTests {
+    private static final Map<String, String> CALCULATORS = Map.of(ServerCapability.CALCULATORS.metadataKey(), "true");
+
+    private final InMemoryCluster cluster = new InMemoryCluster();
+    private final World prefecture = cluster.addWorld("cav-service", Map.of());
+    private final World client = cluster.addWorld("cav-client", Map.of());
+    private final List<World> calculators = List.of(
+            cluster.addWorld("cav-service", CALCULATORS),
+            cluster.addWorld("cav-service", CALCULATORS),
+            cluster.addWorld("cav-service", CALCULATORS));
+    private final ServerFinder finder = finderOf(prefecture);
+
+    @AfterEach
+    void tearDown() {
+        cluster.close();
+    }
+
+    private ServerFinder finderOf(World world) {
+        return new ServerFinder(cluster.network(world), world.server(), world);
+    }
+
+    private void makeSeemDown(long serverId) {
+        while (prefecture.serverHealth().isHealthy(serverId)) {
+            prefecture.serverHealth().failed(serverId);
+        }
+    }
+
+    @Test
+    void sendsTheSameAckIdToTheSameServer() {
+        ServerFinder other = finderOf(client);
+        Set<Long> used = new HashSet<>();
+
+        for (int i = 0; i < 100; i++) {
+            UUID ackId = UUID.randomUUID();
+            ActorAddress picked = finder.pickCalculatorActor(AllowanceType.RSA, ackId);
+
+            assertThat(finder.pickCalculatorActor(AllowanceType.RSA, ackId)).isEqualTo(picked);
+            assertThat(other.pickCalculatorActor(AllowanceType.RSA, ackId)).isEqualTo(picked);
+            assertThat(picked.actorNumber()).isEqualTo(AllowanceType.RSA.calculatorActorNumber());
+            used.add(picked.serverId());
+        }
+
+        // Requests still spread over calculator servers.
+        assertThat(used).hasSize(calculators.size());
+    }
+
+    @Test
+    void movesToAnotherServerWhileTheServerSeemsDown() {
+        UUID ackId = UUID.randomUUID();
+        ActorAddress usual = finder.pickCalculatorActor(AllowanceType.RSA, ackId);
+
+        makeSeemDown(usual.serverId());
+        ActorAddress moved = finder.pickCalculatorActor(AllowanceType.RSA, ackId);
+
+        assertThat(moved.serverId()).isNotEqualTo(usual.serverId());
+        assertThat(finder.pickCalculatorActor(AllowanceType.RSA, ackId)).isEqualTo(moved);
+
+        prefecture.serverHealth().succeeded(usual.serverId());
+        assertThat(finder.pickCalculatorActor(AllowanceType.RSA, ackId)).isEqualTo(usual);
+    }
+
+    @Test
+    void keepsTheUsualServerWhenAllSeemDown() {
+        UUID ackId = UUID.randomUUID();
+        ActorAddress usual = finder.pickCalculatorActor(AllowanceType.RSA, ackId);
+
+        calculators.forEach(world -> makeSeemDown(world.server().id()));
+
+        assertThat(finder.pickCalculatorActor(AllowanceType.RSA, ackId)).isEqualTo(usual);
+    }
+
+    @Test
+    void prefersItsOwnCalculator() {
+        World calculator = calculators.getFirst();
+
+        ActorAddress picked = finderOf(calculator).pickCalculatorActor(AllowanceType.RSA, UUID.randomUUID());
+
+        assertThat(picked).isEqualTo(AllowanceType.RSA.calculatorActor(calculator.server()));
+    }
+}